@@ -32,12 +32,6 @@
 
 grammar TIBasic;
 
-/* Additional java imports */
-
-@header {
-import org.xlrnet.tibaija.commons.ValidationUtil;
-}
-
 /* Global attributes */
 
 @members {
@@ -106,27 +100,18 @@ expression_plus_minus returns [ List<String> operators ]
          )
          expression_mul_div )*;
 
-// Let's hope the following rule doesn't break ...
-expression_mul_div returns [         
+// Implicit multiplications of a list with a number variable (e.g. ∟ABCDEF) are rejected by the InstructionCompiler
+expression_mul_div returns [
     List<String> operators
-] locals [
-    String lastExpr,
-    boolean isImplicit = false
 ]
 @init { _localctx.operators = new ArrayList<String>(); }
-       : expression_infix { $lastExpr = $expression_infix.text; }
+       : expression_infix
        (
-         ( MULTIPLY { $operators.add($MULTIPLY.text); $isImplicit = false;}
-         | DIVIDE { $operators.add($DIVIDE.text); $isImplicit = false; }
-         | { $operators.add("*"); $isImplicit = true; }              // Implicit multiplication
+         ( MULTIPLY { $operators.add($MULTIPLY.text); }
+         | DIVIDE { $operators.add($DIVIDE.text); }
+         | { $operators.add("*"); }              // Implicit multiplication
          )
-         // Make sure that no implicit multiplication with a number variable is allowed
-         // if the last expression was a list variable and the next expression begins with a number variable
-         // I.e.: Prevent that  ∟ABCDEF will be interpreted as ∟ABCDE*F
-         expression_infix { !($isImplicit
-                            && ValidationUtil.isValidListName($lastExpr)
-                            && ValidationUtil.isValidNumberVariableName($expression_infix.text)) }?
-           { $lastExpr = $expression_infix.text; }
+         expression_infix
        )*;
 
 expression_infix returns [ List<String> operators ]
@@ -155,6 +140,7 @@ expression_postfix returns [ List<String> operators ]
          ( SQUARED   { $operators.add($SQUARED.text); }
          | FACTORIAL { $operators.add($FACTORIAL.text); }
          | CUBED     { $operators.add($CUBED.text); }
+         | INVERSE   { $operators.add($INVERSE.text); }
            // TODO: Add other postfix operators
          )*
        ;
@@ -185,6 +171,7 @@ expression_value
        : LEFT_PARENTHESIS expression RIGHT_PARENTHESIS?
        | numericalValue
        | listValue
+       | matrixValue
        | stringValue
        | lastResult
        | expressionFunctionCall
@@ -266,12 +253,16 @@ storeStatement
        | expression STORE listVariable                                                       # StoreListStatement
        | expression STORE listVariable LEFT_PARENTHESIS expression (RIGHT_PARENTHESIS)?      # StoreListElementStatement
        | expression STORE DIMENSION LEFT_PARENTHESIS listVariable (RIGHT_PARENTHESIS)?           # StoreListDimensionStatement
+       | expression STORE matrixVariable                                                     # StoreMatrixStatement
+       | expression STORE matrixVariable LEFT_PARENTHESIS expression COMMA expression (RIGHT_PARENTHESIS)?  # StoreMatrixElementStatement
+       | expression STORE DIMENSION LEFT_PARENTHESIS matrixVariable (RIGHT_PARENTHESIS)?         # StoreMatrixDimensionStatement
        | expression STORE STRING_VARIABLE                                                    # StoreStringStatement
        ;
 
 numericalValue
        : numericalVariable                                                       # NumericalVariableExpression
        | listVariable LEFT_PARENTHESIS expression (RIGHT_PARENTHESIS)?           # ListElementExpression             // Workaround for accessing a single list element
+       | matrixVariable LEFT_PARENTHESIS expression COMMA expression (RIGHT_PARENTHESIS)?  # MatrixElementExpression
        | number                                                                  # NumberExpression
        ;
 
@@ -292,6 +283,23 @@ listExpression
 listVariable
        : LIST_TOKEN listIdentifier
        ;
+
+matrixValue
+       : matrixVariable
+       | matrixExpression
+       ;
+
+matrixExpression
+       : LEFT_BRACKET matrixRow+ RIGHT_BRACKET?
+       ;
+
+matrixRow
+       : LEFT_BRACKET expression ( COMMA expression )* RIGHT_BRACKET
+       ;
+
+matrixVariable
+       : MATRIX_VARIABLE
+       ;
        
 labelIdentifier
        : (CapitalOrTheta | DIGIT) (CapitalOrTheta | DIGIT)?;
@@ -324,10 +332,9 @@ digits: DIGIT+;     // Helper rule to get the token
 number returns [
     String preDecimal, String decimal
 ] :  NEGATIVE_MINUS?
-     digits? { $preDecimal = $digits.text; }
-     DOT?
-     digits { $decimal = $digits.text; }
-     ;
+     ( preDecimalDigits=digits? { $preDecimal = $preDecimalDigits.text; } DOT decimalDigits=digits { $decimal = $decimalDigits.text; }
+     | decimalDigits=digits { $decimal = $decimalDigits.text; }
+     );
 
 /* Parser rules for detecting a string */
 STRING
@@ -372,6 +379,7 @@ CUBIC_ROOT: '∛(';
 FACTORIAL: '!';
 SQUARED: '²';
 CUBED: '³';
+INVERSE: '⁻¹';
 // Conversion operators
 TO_FRAC: '►Frac';
 TO_DEC: '►Dec';
@@ -381,6 +389,9 @@ LEFT_PARENTHESIS: '(';
 RIGHT_PARENTHESIS: ')';
 LEFT_BRACE: '{';
 RIGHT_BRACE: '}';
+MATRIX_VARIABLE: '[' 'A' .. 'J' ']';
+LEFT_BRACKET: '[';
+RIGHT_BRACKET: ']';
 COMMA: ',';
 STORE: '->' | TI_STORE;
 TI_STORE: '→';
@@ -392,13 +403,15 @@ CAPITAL_LETTER: 'A' .. 'Z';
 LOWERCASE_LETTER: 'a' .. 'z';
 LIST_TOKEN: '∟';
 DIMENSION: 'dim';
+DELTA_LIST: 'ΔList';
 QUOTATION_MARK: '"';
 SPACE: ' ';
 STRING_VARIABLE: 'Str' DIGIT;
 
 expressionFunctionIdentifier
         : (LOWERCASE_LETTER (LOWERCASE_LETTER | CapitalOrTheta | IMAGINARY)*)
-        | DIMENSION;
+        | DIMENSION
+        | DELTA_LIST;
 
 commandFunctionIdentifier
         : (CapitalOrTheta (LOWERCASE_LETTER | CapitalOrTheta | IMAGINARY | MINUS)+)
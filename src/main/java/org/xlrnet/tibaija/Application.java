@@ -31,6 +31,7 @@ import org.slf4j.LoggerFactory;
 import org.xlrnet.tibaija.exception.TIRuntimeException;
 import org.xlrnet.tibaija.io.CalculatorIO;
 import org.xlrnet.tibaija.io.FileSystemCodeProvider;
+import org.xlrnet.tibaija.io.TokenizedFileCodeProvider;
 import org.xlrnet.tibaija.memory.ReadOnlyCalculatorMemory;
 import org.xlrnet.tibaija.processor.ExecutionEnvironmentFactory;
 import org.xlrnet.tibaija.processor.InternalExecutionEnvironment;
@@ -77,9 +78,9 @@ public class Application {
             configureRootLogger(config);
 
             if (config.isInteractive()) {
-                runInteractiveMode();
+                runInteractiveMode(config.getCacheDirectory());
             } else if (config.getStartFile() != null) {
-                runFileMode(config.getStartFile());
+                runFileMode(config.getStartFile(), config.getCacheDirectory());
             } else if (config.isShowHelp() || !configured) {
                 printUsage(parser);
             }
@@ -91,6 +92,18 @@ public class Application {
         }
     }
 
+    private FileSystemCodeProvider newCodeProvider(Path defaultPath, File cacheDirectory, boolean tokenized) throws IOException {
+        if (tokenized) {
+            if (cacheDirectory != null) {
+                return new TokenizedFileCodeProvider(defaultPath, cacheDirectory.toPath());
+            }
+            return new TokenizedFileCodeProvider(defaultPath);
+        } else if (cacheDirectory != null) {
+            return new FileSystemCodeProvider(defaultPath, cacheDirectory.toPath());
+        }
+        return new FileSystemCodeProvider(defaultPath);
+    }
+
     private void printUsage(CmdLineParser parser) {
         System.out.println("Tibaija - a TI-Basic interpreter for Java");
         System.out.println();
@@ -102,14 +115,15 @@ public class Application {
         parseArguments(args);
     }
 
-    private void runFileMode(File startFile) {
+    private void runFileMode(File startFile, File cacheDirectory) {
         LOGGER.info("Starting interpreter from file {} ...", startFile.getAbsolutePath());
 
         InternalExecutionEnvironment environment = null;
         try {
             Path filePath = startFile.toPath();
             Path parentDirectory = filePath.toAbsolutePath().getParent();
-            FileSystemCodeProvider codeProvider = new FileSystemCodeProvider(parentDirectory);
+            // Programs which are called by a tokenized program are expected to be tokenized as well
+            FileSystemCodeProvider codeProvider = newCodeProvider(parentDirectory, cacheDirectory, TokenizedFileCodeProvider.isTokenizedFile(filePath));
             environment = ExecutionEnvironmentFactory.newDefaultEnvironment(codeProvider);
             environment.boot();
             String bootFile = codeProvider.registerFile(filePath);
@@ -124,10 +138,10 @@ public class Application {
         }
     }
 
-    private void runInteractiveMode() throws IOException {
+    private void runInteractiveMode(File cacheDirectory) throws IOException {
         LOGGER.info("Starting interpreter in interactive mode ...");
 
-        FileSystemCodeProvider codeProvider = new FileSystemCodeProvider(Paths.get(""));
+        FileSystemCodeProvider codeProvider = newCodeProvider(Paths.get(""), cacheDirectory, false);
         InternalExecutionEnvironment environment = ExecutionEnvironmentFactory.newDefaultEnvironment(codeProvider);
         CalculatorIO io = environment.getCalculatorIO();
         ReadOnlyCalculatorMemory memory = environment.getMemory();
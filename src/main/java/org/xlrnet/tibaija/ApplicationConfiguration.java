@@ -47,6 +47,13 @@ public class ApplicationConfiguration {
     @Option(name = "-v", usage = "enable verbose logging")
     private boolean showVerboseLog;
 
+    @Option(name = "-c", metaVar = "dir", usage = "cache preprocessed programs in the given directory")
+    private File cacheDirectory;
+
+    public File getCacheDirectory() {
+        return this.cacheDirectory;
+    }
+
     public File getStartFile() {
         return this.startFile;
     }
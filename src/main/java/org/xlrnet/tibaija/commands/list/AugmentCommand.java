@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.commands.list;
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.tibaija.commons.Preconditions;
+import org.xlrnet.tibaija.commons.Value;
+import org.xlrnet.tibaija.commons.ValueType;
+import org.xlrnet.tibaija.memory.Parameter;
+import org.xlrnet.tibaija.processor.Command;
+
+import java.util.Optional;
+
+/**
+ * Command for concatenating two lists.
+ * <p/>
+ * According to TI-Basic Developer {@see http://tibasicdev.wikidot.com/augment}:
+ * The augment( command combines two lists into one: the elements of the second list are appended to the elements of
+ * the first list.
+ */
+public class AugmentCommand extends Command {
+
+    /**
+     * Main method for invoking a command. Must be overwritten by the specific implementation. When this method gets
+     * called by the framework, both hasValidArgumentValues() and hasValidNumberOfArguments() have already been called.
+     *
+     * @param arguments
+     *         The arguments for the command.
+     * @return An optional return value.
+     */
+    @NotNull
+    @Override
+    protected Optional<Value> execute(@NotNull ImmutableList<Parameter> arguments) {
+        Value first = arguments.get(0).value();
+        Value second = arguments.get(1).value();
+        int firstSize = first.listSize();
+        int secondSize = second.listSize();
+
+        double[] realParts = new double[firstSize + secondSize];
+        for (int i = 0; i < firstSize; i++) {
+            realParts[i] = first.listRealPart(i);
+        }
+        for (int i = 0; i < secondSize; i++) {
+            realParts[firstSize + i] = second.listRealPart(i);
+        }
+
+        double[] imaginaryParts = null;
+        if (first.hasImaginaryListValues() || second.hasImaginaryListValues()) {
+            imaginaryParts = new double[firstSize + secondSize];
+            for (int i = 0; i < firstSize; i++) {
+                imaginaryParts[i] = first.listImaginaryPart(i);
+            }
+            for (int i = 0; i < secondSize; i++) {
+                imaginaryParts[firstSize + i] = second.listImaginaryPart(i);
+            }
+        }
+        return Optional.of(Value.ofList(realParts, imaginaryParts));
+    }
+
+    /**
+     * Checks if both arguments are lists.
+     *
+     * @param arguments
+     *         The immutable list of parameters to check.
+     * @return Always true, an exception will be thrown if any argument is not a list.
+     */
+    @Override
+    protected boolean hasValidArgumentValues(@NotNull ImmutableList<Parameter> arguments) {
+        Preconditions.checkValueType(arguments.get(0).value(), ValueType.LIST);
+        Preconditions.checkValueType(arguments.get(1).value(), ValueType.LIST);
+        return true;
+    }
+
+    /**
+     * Checks if exactly two arguments were passed.
+     *
+     * @param numberOfParametersEntered
+     *         Number of parameters passed by the caller.
+     * @return True if exactly two arguments were passed.
+     */
+    @Override
+    protected boolean hasValidNumberOfArguments(int numberOfParametersEntered) {
+        return numberOfParametersEntered == 2;
+    }
+
+    /**
+     * Concatenation only depends on the lists.
+     *
+     * @return Always true.
+     */
+    @Override
+    protected boolean isPure() {
+        return true;
+    }
+}
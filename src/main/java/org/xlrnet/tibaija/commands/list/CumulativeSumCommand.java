@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.commands.list;
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.tibaija.commons.Preconditions;
+import org.xlrnet.tibaija.commons.Value;
+import org.xlrnet.tibaija.commons.ValueType;
+import org.xlrnet.tibaija.memory.Parameter;
+import org.xlrnet.tibaija.processor.Command;
+
+import java.util.Optional;
+
+/**
+ * Command for calculating the cumulative sums of a list.
+ * <p/>
+ * According to TI-Basic Developer {@see http://tibasicdev.wikidot.com/cumsum}:
+ * cumSum( calculates the cumulative sums of a list, i.e. the n-th element of the result is the sum of the first n
+ * elements of the list.
+ */
+public class CumulativeSumCommand extends Command {
+
+    /**
+     * Main method for invoking a command. Must be overwritten by the specific implementation. When this method gets
+     * called by the framework, both hasValidArgumentValues() and hasValidNumberOfArguments() have already been called.
+     *
+     * @param arguments
+     *         The arguments for the command.
+     * @return An optional return value.
+     */
+    @NotNull
+    @Override
+    protected Optional<Value> execute(@NotNull ImmutableList<Parameter> arguments) {
+        Value list = arguments.get(0).value();
+        double[] realParts = list.listRealParts();
+        double[] imaginaryParts = list.listImaginaryParts();
+
+        cumulate(realParts);
+        if (imaginaryParts != null) {
+            cumulate(imaginaryParts);
+        }
+        return Optional.of(Value.ofList(realParts, imaginaryParts));
+    }
+
+    /**
+     * Checks if the argument is a list.
+     *
+     * @param arguments
+     *         The immutable list of parameters to check.
+     * @return Always true, an exception will be thrown if the argument is not a list.
+     */
+    @Override
+    protected boolean hasValidArgumentValues(@NotNull ImmutableList<Parameter> arguments) {
+        Preconditions.checkValueType(arguments.get(0).value(), ValueType.LIST);
+        return true;
+    }
+
+    /**
+     * Checks if exactly one argument was passed.
+     *
+     * @param numberOfParametersEntered
+     *         Number of parameters passed by the caller.
+     * @return True if exactly one argument was passed.
+     */
+    @Override
+    protected boolean hasValidNumberOfArguments(int numberOfParametersEntered) {
+        return numberOfParametersEntered == 1;
+    }
+
+    /**
+     * Cumulative sums only depend on the list.
+     *
+     * @return Always true.
+     */
+    @Override
+    protected boolean isPure() {
+        return true;
+    }
+
+    private static void cumulate(@NotNull double[] values) {
+        for (int i = 1; i < values.length; i++) {
+            values[i] += values[i - 1];
+        }
+    }
+}
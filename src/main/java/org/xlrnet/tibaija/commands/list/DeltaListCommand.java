@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.commands.list;
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.tibaija.commons.Preconditions;
+import org.xlrnet.tibaija.commons.Value;
+import org.xlrnet.tibaija.commons.ValueType;
+import org.xlrnet.tibaija.exception.InvalidDimensionException;
+import org.xlrnet.tibaija.memory.Parameter;
+import org.xlrnet.tibaija.processor.Command;
+
+import java.util.Optional;
+
+/**
+ * Command for calculating the differences between consecutive elements of a list.
+ * <p/>
+ * According to TI-Basic Developer {@see http://tibasicdev.wikidot.com/deltalist}:
+ * The ΔList( command calculates the differences between consecutive terms of a list, and returns them in a new list.
+ * The result has one element less than the list, so the list must have at least two elements.
+ */
+public class DeltaListCommand extends Command {
+
+    /**
+     * Main method for invoking a command. Must be overwritten by the specific implementation. When this method gets
+     * called by the framework, both hasValidArgumentValues() and hasValidNumberOfArguments() have already been called.
+     *
+     * @param arguments
+     *         The arguments for the command.
+     * @return An optional return value.
+     */
+    @NotNull
+    @Override
+    protected Optional<Value> execute(@NotNull ImmutableList<Parameter> arguments) {
+        Value list = arguments.get(0).value();
+        int size = list.listSize();
+        double[] realParts = new double[size - 1];
+        double[] imaginaryParts = list.hasImaginaryListValues() ? new double[size - 1] : null;
+
+        for (int i = 0; i < realParts.length; i++) {
+            realParts[i] = list.listRealPart(i + 1) - list.listRealPart(i);
+        }
+        if (imaginaryParts != null) {
+            for (int i = 0; i < imaginaryParts.length; i++) {
+                imaginaryParts[i] = list.listImaginaryPart(i + 1) - list.listImaginaryPart(i);
+            }
+        }
+        return Optional.of(Value.ofList(realParts, imaginaryParts));
+    }
+
+    /**
+     * Checks if the argument is a list with at least two elements.
+     *
+     * @param arguments
+     *         The immutable list of parameters to check.
+     * @return Always true, an exception will be thrown if the argument is not a list with at least two elements.
+     */
+    @Override
+    protected boolean hasValidArgumentValues(@NotNull ImmutableList<Parameter> arguments) {
+        Value list = arguments.get(0).value();
+        Preconditions.checkValueType(list, ValueType.LIST);
+        if (list.listSize() < 2) {
+            throw new InvalidDimensionException("ΔList( requires a list with at least two elements", list.listSize());
+        }
+        return true;
+    }
+
+    /**
+     * Checks if exactly one argument was passed.
+     *
+     * @param numberOfParametersEntered
+     *         Number of parameters passed by the caller.
+     * @return True if exactly one argument was passed.
+     */
+    @Override
+    protected boolean hasValidNumberOfArguments(int numberOfParametersEntered) {
+        return numberOfParametersEntered == 1;
+    }
+
+    /**
+     * Differences only depend on the list.
+     *
+     * @return Always true.
+     */
+    @Override
+    protected boolean isPure() {
+        return true;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.commands.list;
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.tibaija.commons.Preconditions;
+import org.xlrnet.tibaija.commons.Value;
+import org.xlrnet.tibaija.commons.ValueType;
+import org.xlrnet.tibaija.memory.Parameter;
+import org.xlrnet.tibaija.processor.Command;
+
+import java.util.Optional;
+
+/**
+ * Command for retrieving the number of elements of a list or the number of rows and columns of a matrix as a list.
+ * Changing the size of a list or matrix variable is not a command but a store statement (e.g. 5→dim(L₁) or
+ * {2,3}→dim([A])).
+ * <p/>
+ * According to TI-Basic Developer {@see http://tibasicdev.wikidot.com/dim}:
+ * The dim( command is used to find the size of an existing list or matrix.
+ */
+public class DimensionCommand extends Command {
+
+    /**
+     * Main method for invoking a command. Must be overwritten by the specific implementation. When this method gets
+     * called by the framework, both hasValidArgumentValues() and hasValidNumberOfArguments() have already been called.
+     *
+     * @param arguments
+     *         The arguments for the command.
+     * @return An optional return value.
+     */
+    @NotNull
+    @Override
+    protected Optional<Value> execute(@NotNull ImmutableList<Parameter> arguments) {
+        Value value = arguments.get(0).value();
+        if (value.isMatrix()) {
+            return Optional.of(Value.listOf(Value.of(value.matrixRows()), Value.of(value.matrixColumns())));
+        }
+        return Optional.of(Value.of(value.listSize()));
+    }
+
+    /**
+     * Checks if the argument is a list or a matrix.
+     *
+     * @param arguments
+     *         The immutable list of parameters to check.
+     * @return Always true, an exception will be thrown if the argument is neither a list nor a matrix.
+     */
+    @Override
+    protected boolean hasValidArgumentValues(@NotNull ImmutableList<Parameter> arguments) {
+        Value value = arguments.get(0).value();
+        if (!value.isMatrix())
+            Preconditions.checkValueType(value, ValueType.LIST);
+        return true;
+    }
+
+    /**
+     * Checks if exactly one argument was passed.
+     *
+     * @param numberOfParametersEntered
+     *         Number of parameters passed by the caller.
+     * @return True if exactly one argument was passed.
+     */
+    @Override
+    protected boolean hasValidNumberOfArguments(int numberOfParametersEntered) {
+        return numberOfParametersEntered == 1;
+    }
+
+    /**
+     * The dimension only depends on the list or matrix.
+     *
+     * @return Always true.
+     */
+    @Override
+    protected boolean isPure() {
+        return true;
+    }
+}
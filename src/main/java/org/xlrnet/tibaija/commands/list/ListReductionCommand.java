@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.commands.list;
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.tibaija.commons.NumberUtil;
+import org.xlrnet.tibaija.commons.Preconditions;
+import org.xlrnet.tibaija.commons.Value;
+import org.xlrnet.tibaija.commons.ValueType;
+import org.xlrnet.tibaija.memory.Parameter;
+import org.xlrnet.tibaija.processor.Command;
+
+import java.util.Optional;
+
+/**
+ * Base class for commands that reduce a list or a range of it to a single number, e.g. sum( or prod(. The first
+ * argument must be a list, the optional second and third argument are the one-based indices of the first and last
+ * element of the range.
+ */
+abstract class ListReductionCommand extends Command {
+
+    /**
+     * Main method for invoking a command. Must be overwritten by the specific implementation. When this method gets
+     * called by the framework, both hasValidArgumentValues() and hasValidNumberOfArguments() have already been called.
+     *
+     * @param arguments
+     *         The arguments for the command.
+     * @return An optional return value.
+     */
+    @NotNull
+    @Override
+    protected Optional<Value> execute(@NotNull ImmutableList<Parameter> arguments) {
+        Value list = arguments.get(0).value();
+        int from = arguments.size() > 1 ? (int) arguments.get(1).value().realPart() - 1 : 0;
+        int to = arguments.size() > 2 ? (int) arguments.get(2).value().realPart() : list.listSize();
+
+        return Optional.of(reduce(list, from, Math.max(from, to)));
+    }
+
+    /**
+     * Reduces the elements of the given list in the given range to a single value in one pass over the list.
+     *
+     * @param list
+     *         The list to reduce.
+     * @param from
+     *         Zero-based index of the first element (inclusive).
+     * @param to
+     *         Zero-based index of the last element (exclusive). Never smaller than from.
+     * @return The result of the reduction.
+     */
+    @NotNull
+    protected abstract Value reduce(@NotNull Value list, int from, int to);
+
+    /**
+     * Checks if the first argument is a list and all other arguments are valid indices of it.
+     *
+     * @param arguments
+     *         The immutable list of parameters to check.
+     * @return True if all indices are integers within the bounds of the list.
+     */
+    @Override
+    protected boolean hasValidArgumentValues(@NotNull ImmutableList<Parameter> arguments) {
+        Value list = arguments.get(0).value();
+        Preconditions.checkValueType(list, ValueType.LIST);
+
+        for (int i = 1; i < arguments.size(); i++) {
+            Value index = arguments.get(i).value();
+            Preconditions.checkValueType(index, ValueType.NUMBER);
+            if (index.hasImaginaryValue() || !NumberUtil.isInteger(index.realPart())
+                    || index.realPart() < 1 || index.realPart() > list.listSize()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks if a list and at most two indices were passed.
+     *
+     * @param numberOfParametersEntered
+     *         Number of parameters passed by the caller.
+     * @return True if one to three arguments were passed.
+     */
+    @Override
+    protected boolean hasValidNumberOfArguments(int numberOfParametersEntered) {
+        return numberOfParametersEntered >= 1 && numberOfParametersEntered <= 3;
+    }
+
+    /**
+     * Reductions only depend on their arguments.
+     *
+     * @return Always true.
+     */
+    @Override
+    protected boolean isPure() {
+        return true;
+    }
+}
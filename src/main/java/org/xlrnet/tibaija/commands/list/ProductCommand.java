@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.commands.list;
+
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.tibaija.commands.math.ListKernels;
+import org.xlrnet.tibaija.commons.Value;
+
+/**
+ * Command for calculating the product of all elements of a list.
+ * <p/>
+ * According to TI-Basic Developer {@see http://tibasicdev.wikidot.com/prod}:
+ * The prod( command calculates the product of all of the elements of a list. You can also give it a bound of start and
+ * end and it will only multiply the elements starting and ending at those indices (inclusive).
+ * <p/>
+ * The elements are multiplied in chunks (see {@link ListKernels#reduceChunks}) whose products are multiplied in index
+ * order.
+ */
+public class ProductCommand extends ListReductionCommand {
+
+    @NotNull
+    @Override
+    protected Value reduce(@NotNull Value list, int from, int to) {
+        int chunks = ListKernels.getNumberOfReductionChunks(to - from);
+        double[] partialReal = new double[chunks];
+
+        if (!list.hasImaginaryListValues()) {
+            ListKernels.reduceChunks((chunk, chunkFrom, chunkTo) -> {
+                double product = 1;
+                for (int i = chunkFrom; i < chunkTo; i++) {
+                    product *= list.listRealPart(i);
+                }
+                partialReal[chunk] = product;
+            }, from, to, getEnvironment());
+
+            double product = 1;
+            for (double partial : partialReal) {
+                product *= partial;
+            }
+            return Value.of(product);
+        }
+
+        double[] partialImaginary = new double[chunks];
+        ListKernels.reduceChunks((chunk, chunkFrom, chunkTo) -> {
+            double real = 1;
+            double imaginary = 0;
+            for (int i = chunkFrom; i < chunkTo; i++) {
+                double elementReal = list.listRealPart(i);
+                double elementImaginary = list.listImaginaryPart(i);
+                double newReal = real * elementReal - imaginary * elementImaginary;
+                imaginary = real * elementImaginary + imaginary * elementReal;
+                real = newReal;
+            }
+            partialReal[chunk] = real;
+            partialImaginary[chunk] = imaginary;
+        }, from, to, getEnvironment());
+
+        double real = 1;
+        double imaginary = 0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            double newReal = real * partialReal[chunk] - imaginary * partialImaginary[chunk];
+            imaginary = real * partialImaginary[chunk] + imaginary * partialReal[chunk];
+            real = newReal;
+        }
+        return Value.of(real, imaginary);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.commands.list;
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.tibaija.commons.Preconditions;
+import org.xlrnet.tibaija.commons.Value;
+import org.xlrnet.tibaija.commons.ValueType;
+import org.xlrnet.tibaija.exception.InvalidDimensionException;
+import org.xlrnet.tibaija.memory.CalculatorMemory;
+import org.xlrnet.tibaija.memory.NumberVariable;
+import org.xlrnet.tibaija.memory.Parameter;
+import org.xlrnet.tibaija.memory.Variable;
+import org.xlrnet.tibaija.processor.Command;
+
+import java.util.Optional;
+
+import static org.xlrnet.tibaija.commons.Preconditions.checkArgument;
+
+/**
+ * Command for generating a list from an expression.
+ * <p/>
+ * According to TI-Basic Developer {@see http://tibasicdev.wikidot.com/seq-list}:
+ * The seq( command is very powerful, as it is (almost) the only way to create a list on the fly. It takes an
+ * expression, a variable, a starting value, an ending value and an optional increment. The expression is evaluated for
+ * every value of the variable from start to end and the results are returned as a list. The variable will have its
+ * previous value again afterwards.
+ * <p/>
+ * The expression is passed as an unevaluated parameter, which is evaluated again with every value of the variable.
+ */
+public class SequenceCommand extends Command {
+
+    /**
+     * Main method for invoking a command. Must be overwritten by the specific implementation. When this method gets
+     * called by the framework, both hasValidArgumentValues() and hasValidNumberOfArguments() have already been called.
+     *
+     * @param arguments
+     *         The arguments for the command.
+     * @return An optional return value.
+     */
+    @NotNull
+    @Override
+    protected Optional<Value> execute(@NotNull ImmutableList<Parameter> arguments) {
+        Parameter expression = arguments.get(0);
+        NumberVariable variable = (NumberVariable) arguments.get(1).variable();
+        double start = arguments.get(2).value().realPart();
+        double end = arguments.get(3).value().realPart();
+        double step = arguments.size() > 4 ? arguments.get(4).value().realPart() : 1;
+
+        double count = Math.floor((end - start) / step) + 1;
+        if (count < 1 || count > Integer.MAX_VALUE) {
+            throw new InvalidDimensionException("Invalid number of elements for seq(", (int) Math.max(Math.min(count, Integer.MAX_VALUE), 0));
+        }
+
+        CalculatorMemory memory = getWritableMemory();
+        Value previousValue = memory.getNumberVariableValue(variable);
+        double[] realParts = new double[(int) count];
+        double[] imaginaryParts = null;
+
+        try {
+            for (int i = 0; i < realParts.length; i++) {
+                memory.setNumberVariableValue(variable, Value.of(start + i * step));
+                Value element = expression.value();
+                Preconditions.checkValueType(element, ValueType.NUMBER);
+
+                realParts[i] = element.realPart();
+                if (element.hasImaginaryValue()) {
+                    if (imaginaryParts == null) {
+                        imaginaryParts = new double[realParts.length];
+                    }
+                    imaginaryParts[i] = element.imaginaryPart();
+                }
+            }
+        } finally {
+            memory.setNumberVariableValue(variable, previousValue);
+        }
+        return Optional.of(Value.ofList(realParts, imaginaryParts));
+    }
+
+    /**
+     * Checks if the second argument is a number variable and start, end and increment are real numbers.
+     *
+     * @param arguments
+     *         The immutable list of parameters to check.
+     * @return Always true, an exception will be thrown if any argument is invalid.
+     */
+    @Override
+    protected boolean hasValidArgumentValues(@NotNull ImmutableList<Parameter> arguments) {
+        Variable variable = arguments.get(1).variable();
+        checkArgument(variable.getVariableType() == ValueType.NUMBER, "Variable of seq( must be a number variable");
+
+        for (int i = 2; i < arguments.size(); i++) {
+            Value value = arguments.get(i).value();
+            Preconditions.checkValueType(value, ValueType.NUMBER);
+            checkArgument(!value.hasImaginaryValue(), "Bounds and increment of seq( may not be imaginary", value);
+        }
+        if (arguments.size() > 4) {
+            checkArgument(arguments.get(4).value().realPart() != 0, "Increment of seq( may not be zero");
+        }
+        return true;
+    }
+
+    /**
+     * Checks if an expression, a variable, start and end and an optional increment were passed.
+     *
+     * @param numberOfParametersEntered
+     *         Number of parameters passed by the caller.
+     * @return True if four or five arguments were passed.
+     */
+    @Override
+    protected boolean hasValidNumberOfArguments(int numberOfParametersEntered) {
+        return numberOfParametersEntered == 4 || numberOfParametersEntered == 5;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.commands.list;
+
+import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xlrnet.tibaija.commons.Value;
+import org.xlrnet.tibaija.commons.ValueType;
+import org.xlrnet.tibaija.memory.CalculatorMemory;
+import org.xlrnet.tibaija.memory.ListVariable;
+import org.xlrnet.tibaija.memory.Parameter;
+import org.xlrnet.tibaija.processor.Command;
+
+import java.util.Optional;
+
+import static org.xlrnet.tibaija.commons.Preconditions.checkArgument;
+
+/**
+ * Command for sorting a list variable in ascending or descending order.
+ * <p/>
+ * According to TI-Basic Developer {@see http://tibasicdev.wikidot.com/sorta}:
+ * The SortA( command sorts a list in ascending order. It does not return it, but instead edits the original list
+ * variable (so it takes only list variables as arguments). SortA( can also be passed multiple lists. In this case, it
+ * will sort the first list, and reorder the others so that elements which had the same indices initially will
+ * continue having the same indices. Complex lists are sorted by the absolute values of their elements.
+ * <p/>
+ * The sort is stable: elements with equal keys keep their relative order in both directions.
+ */
+public class SortCommand extends Command {
+
+    /**
+     * Order in which a list will be sorted.
+     */
+    public enum Order {
+        ASCENDING,
+        DESCENDING
+    }
+
+    private final Order order;
+
+    public SortCommand(@NotNull Order order) {
+        this.order = order;
+    }
+
+    /**
+     * Main method for invoking a command. Must be overwritten by the specific implementation. When this method gets
+     * called by the framework, both hasValidArgumentValues() and hasValidNumberOfArguments() have already been called.
+     *
+     * @param arguments
+     *         The arguments for the command.
+     * @return An optional return value.
+     */
+    @NotNull
+    @Override
+    protected Optional<Value> execute(@NotNull ImmutableList<Parameter> arguments) {
+        int[] permutation = sortedPermutation(sortKeys(arguments.get(0).value()), this.order == Order.DESCENDING);
+
+        // Permute all lists before storing any of them, so that a list may be passed more than once
+        Value[] sortedLists = new Value[arguments.size()];
+        for (int i = 0; i < sortedLists.length; i++) {
+            Value list = arguments.get(i).value();
+            sortedLists[i] = Value.ofList(permute(list.listRealParts(), permutation), permute(list.listImaginaryParts(), permutation));
+        }
+
+        CalculatorMemory memory = getWritableMemory();
+        for (int i = 0; i < sortedLists.length; i++) {
+            memory.setListVariableValue((ListVariable) arguments.get(i).variable(), sortedLists[i]);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Checks if all arguments are list variables with the same number of elements.
+     *
+     * @param arguments
+     *         The immutable list of parameters to check.
+     * @return Always true, an exception will be thrown if any argument is invalid.
+     */
+    @Override
+    protected boolean hasValidArgumentValues(@NotNull ImmutableList<Parameter> arguments) {
+        int size = -1;
+        for (Parameter argument : arguments) {
+            checkArgument(argument.isVariable() && argument.variable().getVariableType() == ValueType.LIST, "Only list variables can be sorted");
+            int listSize = argument.value().listSize();
+            checkArgument(size < 0 || listSize == size, "All lists must have the same dimension");
+            size = listSize;
+        }
+        return true;
+    }
+
+    /**
+     * Checks if at least one list was passed.
+     *
+     * @param numberOfParametersEntered
+     *         Number of parameters passed by the caller.
+     * @return True if at least one argument was passed.
+     */
+    @Override
+    protected boolean hasValidNumberOfArguments(int numberOfParametersEntered) {
+        return numberOfParametersEntered >= 1;
+    }
+
+    /**
+     * Returns the keys by which the elements of the given list will be sorted: the real parts for real lists and the
+     * absolute values for complex lists.
+     */
+    @NotNull
+    private static double[] sortKeys(@NotNull Value list) {
+        double[] keys = list.listRealParts();
+        if (list.hasImaginaryListValues()) {
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = Math.hypot(keys[i], list.listImaginaryPart(i));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Calculates the permutation which sorts the given keys with a stable bottom-up merge sort on primitive indices.
+     * The i-th element of the returned array is the index of the key which belongs to the i-th position.
+     */
+    @NotNull
+    private static int[] sortedPermutation(@NotNull double[] keys, boolean descending) {
+        int length = keys.length;
+        int[] indices = new int[length];
+        int[] buffer = new int[length];
+        for (int i = 0; i < length; i++) {
+            indices[i] = i;
+        }
+
+        for (int width = 1; width < length; width *= 2) {
+            for (int from = 0; from < length; from += 2 * width) {
+                int middle = Math.min(from + width, length);
+                int to = Math.min(from + 2 * width, length);
+                merge(keys, descending, indices, buffer, from, middle, to);
+            }
+            int[] swap = indices;
+            indices = buffer;
+            buffer = swap;
+        }
+        return indices;
+    }
+
+    /**
+     * Merges the two sorted runs [from, middle) and [middle, to) of the source into the same range of the target.
+     * Elements of the left run are preferred if the keys are equal, which keeps the sort stable.
+     */
+    private static void merge(double[] keys, boolean descending, int[] source, int[] target, int from, int middle, int to) {
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (left < middle && (right >= to || !isBefore(keys[source[right]], keys[source[left]], descending))) {
+                target[i] = source[left++];
+            } else {
+                target[i] = source[right++];
+            }
+        }
+    }
+
+    private static boolean isBefore(double key, double otherKey, boolean descending) {
+        return descending ? key > otherKey : key < otherKey;
+    }
+
+    @Nullable
+    private static double[] permute(@Nullable double[] values, @NotNull int[] permutation) {
+        if (values == null) {
+            return null;
+        }
+        double[] permuted = new double[values.length];
+        for (int i = 0; i < permutation.length; i++) {
+            permuted[i] = values[permutation[i]];
+        }
+        return permuted;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.commands.list;
+
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.tibaija.commands.math.ListKernels;
+import org.xlrnet.tibaija.commons.Value;
+
+/**
+ * Command for calculating the sum of all elements of a list.
+ * <p/>
+ * According to TI-Basic Developer {@see http://tibasicdev.wikidot.com/sum}:
+ * The sum( command calculates the sum of all or part of a list. When you use it with only one argument, the list, it
+ * sums up all the elements of the list. You can also give it a bound of start and end and it will only sum up the
+ * elements starting and ending at those indices (inclusive).
+ * <p/>
+ * The elements are summed up in chunks (see {@link ListKernels#reduceChunks}) whose sums are added in index order.
+ */
+public class SumCommand extends ListReductionCommand {
+
+    @NotNull
+    @Override
+    protected Value reduce(@NotNull Value list, int from, int to) {
+        int chunks = ListKernels.getNumberOfReductionChunks(to - from);
+        double[] partialReal = new double[chunks];
+        double[] partialImaginary = list.hasImaginaryListValues() ? new double[chunks] : null;
+
+        ListKernels.reduceChunks((chunk, chunkFrom, chunkTo) -> {
+            double real = 0;
+            for (int i = chunkFrom; i < chunkTo; i++) {
+                real += list.listRealPart(i);
+            }
+            partialReal[chunk] = real;
+
+            if (partialImaginary != null) {
+                double imaginary = 0;
+                for (int i = chunkFrom; i < chunkTo; i++) {
+                    imaginary += list.listImaginaryPart(i);
+                }
+                partialImaginary[chunk] = imaginary;
+            }
+        }, from, to, getEnvironment());
+
+        double real = 0;
+        for (double partial : partialReal) {
+            real += partial;
+        }
+        if (partialImaginary == null) {
+            return Value.of(real);
+        }
+
+        double imaginary = 0;
+        for (double partial : partialImaginary) {
+            imaginary += partial;
+        }
+        return Value.of(real, imaginary);
+    }
+}
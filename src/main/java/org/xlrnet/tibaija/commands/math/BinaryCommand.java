@@ -23,8 +23,8 @@
 package org.xlrnet.tibaija.commands.math;
 
 import com.google.common.collect.ImmutableList;
-import org.apache.commons.math3.complex.Complex;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xlrnet.tibaija.commons.Value;
@@ -35,11 +35,10 @@ import org.xlrnet.tibaija.memory.Parameter;
 import org.xlrnet.tibaija.memory.ValueUtils;
 import org.xlrnet.tibaija.processor.Command;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Optional;
 import java.util.function.BinaryOperator;
-import java.util.stream.Collectors;
+import java.util.function.DoubleBinaryOperator;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -70,13 +69,26 @@ public class BinaryCommand extends Command {
     @NotNull
     @Override
     protected Optional<Value> execute(@NotNull ImmutableList<Parameter> arguments) {
-        final Value lhs = arguments.get(0).value();
-        final Value rhs = arguments.get(1).value();
+        return Optional.of(executeBinary(arguments.get(0).value(), arguments.get(1).value()));
+    }
+
+    @NotNull
+    @Override
+    protected Value executeBinary(@NotNull Value lhs, @NotNull Value rhs) {
+        checkOperands(lhs, rhs);
         final Value result = applyOperator(lhs, rhs);
 
-        LOGGER.trace("({}) {} {} -> {}", this.operator, lhs.getValue(), rhs.getValue(), result.getValue());
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("({}) {} {} -> {}", this.operator, lhs.getValue(), rhs.getValue(), result.getValue());
+        }
+
+        return result;
+    }
 
-        return Optional.of(result);
+    @Nullable
+    @Override
+    protected DoubleBinaryOperator getRealBinaryOperation() {
+        return this.operator != null ? this.operator.getRealFunction() : null;
     }
 
     /**
@@ -88,22 +100,7 @@ public class BinaryCommand extends Command {
      */
     @Override
     protected boolean hasValidArgumentValues(@NotNull ImmutableList<Parameter> arguments) {
-        final Value lhs = arguments.get(0).value();
-        final Value rhs = arguments.get(1).value();
-        checkNotNull(lhs);
-        checkNotNull(rhs);
-
-        if (this.operator == BinaryCommandOperator.PLUS && lhs.isString()) {
-            // Type check for string concatenation
-            if (!rhs.isString())
-                throw new IllegalTypeException("Right hand side of concatenation expression is not a string: " + rhs.getValue(), ValueType.STRING, rhs.getType());
-        } else {
-            if (!ValueUtils.isNumberOrList(lhs))
-                throw new IllegalTypeException("Left hand side of expression is not a list or number: " + lhs.getValue(), ValueType.NUMBER, lhs.getType());
-            if (!ValueUtils.isNumberOrList(rhs))
-                throw new IllegalTypeException("Right hand side of expression is not a list or number: " + rhs.getValue(), ValueType.NUMBER, rhs.getType());
-        }
-
+        checkOperands(arguments.get(0).value(), arguments.get(1).value());
         return true;
     }
 
@@ -120,8 +117,33 @@ public class BinaryCommand extends Command {
     }
 
     /**
-     * Apply the internal function if they both operands are lists and have the same length. Each i-th element of the
-     * left list will be applied to the i-th element of the right list to build the i-th element of the result list.
+     * Binary operators only depend on their operands.
+     *
+     * @return Always true.
+     */
+    @Override
+    protected boolean isPure() {
+        return true;
+    }
+
+    /**
+     * Binary commands can always be called directly with two values.
+     *
+     * @param numberOfArguments
+     *         Number of value arguments passed by the caller.
+     * @return True if exactly two arguments were passed.
+     */
+    @Override
+    protected boolean supportsDirectCall(int numberOfArguments) {
+        return numberOfArguments == 2;
+    }
+
+    /**
+     * Apply the internal function element-wise if at least one operand is a list. If both operands are lists, they must
+     * have the same length and each i-th element of the left list will be applied to the i-th element of the right list
+     * to build the i-th element of the result list. Otherwise the non-list side will be applied to each element of the
+     * list side. Elements are read directly from the primitive storage of the lists and finite real elements are
+     * evaluated with the real function of the operator without creating any intermediate objects.
      *
      * @param lhs
      *         Left side of the expression
@@ -130,55 +152,230 @@ public class BinaryCommand extends Command {
      * @return A new Value object with the internal function applied to it.
      */
     @NotNull
-    private Value applyOnBothList(@NotNull Value lhs, @NotNull Value rhs) {
-        final ImmutableList<Complex> leftList = lhs.list();
-        final ImmutableList<Complex> rightList = rhs.list();
+    private Value applyElementWise(@NotNull Value lhs, @NotNull Value rhs) {
+        final boolean leftList = lhs.isList();
+        final boolean rightList = rhs.isList();
+        final int size;
+
+        if (leftList && rightList) {
+            if (lhs.listSize() != rhs.listSize())
+                throw new TIArgumentException("Mismatching dimensions: " + lhs.listSize() + " - " + rhs.listSize(), lhs, rhs);
+            size = lhs.listSize();
+        } else {
+            size = leftList ? lhs.listSize() : rhs.listSize();
+        }
+
+        final DoubleBinaryOperator realFunction = getRealBinaryOperation();
+        final boolean leftReal = leftList ? !lhs.hasImaginaryListValues() : lhs.isReal();
+        final boolean rightReal = rightList ? !rhs.hasImaginaryListValues() : rhs.isReal();
+
+        if (leftReal && rightReal && this.operator != null && this.operator.getListKernel() != null) {
+            Value result = applyListKernel(this.operator.getListKernel(), lhs, rhs, size);
+            if (result != null)
+                return result;
+        } else if (this.operator != null && this.operator.getComplexListKernel() != null) {
+            Value result = applyComplexListKernel(this.operator.getComplexListKernel(), lhs, rhs, size);
+            if (result != null)
+                return result;
+        }
 
-        if (leftList.size() != rightList.size())
-            throw new TIArgumentException("Mismatching dimensions: " + leftList.size() + " - " + rightList.size(), lhs, rhs);
+        final double leftScalar = !leftList && leftReal ? lhs.realPart() : 0;
+        final double rightScalar = !rightList && rightReal ? rhs.realPart() : 0;
 
-        List<Complex> resultList = new ArrayList<>(leftList.size());
-        for (int i = 0; i < leftList.size(); i++)
-            resultList.add(this.evaluationFunction.apply(Value.of(leftList.get(i)), Value.of(rightList.get(i))).complex());
-        return Value.of(resultList);
+        double[] realParts = new double[size];
+        double[] imaginaryParts = null;
+
+        for (int i = 0; i < size; i++) {
+            if (realFunction != null && leftReal && rightReal) {
+                double left = leftList ? lhs.listRealPart(i) : leftScalar;
+                double right = rightList ? rhs.listRealPart(i) : rightScalar;
+                if (Double.isFinite(left) && Double.isFinite(right)) {
+                    double result = realFunction.applyAsDouble(left, right);
+                    if (!Double.isNaN(result)) {
+                        realParts[i] = result;
+                        continue;
+                    }
+                }
+            }
+            Value result = this.evaluationFunction.apply(leftList ? lhs.listElement(i) : lhs, rightList ? rhs.listElement(i) : rhs);
+            realParts[i] = result.realPart();
+            if (!result.isReal()) {
+                if (imaginaryParts == null)
+                    imaginaryParts = new double[size];
+                imaginaryParts[i] = result.imaginaryPart();
+            }
+        }
+        return Value.ofList(realParts, imaginaryParts);
     }
 
     /**
-     * Apply the internal function if the left operand is a list and the right is a number. Each i-th element of the
-     * left list will be applied to the numerical right-side expression to build the i-th value of the resulting list.
+     * Apply a list kernel to two real operands of which at least one is a list. A number operand will be applied to
+     * each element of the other list. Elements for which the kernel returns NaN will be recomputed with the internal
+     * function.
      *
+     * @param kernel
+     *         The kernel of the operator.
      * @param lhs
      *         Left side of the expression
      * @param rhs
      *         Right side of the expression.
-     * @return A new Value object with the internal function applied to it.
+     * @param size
+     *         Number of elements in the result.
+     * @return A new Value object with the kernel applied to it or null if any operand is not finite.
+     */
+    @Nullable
+    private Value applyListKernel(@NotNull ListKernels.BinaryListKernel kernel, @NotNull Value lhs, @NotNull Value rhs, int size) {
+        final double[] left = lhs.isList() ? lhs.listRealParts() : filledArray(size, lhs.realPart());
+        final double[] right = rhs.isList() ? rhs.listRealParts() : filledArray(size, rhs.realPart());
+
+        if (!ListKernels.allFinite(left) || !ListKernels.allFinite(right))
+            return null;
+
+        double[] realParts = new double[size];
+        double[] imaginaryParts = null;
+        ListKernels.apply(kernel, left, right, realParts, getEnvironment());
+
+        for (int i = 0; i < size; i++) {
+            if (Double.isNaN(realParts[i])) {
+                Value result = this.evaluationFunction.apply(Value.of(left[i]), Value.of(right[i]));
+                realParts[i] = result.realPart();
+                if (!result.isReal()) {
+                    if (imaginaryParts == null)
+                        imaginaryParts = new double[size];
+                    imaginaryParts[i] = result.imaginaryPart();
+                }
+            }
+        }
+        return Value.ofList(realParts, imaginaryParts);
+    }
+
+    /**
+     * Apply a complex list kernel to two operands of which at least one is a list. A number operand will be applied to
+     * each element of the other list. Elements for which the kernel returns NaN will be recomputed with the internal
+     * function.
+     *
+     * @param kernel
+     *         The complex kernel of the operator.
+     * @param lhs
+     *         Left side of the expression
+     * @param rhs
+     *         Right side of the expression.
+     * @param size
+     *         Number of elements in the result.
+     * @return A new Value object with the kernel applied to it or null if any operand is not finite.
+     */
+    @Nullable
+    private Value applyComplexListKernel(@NotNull ListKernels.BinaryComplexListKernel kernel, @NotNull Value lhs, @NotNull Value rhs, int size) {
+        final double[] leftReal = lhs.isList() ? lhs.listRealParts() : filledArray(size, lhs.realPart());
+        final double[] leftImaginary = imaginaryParts(lhs, size);
+        final double[] rightReal = rhs.isList() ? rhs.listRealParts() : filledArray(size, rhs.realPart());
+        final double[] rightImaginary = imaginaryParts(rhs, size);
+
+        if (!ListKernels.allFinite(leftReal) || !ListKernels.allFinite(leftImaginary) || !ListKernels.allFinite(rightReal) || !ListKernels.allFinite(rightImaginary))
+            return null;
+
+        double[] realParts = new double[size];
+        double[] imaginaryParts = new double[size];
+        ListKernels.apply(kernel, leftReal, leftImaginary, rightReal, rightImaginary, realParts, imaginaryParts, getEnvironment());
+
+        boolean complex = false;
+        for (int i = 0; i < size; i++) {
+            if (Double.isNaN(realParts[i]) || Double.isNaN(imaginaryParts[i])) {
+                Value result = this.evaluationFunction.apply(Value.ofComplex(leftReal[i], leftImaginary[i]), Value.ofComplex(rightReal[i], rightImaginary[i]));
+                realParts[i] = result.realPart();
+                imaginaryParts[i] = result.imaginaryPart();
+            }
+            complex |= imaginaryParts[i] != 0;
+        }
+        return Value.ofList(realParts, complex ? imaginaryParts : null);
+    }
+
+    /**
+     * Returns the imaginary parts of a list or number operand as an array with the given size. Missing imaginary parts
+     * will be filled with zeros.
      */
     @NotNull
-    private Value applyOnLeftList(@NotNull Value lhs, @NotNull Value rhs) {
-        List<Complex> valueList = lhs.list()
-                .stream()
-                .map(c -> this.evaluationFunction.apply(Value.of(c), rhs).complex())
-                .collect(Collectors.toList());
-        return Value.of(valueList);
+    private static double[] imaginaryParts(@NotNull Value operand, int size) {
+        if (operand.isList()) {
+            double[] imaginaryParts = operand.listImaginaryParts();
+            return imaginaryParts != null ? imaginaryParts : new double[size];
+        }
+        return filledArray(size, operand.imaginaryPart());
     }
 
     /**
-     * Apply the internal function if the right operand is a list and the left is a number. The numerical left-side
-     * expression will be applied to each i-th element of the right list to build the i-th value of the resulting list.
+     * Apply the operator to operands of which at least one is a matrix. Matrices can be added to and subtracted from
+     * matrices with the same dimensions, multiplied with numbers and matrices with a matching number of rows, raised to
+     * a non-negative integer power if they are square and compared with other matrices. All other combinations are
+     * not supported.
      *
      * @param lhs
      *         Left side of the expression
      * @param rhs
      *         Right side of the expression.
-     * @return A new Value object with the internal function applied to it.
+     * @return A new Value object with the result of the operation.
+     */
+    @NotNull
+    private Value applyMatrixOperator(@NotNull Value lhs, @NotNull Value rhs) {
+        if (this.operator == BinaryCommandOperator.MULTIPLY) {
+            if (lhs.isNumber() || rhs.isNumber()) {
+                Value matrix = lhs.isMatrix() ? lhs : rhs;
+                Value factor = lhs.isMatrix() ? rhs : lhs;
+                checkRealFactor(factor);
+                return Value.ofMatrix(matrix.matrixRows(), matrix.matrixColumns(), MatrixKernels.scale(matrix.matrixValues(), factor.realPart()));
+            }
+            checkMatrixOperands(lhs, rhs);
+            if (lhs.matrixColumns() != rhs.matrixRows())
+                throw new TIArgumentException("Mismatching dimensions: " + lhs.matrixColumns() + " - " + rhs.matrixRows(), lhs, rhs);
+            double[] result = MatrixKernels.multiply(lhs.matrixValues(), lhs.matrixRows(), lhs.matrixColumns(), rhs.matrixValues(), rhs.matrixColumns());
+            return Value.ofMatrix(lhs.matrixRows(), rhs.matrixColumns(), result);
+        } else if (this.operator == BinaryCommandOperator.POWER && lhs.isMatrix() && rhs.isNumber()) {
+            int size = MatrixKernels.checkSquare(lhs);
+            double exponent = rhs.isReal() ? rhs.realPart() : -1;
+            if (exponent < 0 || exponent % 1 != 0 || exponent > Integer.MAX_VALUE)
+                throw new TIArgumentException("Exponent of a matrix must be a non-negative integer", rhs);
+            return Value.ofMatrix(size, size, MatrixKernels.power(lhs.matrixValues(), size, (int) exponent));
+        }
+
+        checkMatrixOperands(lhs, rhs);
+        final boolean sameDimensions = lhs.matrixRows() == rhs.matrixRows() && lhs.matrixColumns() == rhs.matrixColumns();
+
+        if (this.operator == BinaryCommandOperator.EQUALS) {
+            return Value.of(sameDimensions && lhs.equals(rhs));
+        } else if (this.operator == BinaryCommandOperator.NOT_EQUALS) {
+            return Value.of(!sameDimensions || !lhs.equals(rhs));
+        } else if (this.operator == BinaryCommandOperator.PLUS || this.operator == BinaryCommandOperator.MINUS) {
+            if (!sameDimensions)
+                throw new TIArgumentException("Mismatching dimensions", lhs, rhs);
+            double[] result = MatrixKernels.add(lhs.matrixValues(), rhs.matrixValues(), this.operator == BinaryCommandOperator.MINUS);
+            return Value.ofMatrix(lhs.matrixRows(), lhs.matrixColumns(), result);
+        }
+        throw new IllegalTypeException("Operation is not supported for matrices: " + this.operator, ValueType.NUMBER, ValueType.MATRIX);
+    }
+
+    /**
+     * Check that both operands are matrices.
      */
+    private void checkMatrixOperands(@NotNull Value lhs, @NotNull Value rhs) throws IllegalTypeException {
+        if (!lhs.isMatrix())
+            throw new IllegalTypeException("Left hand side of expression is not a matrix: " + lhs.getValue(), ValueType.MATRIX, lhs.getType());
+        if (!rhs.isMatrix())
+            throw new IllegalTypeException("Right hand side of expression is not a matrix: " + rhs.getValue(), ValueType.MATRIX, rhs.getType());
+    }
+
+    /**
+     * Check that a factor for a matrix is a real number.
+     */
+    private static void checkRealFactor(@NotNull Value factor) throws TIArgumentException {
+        if (!factor.isReal())
+            throw new TIArgumentException("Matrix elements must be real", factor);
+    }
+
     @NotNull
-    private Value applyOnRightList(@NotNull Value lhs, @NotNull Value rhs) {
-        List<Complex> valueList = rhs.list()
-                .stream()
-                .map(c -> this.evaluationFunction.apply(lhs, Value.of(c)).complex())
-                .collect(Collectors.toList());
-        return Value.of(valueList);
+    private static double[] filledArray(int size, double value) {
+        double[] array = new double[size];
+        Arrays.fill(array, value);
+        return array;
     }
 
     /**
@@ -186,7 +383,8 @@ public class BinaryCommand extends Command {
      * applied to both numerical values. If both operands are lists and have the same length, each i-th element of the
      * left list will be applied with the i-th element of the right list to build the i-th element of the result.  If
      * both lists have a different length an exception will be thrown. If only one side of the expression is a list,
-     * the non-list side will be applied to each element of the list side.
+     * the non-list side will be applied to each element of the list side. Operations with matrices are evaluated with
+     * {@link MatrixKernels}.
      *
      * @param lhs
      *         Left side of the expression
@@ -197,18 +395,41 @@ public class BinaryCommand extends Command {
     private Value applyOperator(Value lhs, Value rhs) throws TIArgumentException {
         Value result;
 
-        if (lhs.isList() || rhs.isList()) {
-            if (lhs.isList() && rhs.isList()) {
-                result = applyOnBothList(lhs, rhs);
-            } else if (lhs.isList()) {
-                result = applyOnLeftList(lhs, rhs);
-            } else {
-                result = applyOnRightList(lhs, rhs);
-            }
+        if (lhs.isMatrix() || rhs.isMatrix()) {
+            result = applyMatrixOperator(lhs, rhs);
+        } else if (lhs.isList() || rhs.isList()) {
+            result = applyElementWise(lhs, rhs);
         } else {
             result = this.evaluationFunction.apply(lhs, rhs);
         }
         return result;
     }
 
+    /**
+     * Check if both operands are of a numerical type or matrices and not null. Strings are allowed on both sides if the
+     * operator is a string concatenation.
+     *
+     * @param lhs
+     *         Left side of the expression
+     * @param rhs
+     *         Right side of the expression.
+     * @throws IllegalTypeException
+     *         if any operand has an illegal type.
+     */
+    private void checkOperands(Value lhs, Value rhs) throws IllegalTypeException {
+        checkNotNull(lhs);
+        checkNotNull(rhs);
+
+        if (this.operator == BinaryCommandOperator.PLUS && lhs.isString()) {
+            // Type check for string concatenation
+            if (!rhs.isString())
+                throw new IllegalTypeException("Right hand side of concatenation expression is not a string: " + rhs.getValue(), ValueType.STRING, rhs.getType());
+        } else {
+            if (!ValueUtils.isNumberOrList(lhs) && !lhs.isMatrix())
+                throw new IllegalTypeException("Left hand side of expression is not a list or number: " + lhs.getValue(), ValueType.NUMBER, lhs.getType());
+            if (!ValueUtils.isNumberOrList(rhs) && !rhs.isMatrix())
+                throw new IllegalTypeException("Right hand side of expression is not a list or number: " + rhs.getValue(), ValueType.NUMBER, rhs.getType());
+        }
+    }
+
 }
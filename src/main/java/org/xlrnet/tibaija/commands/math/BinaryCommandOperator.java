@@ -22,12 +22,15 @@
 
 package org.xlrnet.tibaija.commands.math;
 
+import org.jetbrains.annotations.Nullable;
 import org.xlrnet.tibaija.commons.CompareUtil;
+import org.xlrnet.tibaija.commons.ComplexMath;
 import org.xlrnet.tibaija.commons.LogicUtil;
 import org.xlrnet.tibaija.commons.TIMathUtils;
 import org.xlrnet.tibaija.commons.Value;
 
 import java.util.function.BinaryOperator;
+import java.util.function.DoubleBinaryOperator;
 
 import static org.xlrnet.tibaija.commons.Preconditions.checkIfAnyValueIsImaginary;
 
@@ -40,56 +43,59 @@ public enum BinaryCommandOperator {
         if (lhs.isString() && rhs.isString())
             return Value.of(lhs.string().concat(rhs.string()));
         return Value.of(lhs.complex().add(rhs.complex()));
-    }),
+    }, (lhs, rhs) -> lhs + rhs, ListKernels::add, ComplexMath::add, ListKernels::addComplex),
 
-    MINUS((lhs, rhs) -> Value.of(lhs.complex().subtract(rhs.complex()))),
+    MINUS((lhs, rhs) -> Value.of(lhs.complex().subtract(rhs.complex())), (lhs, rhs) -> lhs - rhs, ListKernels::subtract,
+            ComplexMath::subtract, ListKernels::subtractComplex),
 
-    MULTIPLY((lhs, rhs) -> Value.of(lhs.complex().multiply(rhs.complex()))),
+    MULTIPLY((lhs, rhs) -> Value.of(lhs.complex().multiply(rhs.complex())), (lhs, rhs) -> lhs * rhs, ListKernels::multiply,
+            ComplexMath::multiply, ListKernels::multiplyComplex),
 
-    DIVIDE((lhs, rhs) -> Value.of(lhs.complex().divide(rhs.complex()))),
+    DIVIDE((lhs, rhs) -> Value.of(lhs.complex().divide(rhs.complex())), (lhs, rhs) -> rhs != 0 ? lhs / rhs : Double.NaN, ListKernels::divide,
+            ComplexMath::divide, ListKernels::divideComplex),
 
     POWER((lhs, rhs) -> Value.of(lhs.complex().pow(rhs.complex()))),
 
     NTH_ROOT((lhs, rhs) -> Value.of(TIMathUtils.complexNthRoot(lhs.complex(), rhs.complex()))),
 
-    EQUALS((lhs, rhs) -> Value.of(CompareUtil.isEqual(lhs, rhs))),
+    EQUALS((lhs, rhs) -> Value.of(CompareUtil.isEqual(lhs, rhs)), (lhs, rhs) -> toReal(lhs == rhs), ListKernels::equal),
 
-    NOT_EQUALS((lhs, rhs) -> Value.of(CompareUtil.isNotEqual(lhs, rhs))),
+    NOT_EQUALS((lhs, rhs) -> Value.of(CompareUtil.isNotEqual(lhs, rhs)), (lhs, rhs) -> toReal(lhs != rhs), ListKernels::notEqual),
 
     GREATER_THAN((lhs, rhs) -> {
         checkIfAnyValueIsImaginary(lhs, rhs);
         return Value.of(CompareUtil.isGreaterThan(lhs, rhs));
-    }),
+    }, (lhs, rhs) -> toReal(lhs > rhs), ListKernels::greaterThan),
 
     LESS_THAN((lhs, rhs) -> {
         checkIfAnyValueIsImaginary(lhs, rhs);
         return Value.of(CompareUtil.isLessThan(lhs, rhs));
-    }),
+    }, (lhs, rhs) -> toReal(lhs < rhs), ListKernels::lessThan),
 
     GREATER_EQUALS((lhs, rhs) -> {
         checkIfAnyValueIsImaginary(lhs, rhs);
         return Value.of(CompareUtil.isGreaterOrEqual(lhs, rhs));
-    }),
+    }, (lhs, rhs) -> toReal(lhs >= rhs), ListKernels::greaterOrEqual),
 
     LESS_EQUALS((lhs, rhs) -> {
         checkIfAnyValueIsImaginary(lhs, rhs);
         return Value.of(CompareUtil.isLessOrEqual(lhs, rhs));
-    }),
+    }, (lhs, rhs) -> toReal(lhs <= rhs), ListKernels::lessOrEqual),
 
     AND((lhs, rhs) -> {
         checkIfAnyValueIsImaginary(lhs, rhs);
         return Value.of(LogicUtil.and(lhs.complex().getReal(), rhs.complex().getReal()));
-    }),
+    }, (lhs, rhs) -> toReal(LogicUtil.and(lhs, rhs))),
 
     OR((lhs, rhs) -> {
         checkIfAnyValueIsImaginary(lhs, rhs);
         return Value.of(LogicUtil.or(lhs.complex().getReal(), rhs.complex().getReal()));
-    }),
+    }, (lhs, rhs) -> toReal(LogicUtil.or(lhs, rhs))),
 
     XOR((lhs, rhs) -> {
         checkIfAnyValueIsImaginary(lhs, rhs);
         return Value.of(LogicUtil.xor(lhs.complex().getReal(), rhs.complex().getReal()));
-    }),
+    }, (lhs, rhs) -> toReal(LogicUtil.xor(lhs, rhs))),
 
     NPR((lhs, rhs) -> {
         checkIfAnyValueIsImaginary(lhs, rhs);
@@ -103,11 +109,111 @@ public enum BinaryCommandOperator {
 
     private final BinaryOperator<Value> operatorFunction;
 
+    private final DoubleBinaryOperator realFunction;
+
+    private final ListKernels.BinaryListKernel listKernel;
+
+    private final ListKernels.BinaryComplexListKernel complexListKernel;
+
     BinaryCommandOperator(BinaryOperator<Value> operatorFunction) {
-        this.operatorFunction = operatorFunction;
+        this(operatorFunction, null);
+    }
+
+    BinaryCommandOperator(BinaryOperator<Value> operatorFunction, DoubleBinaryOperator realFunction) {
+        this(operatorFunction, realFunction, null);
+    }
+
+    BinaryCommandOperator(BinaryOperator<Value> operatorFunction, DoubleBinaryOperator realFunction, ListKernels.BinaryListKernel listKernel) {
+        this(operatorFunction, realFunction, listKernel, null, null);
     }
 
+    BinaryCommandOperator(BinaryOperator<Value> operatorFunction, DoubleBinaryOperator realFunction, ListKernels.BinaryListKernel listKernel,
+                          ComplexMath.ComplexBinaryOperator complexFunction, ListKernels.BinaryComplexListKernel complexListKernel) {
+        BinaryOperator<Value> function = complexFunction != null ? withComplexFastPath(operatorFunction, complexFunction) : operatorFunction;
+        this.operatorFunction = realFunction != null ? withRealFastPath(function, realFunction) : function;
+        this.realFunction = realFunction;
+        this.listKernel = listKernel;
+        this.complexListKernel = complexListKernel;
+    }
+
+    /**
+     * Returns the function for evaluating the operation. Operations with a real function evaluate finite real operands
+     * and operations with a complex function evaluate finite complex operands without creating any {@link
+     * org.apache.commons.math3.complex.Complex} objects.
+     *
+     * @return the function for evaluating the operation.
+     */
     public BinaryOperator<Value> getOperatorFunction() {
         return this.operatorFunction;
     }
+
+    /**
+     * Returns the function for evaluating the operation on two finite real numbers or null if the operation has no
+     * such function. The function returns the same result as {@link #getOperatorFunction()} would return for real
+     * operands or NaN if the operands can't be handled by it.
+     *
+     * @return the function for evaluating the operation on two finite real numbers or null.
+     */
+    @Nullable
+    public DoubleBinaryOperator getRealFunction() {
+        return this.realFunction;
+    }
+
+    /**
+     * Returns the kernel for evaluating the operation element-wise on two lists of finite real numbers or null if the
+     * operation has no such kernel. The kernel behaves like {@link #getRealFunction()} for each element.
+     *
+     * @return the kernel for evaluating the operation on lists of finite real numbers or null.
+     */
+    @Nullable
+    ListKernels.BinaryListKernel getListKernel() {
+        return this.listKernel;
+    }
+
+    /**
+     * Returns the kernel for evaluating the operation element-wise on two lists of finite complex numbers or null if
+     * the operation has no such kernel.
+     *
+     * @return the kernel for evaluating the operation on lists of finite complex numbers or null.
+     */
+    @Nullable
+    ListKernels.BinaryComplexListKernel getComplexListKernel() {
+        return this.complexListKernel;
+    }
+
+    /**
+     * Combines the generic function of an operation with its complex function. The generic function will only be used
+     * if any operand is not a finite number or if the complex function can't handle the operands.
+     */
+    private static BinaryOperator<Value> withComplexFastPath(BinaryOperator<Value> operatorFunction, ComplexMath.ComplexBinaryOperator complexFunction) {
+        return (lhs, rhs) -> {
+            if (lhs.isFiniteNumber() && rhs.isFiniteNumber()) {
+                Value result = complexFunction.apply(lhs.realPart(), lhs.imaginaryPart(), rhs.realPart(), rhs.imaginaryPart());
+                if (result != null) {
+                    return result;
+                }
+            }
+            return operatorFunction.apply(lhs, rhs);
+        };
+    }
+
+    /**
+     * Combines the generic function of an operation with its real function. The generic function will only be used if
+     * any operand is not a finite real number or if the real function can't handle the operands.
+     */
+    private static BinaryOperator<Value> withRealFastPath(BinaryOperator<Value> operatorFunction, DoubleBinaryOperator realFunction) {
+        return (lhs, rhs) -> {
+            if (lhs.isFiniteReal() && rhs.isFiniteReal()) {
+                double result = realFunction.applyAsDouble(lhs.realPart(), rhs.realPart());
+                if (!Double.isNaN(result)) {
+                    return Value.of(result);
+                }
+            }
+            return operatorFunction.apply(lhs, rhs);
+        };
+    }
+
+    private static double toReal(boolean bool) {
+        return bool ? 1 : 0;
+    }
 }
@@ -0,0 +1,464 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.commands.math;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xlrnet.tibaija.commons.ComplexMath;
+import org.xlrnet.tibaija.processor.InternalExecutionEnvironment;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Element-wise kernels for real-valued and complex-valued lists. Each kernel is a separate counted loop over primitive
+ * arrays without any calls or allocations inside, so that the JIT compiler can unroll it and use SIMD instructions
+ * where the platform supports them. Complex kernels work on separate arrays of real and imaginary parts. All kernels
+ * expect finite operands; results for elements which can't be handled by the kernel are NaN and have to be recomputed
+ * by the caller.
+ * <p/>
+ * Lists with at least as many elements as the parallel threshold of the environment are split into equally sized
+ * chunks which are processed on the common {@link ForkJoinPool}. Each element is still computed by the same kernel, so
+ * the result does not depend on the number of chunks.
+ * <p/>
+ * Reductions like sum( and prod( are always split into chunks of {@link #REDUCTION_CHUNK_SIZE} elements, whether they
+ * run in parallel or not. The partial results of the chunks are combined by the caller in index order, so that the
+ * rounding and thereby the result doesn't depend on the parallelism.
+ */
+public final class ListKernels {
+
+    /** Number of elements which are reduced to one partial result. */
+    public static final int REDUCTION_CHUNK_SIZE = 1024;
+
+    private ListKernels() {
+        // Static helper class
+    }
+
+    /**
+     * Kernel for binary operations on two lists with the same length.
+     */
+    @FunctionalInterface
+    interface BinaryListKernel {
+
+        /**
+         * Applies the operation to each i-th element of both operands in the given range and stores the result in the
+         * i-th element of the result array.
+         *
+         * @param lhs
+         *         Left operands.
+         * @param rhs
+         *         Right operands.
+         * @param result
+         *         Array for the results. Must have the same length as the operands.
+         * @param from
+         *         First index (inclusive).
+         * @param to
+         *         Last index (exclusive).
+         */
+        void apply(double[] lhs, double[] rhs, double[] result, int from, int to);
+    }
+
+    /**
+     * Kernel for binary operations on two complex lists with the same length.
+     */
+    @FunctionalInterface
+    interface BinaryComplexListKernel {
+
+        /**
+         * Applies the operation to each i-th element of both operands in the given range and stores the result in the
+         * i-th element of the result arrays. Elements which can't be handled by the kernel get a NaN real part.
+         *
+         * @param lhsReal
+         *         Real parts of the left operands.
+         * @param lhsImaginary
+         *         Imaginary parts of the left operands.
+         * @param rhsReal
+         *         Real parts of the right operands.
+         * @param rhsImaginary
+         *         Imaginary parts of the right operands.
+         * @param resultReal
+         *         Array for the real parts of the results.
+         * @param resultImaginary
+         *         Array for the imaginary parts of the results.
+         * @param from
+         *         First index (inclusive).
+         * @param to
+         *         Last index (exclusive).
+         */
+        void apply(double[] lhsReal, double[] lhsImaginary, double[] rhsReal, double[] rhsImaginary, double[] resultReal, double[] resultImaginary, int from, int to);
+    }
+
+    /**
+     * Kernel for unary operations on a list.
+     */
+    @FunctionalInterface
+    interface UnaryListKernel {
+
+        /**
+         * Applies the operation to each i-th element of the operand in the given range and stores the result in the
+         * i-th element of the result array.
+         *
+         * @param operand
+         *         Operands.
+         * @param result
+         *         Array for the results. Must have the same length as the operand.
+         * @param from
+         *         First index (inclusive).
+         * @param to
+         *         Last index (exclusive).
+         */
+        void apply(double[] operand, double[] result, int from, int to);
+    }
+
+    /**
+     * Reduction of a single chunk of a list to a partial result.
+     */
+    @FunctionalInterface
+    public interface ChunkReduction {
+
+        /**
+         * Reduces the elements in the given range and stores the result as the partial result of the given chunk.
+         *
+         * @param chunk
+         *         Index of the chunk.
+         * @param from
+         *         First index (inclusive).
+         * @param to
+         *         Last index (exclusive).
+         */
+        void apply(int chunk, int from, int to);
+    }
+
+    /**
+     * Applies a binary kernel to all elements. The work will be split across the common {@link ForkJoinPool} if the
+     * environment allows it for the number of elements.
+     *
+     * @param kernel
+     *         The kernel to apply.
+     * @param lhs
+     *         Left operands.
+     * @param rhs
+     *         Right operands.
+     * @param result
+     *         Array for the results. Must have the same length as the operands.
+     * @param environment
+     *         The environment which defines the parallel threshold and parallelism or null for sequential execution.
+     */
+    static void apply(@NotNull BinaryListKernel kernel, @NotNull double[] lhs, @NotNull double[] rhs, @NotNull double[] result, @Nullable InternalExecutionEnvironment environment) {
+        int chunks = getNumberOfChunks(result.length, environment);
+        if (chunks <= 1) {
+            kernel.apply(lhs, rhs, result, 0, result.length);
+        } else {
+            ForkJoinPool.commonPool().invoke(new ChunkedAction(result.length, chunks, (from, to) -> kernel.apply(lhs, rhs, result, from, to)));
+        }
+    }
+
+    /**
+     * Applies a unary kernel to all elements. The work will be split across the common {@link ForkJoinPool} if the
+     * environment allows it for the number of elements.
+     *
+     * @param kernel
+     *         The kernel to apply.
+     * @param operand
+     *         Operands.
+     * @param result
+     *         Array for the results. Must have the same length as the operand.
+     * @param environment
+     *         The environment which defines the parallel threshold and parallelism or null for sequential execution.
+     */
+    static void apply(@NotNull UnaryListKernel kernel, @NotNull double[] operand, @NotNull double[] result, @Nullable InternalExecutionEnvironment environment) {
+        int chunks = getNumberOfChunks(result.length, environment);
+        if (chunks <= 1) {
+            kernel.apply(operand, result, 0, result.length);
+        } else {
+            ForkJoinPool.commonPool().invoke(new ChunkedAction(result.length, chunks, (from, to) -> kernel.apply(operand, result, from, to)));
+        }
+    }
+
+    /**
+     * Applies a binary complex kernel to all elements. The work will be split across the common {@link ForkJoinPool}
+     * if the environment allows it for the number of elements.
+     *
+     * @param kernel
+     *         The kernel to apply.
+     * @param lhsReal
+     *         Real parts of the left operands.
+     * @param lhsImaginary
+     *         Imaginary parts of the left operands.
+     * @param rhsReal
+     *         Real parts of the right operands.
+     * @param rhsImaginary
+     *         Imaginary parts of the right operands.
+     * @param resultReal
+     *         Array for the real parts of the results. Must have the same length as the operands.
+     * @param resultImaginary
+     *         Array for the imaginary parts of the results. Must have the same length as the operands.
+     * @param environment
+     *         The environment which defines the parallel threshold and parallelism or null for sequential execution.
+     */
+    static void apply(@NotNull BinaryComplexListKernel kernel, @NotNull double[] lhsReal, @NotNull double[] lhsImaginary, @NotNull double[] rhsReal, @NotNull double[] rhsImaginary,
+                      @NotNull double[] resultReal, @NotNull double[] resultImaginary, @Nullable InternalExecutionEnvironment environment) {
+        int chunks = getNumberOfChunks(resultReal.length, environment);
+        if (chunks <= 1) {
+            kernel.apply(lhsReal, lhsImaginary, rhsReal, rhsImaginary, resultReal, resultImaginary, 0, resultReal.length);
+        } else {
+            ForkJoinPool.commonPool().invoke(new ChunkedAction(resultReal.length, chunks,
+                    (from, to) -> kernel.apply(lhsReal, lhsImaginary, rhsReal, rhsImaginary, resultReal, resultImaginary, from, to)));
+        }
+    }
+
+    /**
+     * Returns the number of chunks in which a reduction of the given number of elements will be split.
+     *
+     * @param length
+     *         Number of elements.
+     * @return The number of partial results of the reduction.
+     */
+    public static int getNumberOfReductionChunks(int length) {
+        return (length + REDUCTION_CHUNK_SIZE - 1) / REDUCTION_CHUNK_SIZE;
+    }
+
+    /**
+     * Reduces each chunk of {@link #REDUCTION_CHUNK_SIZE} elements in the given range to a partial result. The chunks
+     * will be distributed across the common {@link ForkJoinPool} if the environment allows it for the number of
+     * elements. The chunk borders don't depend on the environment.
+     *
+     * @param reduction
+     *         The reduction of a single chunk.
+     * @param from
+     *         First index (inclusive).
+     * @param to
+     *         Last index (exclusive).
+     * @param environment
+     *         The environment which defines the parallel threshold and parallelism or null for sequential execution.
+     */
+    public static void reduceChunks(@NotNull ChunkReduction reduction, int from, int to, @Nullable InternalExecutionEnvironment environment) {
+        int reductionChunks = getNumberOfReductionChunks(to - from);
+        RangeAction action = (firstChunk, lastChunk) -> {
+            for (int chunk = firstChunk; chunk < lastChunk; chunk++) {
+                int chunkFrom = from + chunk * REDUCTION_CHUNK_SIZE;
+                reduction.apply(chunk, chunkFrom, Math.min(chunkFrom + REDUCTION_CHUNK_SIZE, to));
+            }
+        };
+
+        int tasks = Math.min(getNumberOfChunks(to - from, environment), reductionChunks);
+        if (tasks <= 1) {
+            action.apply(0, reductionChunks);
+        } else {
+            ForkJoinPool.commonPool().invoke(new ChunkedAction(reductionChunks, tasks, action));
+        }
+    }
+
+    /**
+     * Returns the number of chunks in which an operation on the given number of elements should be split.
+     *
+     * @param length
+     *         Number of elements.
+     * @param environment
+     *         The environment which defines the parallel threshold and parallelism or null for sequential execution.
+     * @return The number of chunks or one if the operation should run sequentially.
+     */
+    static int getNumberOfChunks(int length, @Nullable InternalExecutionEnvironment environment) {
+        if (environment == null || length < environment.getParallelThreshold()) {
+            return 1;
+        }
+        return Math.min(environment.getParallelism(), length);
+    }
+
+    static void add(double[] lhs, double[] rhs, double[] result, int from, int to) {
+        for (int i = from; i < to; i++) {
+            result[i] = lhs[i] + rhs[i];
+        }
+    }
+
+    static void subtract(double[] lhs, double[] rhs, double[] result, int from, int to) {
+        for (int i = from; i < to; i++) {
+            result[i] = lhs[i] - rhs[i];
+        }
+    }
+
+    static void multiply(double[] lhs, double[] rhs, double[] result, int from, int to) {
+        for (int i = from; i < to; i++) {
+            result[i] = lhs[i] * rhs[i];
+        }
+    }
+
+    static void divide(double[] lhs, double[] rhs, double[] result, int from, int to) {
+        for (int i = from; i < to; i++) {
+            // Division by zero yields NaN, so that the generic function decides about the result
+            result[i] = rhs[i] != 0 ? lhs[i] / rhs[i] : Double.NaN;
+        }
+    }
+
+    static void equal(double[] lhs, double[] rhs, double[] result, int from, int to) {
+        for (int i = from; i < to; i++) {
+            result[i] = lhs[i] == rhs[i] ? 1 : 0;
+        }
+    }
+
+    static void notEqual(double[] lhs, double[] rhs, double[] result, int from, int to) {
+        for (int i = from; i < to; i++) {
+            result[i] = lhs[i] != rhs[i] ? 1 : 0;
+        }
+    }
+
+    static void greaterThan(double[] lhs, double[] rhs, double[] result, int from, int to) {
+        for (int i = from; i < to; i++) {
+            result[i] = lhs[i] > rhs[i] ? 1 : 0;
+        }
+    }
+
+    static void greaterOrEqual(double[] lhs, double[] rhs, double[] result, int from, int to) {
+        for (int i = from; i < to; i++) {
+            result[i] = lhs[i] >= rhs[i] ? 1 : 0;
+        }
+    }
+
+    static void lessThan(double[] lhs, double[] rhs, double[] result, int from, int to) {
+        for (int i = from; i < to; i++) {
+            result[i] = lhs[i] < rhs[i] ? 1 : 0;
+        }
+    }
+
+    static void lessOrEqual(double[] lhs, double[] rhs, double[] result, int from, int to) {
+        for (int i = from; i < to; i++) {
+            result[i] = lhs[i] <= rhs[i] ? 1 : 0;
+        }
+    }
+
+    static void addComplex(double[] lhsReal, double[] lhsImaginary, double[] rhsReal, double[] rhsImaginary, double[] resultReal, double[] resultImaginary, int from, int to) {
+        for (int i = from; i < to; i++) {
+            resultReal[i] = lhsReal[i] + rhsReal[i];
+            resultImaginary[i] = lhsImaginary[i] + rhsImaginary[i];
+        }
+    }
+
+    static void subtractComplex(double[] lhsReal, double[] lhsImaginary, double[] rhsReal, double[] rhsImaginary, double[] resultReal, double[] resultImaginary, int from, int to) {
+        for (int i = from; i < to; i++) {
+            resultReal[i] = lhsReal[i] - rhsReal[i];
+            resultImaginary[i] = lhsImaginary[i] - rhsImaginary[i];
+        }
+    }
+
+    static void multiplyComplex(double[] lhsReal, double[] lhsImaginary, double[] rhsReal, double[] rhsImaginary, double[] resultReal, double[] resultImaginary, int from, int to) {
+        for (int i = from; i < to; i++) {
+            resultReal[i] = ComplexMath.multiplyReal(lhsReal[i], lhsImaginary[i], rhsReal[i], rhsImaginary[i]);
+            resultImaginary[i] = ComplexMath.multiplyImaginary(lhsReal[i], lhsImaginary[i], rhsReal[i], rhsImaginary[i]);
+        }
+    }
+
+    static void divideComplex(double[] lhsReal, double[] lhsImaginary, double[] rhsReal, double[] rhsImaginary, double[] resultReal, double[] resultImaginary, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (rhsReal[i] == 0 && rhsImaginary[i] == 0) {
+                // Division by zero yields NaN, so that the generic function decides about the result
+                resultReal[i] = Double.NaN;
+            } else {
+                resultReal[i] = ComplexMath.divideReal(lhsReal[i], lhsImaginary[i], rhsReal[i], rhsImaginary[i]);
+                resultImaginary[i] = ComplexMath.divideImaginary(lhsReal[i], lhsImaginary[i], rhsReal[i], rhsImaginary[i]);
+            }
+        }
+    }
+
+    static void squared(double[] operand, double[] result, int from, int to) {
+        for (int i = from; i < to; i++) {
+            result[i] = operand[i] * operand[i];
+        }
+    }
+
+    static void squareRoot(double[] operand, double[] result, int from, int to) {
+        for (int i = from; i < to; i++) {
+            // Negative operands yield NaN, so that the generic function can calculate the complex root
+            result[i] = Math.sqrt(operand[i]);
+        }
+    }
+
+    /**
+     * Checks if all elements of the given array are finite.
+     *
+     * @param values
+     *         The array to check.
+     * @return True if all elements are neither infinite nor NaN.
+     */
+    static boolean allFinite(double[] values) {
+        for (double value : values) {
+            if (!Double.isFinite(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Range of elements which can be processed independently from all other elements.
+     */
+    @FunctionalInterface
+    interface RangeAction {
+
+        void apply(int from, int to);
+    }
+
+    /**
+     * Fork/join action that splits a range of elements into a fixed number of chunks. The chunk borders only depend on
+     * the number of elements and chunks.
+     */
+    static final class ChunkedAction extends RecursiveAction {
+
+        private final int length;
+
+        private final int firstChunk;
+
+        private final int lastChunk;
+
+        private final int chunks;
+
+        private final RangeAction action;
+
+        ChunkedAction(int length, int chunks, @NotNull RangeAction action) {
+            this(length, 0, chunks, chunks, action);
+        }
+
+        private ChunkedAction(int length, int firstChunk, int lastChunk, int chunks, @NotNull RangeAction action) {
+            this.length = length;
+            this.firstChunk = firstChunk;
+            this.lastChunk = lastChunk;
+            this.chunks = chunks;
+            this.action = action;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.lastChunk - this.firstChunk == 1) {
+                this.action.apply(chunkStart(this.firstChunk), chunkStart(this.lastChunk));
+            } else {
+                int middle = (this.firstChunk + this.lastChunk) >>> 1;
+                invokeAll(new ChunkedAction(this.length, this.firstChunk, middle, this.chunks, this.action),
+                        new ChunkedAction(this.length, middle, this.lastChunk, this.chunks, this.action));
+            }
+        }
+
+        private int chunkStart(int chunk) {
+            return (int) ((long) this.length * chunk / this.chunks);
+        }
+    }
+}
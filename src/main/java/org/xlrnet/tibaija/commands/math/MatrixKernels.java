@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+package org.xlrnet.tibaija.commands.math;
+
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.tibaija.commons.Value;
+import org.xlrnet.tibaija.exception.TIArgumentException;
+
+/**
+ * Linear algebra kernels for real-valued matrices. All matrices are dense primitive arrays in row-major order and no
+ * kernel modifies its operands.
+ * <p/>
+ * Multiplication walks over square blocks in i-k-j order, so that the innermost loop runs over consecutive elements
+ * of both the right operand and the result. Determinants and inverses are computed from an LU decomposition with
+ * partial pivoting instead of cofactor expansion. Pivots which are negligible compared to the largest element of the
+ * operand are treated as zero.
+ */
+final class MatrixKernels {
+
+    /** Number of rows and columns of the blocks used for multiplication. */
+    private static final int BLOCK_SIZE = 64;
+
+    /** Relative tolerance for treating a pivot as zero. */
+    private static final double PIVOT_TOLERANCE = 1e-12;
+
+    private MatrixKernels() {
+        // Static helper class
+    }
+
+    /**
+     * Adds or subtracts two matrices with the same dimensions element-wise.
+     *
+     * @param lhs
+     *         Left operand.
+     * @param rhs
+     *         Right operand.
+     * @param subtract
+     *         True if the right operand should be subtracted.
+     * @return A new array with the result.
+     */
+    @NotNull
+    static double[] add(@NotNull double[] lhs, @NotNull double[] rhs, boolean subtract) {
+        double[] result = new double[lhs.length];
+        if (subtract) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = lhs[i] - rhs[i];
+            }
+        } else {
+            for (int i = 0; i < result.length; i++) {
+                result[i] = lhs[i] + rhs[i];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks that the given matrix value is square.
+     *
+     * @param matrix
+     *         The matrix value to check.
+     * @return The number of rows and columns of the matrix.
+     * @throws TIArgumentException
+     *         if the matrix is not square.
+     */
+    static int checkSquare(@NotNull Value matrix) throws TIArgumentException {
+        if (matrix.matrixRows() != matrix.matrixColumns())
+            throw new TIArgumentException("Matrix must be square", matrix);
+        return matrix.matrixRows();
+    }
+
+    /**
+     * Calculates the determinant of a square matrix.
+     *
+     * @param matrix
+     *         The elements of the matrix.
+     * @param size
+     *         Number of rows and columns.
+     * @return The determinant of the matrix.
+     */
+    static double determinant(@NotNull double[] matrix, int size) {
+        double[] lu = matrix.clone();
+        int sign = decompose(lu, size, new int[size]);
+        double determinant = sign;
+        for (int i = 0; i < size; i++) {
+            determinant *= lu[i * size + i];
+        }
+        return determinant;
+    }
+
+    /**
+     * Returns the identity matrix of the given size.
+     */
+    @NotNull
+    static double[] identity(int size) {
+        double[] result = new double[size * size];
+        for (int i = 0; i < size; i++) {
+            result[i * size + i] = 1;
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the inverse of a square matrix by solving the LU decomposition for all columns of the identity matrix
+     * at once.
+     *
+     * @param matrix
+     *         The elements of the matrix.
+     * @param size
+     *         Number of rows and columns.
+     * @return A new array with the inverse matrix.
+     * @throws TIArgumentException
+     *         if the matrix is singular.
+     */
+    @NotNull
+    static double[] inverse(@NotNull double[] matrix, int size) throws TIArgumentException {
+        double[] lu = matrix.clone();
+        int[] permutation = new int[size];
+        decompose(lu, size, permutation);
+
+        double tolerance = PIVOT_TOLERANCE * maxAbs(matrix);
+        for (int i = 0; i < size; i++) {
+            if (!(Math.abs(lu[i * size + i]) > tolerance)) {
+                throw new TIArgumentException("Singular matrix", Value.ofMatrix(size, size, matrix.clone()));
+            }
+        }
+
+        // Row i of the permuted identity matrix has its one in column permutation[i]
+        double[] result = new double[size * size];
+        for (int i = 0; i < size; i++) {
+            result[i * size + permutation[i]] = 1;
+        }
+
+        // Forward substitution with the unit lower triangle
+        for (int i = 1; i < size; i++) {
+            for (int k = 0; k < i; k++) {
+                subtractRow(result, size, i, k, lu[i * size + k]);
+            }
+        }
+
+        // Backward substitution with the upper triangle
+        for (int i = size - 1; i >= 0; i--) {
+            for (int k = i + 1; k < size; k++) {
+                subtractRow(result, size, i, k, lu[i * size + k]);
+            }
+            double pivot = lu[i * size + i];
+            for (int j = 0; j < size; j++) {
+                result[i * size + j] /= pivot;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Multiplies two matrices. The number of columns of the left operand must be equal to the number of rows of the
+     * right operand.
+     *
+     * @param lhs
+     *         Left operand.
+     * @param rows
+     *         Number of rows of the left operand.
+     * @param inner
+     *         Number of columns of the left operand and number of rows of the right operand.
+     * @param rhs
+     *         Right operand.
+     * @param columns
+     *         Number of columns of the right operand.
+     * @return A new array with rows * columns elements.
+     */
+    @NotNull
+    static double[] multiply(@NotNull double[] lhs, int rows, int inner, @NotNull double[] rhs, int columns) {
+        double[] result = new double[rows * columns];
+        for (int rowBlock = 0; rowBlock < rows; rowBlock += BLOCK_SIZE) {
+            int rowEnd = Math.min(rowBlock + BLOCK_SIZE, rows);
+            for (int innerBlock = 0; innerBlock < inner; innerBlock += BLOCK_SIZE) {
+                int innerEnd = Math.min(innerBlock + BLOCK_SIZE, inner);
+                for (int columnBlock = 0; columnBlock < columns; columnBlock += BLOCK_SIZE) {
+                    int columnEnd = Math.min(columnBlock + BLOCK_SIZE, columns);
+                    for (int i = rowBlock; i < rowEnd; i++) {
+                        int resultOffset = i * columns;
+                        for (int k = innerBlock; k < innerEnd; k++) {
+                            double factor = lhs[i * inner + k];
+                            int rhsOffset = k * columns;
+                            for (int j = columnBlock; j < columnEnd; j++) {
+                                result[resultOffset + j] += factor * rhs[rhsOffset + j];
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Raises a square matrix to a non-negative integer power by repeated squaring.
+     *
+     * @param matrix
+     *         The elements of the matrix.
+     * @param size
+     *         Number of rows and columns.
+     * @param exponent
+     *         The non-negative exponent.
+     * @return A new array with the result.
+     */
+    @NotNull
+    static double[] power(@NotNull double[] matrix, int size, int exponent) {
+        double[] result = identity(size);
+        double[] base = matrix;
+        int remaining = exponent;
+        while (remaining > 0) {
+            if ((remaining & 1) != 0) {
+                result = multiply(result, size, size, base, size);
+            }
+            remaining >>= 1;
+            if (remaining > 0) {
+                base = multiply(base, size, size, base, size);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Calculates the reduced row echelon form of a matrix with Gauss-Jordan elimination and partial pivoting.
+     *
+     * @param matrix
+     *         The elements of the matrix.
+     * @param rows
+     *         Number of rows.
+     * @param columns
+     *         Number of columns.
+     * @return A new array with the reduced row echelon form.
+     */
+    @NotNull
+    static double[] reducedRowEchelonForm(@NotNull double[] matrix, int rows, int columns) {
+        double[] result = matrix.clone();
+        double tolerance = PIVOT_TOLERANCE * maxAbs(matrix);
+        int pivotRow = 0;
+
+        for (int column = 0; column < columns && pivotRow < rows; column++) {
+            int best = pivotRow;
+            for (int i = pivotRow + 1; i < rows; i++) {
+                if (Math.abs(result[i * columns + column]) > Math.abs(result[best * columns + column])) {
+                    best = i;
+                }
+            }
+            if (!(Math.abs(result[best * columns + column]) > tolerance)) {
+                for (int i = pivotRow; i < rows; i++) {
+                    result[i * columns + column] = 0;
+                }
+                continue;
+            }
+            swapRows(result, columns, best, pivotRow);
+
+            double pivot = result[pivotRow * columns + column];
+            for (int j = column; j < columns; j++) {
+                result[pivotRow * columns + j] /= pivot;
+            }
+            for (int i = 0; i < rows; i++) {
+                double factor = result[i * columns + column];
+                if (i != pivotRow && factor != 0) {
+                    subtractRow(result, columns, i, pivotRow, factor);
+                    result[i * columns + column] = 0;
+                }
+            }
+            pivotRow++;
+        }
+
+        for (int i = 0; i < result.length; i++) {
+            if (Math.abs(result[i]) <= tolerance) {
+                result[i] = 0;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Multiplies each element of a matrix with a factor.
+     *
+     * @param matrix
+     *         The elements of the matrix.
+     * @param factor
+     *         The factor.
+     * @return A new array with the result.
+     */
+    @NotNull
+    static double[] scale(@NotNull double[] matrix, double factor) {
+        double[] result = new double[matrix.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = matrix[i] * factor;
+        }
+        return result;
+    }
+
+    /**
+     * Decomposes a square matrix in place into a unit lower and an upper triangle with partial pivoting. Rows with a
+     * zero pivot are skipped, so that the determinant of a singular matrix becomes zero.
+     *
+     * @param lu
+     *         The matrix which will be overwritten with both triangles.
+     * @param size
+     *         Number of rows and columns.
+     * @param permutation
+     *         Array which will receive the original index of each row.
+     * @return The sign of the row permutation, i.e. 1 or -1.
+     */
+    private static int decompose(@NotNull double[] lu, int size, @NotNull int[] permutation) {
+        int sign = 1;
+        for (int i = 0; i < size; i++) {
+            permutation[i] = i;
+        }
+
+        for (int k = 0; k < size; k++) {
+            int best = k;
+            for (int i = k + 1; i < size; i++) {
+                if (Math.abs(lu[i * size + k]) > Math.abs(lu[best * size + k])) {
+                    best = i;
+                }
+            }
+            if (best != k) {
+                swapRows(lu, size, best, k);
+                int swap = permutation[best];
+                permutation[best] = permutation[k];
+                permutation[k] = swap;
+                sign = -sign;
+            }
+
+            double pivot = lu[k * size + k];
+            if (pivot == 0) {
+                continue;
+            }
+            for (int i = k + 1; i < size; i++) {
+                double factor = lu[i * size + k] / pivot;
+                lu[i * size + k] = factor;
+                if (factor != 0) {
+                    for (int j = k + 1; j < size; j++) {
+                        lu[i * size + j] -= factor * lu[k * size + j];
+                    }
+                }
+            }
+        }
+        return sign;
+    }
+
+    private static double maxAbs(@NotNull double[] matrix) {
+        double max = 0;
+        for (double element : matrix) {
+            max = Math.max(max, Math.abs(element));
+        }
+        return max;
+    }
+
+    /**
+     * Subtracts the source row multiplied with the given factor from the target row.
+     */
+    private static void subtractRow(@NotNull double[] matrix, int columns, int target, int source, double factor) {
+        int targetOffset = target * columns;
+        int sourceOffset = source * columns;
+        for (int j = 0; j < columns; j++) {
+            matrix[targetOffset + j] -= factor * matrix[sourceOffset + j];
+        }
+    }
+
+    private static void swapRows(@NotNull double[] matrix, int columns, int first, int second) {
+        int firstOffset = first * columns;
+        int secondOffset = second * columns;
+        for (int j = 0; j < columns; j++) {
+            double swap = matrix[firstOffset + j];
+            matrix[firstOffset + j] = matrix[secondOffset + j];
+            matrix[secondOffset + j] = swap;
+        }
+    }
+}
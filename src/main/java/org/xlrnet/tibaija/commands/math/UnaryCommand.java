@@ -23,8 +23,8 @@
 package org.xlrnet.tibaija.commands.math;
 
 import com.google.common.collect.ImmutableList;
-import org.apache.commons.math3.complex.Complex;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xlrnet.tibaija.commons.Value;
@@ -34,17 +34,15 @@ import org.xlrnet.tibaija.memory.Parameter;
 import org.xlrnet.tibaija.memory.ValueUtils;
 import org.xlrnet.tibaija.processor.Command;
 
-import java.util.List;
 import java.util.Optional;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.UnaryOperator;
-import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
- * Generic implementation for arithmetic operations with one operand like √(, ², ! or "not(". Uses a functional enum
- * pattern
- * for instantiation.
+ * Generic implementation for arithmetic operations with one operand like √(, ², ⁻¹, ! or "not(". Uses a functional
+ * enum pattern for instantiation.
  */
 public class UnaryCommand extends Command {
 
@@ -69,12 +67,26 @@ public class UnaryCommand extends Command {
     @NotNull
     @Override
     protected Optional<Value> execute(@NotNull ImmutableList<Parameter> arguments) {
-        final Value operand = arguments.get(0).value();
+        return Optional.of(executeUnary(arguments.get(0).value()));
+    }
+
+    @NotNull
+    @Override
+    protected Value executeUnary(@NotNull Value operand) {
+        checkOperand(operand);
         final Value result = applyOperator(operand);
 
-        LOGGER.debug("({}) {} -> {}", this.operator, operand.getValue(), result.getValue());
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("({}) {} -> {}", this.operator, operand.getValue(), result.getValue());
+        }
 
-        return Optional.of(result);
+        return result;
+    }
+
+    @Nullable
+    @Override
+    protected DoubleUnaryOperator getRealUnaryOperation() {
+        return this.operator != null ? this.operator.getRealFunction() : null;
     }
 
     /**
@@ -86,12 +98,7 @@ public class UnaryCommand extends Command {
      */
     @Override
     protected boolean hasValidArgumentValues(@NotNull ImmutableList<Parameter> arguments) {
-        final Value operand = arguments.get(0).value();
-        checkNotNull(operand);
-
-        if (!ValueUtils.isNumberOrList(operand))
-            throw new IllegalTypeException("Operand is not a Number: " + operand.getValue(), ValueType.NUMBER, operand.getType());
-
+        checkOperand(arguments.get(0).value());
         return true;
     }
 
@@ -107,10 +114,33 @@ public class UnaryCommand extends Command {
         return numberOfParametersEntered == 1;
     }
 
+    /**
+     * Unary operators only depend on their operand.
+     *
+     * @return Always true.
+     */
+    @Override
+    protected boolean isPure() {
+        return true;
+    }
+
+    /**
+     * Unary commands can always be called directly with one value.
+     *
+     * @param numberOfArguments
+     *         Number of value arguments passed by the caller.
+     * @return True if exactly one argument was passed.
+     */
+    @Override
+    protected boolean supportsDirectCall(int numberOfArguments) {
+        return numberOfArguments == 1;
+    }
+
     /**
      * Apply the internal operator function on the given operand. If the operand is a Number, the function will be
      * applied to the numerical value. If the operand is a list, the function will be applied to each number in the
-     * list and return a new list. Any other value type will cause an exception.
+     * list and return a new list. Square matrices can be squared, cubed and inverted. Any other value type will cause
+     * an exception.
      *
      * @param operand
      *         The value to which the function should be applied.
@@ -118,16 +148,134 @@ public class UnaryCommand extends Command {
      */
     private Value applyOperator(Value operand) {
         Value result;
-        if (operand.isList()) {
-            List<Complex> valueList = operand.list()
-                    .stream()
-                    .map(c -> this.evaluationFunction.apply(Value.of(c)).complex())
-                    .collect(Collectors.toList());
-            result = Value.of(valueList);
+        if (operand.isMatrix()) {
+            result = applyMatrixOperator(operand);
+        } else if (operand.isList()) {
+            result = applyElementWise(operand);
         } else {
             result = this.evaluationFunction.apply(operand);
         }
         return result;
     }
 
+    /**
+     * Apply the operator to a square matrix. Only powers and the inverse are defined for matrices.
+     *
+     * @param operand
+     *         The matrix to which the operator should be applied.
+     * @return A new matrix Value object with the result.
+     */
+    @NotNull
+    private Value applyMatrixOperator(@NotNull Value operand) {
+        final double[] result;
+        if (this.operator == UnaryCommandOperator.SQUARED) {
+            int size = MatrixKernels.checkSquare(operand);
+            result = MatrixKernels.power(operand.matrixValues(), size, 2);
+        } else if (this.operator == UnaryCommandOperator.CUBED) {
+            int size = MatrixKernels.checkSquare(operand);
+            result = MatrixKernels.power(operand.matrixValues(), size, 3);
+        } else if (this.operator == UnaryCommandOperator.INVERSE) {
+            int size = MatrixKernels.checkSquare(operand);
+            result = MatrixKernels.inverse(operand.matrixValues(), size);
+        } else {
+            throw new IllegalTypeException("Operation is not supported for matrices: " + this.operator, ValueType.NUMBER, ValueType.MATRIX);
+        }
+        return Value.ofMatrix(operand.matrixRows(), operand.matrixColumns(), result);
+    }
+
+    /**
+     * Apply the internal function to each element of a list. Elements are read directly from the primitive storage of
+     * the list and finite real elements are evaluated with the real function of the operator without creating any
+     * intermediate objects.
+     *
+     * @param operand
+     *         The list to which the function should be applied.
+     * @return A new list Value object with the internal function applied to each element.
+     */
+    @NotNull
+    private Value applyElementWise(@NotNull Value operand) {
+        final int size = operand.listSize();
+        final DoubleUnaryOperator realFunction = operand.hasImaginaryListValues() ? null : getRealUnaryOperation();
+
+        if (realFunction != null && this.operator.getListKernel() != null) {
+            Value result = applyListKernel(this.operator.getListKernel(), operand);
+            if (result != null)
+                return result;
+        }
+
+        double[] realParts = new double[size];
+        double[] imaginaryParts = null;
+
+        for (int i = 0; i < size; i++) {
+            if (realFunction != null) {
+                double element = operand.listRealPart(i);
+                if (Double.isFinite(element)) {
+                    double result = realFunction.applyAsDouble(element);
+                    if (!Double.isNaN(result)) {
+                        realParts[i] = result;
+                        continue;
+                    }
+                }
+            }
+            Value result = this.evaluationFunction.apply(operand.listElement(i));
+            realParts[i] = result.realPart();
+            if (!result.isReal()) {
+                if (imaginaryParts == null)
+                    imaginaryParts = new double[size];
+                imaginaryParts[i] = result.imaginaryPart();
+            }
+        }
+        return Value.ofList(realParts, imaginaryParts);
+    }
+
+    /**
+     * Apply a list kernel to a real list. Elements for which the kernel returns NaN will be recomputed with the
+     * internal function.
+     *
+     * @param kernel
+     *         The kernel of the operator.
+     * @param operand
+     *         The list to which the kernel should be applied.
+     * @return A new list Value object with the kernel applied to it or null if any element is not finite.
+     */
+    @Nullable
+    private Value applyListKernel(@NotNull ListKernels.UnaryListKernel kernel, @NotNull Value operand) {
+        final double[] elements = operand.listRealParts();
+
+        if (!ListKernels.allFinite(elements))
+            return null;
+
+        double[] realParts = new double[elements.length];
+        double[] imaginaryParts = null;
+        ListKernels.apply(kernel, elements, realParts, getEnvironment());
+
+        for (int i = 0; i < realParts.length; i++) {
+            if (Double.isNaN(realParts[i])) {
+                Value result = this.evaluationFunction.apply(Value.of(elements[i]));
+                realParts[i] = result.realPart();
+                if (!result.isReal()) {
+                    if (imaginaryParts == null)
+                        imaginaryParts = new double[realParts.length];
+                    imaginaryParts[i] = result.imaginaryPart();
+                }
+            }
+        }
+        return Value.ofList(realParts, imaginaryParts);
+    }
+
+    /**
+     * Check if the operand is of a numerical type and not null.
+     *
+     * @param operand
+     *         The operand to check.
+     * @throws IllegalTypeException
+     *         if the operand is neither a number nor a list nor a matrix.
+     */
+    private void checkOperand(Value operand) throws IllegalTypeException {
+        checkNotNull(operand);
+
+        if (!ValueUtils.isNumberOrList(operand) && !operand.isMatrix())
+            throw new IllegalTypeException("Operand is not a Number: " + operand.getValue(), ValueType.NUMBER, operand.getType());
+    }
+
 }
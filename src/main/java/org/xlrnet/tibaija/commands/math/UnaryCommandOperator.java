@@ -22,9 +22,12 @@
 
 package org.xlrnet.tibaija.commands.math;
 
+import org.apache.commons.math3.complex.Complex;
+import org.jetbrains.annotations.Nullable;
 import org.xlrnet.tibaija.commons.TIMathUtils;
 import org.xlrnet.tibaija.commons.Value;
 
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.UnaryOperator;
 
 import static org.xlrnet.tibaija.commons.LogicUtil.not;
@@ -38,16 +41,18 @@ public enum UnaryCommandOperator {
     NOT((Value operand) -> {
         checkIfAnyValueIsImaginary(operand);
         return Value.of(not(operand.complex().getReal()));
-    }),
+    }, operand -> not(operand) ? 1 : 0),
 
-    SQUARED(operand -> Value.of(operand.complex().multiply(operand.complex()))),
+    SQUARED(operand -> Value.of(operand.complex().multiply(operand.complex())), operand -> operand * operand, ListKernels::squared),
 
-    CUBED(operand -> Value.of(operand.complex().multiply(operand.complex()).multiply(operand.complex()))),
+    CUBED(operand -> Value.of(operand.complex().multiply(operand.complex()).multiply(operand.complex())), operand -> operand * operand * operand),
 
-    SQUARE_ROOT(operand -> Value.of(operand.complex().sqrt())),
+    SQUARE_ROOT(operand -> Value.of(operand.complex().sqrt()), operand -> operand >= 0 ? Math.sqrt(operand) : Double.NaN, ListKernels::squareRoot),
 
     CUBIC_ROOT(operand -> Value.of(operand.complex().nthRoot(3).get(0))),
 
+    INVERSE(operand -> Value.of(Complex.ONE.divide(operand.complex())), operand -> operand != 0 ? 1 / operand : Double.NaN),
+
     FACTORIAL(operand -> {
         checkIfAnyValueIsImaginary(operand);
         return Value.of(TIMathUtils.factorial(operand.complex().getReal()));
@@ -55,12 +60,70 @@ public enum UnaryCommandOperator {
 
     private final UnaryOperator<Value> operatorFunction;
 
+    private final DoubleUnaryOperator realFunction;
+
+    private final ListKernels.UnaryListKernel listKernel;
+
     UnaryCommandOperator(UnaryOperator<Value> operatorFunction) {
-        this.operatorFunction = operatorFunction;
+        this(operatorFunction, null);
+    }
+
+    UnaryCommandOperator(UnaryOperator<Value> operatorFunction, DoubleUnaryOperator realFunction) {
+        this(operatorFunction, realFunction, null);
+    }
+
+    UnaryCommandOperator(UnaryOperator<Value> operatorFunction, DoubleUnaryOperator realFunction, ListKernels.UnaryListKernel listKernel) {
+        this.operatorFunction = realFunction != null ? withRealFastPath(operatorFunction, realFunction) : operatorFunction;
+        this.realFunction = realFunction;
+        this.listKernel = listKernel;
     }
 
+    /**
+     * Returns the function for evaluating the operation. Operations with a real function evaluate a finite real operand
+     * without creating any {@link org.apache.commons.math3.complex.Complex} objects.
+     *
+     * @return the function for evaluating the operation.
+     */
     public UnaryOperator<Value> getOperatorFunction() {
         return this.operatorFunction;
     }
 
+    /**
+     * Returns the function for evaluating the operation on a finite real number or null if the operation has no such
+     * function. The function returns the same result as {@link #getOperatorFunction()} would return for a real operand
+     * or NaN if the operand can't be handled by it.
+     *
+     * @return the function for evaluating the operation on a finite real number or null.
+     */
+    @Nullable
+    public DoubleUnaryOperator getRealFunction() {
+        return this.realFunction;
+    }
+
+    /**
+     * Returns the kernel for evaluating the operation element-wise on a list of finite real numbers or null if the
+     * operation has no such kernel. The kernel behaves like {@link #getRealFunction()} for each element.
+     *
+     * @return the kernel for evaluating the operation on a list of finite real numbers or null.
+     */
+    @Nullable
+    ListKernels.UnaryListKernel getListKernel() {
+        return this.listKernel;
+    }
+
+    /**
+     * Combines the generic function of an operation with its real function. The generic function will only be used if
+     * the operand is not a finite real number or if the real function can't handle the operand.
+     */
+    private static UnaryOperator<Value> withRealFastPath(UnaryOperator<Value> operatorFunction, DoubleUnaryOperator realFunction) {
+        return operand -> {
+            if (operand.isFiniteReal()) {
+                double result = realFunction.applyAsDouble(operand.realPart());
+                if (!Double.isNaN(result)) {
+                    return Value.of(result);
+                }
+            }
+            return operatorFunction.apply(operand);
+        };
+    }
 }
@@ -26,10 +26,104 @@ import java.util.Comparator;
 import java.util.Objects;
 
 /**
- * Utility class that provides comparison methods with boolean results like e.g. isGreaterThan().
+ * Utility class that provides comparison methods with boolean results like e.g. isGreaterThan(). The methods for
+ * {@link Value} objects compare real numbers directly without going through {@link Value#compareTo(Value)}.
  */
 public class CompareUtil {
 
+    /**
+     * Returns true if the first value is <u>greater than</u> the second one.
+     *
+     * @param v1
+     *         The first value.
+     * @param v2
+     *         The second value.
+     * @return True if the first value is greater or false if not.
+     */
+    public static boolean isGreaterThan(Value v1, Value v2) {
+        if (v1.isReal() && v2.isReal()) {
+            return v1.realPart() > v2.realPart();
+        }
+        return isGreaterThan((Comparable<Value>) v1, (Comparable<Value>) v2);
+    }
+
+    /**
+     * Returns true if the first value is <u>greater than or equal to</u> the second one.
+     *
+     * @param v1
+     *         The first value.
+     * @param v2
+     *         The second value.
+     * @return True if the first value is greater than or equal to the second. False otherwise.
+     */
+    public static boolean isGreaterOrEqual(Value v1, Value v2) {
+        if (v1.isReal() && v2.isReal()) {
+            return v1.realPart() >= v2.realPart();
+        }
+        return isGreaterOrEqual((Comparable<Value>) v1, (Comparable<Value>) v2);
+    }
+
+    /**
+     * Returns true if the first value is <u>less than</u> the second one.
+     *
+     * @param v1
+     *         The first value.
+     * @param v2
+     *         The second value.
+     * @return True if the first value is less than the second. False otherwise.
+     */
+    public static boolean isLessThan(Value v1, Value v2) {
+        if (v1.isReal() && v2.isReal()) {
+            return v1.realPart() < v2.realPart();
+        }
+        return isLessThan((Comparable<Value>) v1, (Comparable<Value>) v2);
+    }
+
+    /**
+     * Returns true if the first value is <u>less than or equal to</u> the second one.
+     *
+     * @param v1
+     *         The first value.
+     * @param v2
+     *         The second value.
+     * @return True if the first value is less than or equal to the second. False otherwise.
+     */
+    public static boolean isLessOrEqual(Value v1, Value v2) {
+        if (v1.isReal() && v2.isReal()) {
+            return v1.realPart() <= v2.realPart();
+        }
+        return isLessOrEqual((Comparable<Value>) v1, (Comparable<Value>) v2);
+    }
+
+    /**
+     * Returns true if the first value is <u>equal to</u> the second one.
+     *
+     * @param v1
+     *         The first value.
+     * @param v2
+     *         The second value.
+     * @return True if the first value is equal to the second. False otherwise.
+     */
+    public static boolean isEqual(Value v1, Value v2) {
+        if (v1.isReal() && v2.isReal()) {
+            return v1.realPart() == v2.realPart();
+        }
+        return isEqual((Comparable<Value>) v1, (Comparable<Value>) v2);
+    }
+
+    /**
+     * Returns true if the first value is <u>not equal to</u> the second one.
+     *
+     * @param v1
+     *         The first value.
+     * @param v2
+     *         The second value.
+     * @return True if the first value is not equal to the second. False otherwise.
+     */
+    public static boolean isNotEqual(Value v1, Value v2) {
+        return !isEqual(v1, v2);
+    }
+
     /**
      * Compares two given objects and returns true if the first object is <u>greater than</u> the second one i.e. the
      * implementation of compareTo() must return <b>1</b>.
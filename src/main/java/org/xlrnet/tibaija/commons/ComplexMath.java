@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+package org.xlrnet.tibaija.commons;
+
+import org.apache.commons.math3.complex.Complex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Complex arithmetic on primitive pairs of real and imaginary parts. The operations compute the same results as the
+ * corresponding methods of {@link Complex} for finite operands, but neither create intermediate {@link Complex}
+ * objects nor repeat the NaN and infinity checks of {@link Complex}. Only the final result will be materialized as a
+ * {@link Value}.
+ * <p/>
+ * All operations expect finite operands. Operations which can't be handled without {@link Complex} (e.g. a division by
+ * zero) return null or NaN, so that the caller can fall back to the generic implementation.
+ */
+public final class ComplexMath {
+
+    private ComplexMath() {
+        // Static helper class
+    }
+
+    /**
+     * Operation on two complex numbers which are given by their real and imaginary parts.
+     */
+    @FunctionalInterface
+    public interface ComplexBinaryOperator {
+
+        /**
+         * Applies the operation to the given finite operands.
+         *
+         * @param lhsReal
+         *         Real part of the left operand.
+         * @param lhsImaginary
+         *         Imaginary part of the left operand.
+         * @param rhsReal
+         *         Real part of the right operand.
+         * @param rhsImaginary
+         *         Imaginary part of the right operand.
+         * @return The result or null if the operation can't be handled on primitive parts.
+         */
+        @Nullable
+        Value apply(double lhsReal, double lhsImaginary, double rhsReal, double rhsImaginary);
+    }
+
+    @NotNull
+    public static Value add(double lhsReal, double lhsImaginary, double rhsReal, double rhsImaginary) {
+        return Value.ofComplex(lhsReal + rhsReal, lhsImaginary + rhsImaginary);
+    }
+
+    @NotNull
+    public static Value subtract(double lhsReal, double lhsImaginary, double rhsReal, double rhsImaginary) {
+        return Value.ofComplex(lhsReal - rhsReal, lhsImaginary - rhsImaginary);
+    }
+
+    @NotNull
+    public static Value multiply(double lhsReal, double lhsImaginary, double rhsReal, double rhsImaginary) {
+        return Value.ofComplex(multiplyReal(lhsReal, lhsImaginary, rhsReal, rhsImaginary), multiplyImaginary(lhsReal, lhsImaginary, rhsReal, rhsImaginary));
+    }
+
+    /**
+     * Multiplies a numerical value with a complex factor. Finite operands will be multiplied on their primitive parts,
+     * all other operands with {@link Complex#multiply(Complex)}.
+     *
+     * @param value
+     *         A numerical value.
+     * @param factor
+     *         The complex factor.
+     * @return The product of both operands.
+     */
+    @NotNull
+    public static Value multiply(@NotNull Value value, @NotNull Complex factor) {
+        double factorReal = factor.getReal();
+        double factorImaginary = factor.getImaginary();
+        if (value.isFiniteNumber() && Double.isFinite(factorReal) && Double.isFinite(factorImaginary)) {
+            return multiply(value.realPart(), value.imaginaryPart(), factorReal, factorImaginary);
+        }
+        return Value.of(value.complex().multiply(factor));
+    }
+
+    @Nullable
+    public static Value divide(double lhsReal, double lhsImaginary, double rhsReal, double rhsImaginary) {
+        if (rhsReal == 0 && rhsImaginary == 0) {
+            return null;
+        }
+        return Value.ofComplex(divideReal(lhsReal, lhsImaginary, rhsReal, rhsImaginary), divideImaginary(lhsReal, lhsImaginary, rhsReal, rhsImaginary));
+    }
+
+    public static double multiplyReal(double lhsReal, double lhsImaginary, double rhsReal, double rhsImaginary) {
+        return lhsReal * rhsReal - lhsImaginary * rhsImaginary;
+    }
+
+    public static double multiplyImaginary(double lhsReal, double lhsImaginary, double rhsReal, double rhsImaginary) {
+        return lhsReal * rhsImaginary + lhsImaginary * rhsReal;
+    }
+
+    /**
+     * Returns the real part of a complex division with Smith's algorithm like {@link Complex#divide(Complex)}. The
+     * divisor must not be zero.
+     */
+    public static double divideReal(double lhsReal, double lhsImaginary, double rhsReal, double rhsImaginary) {
+        if (Math.abs(rhsReal) < Math.abs(rhsImaginary)) {
+            double q = rhsReal / rhsImaginary;
+            return (lhsReal * q + lhsImaginary) / (rhsReal * q + rhsImaginary);
+        }
+        double q = rhsImaginary / rhsReal;
+        return (lhsImaginary * q + lhsReal) / (rhsImaginary * q + rhsReal);
+    }
+
+    /**
+     * Returns the imaginary part of a complex division with Smith's algorithm like {@link Complex#divide(Complex)}.
+     * The divisor must not be zero.
+     */
+    public static double divideImaginary(double lhsReal, double lhsImaginary, double rhsReal, double rhsImaginary) {
+        if (Math.abs(rhsReal) < Math.abs(rhsImaginary)) {
+            double q = rhsReal / rhsImaginary;
+            return (lhsImaginary * q - lhsReal) / (rhsReal * q + rhsImaginary);
+        }
+        double q = rhsImaginary / rhsReal;
+        return (lhsImaginary - lhsReal * q) / (rhsImaginary * q + rhsReal);
+    }
+}
@@ -33,6 +33,11 @@ import static org.apache.commons.math3.util.CombinatoricsUtils.factorialDouble;
  */
 public class TIMathUtils {
 
+    /**
+     * The powers of i repeat every four steps: 1, i, -1, -i.
+     */
+    private static final Complex[] IMAGINARY_POWERS = {Complex.ONE, Complex.I, Complex.valueOf(-1, 0), Complex.valueOf(0, -1)};
+
     /**
      * This is the standalone factorial function of TI-Basic, where n! = n*(n-1)! and 0! = 1, n an nonnegative integer.
      * The function also works for arguments that are half an odd integer and greater than -1/2. (−1/2)! is defined as
@@ -84,7 +89,7 @@ public class TIMathUtils {
 
     /**
      * Calculates the n-th power of i.
-     * I.e.: i^0 = 1; i^1 = i i^2 = -1
+     * I.e.: i^0 = 1; i^1 = i i^2 = -1; i^3 = -i
      *
      * @param imaginaryCount
      *         The power with which i should be multiplied. Must be greater or equal to zero.
@@ -95,11 +100,7 @@ public class TIMathUtils {
         if (imaginaryCount < 0) {
             throw new TIArgumentException("Power must be zero or greater", imaginaryCount);
         }
-        if (imaginaryCount == 0) {
-            return Complex.ONE;
-        } else {
-            return Complex.I.multiply(imaginaryNthPower(imaginaryCount - 1));
-        }
+        return IMAGINARY_POWERS[imaginaryCount % 4];
     }
 
     /**
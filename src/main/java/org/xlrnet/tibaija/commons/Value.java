@@ -26,29 +26,49 @@ import com.google.common.base.MoreObjects;
 import com.google.common.collect.ImmutableList;
 import org.apache.commons.math3.complex.Complex;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.xlrnet.tibaija.exception.IllegalTypeException;
 import org.xlrnet.tibaija.exception.TIArgumentException;
 import org.xlrnet.tibaija.exception.TIRuntimeException;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * Holds any value Make sure to run a type-check using the built-in
  * methods of this class before querying its value.
+ * <p/>
+ * Numbers are stored as a primitive real and imaginary part and converted to a {@link Complex} only when {@link
+ * #complex()} is called. Values of small integers are cached. Lists are stored as an array of real parts and an
+ * array of imaginary parts which is only present if any element has an imaginary part. Matrices are real-only and
+ * stored as a single array of all elements in row-major order.
  */
 public class Value implements Comparable<Value> {
 
-    public static final Value ZERO = Value.of(Complex.ZERO);
+    private static final int CACHE_LOW = -128;
 
-    public static final Value ONE = Value.of(Complex.ONE);
+    private static final int CACHE_HIGH = 1024;
 
-    public static final Value NEGATIVE_ONE = Value.of(Complex.valueOf(-1));
+    private static final Value[] INTEGER_CACHE = new Value[CACHE_HIGH - CACHE_LOW + 1];
+
+    static {
+        for (int i = 0; i < INTEGER_CACHE.length; i++) {
+            INTEGER_CACHE[i] = new Value(i + CACHE_LOW, null);
+        }
+    }
+
+    public static final Value ZERO = Value.of(0);
+
+    public static final Value ONE = Value.of(1);
+
+    public static final Value NEGATIVE_ONE = Value.of(-1);
 
     public static final Value EMPTY_LIST = Value.of(new ArrayList<>());
 
@@ -56,13 +76,37 @@ public class Value implements Comparable<Value> {
 
     private static final Comparator<Complex> complexComparator = new ComplexComparator();
 
-    private final Object value;
-
     private final ValueType type;
 
+    /** True if this value is a number without imaginary part. */
+    private final boolean realNumber;
+
+    /** The value of a real number or the real part of a complex number. */
+    private final double real;
+
+    /** The imaginary part of a complex number. */
+    private final double imaginary;
+
+    /** The real parts of all list elements. */
+    private final double[] listReal;
+
+    /** The imaginary parts of all list elements or null if no element has an imaginary part. */
+    private final double[] listImaginary;
+
+    /** All elements of a matrix in row-major order. */
+    private final double[] matrix;
+
+    /** The number of columns of a matrix. */
+    private final int matrixColumns;
+
     /**
-     * Create a new Value object from a complex number and set the according type. Note: Numbers are always represented
-     * as complex values!
+     * The internal object. May be null for numbers until {@link #complex()} is called for the first time and for lists
+     * until {@link #list()} is called for the first time.
+     */
+    private Object value;
+
+    /**
+     * Create a new Value object from a complex number with an imaginary part and set the according type.
      *
      * @param number
      *         The complex number.
@@ -70,6 +114,54 @@ public class Value implements Comparable<Value> {
     private Value(@NotNull Complex number) {
         this.value = number;
         this.type = ValueType.NUMBER;
+        this.realNumber = false;
+        this.real = number.getReal();
+        this.imaginary = number.getImaginary();
+        this.listReal = null;
+        this.listImaginary = null;
+        this.matrix = null;
+        this.matrixColumns = 0;
+    }
+
+    /**
+     * Create a new Value object from a real number and set the according type.
+     *
+     * @param real
+     *         The real number. May not be NaN.
+     * @param complex
+     *         The complex representation of the number or null if it should be created when needed.
+     */
+    private Value(double real, Complex complex) {
+        this.value = complex;
+        this.type = ValueType.NUMBER;
+        this.realNumber = true;
+        this.real = real;
+        this.imaginary = 0;
+        this.listReal = null;
+        this.listImaginary = null;
+        this.matrix = null;
+        this.matrixColumns = 0;
+    }
+
+    /**
+     * Create a new Value object from the parts of a complex number and set the according type. The {@link Complex} will
+     * be created when needed.
+     *
+     * @param real
+     *         The real part.
+     * @param imaginary
+     *         The imaginary part. May not be zero.
+     */
+    private Value(double real, double imaginary) {
+        this.value = null;
+        this.type = ValueType.NUMBER;
+        this.realNumber = false;
+        this.real = real;
+        this.imaginary = imaginary;
+        this.listReal = null;
+        this.listImaginary = null;
+        this.matrix = null;
+        this.matrixColumns = 0;
     }
 
     /**
@@ -81,18 +173,55 @@ public class Value implements Comparable<Value> {
     private Value(@NotNull String string) {
         this.value = string;
         this.type = ValueType.STRING;
+        this.realNumber = false;
+        this.real = 0;
+        this.imaginary = 0;
+        this.listReal = null;
+        this.listImaginary = null;
+        this.matrix = null;
+        this.matrixColumns = 0;
     }
 
     /**
-     * Create a new Value object from an immutable list of complex numbers and set the according type. Note: Numbers
-     * are  always represented as complex values!
+     * Create a new Value object from the real and imaginary parts of a list and set the according type.
      *
+     * @param realParts
+     *         The real parts of all elements.
+     * @param imaginaryParts
+     *         The imaginary parts of all elements or null if no element has an imaginary part.
      * @param complexImmutableList
-     *         The immutable list of complex numbers.
+     *         The elements as complex numbers or null if they should be created when needed.
      */
-    private Value(@NotNull ImmutableList<Complex> complexImmutableList) {
+    private Value(@NotNull double[] realParts, @Nullable double[] imaginaryParts, @Nullable ImmutableList<Complex> complexImmutableList) {
         this.value = complexImmutableList;
         this.type = ValueType.LIST;
+        this.realNumber = false;
+        this.real = 0;
+        this.imaginary = 0;
+        this.listReal = realParts;
+        this.listImaginary = imaginaryParts;
+        this.matrix = null;
+        this.matrixColumns = 0;
+    }
+
+    /**
+     * Create a new Value object from the elements of a matrix and set the according type.
+     *
+     * @param elements
+     *         All elements of the matrix in row-major order.
+     * @param columns
+     *         The number of columns of the matrix.
+     */
+    private Value(@NotNull double[] elements, int columns) {
+        this.value = null;
+        this.type = ValueType.MATRIX;
+        this.realNumber = false;
+        this.real = 0;
+        this.imaginary = 0;
+        this.listReal = null;
+        this.listImaginary = null;
+        this.matrix = elements;
+        this.matrixColumns = columns;
     }
 
     /**
@@ -103,7 +232,111 @@ public class Value implements Comparable<Value> {
      */
     @NotNull
     public static Value of(@NotNull ImmutableList<Complex> complexImmutableList) {
-        return new Value(complexImmutableList);
+        int size = complexImmutableList.size();
+        double[] realParts = new double[size];
+        double[] imaginaryParts = null;
+        for (int i = 0; i < size; i++) {
+            Complex c = complexImmutableList.get(i);
+            realParts[i] = c.getReal();
+            if (c.getImaginary() != 0 || c.isNaN()) {
+                if (imaginaryParts == null) {
+                    imaginaryParts = new double[size];
+                }
+                imaginaryParts[i] = c.getImaginary();
+            }
+        }
+        return new Value(realParts, imaginaryParts, complexImmutableList);
+    }
+
+    /**
+     * Create a new list Value object from the real and imaginary parts of its elements. The given arrays will not be
+     * copied and must not be modified afterwards.
+     *
+     * @param realParts
+     *         The real parts of all elements.
+     * @param imaginaryParts
+     *         The imaginary parts of all elements or null if no element has an imaginary part. Must have the same length
+     *         as the real parts.
+     * @return A new Value object with a list.
+     */
+    @NotNull
+    public static Value ofList(@NotNull double[] realParts, @Nullable double[] imaginaryParts) {
+        checkNotNull(realParts);
+        checkArgument(imaginaryParts == null || imaginaryParts.length == realParts.length, "Mismatching number of real and imaginary parts");
+        return new Value(realParts, imaginaryParts, null);
+    }
+
+    /**
+     * Create a new list Value object from numerical values.
+     *
+     * @param elements
+     *         The elements of the new list. All elements must be numbers.
+     * @return A new Value object with a list.
+     * @throws IllegalTypeException
+     *         if any element is not a number.
+     */
+    @NotNull
+    public static Value listOf(@NotNull Value... elements) throws IllegalTypeException {
+        double[] realParts = new double[elements.length];
+        double[] imaginaryParts = null;
+        for (int i = 0; i < elements.length; i++) {
+            Value element = elements[i];
+            realParts[i] = element.realPart();
+            if (!element.realNumber) {
+                if (imaginaryParts == null) {
+                    imaginaryParts = new double[elements.length];
+                }
+                imaginaryParts[i] = element.imaginaryPart();
+            }
+        }
+        return new Value(realParts, imaginaryParts, null);
+    }
+
+    /**
+     * Create a new matrix Value object from its elements in row-major order. The given array will not be copied and
+     * must not be modified afterwards.
+     *
+     * @param rows
+     *         The number of rows. Must be positive.
+     * @param columns
+     *         The number of columns. Must be positive.
+     * @param elements
+     *         All elements of the matrix in row-major order. Must contain exactly rows * columns elements.
+     * @return A new Value object with a matrix.
+     */
+    @NotNull
+    public static Value ofMatrix(int rows, int columns, @NotNull double[] elements) {
+        checkNotNull(elements);
+        checkArgument(rows > 0 && columns > 0, "Matrix dimensions must be positive");
+        checkArgument(elements.length == rows * columns, "Mismatching number of matrix elements");
+        return new Value(elements, columns);
+    }
+
+    /**
+     * Create a new matrix Value object from numerical values in row-major order.
+     *
+     * @param columns
+     *         The number of columns. The number of elements must be a multiple of it.
+     * @param elements
+     *         The elements of the new matrix. All elements must be real numbers.
+     * @return A new Value object with a matrix.
+     * @throws IllegalTypeException
+     *         if any element is not a number.
+     * @throws TIArgumentException
+     *         if any element has an imaginary part.
+     */
+    @NotNull
+    public static Value matrixOf(int columns, @NotNull Value... elements) throws IllegalTypeException {
+        checkArgument(columns > 0 && elements.length % columns == 0, "Mismatching number of matrix elements");
+        double[] values = new double[elements.length];
+        for (int i = 0; i < elements.length; i++) {
+            Value element = elements[i];
+            values[i] = element.realPart();
+            if (!element.realNumber && element.imaginaryPart() != 0) {
+                throw new TIArgumentException("Matrix elements must be real", element);
+            }
+        }
+        return ofMatrix(elements.length / columns, columns, values);
     }
 
     /**
@@ -142,7 +375,7 @@ public class Value implements Comparable<Value> {
     }
 
     /**
-     * Create a new Value object from a complex number. Note: Numbers are always represented as complex values!
+     * Create a new Value object from a complex number. Numbers without an imaginary part will be stored as real numbers.
      *
      * @param c
      *         The complex number.
@@ -150,9 +383,50 @@ public class Value implements Comparable<Value> {
      */
     @NotNull
     public static Value of(@NotNull Complex c) {
+        if (c.getImaginary() == 0 && !c.isNaN()) {
+            Value cached = getCachedInteger(c.getReal());
+            return cached != null ? cached : new Value(c.getReal(), c);
+        }
         return new Value(c);
     }
 
+    /**
+     * Create a new Value object from a real number without creating a {@link Complex}. Small integers will be taken
+     * from a cache.
+     *
+     * @param real
+     *         A real number.
+     * @return A Value object with a real number.
+     */
+    @NotNull
+    public static Value of(double real) {
+        if (Double.isNaN(real)) {
+            return new Value(Complex.NaN);
+        }
+        Value cached = getCachedInteger(real);
+        return cached != null ? cached : new Value(real, null);
+    }
+
+    /**
+     * Create a new Value object from the real and imaginary part of a complex number without creating a {@link
+     * Complex}. Numbers without an imaginary part will be stored as real numbers.
+     *
+     * @param real
+     *         The real part.
+     * @param imaginary
+     *         The imaginary part.
+     * @return A Value object with the given complex number.
+     */
+    @NotNull
+    public static Value ofComplex(double real, double imaginary) {
+        if (Double.isNaN(real) || Double.isNaN(imaginary)) {
+            return new Value(Complex.NaN);
+        } else if (imaginary == 0) {
+            return of(real);
+        }
+        return new Value(real, imaginary);
+    }
+
     /**
      * Create a new Value object from a BigDecimal. This is recommended, since future versions might work with
      * BigDecimal implementations.
@@ -175,7 +449,7 @@ public class Value implements Comparable<Value> {
      */
     @NotNull
     public static Value of(boolean bool) {
-        return of(bool ? 1 : 0);
+        return bool ? ONE : ZERO;
     }
 
     /**
@@ -187,7 +461,7 @@ public class Value implements Comparable<Value> {
      */
     @NotNull
     public static Value of(Number real) {
-        return of(real, 0);
+        return of(real.doubleValue());
     }
 
     /**
@@ -201,6 +475,9 @@ public class Value implements Comparable<Value> {
      */
     @NotNull
     public static Value of(@NotNull Number real, @NotNull Number imaginary) {
+        if (imaginary.doubleValue() == 0) {
+            return of(real.doubleValue());
+        }
         return of(Complex.valueOf(real.doubleValue(), imaginary.doubleValue()));
     }
 
@@ -214,14 +491,21 @@ public class Value implements Comparable<Value> {
      * @throws TIRuntimeException
      */
     public boolean bool() throws IllegalTypeException {
-        Complex c = complex();
-        return c.getReal() != 0 || c.getImaginary() != 0;
+        if (this.realNumber) {
+            return this.real != 0;
+        }
+        internalTypeCheck(ValueType.NUMBER);
+        return this.real != 0 || this.imaginary != 0;
     }
 
     @Override
     public int compareTo(@NotNull Value o) {
         checkNotNull(o);
 
+        if (this.realNumber && o.realNumber) {
+            return this.real == 0 && o.real == 0 ? 0 : Double.compare(this.real, o.real);
+        }
+
         if (Objects.equals(this, o)) {
             return 0;
         }
@@ -248,6 +532,9 @@ public class Value implements Comparable<Value> {
     @NotNull
     public Complex complex() throws IllegalTypeException {
         internalTypeCheck(ValueType.NUMBER);
+        if (this.value == null) {
+            this.value = this.realNumber ? Complex.valueOf(this.real) : Complex.valueOf(this.real, this.imaginary);
+        }
         return (Complex) this.value;
     }
 
@@ -256,6 +543,19 @@ public class Value implements Comparable<Value> {
         if (this == o) return true;
         if (!(o instanceof Value)) return false;
         Value value1 = (Value) o;
+        if (this.realNumber || value1.realNumber) {
+            return this.realNumber && value1.realNumber && Double.doubleToLongBits(this.real) == Double.doubleToLongBits(value1.real);
+        }
+        if (this.listReal != null || value1.listReal != null) {
+            return this.listReal != null && value1.listReal != null && listEquals(value1);
+        }
+        if (this.type == ValueType.NUMBER && value1.type == ValueType.NUMBER) {
+            return complex().equals(value1.complex());
+        }
+        if (this.matrix != null || value1.matrix != null) {
+            return this.matrix != null && value1.matrix != null && this.matrixColumns == value1.matrixColumns
+                    && Arrays.equals(this.matrix, value1.matrix);
+        }
         return com.google.common.base.Objects.equal(this.value, value1.value) &&
                 com.google.common.base.Objects.equal(this.type, value1.type);
     }
@@ -271,6 +571,21 @@ public class Value implements Comparable<Value> {
      */
     @NotNull
     public Object getValue() {
+        if (this.type == ValueType.NUMBER) {
+            return complex();
+        } else if (this.listReal != null) {
+            return list();
+        } else if (this.matrix != null) {
+            ImmutableList.Builder<ImmutableList<Double>> rows = ImmutableList.builder();
+            for (int row = 0; row < matrixRows(); row++) {
+                ImmutableList.Builder<Double> builder = ImmutableList.builder();
+                for (int column = 0; column < this.matrixColumns; column++) {
+                    builder.add(this.matrix[row * this.matrixColumns + column]);
+                }
+                rows.add(builder.build());
+            }
+            return rows.build();
+        }
         return this.value;
     }
 
@@ -280,14 +595,58 @@ public class Value implements Comparable<Value> {
      * @return True if the value is complex and has an imaginary value. False otherwise.
      */
     public boolean hasImaginaryValue() {
-        return isType(ValueType.NUMBER) && complex().getImaginary() != 0;
+        return !this.realNumber && isType(ValueType.NUMBER) && this.imaginary != 0;
     }
 
     @Override
     public int hashCode() {
+        if (this.realNumber) {
+            return Double.hashCode(this.real);
+        } else if (this.listReal != null) {
+            return listHashCode();
+        } else if (this.matrix != null) {
+            return 31 * Arrays.hashCode(this.matrix) + this.matrixColumns;
+        } else if (this.type == ValueType.NUMBER) {
+            return complex().hashCode();
+        }
         return com.google.common.base.Objects.hashCode(this.value, this.type);
     }
 
+    /**
+     * Retrieves the imaginary part of the internal complex value. If the internal is not a Complex, this method will
+     * throw an {@link IllegalTypeException}.
+     *
+     * @return The imaginary part of the internal complex value.
+     * @throws TIRuntimeException
+     */
+    public double imaginaryPart() throws IllegalTypeException {
+        if (this.realNumber) {
+            return 0;
+        }
+        internalTypeCheck(ValueType.NUMBER);
+        return this.imaginary;
+    }
+
+    /**
+     * Check if this object contains a number whose real and imaginary part are both finite, i.e. neither infinite nor
+     * NaN.
+     *
+     * @return True if this object contains a finite number; false otherwise.
+     */
+    public boolean isFiniteNumber() {
+        return this.type == ValueType.NUMBER && Double.isFinite(this.real) && Double.isFinite(this.imaginary);
+    }
+
+    /**
+     * Check if this object contains a finite real number, i.e. a number without imaginary part which is neither
+     * infinite nor NaN.
+     *
+     * @return True if this object contains a finite real number; false otherwise.
+     */
+    public boolean isFiniteReal() {
+        return this.realNumber && Double.isFinite(this.real);
+    }
+
     /**
      * Check if this object contains a list.
      *
@@ -297,6 +656,15 @@ public class Value implements Comparable<Value> {
         return isType(ValueType.LIST);
     }
 
+    /**
+     * Check if this object contains a matrix.
+     *
+     * @return True if this object contains a matrix; false otherwise.
+     */
+    public boolean isMatrix() {
+        return isType(ValueType.MATRIX);
+    }
+
     /**
      * Check if this object contains a complex or numerical value.
      *
@@ -306,6 +674,15 @@ public class Value implements Comparable<Value> {
         return isType(ValueType.NUMBER);
     }
 
+    /**
+     * Check if this object contains a real number without imaginary part. NaN is not considered as real.
+     *
+     * @return True if this object contains a real number; false otherwise.
+     */
+    public boolean isReal() {
+        return this.realNumber;
+    }
+
     /**
      * Check if this object contains a string value.
      *
@@ -327,9 +704,172 @@ public class Value implements Comparable<Value> {
     @SuppressWarnings("unchecked")
     public ImmutableList<Complex> list() throws IllegalTypeException {
         internalTypeCheck(ValueType.LIST);
+        if (this.value == null) {
+            ImmutableList.Builder<Complex> builder = ImmutableList.builder();
+            for (int i = 0; i < this.listReal.length; i++) {
+                builder.add(Complex.valueOf(this.listReal[i], listImaginaryPart(i)));
+            }
+            this.value = builder.build();
+        }
         return (ImmutableList<Complex>) this.value;
     }
 
+    /**
+     * Retrieves the element at the given index of the internal list. If the internal value is not a list, this method
+     * will throw an {@link IllegalTypeException}.
+     *
+     * @param index
+     *         The zero-based index of the element.
+     * @return The element at the given index as a new Value object.
+     * @throws IllegalTypeException
+     *         thrown when the value is not of type {@link ValueType#LIST}
+     */
+    @NotNull
+    public Value listElement(int index) throws IllegalTypeException {
+        internalTypeCheck(ValueType.LIST);
+        if (this.listImaginary == null || this.listImaginary[index] == 0) {
+            return of(this.listReal[index]);
+        }
+        return of(Complex.valueOf(this.listReal[index], this.listImaginary[index]));
+    }
+
+    /**
+     * Retrieves the imaginary part of the element at the given index of the internal list without creating a {@link
+     * Complex} object.
+     *
+     * @param index
+     *         The zero-based index of the element.
+     * @return The imaginary part of the element at the given index.
+     * @throws IllegalTypeException
+     *         thrown when the value is not of type {@link ValueType#LIST}
+     */
+    public double listImaginaryPart(int index) throws IllegalTypeException {
+        internalTypeCheck(ValueType.LIST);
+        return this.listImaginary != null ? this.listImaginary[index] : 0;
+    }
+
+    /**
+     * Returns a copy of the imaginary parts of all elements in the internal list or null if no element has an imaginary
+     * part. If the internal value is not a list, this method will throw an {@link IllegalTypeException}.
+     *
+     * @return A new array with the imaginary parts of all elements or null if all elements are real.
+     * @throws IllegalTypeException
+     *         thrown when the value is not of type {@link ValueType#LIST}
+     */
+    @Nullable
+    public double[] listImaginaryParts() throws IllegalTypeException {
+        internalTypeCheck(ValueType.LIST);
+        return this.listImaginary != null ? Arrays.copyOf(this.listImaginary, this.listImaginary.length) : null;
+    }
+
+    /**
+     * Retrieves the real part of the element at the given index of the internal list without creating a {@link Complex}
+     * object.
+     *
+     * @param index
+     *         The zero-based index of the element.
+     * @return The real part of the element at the given index.
+     * @throws IllegalTypeException
+     *         thrown when the value is not of type {@link ValueType#LIST}
+     */
+    public double listRealPart(int index) throws IllegalTypeException {
+        internalTypeCheck(ValueType.LIST);
+        return this.listReal[index];
+    }
+
+    /**
+     * Returns a copy of the real parts of all elements in the internal list. If the internal value is not a list, this
+     * method will throw an {@link IllegalTypeException}.
+     *
+     * @return A new array with the real parts of all elements.
+     * @throws IllegalTypeException
+     *         thrown when the value is not of type {@link ValueType#LIST}
+     */
+    @NotNull
+    public double[] listRealParts() throws IllegalTypeException {
+        internalTypeCheck(ValueType.LIST);
+        return Arrays.copyOf(this.listReal, this.listReal.length);
+    }
+
+    /**
+     * Returns the number of elements in the internal list. If the internal value is not a list, this method will throw
+     * an {@link IllegalTypeException}.
+     *
+     * @return The number of elements in the internal list.
+     * @throws IllegalTypeException
+     *         thrown when the value is not of type {@link ValueType#LIST}
+     */
+    public int listSize() throws IllegalTypeException {
+        internalTypeCheck(ValueType.LIST);
+        return this.listReal.length;
+    }
+
+    /**
+     * Checks if the value is a list and contains any element with an imaginary value.
+     *
+     * @return True if the value is a list with at least one element that has an imaginary value. False otherwise.
+     */
+    public boolean hasImaginaryListValues() {
+        return this.listImaginary != null;
+    }
+
+    /**
+     * Returns the number of columns of the internal matrix. If the internal value is not a matrix, this method will
+     * throw an {@link IllegalTypeException}.
+     *
+     * @return The number of columns of the internal matrix.
+     * @throws IllegalTypeException
+     *         thrown when the value is not of type {@link ValueType#MATRIX}
+     */
+    public int matrixColumns() throws IllegalTypeException {
+        internalTypeCheck(ValueType.MATRIX);
+        return this.matrixColumns;
+    }
+
+    /**
+     * Retrieves the element at the given position of the internal matrix. If the internal value is not a matrix, this
+     * method will throw an {@link IllegalTypeException}.
+     *
+     * @param row
+     *         The zero-based row of the element.
+     * @param column
+     *         The zero-based column of the element.
+     * @return The element at the given position.
+     * @throws IllegalTypeException
+     *         thrown when the value is not of type {@link ValueType#MATRIX}
+     */
+    public double matrixElement(int row, int column) throws IllegalTypeException {
+        internalTypeCheck(ValueType.MATRIX);
+        return this.matrix[row * this.matrixColumns + column];
+    }
+
+    /**
+     * Returns the number of rows of the internal matrix. If the internal value is not a matrix, this method will throw
+     * an {@link IllegalTypeException}.
+     *
+     * @return The number of rows of the internal matrix.
+     * @throws IllegalTypeException
+     *         thrown when the value is not of type {@link ValueType#MATRIX}
+     */
+    public int matrixRows() throws IllegalTypeException {
+        internalTypeCheck(ValueType.MATRIX);
+        return this.matrix.length / this.matrixColumns;
+    }
+
+    /**
+     * Returns a copy of all elements of the internal matrix in row-major order. If the internal value is not a matrix,
+     * this method will throw an {@link IllegalTypeException}.
+     *
+     * @return A new array with all elements in row-major order.
+     * @throws IllegalTypeException
+     *         thrown when the value is not of type {@link ValueType#MATRIX}
+     */
+    @NotNull
+    public double[] matrixValues() throws IllegalTypeException {
+        internalTypeCheck(ValueType.MATRIX);
+        return Arrays.copyOf(this.matrix, this.matrix.length);
+    }
+
     /**
      * Retrieves the real part of the internal complex value. If the internal is not a Complex, this method will throw
      * an {@link IllegalTypeException}. Use this method only if you know the underlying object type or want to let this
@@ -339,7 +879,11 @@ public class Value implements Comparable<Value> {
      * @throws TIRuntimeException
      */
     public double realPart() throws IllegalTypeException {
-        return complex().getReal();
+        if (this.realNumber) {
+            return this.real;
+        }
+        internalTypeCheck(ValueType.NUMBER);
+        return this.real;
     }
 
     /**
@@ -359,7 +903,7 @@ public class Value implements Comparable<Value> {
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
-                .add("value", this.value)
+                .add("value", getValue())
                 .add("type", this.type)
                 .toString();
     }
@@ -383,6 +927,57 @@ public class Value implements Comparable<Value> {
      * @return True if the internal type is equal to the expected type. False otherwise.
      */
     private boolean isType(ValueType checkedType) {
-        return Objects.equals(this.getType(), checkedType);
+        return this.type == checkedType;
+    }
+
+    /**
+     * Compares the elements of two lists in the same way as {@link Complex#equals(Object)} would do.
+     */
+    private boolean listEquals(@NotNull Value other) {
+        if (this.listReal.length != other.listReal.length) {
+            return false;
+        }
+        for (int i = 0; i < this.listReal.length; i++) {
+            double thisImaginary = listImaginaryPart(i);
+            double otherImaginary = other.listImaginaryPart(i);
+            boolean thisNaN = Double.isNaN(this.listReal[i]) || Double.isNaN(thisImaginary);
+            boolean otherNaN = Double.isNaN(other.listReal[i]) || Double.isNaN(otherImaginary);
+            if (thisNaN || otherNaN) {
+                if (thisNaN != otherNaN) {
+                    return false;
+                }
+            } else if (this.listReal[i] != other.listReal[i] || thisImaginary != otherImaginary) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Calculates a hash code of a list which is consistent with {@link #listEquals(Value)}.
+     */
+    private int listHashCode() {
+        int hash = 1;
+        for (int i = 0; i < this.listReal.length; i++) {
+            double imaginary = listImaginaryPart(i);
+            int elementHash = 7;
+            if (!Double.isNaN(this.listReal[i]) && !Double.isNaN(imaginary)) {
+                // Adding zero normalizes negative zero
+                elementHash = 31 * Double.hashCode(this.listReal[i] + 0.0) + Double.hashCode(imaginary + 0.0);
+            }
+            hash = 31 * hash + elementHash;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the cached value of the given number if it is a small integer or null otherwise.
+     */
+    private static Value getCachedInteger(double real) {
+        int integer = (int) real;
+        if (integer == real && integer >= CACHE_LOW && integer <= CACHE_HIGH && (integer != 0 || Double.doubleToRawLongBits(real) == 0)) {
+            return INTEGER_CACHE[integer - CACHE_LOW];
+        }
+        return null;
     }
 }
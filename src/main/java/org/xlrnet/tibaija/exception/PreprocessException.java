@@ -30,4 +30,22 @@ public class PreprocessException extends TIRuntimeException {
     public PreprocessException(int lineNumber, int startIndex, String message) {
         super(lineNumber, startIndex, message);
     }
+
+    /**
+     * Returns the line of the program in which the error occurred or -1 if the error isn't bound to a position.
+     *
+     * @return the line of the program in which the error occurred.
+     */
+    public int getLine() {
+        return getLinenumber();
+    }
+
+    /**
+     * Returns the position in the line at which the error occurred or -1 if the error isn't bound to a position.
+     *
+     * @return the position in the line at which the error occurred.
+     */
+    public int getCharPositionInLine() {
+        return getCharInLine();
+    }
 }
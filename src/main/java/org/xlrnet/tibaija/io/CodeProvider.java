@@ -23,6 +23,8 @@
 package org.xlrnet.tibaija.io;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xlrnet.tibaija.processor.ProgramCache;
 
 import java.io.IOException;
 
@@ -33,4 +35,15 @@ public interface CodeProvider {
 
     @NotNull
     String getProgramCode(String programName) throws IOException;
+
+    /**
+     * Returns the cache in which preprocessed programs of this provider should be stored or null if programs should
+     * always be parsed from their source.
+     *
+     * @return the cache for preprocessed programs or null.
+     */
+    @Nullable
+    default ProgramCache getProgramCache() {
+        return null;
+    }
 }
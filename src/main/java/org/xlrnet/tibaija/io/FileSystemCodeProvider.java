@@ -24,8 +24,10 @@ package org.xlrnet.tibaija.io;
 
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xlrnet.tibaija.processor.ProgramCache;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -51,6 +53,8 @@ public class FileSystemCodeProvider implements CodeProvider {
 
     private Map<String, String> registeredFiles = new HashMap<>();
 
+    private ProgramCache programCache;
+
     public FileSystemCodeProvider(@NotNull Path defaultPath) {
         LOGGER.debug("Initialized default path '{}' for new programs", defaultPath.toAbsolutePath());
 
@@ -58,6 +62,22 @@ public class FileSystemCodeProvider implements CodeProvider {
         this.defaultPath = defaultPath;
     }
 
+    /**
+     * Create a new provider which stores preprocessed programs in the given cache directory. Programs whose source
+     * hasn't changed since they have been cached won't be parsed again.
+     *
+     * @param defaultPath
+     *         Directory from which new programs will be loaded.
+     * @param cacheDirectory
+     *         Directory for the cache of preprocessed programs. Will be created if it doesn't exist.
+     * @throws IOException
+     *         if the cache directory can't be created.
+     */
+    public FileSystemCodeProvider(@NotNull Path defaultPath, @NotNull Path cacheDirectory) throws IOException {
+        this(defaultPath);
+        this.programCache = new ProgramCache(cacheDirectory);
+    }
+
     @NotNull
     public static String stripFilename(@NotNull String filename) {
         if (filename.contains("."))
@@ -79,7 +99,7 @@ public class FileSystemCodeProvider implements CodeProvider {
             return this.registeredFiles.get(programName);
         }
 
-        String fileName = strippedName + DEFAULT_FILE_EXTENSION;
+        String fileName = strippedName + getFileExtension();
 
         Path path = Paths.get(this.defaultPath.toString(), fileName);
         LOGGER.debug("Trying to load file '{}'", path.toString());
@@ -91,6 +111,12 @@ public class FileSystemCodeProvider implements CodeProvider {
         }
     }
 
+    @Override
+    @Nullable
+    public ProgramCache getProgramCache() {
+        return this.programCache;
+    }
+
     /**
      * Register a file ({@link Path} object) under a custom filename.
      *
@@ -111,8 +137,27 @@ public class FileSystemCodeProvider implements CodeProvider {
         return internalFilename;
     }
 
+    /**
+     * Returns the extension of the files from which programs will be loaded by their name.
+     *
+     * @return the extension of program files including the leading dot.
+     */
+    @NotNull
+    protected String getFileExtension() {
+        return DEFAULT_FILE_EXTENSION;
+    }
+
+    /**
+     * Loads the source code of the program in the given file.
+     *
+     * @param filepath
+     *         The file to load.
+     * @return the source code of the program.
+     * @throws IOException
+     *         if the file can't be read.
+     */
     @NotNull
-    private String loadFileContent(@NotNull Path filepath) throws IOException {
+    protected String loadFileContent(@NotNull Path filepath) throws IOException {
         checkArgument(!Files.isDirectory(filepath), "Path must be a file");
 
         return Files.lines(filepath).collect(Collectors.joining("\n"));
@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2016 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+package org.xlrnet.tibaija.io;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Token table of the TI-83 Plus. Tokenized programs consist of one-byte tokens and of two-byte tokens whose first byte
+ * selects a table for the second byte (e.g. matrices, lists or string variables). Every token is mapped directly to
+ * its spelling in the source code that the interpreter understands, e.g. the negation token is mapped to '‾' and the
+ * store token to '→'. Tokens which the interpreter doesn't support are mapped to their name on the calculator and will
+ * be reported when the program is parsed.
+ */
+final class TokenTable {
+
+    private static final int NEWLINE = 0x3F;
+
+    private static final int LEFT_BRACKET = 0x06;
+
+    private static final int RIGHT_BRACKET = 0x07;
+
+    /** One-byte tokens. Prefixes of two-byte tokens and unused bytes are null. */
+    private static final String[] ONE_BYTE_TOKENS = {
+            null, "►DMS", "►Dec", "►Frac", "→", "Boxplot", "[", "]", "{", "}", "ʳ", "°", "⁻¹", "²", "ᵀ", "³",
+            "(", ")", "round(", "pxl-Test(", "augment(", "rowSwap(", "row+(", "*row(", "*row+(", "max(", "min(", "R►Pr(", "R►Pθ(", "P►Rx(", "P►Ry(", "median(",
+            "randM(", "mean(", "solve(", "seq(", "fnInt(", "nDeriv(", null, "fMin(", "fMax(", " ", "\"", ",", "i", "!", "CubicReg ", "QuartReg ",
+            "0", "1", "2", "3", "4", "5", "6", "7", "8", "9", ".", "ᴇ", " or ", " xor ", ":", null,
+            " and ", "A", "B", "C", "D", "E", "F", "G", "H", "I", "J", "K", "L", "M", "N", "O",
+            "P", "Q", "R", "S", "T", "U", "V", "W", "X", "Y", "Z", "θ", null, null, null, "prgm",
+            null, null, null, null, "Radian", "Degree", "Normal", "Sci", "Eng", "Float", "=", "<", ">", "≤", "≥", "≠",
+            "+", "-", "Ans", "Fix ", "Horiz", "Full", "Func", "Param", "Polar", "Seq", "IndpntAuto", "IndpntAsk", "DependAuto", "DependAsk", null, "□",
+            "﹢", "·", "*", "/", "Trace", "ClrDraw", "ZStandard", "ZTrig", "ZBox", "Zoom In", "Zoom Out", "ZSquare", "ZInteger", "ZPrevious", "ZDecimal", "ZoomStat",
+            "ZoomRcl", "PrintScreen", "ZoomSto", "Text(", "nPr", "nCr", "FnOn ", "FnOff ", "StorePic ", "RecallPic ", "StoreGDB ", "RecallGDB ", "Line(", "Vertical ", "Pt-On(", "Pt-Off(",
+            "Pt-Change(", "Pxl-On(", "Pxl-Off(", "Pxl-Change(", "Shade(", "Circle(", "Horizontal ", "Tangent(", "DrawInv ", "DrawF ", null, "rand", "π", "getKey", "'", "?",
+            "‾", "int(", "abs(", "det(", "identity(", "dim(", "sum(", "prod(", "not(", "iPart(", "fPart(", null, "√(", "∛(", "ln(", "e^(",
+            "log(", "₁₀^(", "sin(", "sin⁻¹(", "cos(", "cos⁻¹(", "tan(", "tan⁻¹(", "sinh(", "sinh⁻¹(", "cosh(", "cosh⁻¹(", "tanh(", "tanh⁻¹(", "If ", "Then",
+            "Else", "While ", "Repeat ", "For(", "End", "Return", "Lbl ", "Goto ", "Pause ", "Stop", "IS>(", "DS<(", "Input ", "Prompt ", "Disp ", "DispGraph",
+            "Output(", "ClrHome", "Fill(", "SortA(", "SortD(", "DispTable", "Menu(", "Send(", "Get(", "PlotsOn ", "PlotsOff ", "∟", "Plot1(", "Plot2(", "Plot3(", null,
+            "^", "×√", "1-Var Stats ", "2-Var Stats ", "LinReg(a+bx) ", "ExpReg ", "LnReg ", "PwrReg ", "Med-Med ", "QuadReg ", "ClrList ", "ClrTable", "Histogram", "xyLine", "Scatter", "LinReg(ax+b) "
+    };
+
+    /** Two-byte tokens by their first byte. Unused second bytes are null. */
+    private static final String[][] TWO_BYTE_TOKENS = new String[256][];
+
+    /** Extended tokens with the prefix 0xBB. */
+    private static final String[] EXTENDED_TOKENS = {
+            "npv(", "irr(", "bal(", "ΣPrn(", "ΣInt(", "►Nom(", "►Eff(", "dbd(", "lcm(", "gcd(", "randInt(", "randBin(", "sub(", "stdDev(", "variance(", "inString(",
+            "normalcdf(", "invNorm(", "tcdf(", "χ²cdf(", "Fcdf(", "binompdf(", "binomcdf(", "poissonpdf(", "poissoncdf(", "geometpdf(", "geometcdf(", "normalpdf(", "tpdf(", "χ²pdf(", "Fpdf(", "randNorm(",
+            "tvm_Pmt", "tvm_I%", "tvm_PV", "tvm_N", "tvm_FV", "conj(", "real(", "imag(", "angle(", "cumSum(", "expr(", "length(", "ΔList(", "ref(", "rref(", "►Rect",
+            "►Polar", "e", "SinReg ", "Logistic ", "LinRegTTest ", "ShadeNorm(", "Shade_t(", "Shadeχ²(", "ShadeF(", "Matr►list(", "List►matr(", "Z-Test(", "T-Test ", "2-SampZTest(", "1-PropZTest(", "2-PropZTest(",
+            "χ²-Test(", "ZInterval ", "2-SampZInt(", "1-PropZInt(", "2-PropZInt(", "GraphStyle(", "2-SampTTest ", "2-SampFTest ", "TInterval ", "2-SampTInt ", "SetUpEditor ", "Pmt_End", "Pmt_Bgn", "Real", "re^θi", "a+bi",
+            "ExprOn", "ExprOff", "ClrAllLists", "GetCalc(", "DelVar ", "Equ►String(", "String►Equ(", "Clear Entries", "Select(", "ANOVA(", "ModBoxplot", "NormProbPlot", null, null, null, null,
+            null, null, null, null, "G-T", "ZoomFit", "DiagnosticOn", "DiagnosticOff", "Archive ", "UnArchive ", "Asm(", "AsmComp(", "AsmPrgm"
+    };
+
+    static {
+        TWO_BYTE_TOKENS[0x5C] = numbered("[", "ABCDEFGHIJ", "]");
+        TWO_BYTE_TOKENS[0x5D] = numbered("∟", "₁₂₃₄₅₆", "");
+        TWO_BYTE_TOKENS[0x60] = numbered("Pic", "1234567890", "");
+        TWO_BYTE_TOKENS[0x61] = numbered("GDB", "1234567890", "");
+        TWO_BYTE_TOKENS[0xAA] = numbered("Str", "1234567890", "");
+
+        String[] equations = new String[0x83];
+        System.arraycopy(numbered("Y", "₁₂₃₄₅₆₇₈₉₀", ""), 0, equations, 0x10, 10);
+        System.arraycopy(numbered("r", "₁₂₃₄₅₆", ""), 0, equations, 0x40, 6);
+        equations[0x80] = "u";
+        equations[0x81] = "v";
+        equations[0x82] = "w";
+        TWO_BYTE_TOKENS[0x5E] = equations;
+
+        // Lowercase letters follow the other extended tokens, but skip 0xBB
+        String[] extended = new String[0xCB];
+        System.arraycopy(EXTENDED_TOKENS, 0, extended, 0, EXTENDED_TOKENS.length);
+        for (char letter = 'a'; letter <= 'z'; letter++) {
+            int index = 0xB0 + letter - 'a';
+            extended[letter < 'l' ? index : index + 1] = String.valueOf(letter);
+        }
+        TWO_BYTE_TOKENS[0xBB] = extended;
+    }
+
+    private TokenTable() {
+    }
+
+    /**
+     * Decodes the tokens of a program into its source code. Every line of the program starts with a separator, so that
+     * the source code has the same format as a program that has been typed in.
+     *
+     * @param tokens
+     *         Buffer which contains the tokens at its current position. The position will be advanced behind the last
+     *         token.
+     * @param length
+     *         Number of bytes of all tokens.
+     * @return the source code of the program.
+     * @throws IOException
+     *         if the tokens contain an unknown token or if the last token is incomplete.
+     */
+    @NotNull
+    static String decode(@NotNull ByteBuffer tokens, int length) throws IOException {
+        StringBuilder builder = new StringBuilder(length * 2 + 1);
+        builder.append(':');
+        int start = tokens.position();
+        int end = start + length;
+        while (tokens.position() < end) {
+            int offset = tokens.position() - start;
+            int token = tokens.get() & 0xFF;
+            String text;
+            if (token == NEWLINE) {
+                text = "\n:";
+            } else if (token == LEFT_BRACKET && isBracketedLetter(tokens, end)) {
+                // A row with a single number variable would be read as a matrix variable like [A]
+                text = "[(" + ONE_BYTE_TOKENS[tokens.get() & 0xFF] + ")]";
+                tokens.get();
+            } else if (isTwoByteToken(token)) {
+                if (tokens.position() >= end) {
+                    throw new IOException(String.format("Incomplete token 0x%02X at offset %d", token, offset));
+                }
+                int secondByte = tokens.get() & 0xFF;
+                text = lookup(TWO_BYTE_TOKENS[token], secondByte);
+                if (text == null) {
+                    throw new IOException(String.format("Unsupported token 0x%02X%02X at offset %d", token, secondByte, offset));
+                }
+            } else {
+                text = ONE_BYTE_TOKENS[token];
+                if (text == null) {
+                    throw new IOException(String.format("Unsupported token 0x%02X at offset %d", token, offset));
+                }
+            }
+            builder.append(text);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns true if the tokens at the current position are a letter from A to J followed by a right bracket, i.e. if
+     * a preceding left bracket starts a matrix row with a single number variable.
+     */
+    private static boolean isBracketedLetter(@NotNull ByteBuffer tokens, int end) {
+        int position = tokens.position();
+        if (position + 1 >= end) {
+            return false;
+        }
+        int letter = tokens.get(position) & 0xFF;
+        return letter >= 0x41 && letter <= 0x4A && (tokens.get(position + 1) & 0xFF) == RIGHT_BRACKET;
+    }
+
+    /**
+     * Returns true if the given byte is the first byte of a two-byte token. Statistic and window variables, graph
+     * formats and the tokens of the TI-84 Plus are recognized, but not supported.
+     */
+    private static boolean isTwoByteToken(int token) {
+        switch (token) {
+            case 0x5C:
+            case 0x5D:
+            case 0x5E:
+            case 0x60:
+            case 0x61:
+            case 0x62:
+            case 0x63:
+            case 0x7E:
+            case 0xAA:
+            case 0xBB:
+            case 0xEF:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    @Nullable
+    private static String lookup(@Nullable String[] table, int index) {
+        return table != null && index < table.length ? table[index] : null;
+    }
+
+    /**
+     * Creates the tokens for a sequence of numbered variables, e.g. "Str1" to "Str0".
+     */
+    @NotNull
+    private static String[] numbered(@NotNull String prefix, @NotNull String numbers, @NotNull String suffix) {
+        String[] tokens = new String[numbers.length()];
+        for (int i = 0; i < tokens.length; i++) {
+            tokens[i] = prefix + numbers.charAt(i) + suffix;
+        }
+        return tokens;
+    }
+}
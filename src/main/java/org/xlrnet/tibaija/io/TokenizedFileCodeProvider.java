@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2016 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+package org.xlrnet.tibaija.io;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Class with file system access for loading tokenized programs in the .8xp format of the TI-83 Plus and TI-84 Plus.
+ * The files are read through a memory-mapped buffer and the tokens of the program are mapped directly to the source
+ * code of the interpreter (see {@link TokenTable}), so that programs can be run as they have been transferred from a
+ * calculator.
+ */
+public class TokenizedFileCodeProvider extends FileSystemCodeProvider {
+
+    private static final String FILE_EXTENSION = ".8xp";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TokenizedFileCodeProvider.class);
+
+    private static final byte[] SIGNATURE = "**TI83F*".getBytes(StandardCharsets.US_ASCII);
+
+    /** Size of the file header (signature, comment and length of the data section). */
+    private static final int HEADER_LENGTH = 55;
+
+    private static final int DATA_LENGTH_OFFSET = 53;
+
+    private static final int TYPE_PROGRAM = 0x05;
+
+    private static final int TYPE_PROTECTED_PROGRAM = 0x06;
+
+    public TokenizedFileCodeProvider(@NotNull Path defaultPath) {
+        super(defaultPath);
+    }
+
+    /**
+     * Create a new provider which stores preprocessed programs in the given cache directory.
+     *
+     * @param defaultPath
+     *         Directory from which new programs will be loaded.
+     * @param cacheDirectory
+     *         Directory for the cache of preprocessed programs. Will be created if it doesn't exist.
+     * @throws IOException
+     *         if the cache directory can't be created.
+     */
+    public TokenizedFileCodeProvider(@NotNull Path defaultPath, @NotNull Path cacheDirectory) throws IOException {
+        super(defaultPath, cacheDirectory);
+    }
+
+    /**
+     * Returns true if the given file is a tokenized program, i.e. if it has the extension .8xp.
+     *
+     * @param filepath
+     *         The file to check.
+     * @return true if the given file is a tokenized program.
+     */
+    public static boolean isTokenizedFile(@NotNull Path filepath) {
+        return filepath.getFileName().toString().toLowerCase().endsWith(FILE_EXTENSION);
+    }
+
+    @NotNull
+    @Override
+    protected String getFileExtension() {
+        return FILE_EXTENSION;
+    }
+
+    @NotNull
+    @Override
+    protected String loadFileContent(@NotNull Path filepath) throws IOException {
+        checkArgument(!Files.isDirectory(filepath), "Path must be a file");
+
+        try (FileChannel channel = FileChannel.open(filepath, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return decodeProgram(buffer, filepath);
+        }
+    }
+
+    /**
+     * Decodes the first program in the given .8xp file. The data section may contain other variables which will be
+     * skipped.
+     */
+    @NotNull
+    private String decodeProgram(@NotNull ByteBuffer buffer, @NotNull Path filepath) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.limit() < HEADER_LENGTH + 2 || !hasSignature(buffer)) {
+            throw new IOException("Not a tokenized program file: " + filepath);
+        }
+
+        int dataLength = buffer.getShort(DATA_LENGTH_OFFSET) & 0xFFFF;
+        int dataEnd = HEADER_LENGTH + dataLength;
+        if (dataEnd + 2 > buffer.limit()) {
+            throw new IOException("Truncated program file: " + filepath);
+        }
+        verifyChecksum(buffer, dataEnd, filepath);
+
+        int position = HEADER_LENGTH;
+        while (position + 4 < dataEnd) {
+            int entryHeaderLength = buffer.getShort(position) & 0xFFFF;
+            int variableLength = buffer.getShort(position + 2) & 0xFFFF;
+            int type = buffer.get(position + 4) & 0xFF;
+            int variableStart = position + 2 + entryHeaderLength + 2;
+            if (variableStart + variableLength > dataEnd) {
+                break;
+            }
+            if ((type == TYPE_PROGRAM || type == TYPE_PROTECTED_PROGRAM) && variableLength >= 2) {
+                int tokenLength = buffer.getShort(variableStart) & 0xFFFF;
+                if (tokenLength + 2 > variableLength) {
+                    break;
+                }
+                buffer.position(variableStart + 2);
+                try {
+                    return TokenTable.decode(buffer, tokenLength);
+                } catch (IOException e) {
+                    throw new IOException(e.getMessage() + " in " + filepath, e);
+                }
+            }
+            position = variableStart + variableLength;
+        }
+        throw new IOException("No program found in file " + filepath);
+    }
+
+    private boolean hasSignature(@NotNull ByteBuffer buffer) {
+        for (int i = 0; i < SIGNATURE.length; i++) {
+            if (buffer.get(i) != SIGNATURE[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The checksum is the lower 16 bits of the sum of all bytes in the data section. Some tools don't write a valid
+     * checksum, so a mismatch will only be logged.
+     */
+    private void verifyChecksum(@NotNull ByteBuffer buffer, int dataEnd, @NotNull Path filepath) {
+        int checksum = 0;
+        for (int i = HEADER_LENGTH; i < dataEnd; i++) {
+            checksum += buffer.get(i) & 0xFF;
+        }
+        int expectedChecksum = buffer.getShort(dataEnd) & 0xFFFF;
+        if ((checksum & 0xFFFF) != expectedChecksum) {
+            LOGGER.warn("Invalid checksum in file '{}'", filepath);
+        }
+    }
+}
@@ -81,6 +81,46 @@ public interface CalculatorMemory extends ReadOnlyCalculatorMemory {
      */
     void setListVariableValue(@NotNull ListVariable listVariable, @NotNull Value value);
 
+    /**
+     * Changes the dimensions of a matrix variable. Elements which are inside both the old and the new dimensions will be
+     * kept, all other elements will be zero. The variable does not need to exist for this command to work.
+     *
+     * @param matrixVariable
+     *         The variable to which the value should be written.
+     * @param rows
+     *         New number of rows. Must be positive.
+     * @param columns
+     *         New number of columns. Must be positive.
+     */
+    void setMatrixVariableDimension(@NotNull MatrixVariable matrixVariable, int rows, int columns);
+
+    /**
+     * Sets a single element within an existing matrix variable. The first row and column are always one and not zero!
+     * If the target matrix doesn't exist, an UndefinedVariableException will be thrown.
+     *
+     * @param matrixVariable
+     *         The variable to which the value should be written.
+     * @param row
+     *         Row of the element inside the matrix. First row is always one. If the row is either too big or too low, an
+     *         {@link org.xlrnet.tibaija.exception.InvalidDimensionException} will be thrown.
+     * @param column
+     *         Column of the element inside the matrix. First column is always one. If the column is either too big or
+     *         too low, an {@link org.xlrnet.tibaija.exception.InvalidDimensionException} will be thrown.
+     * @param value
+     *         The new real value for the element at the given position.
+     */
+    void setMatrixVariableElementValue(@NotNull MatrixVariable matrixVariable, int row, int column, @NotNull Value value);
+
+    /**
+     * Sets the internal value of the given matrix variable.
+     *
+     * @param matrixVariable
+     *         The variable to which the value should be written.
+     * @param value
+     *         The new value of the selected variable.
+     */
+    void setMatrixVariableValue(@NotNull MatrixVariable matrixVariable, @NotNull Value value);
+
     /**
      * Sets the internal value of the given number variable.
      *
@@ -22,9 +22,6 @@
 
 package org.xlrnet.tibaija.memory;
 
-import com.google.common.collect.Lists;
-import org.apache.commons.lang3.EnumUtils;
-import org.apache.commons.math3.complex.Complex;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,12 +31,12 @@ import org.xlrnet.tibaija.commons.ValueType;
 import org.xlrnet.tibaija.exception.DuplicateProgramException;
 import org.xlrnet.tibaija.exception.InvalidDimensionException;
 import org.xlrnet.tibaija.exception.ProgramNotFoundException;
+import org.xlrnet.tibaija.exception.TIArgumentException;
 import org.xlrnet.tibaija.exception.UndefinedVariableException;
 import org.xlrnet.tibaija.processor.ExecutableProgram;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -47,28 +44,31 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static org.xlrnet.tibaija.commons.Preconditions.checkValueType;
 
 /**
- * Default implementation of the TI-Basic memory model.
+ * Default implementation of the TI-Basic memory model. Variables are stored in arrays which are indexed by the ordinal
+ * of number, string and matrix variables and by the slot number of list variables.
  */
 public class DefaultCalculatorMemory implements CalculatorMemory {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultCalculatorMemory.class);
 
-    private final Map<NumberVariable, Value> numberVariableValueMap;
+    private final Value[] numberVariableValues;
 
-    private final Map<ListVariable, Value> listVariableValueMap = new HashMap<>();
+    private final Value[] stringVariableValues;
+
+    private ListBuffer[] listVariableBuffers = new ListBuffer[16];
+
+    private final MatrixBuffer[] matrixVariableBuffers = new MatrixBuffer[MatrixVariable.values().length];
 
     private Value lastResult = Value.of(0);
 
     private Map<String, ExecutableProgram> programMap = new HashMap<>();
 
-    private Map<StringVariable, Value> stringVariableValueMap = new HashMap<>();
-
     /**
      * Creates a new instance of a TI-Basic capable calculator's memory model.
      */
     public DefaultCalculatorMemory() {
-        this.numberVariableValueMap = newEnumValueMapWithDefault(NumberVariable.class, Value.ZERO);
-        this.stringVariableValueMap = newEnumValueMapWithDefault(StringVariable.class, Value.EMPTY_STRING);
+        this.numberVariableValues = newValueArrayWithDefault(NumberVariable.values().length, Value.ZERO);
+        this.stringVariableValues = newValueArrayWithDefault(StringVariable.values().length, Value.EMPTY_STRING);
     }
 
     @Override
@@ -90,36 +90,55 @@ public class DefaultCalculatorMemory implements CalculatorMemory {
         checkNotNull(value);
         this.lastResult = value;
 
-        LOGGER.trace("Updated ANS variable to value {} of type {}", this.lastResult.getValue(), this.lastResult.getType());
+        if (LOGGER.isTraceEnabled())
+            LOGGER.trace("Updated ANS variable to value {} of type {}", this.lastResult.getValue(), this.lastResult.getType());
     }
 
     @NotNull
     @Override
     public Value getListVariableElementValue(@NotNull ListVariable listVariable, int index) {
-        if (!this.listVariableValueMap.containsKey(listVariable))
+        ListBuffer listBuffer = getListBuffer(listVariable);
+        if (listBuffer == null)
             throw new UndefinedVariableException(listVariable);
-        Value value = this.listVariableValueMap.get(listVariable);
-        if (index <= 0 || index > value.list().size())
+        if (index <= 0 || index > listBuffer.size())
             throw new InvalidDimensionException("Invalid index: " + index, index);
 
         LOGGER.trace("Accessing element at index {} of list variable {}", index, listVariable);
 
-        return Value.of(value.list().get(index - 1));
+        return listBuffer.get(index - 1);
     }
 
     @NotNull
     @Override
     public Value getListVariableValue(@NotNull ListVariable listVariable) throws UndefinedVariableException {
-        if (!this.listVariableValueMap.containsKey(listVariable))
+        ListBuffer listBuffer = getListBuffer(listVariable);
+        if (listBuffer == null)
             throw new UndefinedVariableException(listVariable);
-        return this.listVariableValueMap.get(listVariable);
+        return listBuffer.toValue();
+    }
+
+    @NotNull
+    @Override
+    public Value getMatrixVariableElementValue(@NotNull MatrixVariable matrixVariable, int row, int column) {
+        MatrixBuffer matrixBuffer = getMatrixBuffer(matrixVariable);
+        checkMatrixPosition(matrixBuffer, row, column);
+
+        LOGGER.trace("Accessing element at row {} and column {} of matrix variable {}", row, column, matrixVariable);
+
+        return Value.of(matrixBuffer.get(row - 1, column - 1));
+    }
+
+    @NotNull
+    @Override
+    public Value getMatrixVariableValue(@NotNull MatrixVariable matrixVariable) throws UndefinedVariableException {
+        return getMatrixBuffer(matrixVariable).toValue();
     }
 
     @NotNull
     @Override
     public Value getNumberVariableValue(@NotNull NumberVariable variable) {
         checkNotNull(variable);
-        return this.numberVariableValueMap.get(variable);
+        return this.numberVariableValues[variable.ordinal()];
     }
 
     @NotNull
@@ -137,33 +156,32 @@ public class DefaultCalculatorMemory implements CalculatorMemory {
     @Override
     public Value getStringVariableValue(@NotNull StringVariable variable) {
         checkNotNull(variable);
-        return this.stringVariableValueMap.get(variable);
+        return this.stringVariableValues[variable.ordinal()];
     }
 
     @Override
     public void setListVariableElementValue(@NotNull ListVariable listVariable, int index, @NotNull Value value) {
-        if (!this.listVariableValueMap.containsKey(listVariable) && index != 1) {
+        ListBuffer listBuffer = getListBuffer(listVariable);
+        if (listBuffer == null && index != 1) {
             throw new UndefinedVariableException(listVariable);
         }
 
-        Value listValue = this.listVariableValueMap.get(listVariable);
-        if (listValue == null)
-            listValue = Value.EMPTY_LIST;
+        checkValueType(value, ValueType.NUMBER);
+
+        int size = listBuffer != null ? listBuffer.size() : 0;
 
-        if (index <= 0 || index > listValue.list().size() + 1)
+        if (index <= 0 || index > size + 1)
             throw new InvalidDimensionException("Invalid index: " + index, index);
 
-        Complex complex = value.complex();
-        List<Complex> modifiableList = Lists.newCopyOnWriteArrayList(listValue.list());
+        if (listBuffer == null)
+            listBuffer = getOrCreateListBuffer(listVariable);
 
-        if (index == modifiableList.size() + 1) {
-            modifiableList.add(complex);
-            this.listVariableValueMap.put(listVariable, Value.of(modifiableList));
-            LOGGER.trace("Appended element {} to list {} at index {}", complex, listVariable, index);
+        listBuffer.set(index - 1, value);
+
+        if (index == size + 1) {
+            LOGGER.trace("Appended element {} to list {} at index {}", value, listVariable, index);
         } else {
-            modifiableList.set(index - 1, complex);
-            this.listVariableValueMap.put(listVariable, Value.of(modifiableList));
-            LOGGER.trace("Set element {} at index {} of list {}", complex, index, listVariable);
+            LOGGER.trace("Set element {} at index {} of list {}", value, index, listVariable);
         }
     }
 
@@ -171,27 +189,11 @@ public class DefaultCalculatorMemory implements CalculatorMemory {
     public void setListVariableSize(@NotNull ListVariable listVariable, int newSize) {
         checkNotNull(listVariable);
 
-        Value listValue = this.listVariableValueMap.get(listVariable);
-        if (listValue == null)
-            listValue = Value.EMPTY_LIST;
-
         if (newSize < 0) {
             throw new InvalidDimensionException("Invalid new size: " + newSize, newSize);
         }
-        List<Complex> resizedList;
 
-        if (newSize == 0) {
-            resizedList = new ArrayList<>();
-        } else if (newSize < listValue.list().size()) {
-            resizedList = listValue.list().subList(0, newSize);
-        } else {
-            resizedList = Lists.newCopyOnWriteArrayList(listValue.list());
-            while (resizedList.size() < newSize) {
-                resizedList.add(Complex.ZERO);
-            }
-        }
-
-        this.listVariableValueMap.put(listVariable, Value.of(resizedList));
+        getOrCreateListBuffer(listVariable).resize(newSize);
 
         LOGGER.trace("Resized list {} to {} elements", listVariable, newSize);
     }
@@ -202,16 +204,57 @@ public class DefaultCalculatorMemory implements CalculatorMemory {
         checkNotNull(value);
         checkValueType(value, ValueType.LIST);
 
-        this.listVariableValueMap.put(listVariable, value);
+        setListBuffer(listVariable, new ListBuffer(value));
         LOGGER.trace("Changed value in list variable {} to {}", listVariable, value);
     }
 
+    @Override
+    public void setMatrixVariableDimension(@NotNull MatrixVariable matrixVariable, int rows, int columns) {
+        checkNotNull(matrixVariable);
+
+        if (rows <= 0 || columns <= 0) {
+            throw new InvalidDimensionException(-1, -1, "Invalid new dimension: " + rows + "x" + columns, Value.listOf(Value.of(rows), Value.of(columns)));
+        }
+
+        MatrixBuffer matrixBuffer = this.matrixVariableBuffers[matrixVariable.ordinal()];
+        if (matrixBuffer == null) {
+            this.matrixVariableBuffers[matrixVariable.ordinal()] = new MatrixBuffer(Value.ofMatrix(rows, columns, new double[rows * columns]));
+        } else {
+            matrixBuffer.resize(rows, columns);
+        }
+
+        LOGGER.trace("Resized matrix {} to {}x{} elements", matrixVariable, rows, columns);
+    }
+
+    @Override
+    public void setMatrixVariableElementValue(@NotNull MatrixVariable matrixVariable, int row, int column, @NotNull Value value) {
+        MatrixBuffer matrixBuffer = getMatrixBuffer(matrixVariable);
+        checkValueType(value, ValueType.NUMBER);
+        checkMatrixPosition(matrixBuffer, row, column);
+        if (!value.isReal()) {
+            throw new TIArgumentException("Matrix elements must be real", value);
+        }
+
+        matrixBuffer.set(row - 1, column - 1, value.realPart());
+        LOGGER.trace("Set element {} at row {} and column {} of matrix {}", value, row, column, matrixVariable);
+    }
+
+    @Override
+    public void setMatrixVariableValue(@NotNull MatrixVariable matrixVariable, @NotNull Value value) {
+        checkNotNull(matrixVariable);
+        checkNotNull(value);
+        checkValueType(value, ValueType.MATRIX);
+
+        this.matrixVariableBuffers[matrixVariable.ordinal()] = new MatrixBuffer(value);
+        LOGGER.trace("Changed value in matrix variable {} to {}", matrixVariable, value);
+    }
+
     @Override
     public void setNumberVariableValue(@NotNull NumberVariable variable, @NotNull Value value) {
         checkNotNull(variable);
         checkValueType(value, ValueType.NUMBER);
 
-        this.numberVariableValueMap.put(variable, value);
+        this.numberVariableValues[variable.ordinal()] = value;
         LOGGER.trace("Changed value in numerical variable {} to {}", variable, value);
     }
 
@@ -221,7 +264,7 @@ public class DefaultCalculatorMemory implements CalculatorMemory {
         checkNotNull(value);
         checkValueType(value, ValueType.STRING);
 
-        this.stringVariableValueMap.put(variable, value);
+        this.stringVariableValues[variable.ordinal()] = value;
         LOGGER.trace("Changed value in string variable {} to {}", variable, value);
     }
 
@@ -240,20 +283,76 @@ public class DefaultCalculatorMemory implements CalculatorMemory {
     }
 
     /**
-     * Takes an Enum class and creates a new map with each enum value as key and the given default value as the value.
+     * Returns the buffer of the given matrix variable or throws an {@link UndefinedVariableException} if the matrix
+     * variable is not defined.
+     */
+    @NotNull
+    private MatrixBuffer getMatrixBuffer(@NotNull MatrixVariable matrixVariable) {
+        checkNotNull(matrixVariable);
+        MatrixBuffer matrixBuffer = this.matrixVariableBuffers[matrixVariable.ordinal()];
+        if (matrixBuffer == null)
+            throw new UndefinedVariableException(matrixVariable);
+        return matrixBuffer;
+    }
+
+    /**
+     * Throws an {@link InvalidDimensionException} if the given one-based position is outside of the given matrix.
+     */
+    private static void checkMatrixPosition(@NotNull MatrixBuffer matrixBuffer, int row, int column) {
+        if (row <= 0 || row > matrixBuffer.rows() || column <= 0 || column > matrixBuffer.columns())
+            throw new InvalidDimensionException(-1, -1, "Invalid index: " + row + "," + column, Value.listOf(Value.of(row), Value.of(column)));
+    }
+
+    /**
+     * Returns the buffer of the given list variable. If the list variable is not defined yet, a new empty buffer will be
+     * created.
+     *
+     * @param listVariable
+     *         The list variable.
+     * @return The buffer of the given list variable.
+     */
+    @NotNull
+    private ListBuffer getOrCreateListBuffer(@NotNull ListVariable listVariable) {
+        ListBuffer listBuffer = getListBuffer(listVariable);
+        if (listBuffer == null) {
+            listBuffer = new ListBuffer(Value.EMPTY_LIST);
+            setListBuffer(listVariable, listBuffer);
+        }
+        return listBuffer;
+    }
+
+    /**
+     * Returns the buffer of the given list variable or null if the list variable is not defined.
+     */
+    private ListBuffer getListBuffer(@NotNull ListVariable listVariable) {
+        int slot = listVariable.getSlot();
+        return slot < this.listVariableBuffers.length ? this.listVariableBuffers[slot] : null;
+    }
+
+    /**
+     * Sets the buffer of the given list variable and grows the slot array if necessary.
+     */
+    private void setListBuffer(@NotNull ListVariable listVariable, @NotNull ListBuffer listBuffer) {
+        int slot = listVariable.getSlot();
+        if (slot >= this.listVariableBuffers.length) {
+            this.listVariableBuffers = Arrays.copyOf(this.listVariableBuffers, Math.max(slot + 1, this.listVariableBuffers.length * 2));
+        }
+        this.listVariableBuffers[slot] = listBuffer;
+    }
+
+    /**
+     * Creates a new array of the given length which contains the given default value in each element.
      *
-     * @param numberVariableClass
-     *         An enum class that is suppossed to become the key of maps.
+     * @param length
+     *         The number of elements.
      * @param defaultValue
-     *         The default value for all entries.
-     * @param <T>
-     *         A class extending Enum.
-     * @return A new map with each enum value as key and the given default value as the value.
+     *         The default value for all elements.
+     * @return A new array with the given default value in each element.
      */
     @NotNull
-    private <T extends Enum<T>> Map<T, Value> newEnumValueMapWithDefault(@NotNull Class<T> numberVariableClass, @NotNull final Value defaultValue) {
-        Map<T, Value> valueMap = new HashMap<>();
-        EnumUtils.getEnumMap(numberVariableClass).forEach((name, enumObject) -> valueMap.put(enumObject, defaultValue));
-        return valueMap;
+    private static Value[] newValueArrayWithDefault(int length, @NotNull Value defaultValue) {
+        Value[] values = new Value[length];
+        Arrays.fill(values, defaultValue);
+        return values;
     }
 }
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.memory;
+
+import com.google.common.base.MoreObjects;
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.tibaija.commons.Value;
+
+import java.util.Arrays;
+
+/**
+ * Mutable storage for the content of a list variable. Elements are stored in growable primitive arrays which allow
+ * changing single elements in place and appending elements in amortized constant time. The imaginary parts will only
+ * be allocated when an element with an imaginary part is stored.
+ * <p/>
+ * Readers of the whole list receive an immutable snapshot which is cached until the next modification.
+ */
+final class ListBuffer {
+
+    private static final int MINIMUM_CAPACITY = 8;
+
+    private double[] real;
+
+    private double[] imaginary;
+
+    private int size;
+
+    /** Immutable snapshot of the current content or null if the content has changed since the last snapshot. */
+    private Value snapshot;
+
+    /**
+     * Creates a new buffer with the content of the given list value.
+     *
+     * @param listValue
+     *         The list to copy.
+     */
+    ListBuffer(@NotNull Value listValue) {
+        this.size = listValue.listSize();
+        this.real = new double[Math.max(this.size, MINIMUM_CAPACITY)];
+        for (int i = 0; i < this.size; i++) {
+            this.real[i] = listValue.listRealPart(i);
+        }
+        if (listValue.hasImaginaryListValues()) {
+            this.imaginary = new double[this.real.length];
+            for (int i = 0; i < this.size; i++) {
+                this.imaginary[i] = listValue.listImaginaryPart(i);
+            }
+        }
+        this.snapshot = listValue;
+    }
+
+    /**
+     * Returns the element at the given zero-based index.
+     */
+    @NotNull
+    Value get(int index) {
+        if (this.imaginary == null || this.imaginary[index] == 0) {
+            return Value.of(this.real[index]);
+        }
+        return Value.of(this.real[index], this.imaginary[index]);
+    }
+
+    /**
+     * Replaces the element at the given zero-based index. If the index is equal to the current size, the element will
+     * be appended.
+     *
+     * @param index
+     *         The zero-based index of the element.
+     * @param value
+     *         The new numerical value of the element.
+     */
+    void set(int index, @NotNull Value value) {
+        double realPart = value.realPart();
+        double imaginaryPart = value.imaginaryPart();
+
+        if (index == this.size) {
+            ensureCapacity(this.size + 1);
+            this.size++;
+        }
+
+        this.real[index] = realPart;
+        if (imaginaryPart != 0 || this.imaginary != null) {
+            if (this.imaginary == null) {
+                this.imaginary = new double[this.real.length];
+            }
+            this.imaginary[index] = imaginaryPart;
+        }
+        this.snapshot = null;
+    }
+
+    /**
+     * Changes the number of elements. New elements will be initialized with zero.
+     *
+     * @param newSize
+     *         The new number of elements.
+     */
+    void resize(int newSize) {
+        if (newSize > this.size) {
+            ensureCapacity(newSize);
+            Arrays.fill(this.real, this.size, newSize, 0);
+            if (this.imaginary != null) {
+                Arrays.fill(this.imaginary, this.size, newSize, 0);
+            }
+        }
+        if (newSize != this.size) {
+            this.size = newSize;
+            this.snapshot = null;
+        }
+    }
+
+    /**
+     * Returns the number of elements.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns an immutable snapshot of the current content.
+     */
+    @NotNull
+    Value toValue() {
+        if (this.snapshot == null) {
+            double[] imaginaryParts = null;
+            if (this.imaginary != null) {
+                for (int i = 0; i < this.size; i++) {
+                    if (this.imaginary[i] != 0 || Double.isNaN(this.imaginary[i])) {
+                        imaginaryParts = Arrays.copyOf(this.imaginary, this.size);
+                        break;
+                    }
+                }
+            }
+            this.snapshot = Value.ofList(Arrays.copyOf(this.real, this.size), imaginaryParts);
+        }
+        return this.snapshot;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("size", this.size)
+                .add("capacity", this.real.length)
+                .toString();
+    }
+
+    private void ensureCapacity(int minimumCapacity) {
+        if (minimumCapacity > this.real.length) {
+            int newCapacity = Math.max(minimumCapacity, this.real.length + (this.real.length >> 1));
+            this.real = Arrays.copyOf(this.real, newCapacity);
+            if (this.imaginary != null) {
+                this.imaginary = Arrays.copyOf(this.imaginary, newCapacity);
+            }
+        }
+    }
+}
@@ -27,18 +27,22 @@ import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
 import org.xlrnet.tibaija.commons.ValueType;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
 /**
  * A list variable can be used for accessing variable lists. Each list is guaranteed to contain at least up to 999
- * number elements.
+ * number elements. Every list name is interned and gets a unique slot number which the memory can use for storing the
+ * list content in an array.
  */
 public class ListVariable implements Variable {
 
-    private final static Map<String, ListVariable> listVariableMap = new HashMap<>();
+    private final static ConcurrentMap<String, ListVariable> listVariableMap = new ConcurrentHashMap<>();
+
+    private final static AtomicInteger slotCounter = new AtomicInteger();
 
     public static final ListVariable DEFAULT_1 = fromName("₁");
 
@@ -54,8 +58,11 @@ public class ListVariable implements Variable {
 
     private final String variableName;
 
-    private ListVariable(String variableName) {
+    private final int slot;
+
+    private ListVariable(String variableName, int slot) {
         this.variableName = variableName;
+        this.slot = slot;
     }
 
     /**
@@ -70,11 +77,8 @@ public class ListVariable implements Variable {
     public static ListVariable fromName(@NotNull String variableName) {
         checkArgument(StringUtils.isNotBlank(variableName), "List name may not be blank");
 
-        if (!listVariableMap.containsKey(variableName)) {
-            listVariableMap.put(variableName, new ListVariable(variableName));
-        }
-
-        return listVariableMap.get(variableName);
+        // The mapping function is called at most once per name, so no two names can get the same slot
+        return listVariableMap.computeIfAbsent(variableName, name -> new ListVariable(name, slotCounter.getAndIncrement()));
     }
 
     @Override
@@ -105,6 +109,16 @@ public class ListVariable implements Variable {
         return ValueType.LIST;
     }
 
+    /**
+     * Returns the unique slot number of this list variable. Slot numbers start at zero and are assigned in the order
+     * in which the list names are resolved.
+     *
+     * @return the unique slot number of this list variable.
+     */
+    int getSlot() {
+        return this.slot;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hashCode(this.variableName);
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+package org.xlrnet.tibaija.memory;
+
+import com.google.common.base.MoreObjects;
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.tibaija.commons.Value;
+
+/**
+ * Mutable storage for the content of a matrix variable. All elements are stored in a single primitive array in
+ * row-major order which allows changing single elements in place.
+ * <p/>
+ * Readers of the whole matrix receive an immutable snapshot which is cached until the next modification.
+ */
+final class MatrixBuffer {
+
+    private double[] elements;
+
+    private int rows;
+
+    private int columns;
+
+    /** Immutable snapshot of the current content or null if the content has changed since the last snapshot. */
+    private Value snapshot;
+
+    /**
+     * Creates a new buffer with the content of the given matrix value.
+     *
+     * @param matrixValue
+     *         The matrix to copy.
+     */
+    MatrixBuffer(@NotNull Value matrixValue) {
+        this.rows = matrixValue.matrixRows();
+        this.columns = matrixValue.matrixColumns();
+        this.elements = matrixValue.matrixValues();
+        this.snapshot = matrixValue;
+    }
+
+    /**
+     * Returns the number of columns.
+     */
+    int columns() {
+        return this.columns;
+    }
+
+    /**
+     * Returns the element at the given zero-based position.
+     */
+    double get(int row, int column) {
+        return this.elements[row * this.columns + column];
+    }
+
+    /**
+     * Changes the dimensions of the matrix. Elements which are inside both the old and the new dimensions will be kept,
+     * new elements will be initialized with zero.
+     *
+     * @param newRows
+     *         The new number of rows.
+     * @param newColumns
+     *         The new number of columns.
+     */
+    void resize(int newRows, int newColumns) {
+        if (newRows == this.rows && newColumns == this.columns) {
+            return;
+        }
+        double[] newElements = new double[newRows * newColumns];
+        int keptRows = Math.min(this.rows, newRows);
+        int keptColumns = Math.min(this.columns, newColumns);
+        for (int row = 0; row < keptRows; row++) {
+            System.arraycopy(this.elements, row * this.columns, newElements, row * newColumns, keptColumns);
+        }
+        this.elements = newElements;
+        this.rows = newRows;
+        this.columns = newColumns;
+        this.snapshot = null;
+    }
+
+    /**
+     * Returns the number of rows.
+     */
+    int rows() {
+        return this.rows;
+    }
+
+    /**
+     * Replaces the element at the given zero-based position.
+     */
+    void set(int row, int column, double value) {
+        this.elements[row * this.columns + column] = value;
+        this.snapshot = null;
+    }
+
+    /**
+     * Returns an immutable snapshot of the current content.
+     */
+    @NotNull
+    Value toValue() {
+        if (this.snapshot == null) {
+            this.snapshot = Value.ofMatrix(this.rows, this.columns, this.elements.clone());
+        }
+        return this.snapshot;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("rows", this.rows)
+                .add("columns", this.columns)
+                .toString();
+    }
+}
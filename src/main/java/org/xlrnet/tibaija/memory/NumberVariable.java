@@ -28,7 +28,14 @@ import org.xlrnet.tibaija.commons.ValueType;
  * Variable which can be used for storing either a complex or a real number.
  */
 public enum NumberVariable implements Variable {
-    A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S, T, U, V, W, X, Y, Z;
+    A, B, C, D, E, F, G, H, I, J, K, L, M, N, O, P, Q, R, S, T, U, V, W, X, Y, Z,
+
+    THETA {
+        @Override
+        public String getVariableName() {
+            return "θ";
+        }
+    };
 
     /**
      * Returns the name of the variable,
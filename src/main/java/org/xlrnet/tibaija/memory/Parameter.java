@@ -28,12 +28,15 @@ import org.jetbrains.annotations.NotNull;
 import org.xlrnet.tibaija.commons.Value;
 import org.xlrnet.tibaija.exception.UndefinedVariableException;
 
+import java.util.function.Supplier;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * A parameter from a parameter list. Depending on the internal value, a parameter can either be treated as a value (an
  * evaluated expression) or a reference to a variable. If the content is a variable, it may either be evaluated or
- * referenced.
+ * referenced. Parameters of commands like seq( may also be unevaluated expressions which are evaluated again on every
+ * call of {@link #value()}.
  */
 public class Parameter {
 
@@ -43,16 +46,43 @@ public class Parameter {
 
     private final ReadOnlyCalculatorMemory memory;
 
+    private final Supplier<Value> expression;
+
     private Parameter(Value value) {
         this.value = value;
         this.variable = null;
         this.memory = null;
+        this.expression = null;
     }
 
     private Parameter(Variable variable, ReadOnlyCalculatorMemory memory) {
         this.value = null;
         this.variable = variable;
         this.memory = memory;
+        this.expression = null;
+    }
+
+    private Parameter(Supplier<Value> expression) {
+        this.value = null;
+        this.variable = null;
+        this.memory = null;
+        this.expression = expression;
+    }
+
+    /**
+     * Create a new parameter object from an unevaluated expression. The expression will be evaluated again on every
+     * call of {@link #value()}, so that a command can evaluate it repeatedly with different variable values. The
+     * created parameter object cannot be used as a variable.
+     *
+     * @param expression
+     *         A supplier which evaluates the expression.
+     * @return A new parameter object with an unevaluated expression.
+     */
+    @NotNull
+    public static Parameter expression(@NotNull Supplier<Value> expression) {
+        checkNotNull(expression, "Expression may not be null");
+
+        return new Parameter(expression);
     }
 
     /**
@@ -96,12 +126,13 @@ public class Parameter {
         if (!(o instanceof Parameter)) return false;
         Parameter parameter = (Parameter) o;
         return Objects.equal(this.value, parameter.value) &&
-                Objects.equal(this.variable, parameter.variable);
+                Objects.equal(this.variable, parameter.variable) &&
+                Objects.equal(this.expression, parameter.expression);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(this.value, this.variable);
+        return Objects.hashCode(this.value, this.variable, this.expression);
     }
 
     @Override
@@ -109,14 +140,26 @@ public class Parameter {
         return MoreObjects.toStringHelper(this)
                 .add("value", this.value)
                 .add("variable", this.variable)
-                .add("memory", this.memory.toString())
+                .add("memory", this.memory)
+                .add("expression", this.expression)
                 .toString();
     }
 
+    /**
+     * Returns true if this parameter is a reference to a variable, i.e. if {@link #variable()} can be called.
+     *
+     * @return True if this parameter is a reference to a variable.
+     */
+    public boolean isVariable() {
+        return this.variable != null;
+    }
+
     @NotNull
     public Value value() {
         if (this.value != null) {
             return this.value;
+        } else if (this.expression != null) {
+            return this.expression.get();
         } else {
             return getVariableValue(this.variable);
         }
@@ -140,6 +183,8 @@ public class Parameter {
                 return this.memory.getStringVariableValue((StringVariable) variable);
             case LIST:
                 return this.memory.getListVariableValue((ListVariable) variable);
+            case MATRIX:
+                return this.memory.getMatrixVariableValue((MatrixVariable) variable);
             default:
                 throw new UnsupportedOperationException("Unsupported variable type: " + variable.getVariableType());
         }
@@ -76,6 +76,34 @@ public interface ReadOnlyCalculatorMemory {
     @NotNull
     Value getListVariableValue(@NotNull ListVariable variable);
 
+    /**
+     * Returns the stored value of a certain element in a given matrix variable. The first row and column are always one
+     * and not zero! If a variable has not yet been written to, an UndefinedVariableException will be thrown.
+     *
+     * @param variable
+     *         The matrix variable name from which value should be returned.
+     * @param row
+     *         Row of the element inside the matrix. First row is always one. If the row is either too big or too low, an
+     *         {@link org.xlrnet.tibaija.exception.InvalidDimensionException} will be thrown.
+     * @param column
+     *         Column of the element inside the matrix. First column is always one. If the column is either too big or
+     *         too low, an {@link org.xlrnet.tibaija.exception.InvalidDimensionException} will be thrown.
+     * @return Value of the selected element.
+     */
+    @NotNull
+    Value getMatrixVariableElementValue(@NotNull MatrixVariable variable, int row, int column);
+
+    /**
+     * Returns the stored value of a given matrix variable. If a variable has not yet been written to, an
+     * UndefinedVariableException will be thrown.
+     *
+     * @param variable
+     *         The matrix variable name from which value should be returned.
+     * @return Value of the selected variable.
+     */
+    @NotNull
+    Value getMatrixVariableValue(@NotNull MatrixVariable variable);
+
     /**
      * Returns the stored value of a given number variable. If a variable has not yet been written to, the value is
      * zero.
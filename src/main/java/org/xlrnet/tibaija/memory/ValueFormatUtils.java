@@ -46,6 +46,10 @@ public class ValueFormatUtils {
 
     private static final String LIST_END = "}";
 
+    private static final String MATRIX_BEGIN = "[";
+
+    private static final String MATRIX_END = "]";
+
     /**
      * Format a {@link Value} object according to the selected {@link DecimalDisplayMode}.
      *
@@ -67,6 +71,8 @@ public class ValueFormatUtils {
                 return value.string();
             case LIST:
                 return formatListValue(value, numberDisplayFormat, decimalDisplayMode);
+            case MATRIX:
+                return formatMatrixValue(value, numberDisplayFormat, decimalDisplayMode);
             default:
                 throw new UnsupportedOperationException("Unsupported value type: " + value.getType());
         }
@@ -91,6 +97,26 @@ public class ValueFormatUtils {
         return stringBuilder.toString();
     }
 
+    @NotNull
+    private static String formatMatrixValue(@NotNull Value value, @NotNull NumberDisplayFormat numberDisplayFormat, @NotNull DecimalDisplayMode decimalDisplayMode) {
+        StringBuilder stringBuilder = new StringBuilder(MATRIX_BEGIN);
+
+        for (int row = 0; row < value.matrixRows(); row++) {
+            stringBuilder.append(MATRIX_BEGIN);
+            for (int column = 0; column < value.matrixColumns(); column++) {
+                if (column > 0) {
+                    stringBuilder.append(LIST_SEPARATOR);
+                }
+                stringBuilder.append(formatNumber(value.matrixElement(row, column), numberDisplayFormat, decimalDisplayMode));
+            }
+            stringBuilder.append(MATRIX_END);
+        }
+
+        stringBuilder.append(MATRIX_END);
+
+        return stringBuilder.toString();
+    }
+
     @NotNull
     private static String formatComplex(@NotNull Complex complex, @NotNull NumberDisplayFormat numberDisplayFormat, @NotNull DecimalDisplayMode decimalDisplayMode) {
         StringBuilder stringBuilder = new StringBuilder();
@@ -30,7 +30,17 @@ import org.xlrnet.tibaija.exception.UndefinedVariableException;
  */
 public class Variables {
 
+    public static MatrixVariable resolveMatrixVariable(String variableName) {
+        if (variableName != null && variableName.length() == 3 && variableName.charAt(0) == '[' && variableName.charAt(2) == ']') {
+            return internalResolveVariableName(MatrixVariable.class, variableName.substring(1, 2));
+        }
+        throw new UndefinedVariableException(-1, -1, "Unknown variable name", variableName);
+    }
+
     public static NumberVariable resolveNumberVariable(String variableName) {
+        if (NumberVariable.THETA.getVariableName().equals(variableName)) {
+            return NumberVariable.THETA;
+        }
         return internalResolveVariableName(NumberVariable.class, variableName);
     }
 
@@ -0,0 +1,567 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.processor;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Minimal writer for JVM class files. It supports only the constant pool entries and instructions which are needed by
+ * the {@link ProgramCompiler}. Classes are written in class file version 49, so that their methods don't need any
+ * stack map frames and will be verified by type inference.
+ * <p/>
+ * All jumps are written with 32 bit offsets. The writer tracks the operand stack depth of straight-line code, i.e.
+ * the stack must be empty at every label.
+ */
+final class ClassFileWriter {
+
+    static final int ACC_PUBLIC = 0x0001;
+
+    static final int ACC_PRIVATE = 0x0002;
+
+    static final int ACC_PROTECTED = 0x0004;
+
+    static final int ACC_FINAL = 0x0010;
+
+    static final int ACC_SUPER = 0x0020;
+
+    private static final int CLASS_FILE_VERSION = 49;
+
+    private static final int MAX_UNSIGNED_SHORT = 0xFFFF;
+
+    private static final int CONSTANT_UTF8 = 1;
+
+    private static final int CONSTANT_INTEGER = 3;
+
+    private static final int CONSTANT_DOUBLE = 6;
+
+    private static final int CONSTANT_CLASS = 7;
+
+    private static final int CONSTANT_FIELD_REF = 9;
+
+    private static final int CONSTANT_METHOD_REF = 10;
+
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteVector constantPool = new ByteVector();
+
+    private final Map<String, Integer> constantIndices = new HashMap<>();
+
+    private final List<MethodWriter> methods = new ArrayList<>();
+
+    private final int access;
+
+    private final int thisClass;
+
+    private final int superClass;
+
+    private final int codeAttributeName;
+
+    private int constantCount = 1;
+
+    /**
+     * Creates a new class without interfaces and fields.
+     *
+     * @param access
+     *         The access flags of the class.
+     * @param className
+     *         The internal name of the class, e.g. <code>org/example/Foo</code>.
+     * @param superClassName
+     *         The internal name of the super class.
+     */
+    ClassFileWriter(int access, @NotNull String className, @NotNull String superClassName) {
+        this.access = access;
+        this.thisClass = classConstant(className);
+        this.superClass = classConstant(superClassName);
+        this.codeAttributeName = utf8Constant("Code");
+    }
+
+    /**
+     * Adds a new method to the class. The code of the method must be written with the returned writer before the class
+     * is converted to bytes.
+     *
+     * @param access
+     *         The access flags of the method.
+     * @param name
+     *         The name of the method.
+     * @param descriptor
+     *         The descriptor of the method.
+     * @param parameterSlots
+     *         The number of local variable slots which are used by the parameters, including <code>this</code>.
+     * @return a writer for the code of the new method.
+     */
+    @NotNull
+    MethodWriter addMethod(int access, @NotNull String name, @NotNull String descriptor, int parameterSlots) {
+        MethodWriter method = new MethodWriter(access, utf8Constant(name), utf8Constant(descriptor), parameterSlots);
+        this.methods.add(method);
+        return method;
+    }
+
+    /**
+     * Returns the binary representation of the class.
+     *
+     * @return the binary representation of the class.
+     * @throws IllegalStateException
+     *         if the class exceeds any of the class file limits.
+     */
+    @NotNull
+    byte[] toByteArray() {
+        if (this.constantCount > MAX_UNSIGNED_SHORT) {
+            throw new IllegalStateException("Too many constants in class: " + this.constantCount);
+        }
+        ByteVector out = new ByteVector();
+        out.putInt(0xCAFEBABE).putShort(0).putShort(CLASS_FILE_VERSION);
+        out.putShort(this.constantCount).putBytes(this.constantPool);
+        out.putShort(this.access).putShort(this.thisClass).putShort(this.superClass);
+        out.putShort(0);    // Interfaces
+        out.putShort(0);    // Fields
+        out.putShort(this.methods.size());
+        for (MethodWriter method : this.methods) {
+            method.writeTo(out);
+        }
+        out.putShort(0);    // Attributes
+        return out.toByteArray();
+    }
+
+    private int classConstant(@NotNull String internalName) {
+        int nameIndex = utf8Constant(internalName);
+        return constant("Class:" + internalName, pool -> pool.putByte(CONSTANT_CLASS).putShort(nameIndex));
+    }
+
+    private int constant(@NotNull String key, @NotNull Consumer<ByteVector> writer) {
+        Integer index = this.constantIndices.get(key);
+        if (index == null) {
+            index = this.constantCount++;
+            writer.accept(this.constantPool);
+            this.constantIndices.put(key, index);
+        }
+        return index;
+    }
+
+    private int doubleConstant(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+        String key = "Double:" + bits;
+        boolean newConstant = !this.constantIndices.containsKey(key);
+        int index = constant(key, pool -> pool.putByte(CONSTANT_DOUBLE).putInt((int) (bits >>> 32)).putInt((int) bits));
+        if (newConstant) {
+            this.constantCount++;   // Doubles take two entries in the constant pool
+        }
+        return index;
+    }
+
+    private int fieldConstant(@NotNull String owner, @NotNull String name, @NotNull String descriptor) {
+        int classIndex = classConstant(owner);
+        int nameAndTypeIndex = nameAndTypeConstant(name, descriptor);
+        return constant("Field:" + owner + "." + name + ":" + descriptor, pool -> pool.putByte(CONSTANT_FIELD_REF).putShort(classIndex).putShort(nameAndTypeIndex));
+    }
+
+    private int integerConstant(int value) {
+        return constant("Integer:" + value, pool -> pool.putByte(CONSTANT_INTEGER).putInt(value));
+    }
+
+    private int methodConstant(@NotNull String owner, @NotNull String name, @NotNull String descriptor) {
+        int classIndex = classConstant(owner);
+        int nameAndTypeIndex = nameAndTypeConstant(name, descriptor);
+        return constant("Method:" + owner + "." + name + descriptor, pool -> pool.putByte(CONSTANT_METHOD_REF).putShort(classIndex).putShort(nameAndTypeIndex));
+    }
+
+    private int nameAndTypeConstant(@NotNull String name, @NotNull String descriptor) {
+        int nameIndex = utf8Constant(name);
+        int descriptorIndex = utf8Constant(descriptor);
+        return constant("NameAndType:" + name + ":" + descriptor, pool -> pool.putByte(CONSTANT_NAME_AND_TYPE).putShort(nameIndex).putShort(descriptorIndex));
+    }
+
+    private int utf8Constant(@NotNull String value) {
+        return constant("Utf8:" + value, pool -> pool.putByte(CONSTANT_UTF8).putUtf8(value));
+    }
+
+    /**
+     * Returns the number of stack slots which are used by the arguments of the given method descriptor.
+     */
+    private static int getArgumentSlots(@NotNull String descriptor) {
+        int slots = 0;
+        int i = 1;
+        while (descriptor.charAt(i) != ')') {
+            char c = descriptor.charAt(i);
+            if (c == 'J' || c == 'D') {
+                slots += 2;
+                i++;
+            } else {
+                while (descriptor.charAt(i) == '[') {
+                    i++;
+                }
+                i = descriptor.charAt(i) == 'L' ? descriptor.indexOf(';', i) + 1 : i + 1;
+                slots++;
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * Returns the number of stack slots which are used by the return value of the given method descriptor.
+     */
+    private static int getReturnSlots(@NotNull String descriptor) {
+        char returnType = descriptor.charAt(descriptor.indexOf(')') + 1);
+        return returnType == 'V' ? 0 : returnType == 'J' || returnType == 'D' ? 2 : 1;
+    }
+
+    /**
+     * A position in the code of a method which can be used as a jump target.
+     */
+    static final class Label {
+
+        private int position = -1;
+
+        /** Pairs of the instruction position and the position of the offset which points to this label. */
+        private final List<int[]> references = new ArrayList<>();
+    }
+
+    /**
+     * Writer for the code of a single method.
+     */
+    final class MethodWriter {
+
+        private static final int ACONST_NULL = 0x01;
+
+        private static final int ICONST_0 = 0x03;
+
+        private static final int BIPUSH = 0x10;
+
+        private static final int SIPUSH = 0x11;
+
+        private static final int LDC_W = 0x13;
+
+        private static final int LDC2_W = 0x14;
+
+        private static final int ILOAD = 0x15;
+
+        private static final int ALOAD = 0x19;
+
+        private static final int ISTORE = 0x36;
+
+        private static final int AASTORE = 0x53;
+
+        private static final int DUP = 0x59;
+
+        private static final int TABLESWITCH = 0xaa;
+
+        private static final int IRETURN = 0xac;
+
+        private static final int RETURN = 0xb1;
+
+        private static final int PUTFIELD = 0xb5;
+
+        private static final int INVOKEVIRTUAL = 0xb6;
+
+        private static final int INVOKESPECIAL = 0xb7;
+
+        private static final int ANEWARRAY = 0xbd;
+
+        private static final int CHECKCAST = 0xc0;
+
+        private static final int GOTO_W = 0xc8;
+
+        private final int access;
+
+        private final int nameIndex;
+
+        private final int descriptorIndex;
+
+        private final ByteVector code = new ByteVector();
+
+        private final List<Label> labels = new ArrayList<>();
+
+        private int maxLocals;
+
+        private int stackSize;
+
+        private int maxStackSize;
+
+        private MethodWriter(int access, int nameIndex, int descriptorIndex, int parameterSlots) {
+            this.access = access;
+            this.nameIndex = nameIndex;
+            this.descriptorIndex = descriptorIndex;
+            this.maxLocals = parameterSlots;
+        }
+
+        MethodWriter arrayStore() {
+            return op(AASTORE, -3);
+        }
+
+        MethodWriter checkCast(@NotNull String internalName) {
+            op(CHECKCAST, 0);
+            this.code.putShort(classConstant(internalName));
+            return this;
+        }
+
+        MethodWriter dup() {
+            return op(DUP, 1);
+        }
+
+        /**
+         * Returns the number of bytes of code that have been written so far.
+         */
+        int getCodeLength() {
+            return this.code.length();
+        }
+
+        MethodWriter invokeSpecial(@NotNull String owner, @NotNull String name, @NotNull String descriptor) {
+            return invoke(INVOKESPECIAL, owner, name, descriptor);
+        }
+
+        MethodWriter invokeVirtual(@NotNull String owner, @NotNull String name, @NotNull String descriptor) {
+            return invoke(INVOKEVIRTUAL, owner, name, descriptor);
+        }
+
+        MethodWriter jump(@NotNull Label target) {
+            int position = this.code.length();
+            op(GOTO_W, 0);
+            reference(target, position);
+            return this;
+        }
+
+        MethodWriter loadInt(int local) {
+            return local(ILOAD, local, 1);
+        }
+
+        MethodWriter loadReference(int local) {
+            return local(ALOAD, local, 1);
+        }
+
+        /**
+         * Sets the position of the given label to the current end of the code.
+         */
+        MethodWriter mark(@NotNull Label label) {
+            if (label.position >= 0) {
+                throw new IllegalStateException("Label is already marked");
+            }
+            label.position = this.code.length();
+            this.labels.add(label);
+            return this;
+        }
+
+        MethodWriter newArray(@NotNull String internalName) {
+            op(ANEWARRAY, 0);
+            this.code.putShort(classConstant(internalName));
+            return this;
+        }
+
+        MethodWriter pushDouble(double value) {
+            op(LDC2_W, 2);
+            this.code.putShort(doubleConstant(value));
+            return this;
+        }
+
+        MethodWriter pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                return op(ICONST_0 + value, 1);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                op(BIPUSH, 1);
+                this.code.putByte(value);
+            } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+                op(SIPUSH, 1);
+                this.code.putShort(value);
+            } else {
+                op(LDC_W, 1);
+                this.code.putShort(integerConstant(value));
+            }
+            return this;
+        }
+
+        MethodWriter pushNull() {
+            return op(ACONST_NULL, 1);
+        }
+
+        MethodWriter putField(@NotNull String owner, @NotNull String name, @NotNull String descriptor) {
+            op(PUTFIELD, descriptor.equals("J") || descriptor.equals("D") ? -3 : -2);
+            this.code.putShort(fieldConstant(owner, name, descriptor));
+            return this;
+        }
+
+        MethodWriter returnInt() {
+            return op(IRETURN, -1);
+        }
+
+        MethodWriter returnVoid() {
+            return op(RETURN, 0);
+        }
+
+        MethodWriter storeInt(int local) {
+            return local(ISTORE, local, -1);
+        }
+
+        /**
+         * Jumps to the label at the index of the int on top of the stack, or to the default label if the value is not
+         * between zero and the number of labels.
+         */
+        MethodWriter tableSwitch(@NotNull Label defaultLabel, @NotNull Label... targets) {
+            return tableSwitch(0, defaultLabel, targets);
+        }
+
+        /**
+         * Jumps to the label at the index of the int on top of the stack minus the given lowest value, or to the
+         * default label if the value is not covered by the labels.
+         */
+        MethodWriter tableSwitch(int low, @NotNull Label defaultLabel, @NotNull Label... targets) {
+            int position = this.code.length();
+            op(TABLESWITCH, -1);
+            while (this.code.length() % 4 != 0) {
+                this.code.putByte(0);
+            }
+            reference(defaultLabel, position);
+            this.code.putInt(low).putInt(low + targets.length - 1);
+            for (Label target : targets) {
+                reference(target, position);
+            }
+            return this;
+        }
+
+        private MethodWriter invoke(int opcode, @NotNull String owner, @NotNull String name, @NotNull String descriptor) {
+            op(opcode, getReturnSlots(descriptor) - getArgumentSlots(descriptor) - 1);
+            this.code.putShort(methodConstant(owner, name, descriptor));
+            return this;
+        }
+
+        private MethodWriter local(int opcode, int local, int stackDelta) {
+            if (local > Byte.MAX_VALUE) {
+                throw new IllegalArgumentException("Local variable index too large: " + local);
+            }
+            op(opcode, stackDelta);
+            this.code.putByte(local);
+            this.maxLocals = Math.max(this.maxLocals, local + 1);
+            return this;
+        }
+
+        private MethodWriter op(int opcode, int stackDelta) {
+            this.code.putByte(opcode);
+            this.stackSize += stackDelta;
+            this.maxStackSize = Math.max(this.maxStackSize, this.stackSize);
+            return this;
+        }
+
+        private void reference(@NotNull Label target, int instructionPosition) {
+            target.references.add(new int[]{instructionPosition, this.code.length()});
+            this.code.putInt(0);
+        }
+
+        private void writeTo(@NotNull ByteVector out) {
+            int codeLength = this.code.length();
+            if (codeLength > MAX_UNSIGNED_SHORT) {
+                throw new IllegalStateException("Method too large: " + codeLength + " bytes");
+            }
+            for (Label label : this.labels) {
+                for (int[] reference : label.references) {
+                    this.code.setInt(reference[1], label.position - reference[0]);
+                }
+                label.references.clear();
+            }
+            out.putShort(this.access).putShort(this.nameIndex).putShort(this.descriptorIndex);
+            out.putShort(1);    // Attributes
+            out.putShort(codeAttributeName).putInt(12 + codeLength);
+            out.putShort(this.maxStackSize).putShort(this.maxLocals);
+            out.putInt(codeLength).putBytes(this.code);
+            out.putShort(0);    // Exception table
+            out.putShort(0);    // Attributes
+        }
+    }
+
+    /**
+     * Growable big-endian byte buffer.
+     */
+    private static final class ByteVector {
+
+        private byte[] data = new byte[256];
+
+        private int length;
+
+        int length() {
+            return this.length;
+        }
+
+        ByteVector putByte(int value) {
+            ensureCapacity(1);
+            this.data[this.length++] = (byte) value;
+            return this;
+        }
+
+        ByteVector putBytes(@NotNull ByteVector other) {
+            ensureCapacity(other.length);
+            System.arraycopy(other.data, 0, this.data, this.length, other.length);
+            this.length += other.length;
+            return this;
+        }
+
+        ByteVector putInt(int value) {
+            ensureCapacity(4);
+            setInt(this.length, value);
+            this.length += 4;
+            return this;
+        }
+
+        ByteVector putShort(int value) {
+            return putByte(value >>> 8).putByte(value);
+        }
+
+        /**
+         * Writes the given string in the modified UTF-8 encoding of class files.
+         */
+        ByteVector putUtf8(@NotNull String value) {
+            ByteVector bytes = new ByteVector();
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c >= 0x0001 && c <= 0x007F) {
+                    bytes.putByte(c);
+                } else if (c <= 0x07FF) {
+                    bytes.putByte(0xC0 | c >> 6).putByte(0x80 | c & 0x3F);
+                } else {
+                    bytes.putByte(0xE0 | c >> 12).putByte(0x80 | c >> 6 & 0x3F).putByte(0x80 | c & 0x3F);
+                }
+            }
+            return putShort(bytes.length).putBytes(bytes);
+        }
+
+        void setInt(int position, int value) {
+            this.data[position] = (byte) (value >>> 24);
+            this.data[position + 1] = (byte) (value >>> 16);
+            this.data[position + 2] = (byte) (value >>> 8);
+            this.data[position + 3] = (byte) value;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(this.data, this.length);
+        }
+
+        private void ensureCapacity(int additionalBytes) {
+            if (this.length + additionalBytes > this.data.length) {
+                this.data = Arrays.copyOf(this.data, Math.max(this.length + additionalBytes, this.data.length * 2));
+            }
+        }
+    }
+}
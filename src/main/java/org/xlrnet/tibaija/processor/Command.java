@@ -24,11 +24,15 @@ package org.xlrnet.tibaija.processor;
 
 import com.google.common.collect.ImmutableList;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.xlrnet.tibaija.commons.Value;
 import org.xlrnet.tibaija.exception.TIArgumentException;
+import org.xlrnet.tibaija.memory.CalculatorMemory;
 import org.xlrnet.tibaija.memory.Parameter;
 
 import java.util.Optional;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
 
 
 /**
@@ -72,14 +76,84 @@ public abstract class Command {
     @NotNull
     protected abstract Optional<Value> execute(@NotNull ImmutableList<Parameter> arguments);
 
+    /**
+     * Entry point for the direct calling convention with two values. The interpreter will call this method instead of
+     * {@link #execute(ImmutableList)} for all operators and expression functions with two value arguments if {@link
+     * #supportsDirectCall(int)} returns true for two arguments. In contrast to execute(), no parameter objects will be
+     * created and neither hasValidNumberOfArguments() nor hasValidArgumentValues() will be called - the implementation
+     * must check the types of the values itself.
+     *
+     * @param lhs
+     *         The first argument.
+     * @param rhs
+     *         The second argument.
+     * @return The result of the command.
+     */
+    @NotNull
+    protected Value executeBinary(@NotNull Value lhs, @NotNull Value rhs) {
+        throw new UnsupportedOperationException("Command doesn't support direct calls with two arguments");
+    }
+
+    /**
+     * Entry point for the direct calling convention with one value. The interpreter will call this method instead of
+     * {@link #execute(ImmutableList)} for all operators and expression functions with one value argument if {@link
+     * #supportsDirectCall(int)} returns true for one argument. In contrast to execute(), no parameter objects will be
+     * created and neither hasValidNumberOfArguments() nor hasValidArgumentValues() will be called - the implementation
+     * must check the type of the value itself.
+     *
+     * @param operand
+     *         The argument.
+     * @return The result of the command.
+     */
+    @NotNull
+    protected Value executeUnary(@NotNull Value operand) {
+        throw new UnsupportedOperationException("Command doesn't support direct calls with one argument");
+    }
+
     protected InternalExecutionEnvironment getEnvironment() {
         return this.environment;
     }
 
+    /**
+     * Returns the writable memory of the environment. It should only be used by commands which have to change
+     * variables while they are running, like seq( which assigns its variable before evaluating each element.
+     *
+     * @return The writable memory of the environment.
+     */
+    protected CalculatorMemory getWritableMemory() {
+        return this.environment.getWritableMemory();
+    }
+
     public void setEnvironment(InternalExecutionEnvironment environment) {
         this.environment = environment;
     }
 
+    /**
+     * <b>Can be overwritten</b> by the concrete commands to provide a specialization for two finite real numbers. Call
+     * sites which have only seen real operands will call it instead of {@link #executeBinary(Value, Value)}. The
+     * operation must return the same result as the command would return for the given operands or NaN if the operands
+     * must be handled by the regular entry points.
+     *
+     * @return An operation on two finite real numbers or null if the command has no such specialization.
+     */
+    @Nullable
+    protected DoubleBinaryOperator getRealBinaryOperation() {
+        return null;
+    }
+
+    /**
+     * <b>Can be overwritten</b> by the concrete commands to provide a specialization for a finite real number. Call
+     * sites which have only seen real operands will call it instead of {@link #executeUnary(Value)}. The operation
+     * must return the same result as the command would return for the given operand or NaN if the operand must be
+     * handled by the regular entry points.
+     *
+     * @return An operation on a finite real number or null if the command has no such specialization.
+     */
+    @Nullable
+    protected DoubleUnaryOperator getRealUnaryOperation() {
+        return null;
+    }
+
     /**
      * Can be overwritten by the concrete commands if at least the value of one parameter must be checked.
      * Checks all values of all passed parameters.
@@ -106,4 +180,29 @@ public abstract class Command {
         return true;
     }
 
+    /**
+     * <b>Can be overwritten</b> by the concrete commands whose result depends on nothing but their arguments and
+     * which don't have any side effects. Calls of pure commands with only constant arguments will be evaluated once
+     * when a program is loaded instead of every time they are reached.
+     *
+     * @return True if the command is pure.
+     */
+    protected boolean isPure() {
+        return false;
+    }
+
+    /**
+     * <b>Can be overwritten</b> by the concrete commands to opt in to the direct calling convention. If this method
+     * returns true for one or two arguments, {@link #executeUnary(Value)} or {@link #executeBinary(Value, Value)} must
+     * be implemented. Commands that are called with parameters other than values (e.g. variables) will always be
+     * called through {@link #execute(ImmutableList)}.
+     *
+     * @param numberOfArguments
+     *         Number of value arguments passed by the caller.
+     * @return True if the command can be called directly with the given number of values.
+     */
+    protected boolean supportsDirectCall(int numberOfArguments) {
+        return false;
+    }
+
 }
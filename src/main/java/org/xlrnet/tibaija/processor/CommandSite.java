@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.processor;
+
+import com.google.common.base.MoreObjects;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xlrnet.tibaija.exception.CommandNotFoundException;
+
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * A single place in a compiled program where a registered {@link Command} is called - i.e. an operator, an expression
+ * function, a command function or a command statement. After a program has been loaded, all sites are bound to the
+ * command instances of the environment by {@link InternalExecutionEnvironment#bindCommands(ExecutableProgram)}, so
+ * that commands don't have to be looked up by their name on every call.
+ * <p/>
+ * A site that could not be bound or that was bound in another environment will be resolved again when it is called.
+ * If the command can't be found at that time, a {@link CommandNotFoundException} will be thrown.
+ * <p/>
+ * Sites of operators also collect type feedback: a site that has only seen finite real operands specializes itself to
+ * the real-only operation of its command (see {@link Command#getRealBinaryOperation()}). As soon as any other operand
+ * shows up, the site falls back to the generic entry points of the command for good.
+ */
+final class CommandSite {
+
+    private final Kind kind;
+
+    private final String commandName;
+
+    private final int line;
+
+    private final int charIndex;
+
+    private Command command;
+
+    private Specialization specialization = Specialization.UNINITIALIZED;
+
+    private DoubleBinaryOperator realBinaryOperation;
+
+    private DoubleUnaryOperator realUnaryOperation;
+
+    CommandSite(@NotNull Kind kind, @NotNull String commandName, int line, int charIndex) {
+        this.kind = kind;
+        this.commandName = commandName;
+        this.line = line;
+        this.charIndex = charIndex;
+    }
+
+    /**
+     * Binds this site to the given command. Passing null will unbind the site.
+     *
+     * @param command
+     *         The command to which this site should be bound.
+     */
+    void bind(@Nullable Command command) {
+        this.command = command;
+        this.specialization = Specialization.UNINITIALIZED;
+        this.realBinaryOperation = null;
+        this.realUnaryOperation = null;
+    }
+
+    /**
+     * Falls back to the generic entry points of the command for all further calls.
+     */
+    void generalize() {
+        this.specialization = Specialization.GENERIC;
+        this.realBinaryOperation = null;
+        this.realUnaryOperation = null;
+    }
+
+    /**
+     * Returns the command to which this site is currently bound.
+     *
+     * @return the command to which this site is currently bound or null if the site is not bound.
+     */
+    @Nullable
+    Command getCommand() {
+        return command;
+    }
+
+    @NotNull
+    String getCommandName() {
+        return commandName;
+    }
+
+    @NotNull
+    Kind getKind() {
+        return kind;
+    }
+
+    int getCharIndex() {
+        return charIndex;
+    }
+
+    int getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the real-only operation of the bound command if this site is specialized for two real operands.
+     *
+     * @return the real-only operation of the bound command.
+     */
+    DoubleBinaryOperator getRealBinaryOperation() {
+        return realBinaryOperation;
+    }
+
+    /**
+     * Returns the real-only operation of the bound command if this site is specialized for one real operand.
+     *
+     * @return the real-only operation of the bound command.
+     */
+    DoubleUnaryOperator getRealUnaryOperation() {
+        return realUnaryOperation;
+    }
+
+    @NotNull
+    Specialization getSpecialization() {
+        return specialization;
+    }
+
+    /**
+     * Returns true if this site is currently bound to a command.
+     *
+     * @return true if this site is currently bound to a command.
+     */
+    boolean isBound() {
+        return command != null;
+    }
+
+    /**
+     * Returns the command which should be called at this site in the given environment. If the site is not bound to a
+     * command of the given environment, the command will be looked up once and the site will be bound to it.
+     *
+     * @param environment
+     *         The environment in which the command should be called.
+     * @return the command which should be called at this site.
+     * @throws CommandNotFoundException
+     *         if no matching command is registered in the environment.
+     */
+    @NotNull
+    Command resolve(@NotNull InternalExecutionEnvironment environment) throws CommandNotFoundException {
+        Command boundCommand = this.command;
+        if (boundCommand == null || boundCommand.getEnvironment() != environment) {
+            boundCommand = environment.lookupCommand(this.kind, this.commandName);
+            if (boundCommand == null) {
+                throw new CommandNotFoundException(this.line, this.charIndex, this.commandName);
+            }
+            bind(boundCommand);
+        }
+        return boundCommand;
+    }
+
+    /**
+     * Specializes this site based on the operands of its first call. If all operands were finite real numbers and the
+     * command provides a real-only operation for the given number of operands, the site will use it for all following
+     * calls. Otherwise the site will always use the generic entry points.
+     *
+     * @param numberOfArguments
+     *         Number of operands of the first call.
+     * @param realOperands
+     *         True if all operands were finite real numbers.
+     */
+    void specialize(int numberOfArguments, boolean realOperands) {
+        if (realOperands && numberOfArguments == 2) {
+            this.realBinaryOperation = this.command.getRealBinaryOperation();
+        } else if (realOperands && numberOfArguments == 1) {
+            this.realUnaryOperation = this.command.getRealUnaryOperation();
+        }
+
+        if (this.realBinaryOperation != null || this.realUnaryOperation != null) {
+            this.specialization = Specialization.REAL;
+        } else {
+            this.specialization = Specialization.GENERIC;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("kind", this.kind)
+                .add("commandName", this.commandName)
+                .add("line", this.line)
+                .add("charIndex", this.charIndex)
+                .add("bound", isBound())
+                .add("specialization", this.specialization)
+                .toString();
+    }
+
+    /**
+     * State of the type feedback of a site.
+     */
+    enum Specialization {
+        /** The site has not been called yet. */
+        UNINITIALIZED,
+
+        /** The site has only seen finite real operands and uses the real-only operation of its command. */
+        REAL,
+
+        /** The site uses the generic entry points of its command. */
+        GENERIC
+    }
+
+    /**
+     * The kind of command that is called at a site. Each kind has its own namespace in the environment.
+     */
+    enum Kind {
+        /** Operators and functions that may be used inside of expressions, e.g. "+" or "nCr". */
+        EXPRESSION_FUNCTION,
+
+        /** Functions that may only be used as a whole command, e.g. "Disp(". */
+        COMMAND_FUNCTION,
+
+        /** Statements that may only be used as a whole command without parentheses. */
+        COMMAND_STATEMENT
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.processor;
+
+import org.apache.commons.math3.complex.Complex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.xlrnet.tibaija.commons.ComplexMath;
+import org.xlrnet.tibaija.commons.Value;
+import org.xlrnet.tibaija.exception.TIStopException;
+import org.xlrnet.tibaija.memory.*;
+
+import java.util.Arrays;
+
+/**
+ * Base class of all programs that were compiled to JVM classes by the {@link ProgramCompiler}. The generated class
+ * contains one block of bytecode per command of the program, which are split into segment methods that are small
+ * enough for the JIT. Its implementation of {@link #execute(int)} calls the segment of the current command until the
+ * program is left. Expressions are evaluated on the JVM operand stack and all other work is done by calling the
+ * helper methods of this class, which operate on the memory and the commands of the environment. Control flow statements are still handled by the {@link
+ * InstructionInterpreter} that runs the program, so that both share the same block stack.
+ * <p/>
+ * Operator calls at sites that were specialized to real operands (see {@link CommandSite}) may be compiled to
+ * arithmetic on primitive doubles. Such code is guarded: if a variable doesn't hold a finite real number, a site has
+ * been generalized or an operation doesn't yield a real result, the program is deoptimized. Execution then stops
+ * before the command which failed, so that the interpreter can execute it again. This is only done for commands
+ * without side effects before the guard, i.e. for commands which call only pure commands.
+ * <p/>
+ * The generated class is defined by its own class loader and is therefore not part of this package at runtime. All
+ * members which are used by the generated code must be protected.
+ */
+public abstract class CompiledProgram implements Cloneable {
+
+    private InstructionInterpreter interpreter;
+
+    private ReadOnlyCalculatorMemory memory;
+
+    private Instruction[] instructions;
+
+    private JumpTable jumpTable;
+
+    private Object[] constants;
+
+    /** Index of the first command in each generated segment method. */
+    private int[] segmentStarts;
+
+    /** Index of the command with specialized code which is currently executed. Set by the generated code. */
+    protected int specializedCommand;
+
+    protected CompiledProgram() {
+    }
+
+    /**
+     * Initializes the prototype of a compiled program after its class has been generated.
+     *
+     * @param program
+     *         The program from which the class was generated.
+     * @param constants
+     *         All constants which are referenced by the generated code.
+     * @param segmentStarts
+     *         Index of the first command in each generated segment method.
+     */
+    final void initialize(@NotNull ExecutableProgram program, @NotNull Object[] constants, @NotNull int[] segmentStarts) {
+        this.instructions = program.getLoadedInstructions();
+        this.jumpTable = program.getJumpTable();
+        this.constants = constants;
+        this.segmentStarts = segmentStarts;
+    }
+
+    /**
+     * Creates a copy of this program that is executed by the given interpreter.
+     *
+     * @param interpreter
+     *         The interpreter which runs the program.
+     * @return a copy of this program that is executed by the given interpreter.
+     */
+    @NotNull
+    final CompiledProgram newInstance(@NotNull InstructionInterpreter interpreter) {
+        try {
+            CompiledProgram copy = (CompiledProgram) clone();
+            copy.interpreter = interpreter;
+            copy.memory = interpreter.getEnvironment().getMemory();
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("Internal error: compiled program can't be copied", e);
+        }
+    }
+
+    /**
+     * Runs the program starting at the given command until the end of the program is reached, until a command is
+     * reached that hasn't been parsed yet or until the program has to be deoptimized.
+     *
+     * @param commandIndex
+     *         The index of the first command to execute.
+     * @return the number of commands if the program ran to its end, the index of the command which hasn't been parsed
+     * yet or the index of the command at which the program was deoptimized.
+     */
+    final int run(int commandIndex) {
+        try {
+            int nextCommand = execute(commandIndex);
+            return nextCommand < 0 ? ~nextCommand : nextCommand;
+        } catch (DeoptimizationException e) {
+            return this.specializedCommand;
+        }
+    }
+
+    /**
+     * Executes the program starting at the given command. Implemented by the generated class.
+     *
+     * @param commandIndex
+     *         The index of the first command to execute.
+     * @return the number of commands when the program ran to its end or the complement of the index of a command which
+     * hasn't been parsed yet.
+     */
+    protected abstract int execute(int commandIndex);
+
+    /**
+     * Returns the index of the generated segment method which contains the given command or -1 if the index is not a
+     * command of the program, i.e. if the compiled code has to be left.
+     */
+    protected final int segmentOf(int commandIndex) {
+        if (commandIndex < 0 || commandIndex >= this.instructions.length) {
+            return -1;
+        }
+        int segment = Arrays.binarySearch(this.segmentStarts, commandIndex);
+        return segment >= 0 ? segment : -segment - 2;
+    }
+
+    /**
+     * Applies the real-only operation of a unary operator site.
+     *
+     * @throws DeoptimizationException
+     *         if the site is not specialized to real operands anymore or the operation failed.
+     */
+    protected final double applyRealOperator(int siteIndex, double operand) {
+        CommandSite site = resolveRealSite(siteIndex);
+        if (!Double.isFinite(operand)) {
+            throw DeoptimizationException.INSTANCE;
+        }
+        return checkRealResult(site.getRealUnaryOperation().applyAsDouble(operand));
+    }
+
+    /**
+     * Applies the real-only operation of a binary operator site.
+     *
+     * @throws DeoptimizationException
+     *         if the site is not specialized to real operands anymore or the operation failed.
+     */
+    protected final double applyRealOperator(int siteIndex, double left, double right) {
+        CommandSite site = resolveRealSite(siteIndex);
+        if (!Double.isFinite(left) || !Double.isFinite(right)) {
+            throw DeoptimizationException.INSTANCE;
+        }
+        return checkRealResult(site.getRealBinaryOperation().applyAsDouble(left, right));
+    }
+
+    protected final void callCommand(int commandIndex, @NotNull Parameter[] arguments) {
+        this.interpreter.callCommand((CommandSite) this.instructions[commandIndex].getTarget(), arguments);
+    }
+
+    @NotNull
+    protected final Value callFunction(int siteIndex, @NotNull Parameter[] arguments) {
+        return this.interpreter.callCommand((CommandSite) this.constants[siteIndex], arguments).get();
+    }
+
+    @NotNull
+    protected final Value callOperator(int siteIndex, @NotNull Value operand) {
+        return this.interpreter.callOperator((CommandSite) this.constants[siteIndex], operand);
+    }
+
+    @NotNull
+    protected final Value callOperator(int siteIndex, @NotNull Value left, @NotNull Value right) {
+        return this.interpreter.callOperator((CommandSite) this.constants[siteIndex], left, right);
+    }
+
+    @NotNull
+    protected final Value callOperator(int siteIndex, @NotNull Value[] operands) {
+        return this.interpreter.callOperator((CommandSite) this.constants[siteIndex], operands);
+    }
+
+    @NotNull
+    protected final Object constant(int index) {
+        return this.constants[index];
+    }
+
+    /**
+     * Executes the control flow statement at the given index.
+     *
+     * @param commandIndex
+     *         The index of the control flow statement.
+     * @param condition
+     *         The already evaluated condition of the statement or null if the interpreter should evaluate it.
+     * @return the index of the next command to execute.
+     */
+    protected final int controlFlow(int commandIndex, @Nullable Value condition) {
+        return this.interpreter.executeControlFlow(commandIndex, this.instructions, this.jumpTable, condition);
+    }
+
+    @NotNull
+    protected final Value loadLastResult() {
+        return this.memory.getLastResult();
+    }
+
+    @NotNull
+    protected final Value loadListElement(int variableIndex, @NotNull Value index, int line, int charIndex) {
+        int indexValue = InstructionInterpreter.toIntegerIndex(index, line, charIndex);
+        return this.memory.getListVariableElementValue((ListVariable) this.constants[variableIndex], indexValue);
+    }
+
+    @NotNull
+    protected final Value loadListVariable(int variableIndex) {
+        return this.memory.getListVariableValue((ListVariable) this.constants[variableIndex]);
+    }
+
+    @NotNull
+    protected final Value loadMatrixElement(int variableIndex, @NotNull Value row, @NotNull Value column, int line, int charIndex) {
+        int rowValue = InstructionInterpreter.toIntegerIndex(row, line, charIndex);
+        int columnValue = InstructionInterpreter.toIntegerIndex(column, line, charIndex);
+        return this.memory.getMatrixVariableElementValue((MatrixVariable) this.constants[variableIndex], rowValue, columnValue);
+    }
+
+    @NotNull
+    protected final Value loadMatrixVariable(int variableIndex) {
+        return this.memory.getMatrixVariableValue((MatrixVariable) this.constants[variableIndex]);
+    }
+
+    @NotNull
+    protected final Value loadNumberVariable(int variableIndex) {
+        return this.memory.getNumberVariableValue((NumberVariable) this.constants[variableIndex]);
+    }
+
+    /**
+     * Loads the value of a number variable which is expected to be a finite real number.
+     *
+     * @throws DeoptimizationException
+     *         if the variable doesn't hold a finite real number.
+     */
+    protected final double loadRealVariable(int variableIndex) {
+        Value value = this.memory.getNumberVariableValue((NumberVariable) this.constants[variableIndex]);
+        if (!value.isFiniteReal()) {
+            throw DeoptimizationException.INSTANCE;
+        }
+        return value.realPart();
+    }
+
+    @NotNull
+    protected final Value loadStringVariable(int variableIndex) {
+        return this.memory.getStringVariableValue((StringVariable) this.constants[variableIndex]);
+    }
+
+    @NotNull
+    protected final Value multiplyComplex(@NotNull Value value, int factorIndex) {
+        return ComplexMath.multiply(value, (Complex) this.constants[factorIndex]);
+    }
+
+    @NotNull
+    protected final Value newList(@NotNull Value[] elements) {
+        return Value.listOf(elements);
+    }
+
+    @NotNull
+    protected final Value newMatrix(int columns, @NotNull Value[] elements) {
+        return Value.matrixOf(columns, elements);
+    }
+
+    @NotNull
+    protected final Value realValue(double value) {
+        return Value.of(value);
+    }
+
+    protected final void stop(int commandIndex) {
+        Instruction instruction = this.instructions[commandIndex];
+        throw new TIStopException(instruction.getLine(), instruction.getCharIndex());
+    }
+
+    /**
+     * Stores the result of an expression or store command and sets it as the last result.
+     *
+     * @param commandIndex
+     *         The index of the command.
+     * @param value
+     *         The value to store.
+     * @param index
+     *         The index of a list element to store or null if the command doesn't store a list element.
+     */
+    protected final void store(int commandIndex, @NotNull Value value, @Nullable Value index) {
+        this.interpreter.store(this.instructions[commandIndex], value, index);
+    }
+
+    @NotNull
+    protected final Parameter valueParameter(@NotNull Value value) {
+        return Parameter.value(value);
+    }
+
+    @NotNull
+    protected final Parameter variableParameter(int variableIndex) {
+        return Parameter.variable((Variable) this.constants[variableIndex], this.memory);
+    }
+
+    @NotNull
+    protected final Parameter expressionParameter(int expressionIndex) {
+        ExpressionCode expression = (ExpressionCode) this.constants[expressionIndex];
+        return Parameter.expression(() -> this.interpreter.evaluateValue(expression));
+    }
+
+    @NotNull
+    private CommandSite resolveRealSite(int siteIndex) {
+        CommandSite site = (CommandSite) this.constants[siteIndex];
+        site.resolve(this.interpreter.getEnvironment());
+        if (site.getSpecialization() != CommandSite.Specialization.REAL) {
+            throw DeoptimizationException.INSTANCE;
+        }
+        return site;
+    }
+
+    private static double checkRealResult(double result) {
+        if (Double.isNaN(result)) {
+            throw DeoptimizationException.INSTANCE;
+        }
+        return result;
+    }
+
+    /**
+     * Signals that a type assumption of specialized code failed. The exception doesn't carry any state and is always
+     * the same instance.
+     */
+    static final class DeoptimizationException extends RuntimeException {
+
+        private static final DeoptimizationException INSTANCE = new DeoptimizationException();
+
+        private DeoptimizationException() {
+            super("Deoptimization", null, false, false);
+        }
+    }
+}
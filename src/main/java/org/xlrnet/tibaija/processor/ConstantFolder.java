@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.processor;
+
+import org.apache.commons.math3.complex.Complex;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlrnet.tibaija.commons.ComplexMath;
+import org.xlrnet.tibaija.commons.Value;
+import org.xlrnet.tibaija.memory.ListVariable;
+import org.xlrnet.tibaija.memory.MatrixVariable;
+import org.xlrnet.tibaija.memory.Parameter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Folds constant subexpressions of an {@link ExpressionCode} into single constants. Calls of pure commands (see {@link
+ * Command#isPure()}) with only constant arguments, lists and matrices of constants and multiplications of constants
+ * with imaginary factors will be evaluated once when the program is loaded instead of on every evaluation.
+ * <p/>
+ * If evaluating a constant subexpression fails, it will be left untouched so that the error will be raised when (and
+ * if) the expression is actually evaluated.
+ */
+final class ConstantFolder {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConstantFolder.class);
+
+    private final InternalExecutionEnvironment environment;
+
+    private final ExpressionEmitter emitter = new ExpressionEmitter();
+
+    /** Constants which have been read but not emitted yet. These are always the topmost elements of the stack. */
+    private final List<Value> pendingConstants = new ArrayList<>();
+
+    private int foldedOperations;
+
+    private ConstantFolder(@NotNull InternalExecutionEnvironment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Folds all constant subexpressions of the given expression. The command sites of the expression must already be
+     * bound to the given environment.
+     *
+     * @param expression
+     *         The expression to fold.
+     * @param environment
+     *         The environment whose commands will be used for evaluating constant subexpressions.
+     * @return A new expression with all constant subexpressions folded or the given expression if nothing could be
+     * folded.
+     */
+    @NotNull
+    static ExpressionCode fold(@NotNull ExpressionCode expression, @NotNull InternalExecutionEnvironment environment) {
+        return new ConstantFolder(environment).foldExpression(expression);
+    }
+
+    @NotNull
+    private ExpressionCode foldExpression(@NotNull ExpressionCode expression) {
+        final int[] code = expression.getCode();
+        final Object[] constants = expression.getConstants();
+        int pc = 0;
+
+        while (pc < code.length) {
+            int opcode = code[pc++];
+            switch (opcode) {
+                case ExpressionCode.PUSH_CONSTANT:
+                    this.pendingConstants.add((Value) constants[code[pc++]]);
+                    break;
+                case ExpressionCode.CALL_OPERATOR: {
+                    CommandSite site = (CommandSite) constants[code[pc++]];
+                    int numberOfArguments = code[pc++];
+                    if (!tryFoldCall(site, numberOfArguments)) {
+                        flushPendingConstants();
+                        this.emitter.emitCall(opcode, site, numberOfArguments);
+                    }
+                    break;
+                }
+                case ExpressionCode.NEW_LIST: {
+                    int numberOfElements = code[pc++];
+                    if (!tryFoldList(numberOfElements)) {
+                        flushPendingConstants();
+                        this.emitter.emitNewList(numberOfElements);
+                    }
+                    break;
+                }
+                case ExpressionCode.NEW_MATRIX: {
+                    int rows = code[pc++];
+                    int columns = code[pc++];
+                    if (!tryFoldMatrix(rows, columns)) {
+                        flushPendingConstants();
+                        this.emitter.emitNewMatrix(rows, columns);
+                    }
+                    break;
+                }
+                case ExpressionCode.MULTIPLY_COMPLEX: {
+                    Complex factor = (Complex) constants[code[pc++]];
+                    if (!tryFoldComplexMultiplication(factor)) {
+                        flushPendingConstants();
+                        this.emitter.emitWithConstant(opcode, factor);
+                    }
+                    break;
+                }
+                case ExpressionCode.CALL_FUNCTION:
+                    flushPendingConstants();
+                    this.emitter.emitCall(opcode, (CommandSite) constants[code[pc++]], code[pc++]);
+                    break;
+                case ExpressionCode.LOAD_LIST_ELEMENT:
+                    flushPendingConstants();
+                    this.emitter.emitListElement((ListVariable) constants[code[pc++]], code[pc++], code[pc++]);
+                    break;
+                case ExpressionCode.LOAD_MATRIX_ELEMENT:
+                    flushPendingConstants();
+                    this.emitter.emitMatrixElement((MatrixVariable) constants[code[pc++]], code[pc++], code[pc++]);
+                    break;
+                case ExpressionCode.LOAD_LAST_RESULT:
+                case ExpressionCode.VALUE_PARAMETER:
+                    flushPendingConstants();
+                    this.emitter.emit(opcode);
+                    break;
+                case ExpressionCode.EXPRESSION_PARAMETER: {
+                    ExpressionCode nestedExpression = (ExpressionCode) constants[code[pc++]];
+                    ExpressionCode foldedExpression = fold(nestedExpression, this.environment);
+                    if (foldedExpression != nestedExpression) {
+                        this.foldedOperations++;
+                    }
+                    flushPendingConstants();
+                    this.emitter.emitWithConstant(opcode, foldedExpression);
+                    break;
+                }
+                case ExpressionCode.LOAD_NUMBER_VARIABLE:
+                case ExpressionCode.LOAD_STRING_VARIABLE:
+                case ExpressionCode.LOAD_LIST_VARIABLE:
+                case ExpressionCode.LOAD_MATRIX_VARIABLE:
+                case ExpressionCode.VARIABLE_PARAMETER:
+                    flushPendingConstants();
+                    this.emitter.emitWithConstant(opcode, constants[code[pc++]]);
+                    break;
+                default:
+                    throw new IllegalStateException("Internal error: illegal opcode " + opcode);
+            }
+        }
+        flushPendingConstants();
+
+        if (this.foldedOperations == 0) {
+            return expression;
+        }
+        LOGGER.trace("Folded {} constant operations", this.foldedOperations);
+        return this.emitter.toExpressionCode();
+    }
+
+    private void flushPendingConstants() {
+        for (Value constant : this.pendingConstants) {
+            this.emitter.emitConstant(constant);
+        }
+        this.pendingConstants.clear();
+    }
+
+    /**
+     * Replaces the topmost pending constants with the given result of an operation.
+     */
+    private void replacePendingConstants(int numberOfConstants, @NotNull Value result) {
+        int size = this.pendingConstants.size();
+        this.pendingConstants.subList(size - numberOfConstants, size).clear();
+        this.pendingConstants.add(result);
+        this.foldedOperations++;
+    }
+
+    private boolean tryFoldCall(@NotNull CommandSite site, int numberOfArguments) {
+        if (this.pendingConstants.size() < numberOfArguments || !site.isBound()) {
+            return false;
+        }
+        Command command = site.resolve(this.environment);
+        if (!command.isPure()) {
+            return false;
+        }
+
+        int size = this.pendingConstants.size();
+        List<Value> arguments = this.pendingConstants.subList(size - numberOfArguments, size);
+        Value result;
+        try {
+            if (numberOfArguments == 2 && command.supportsDirectCall(2)) {
+                result = command.executeBinary(arguments.get(0), arguments.get(1));
+            } else if (numberOfArguments == 1 && command.supportsDirectCall(1)) {
+                result = command.executeUnary(arguments.get(0));
+            } else {
+                Parameter[] parameters = new Parameter[numberOfArguments];
+                for (int i = 0; i < numberOfArguments; i++) {
+                    parameters[i] = Parameter.value(arguments.get(i));
+                }
+                result = this.environment.internalExecuteCommand(command, parameters).get();
+            }
+        } catch (RuntimeException e) {
+            LOGGER.trace("Not folding call of {}: {}", site.getCommandName(), e.getMessage());
+            return false;
+        }
+
+        replacePendingConstants(numberOfArguments, result);
+        return true;
+    }
+
+    private boolean tryFoldComplexMultiplication(@NotNull Complex factor) {
+        if (this.pendingConstants.isEmpty()) {
+            return false;
+        }
+
+        Value result;
+        try {
+            result = ComplexMath.multiply(this.pendingConstants.get(this.pendingConstants.size() - 1), factor);
+        } catch (RuntimeException e) {
+            LOGGER.trace("Not folding complex multiplication: {}", e.getMessage());
+            return false;
+        }
+
+        replacePendingConstants(1, result);
+        return true;
+    }
+
+    private boolean tryFoldList(int numberOfElements) {
+        if (this.pendingConstants.size() < numberOfElements) {
+            return false;
+        }
+
+        int size = this.pendingConstants.size();
+        Value result;
+        try {
+            List<Value> elements = this.pendingConstants.subList(size - numberOfElements, size);
+            result = Value.listOf(elements.toArray(new Value[numberOfElements]));
+        } catch (RuntimeException e) {
+            LOGGER.trace("Not folding list: {}", e.getMessage());
+            return false;
+        }
+
+        replacePendingConstants(numberOfElements, result);
+        return true;
+    }
+
+    private boolean tryFoldMatrix(int rows, int columns) {
+        int numberOfElements = rows * columns;
+        if (this.pendingConstants.size() < numberOfElements) {
+            return false;
+        }
+
+        int size = this.pendingConstants.size();
+        Value result;
+        try {
+            List<Value> elements = this.pendingConstants.subList(size - numberOfElements, size);
+            result = Value.matrixOf(columns, elements.toArray(new Value[numberOfElements]));
+        } catch (RuntimeException e) {
+            LOGGER.trace("Not folding matrix: {}", e.getMessage());
+            return false;
+        }
+
+        replacePendingConstants(numberOfElements, result);
+        return true;
+    }
+}
@@ -48,10 +48,25 @@ public class ContextUtil {
      * @return The numerical value as a complex object.
      */
     public static Value extractValueFromNumberContext(TIBasicParser.NumberContext ctx) {
-        boolean isNegative = !isNull(ctx.NEGATIVE_MINUS());
-        boolean isDecimal = !isNull(ctx.DOT());
-        String preDecimal = (StringUtils.isNotEmpty(ctx.preDecimal)) ? ctx.preDecimal : "0";
-        String decimal = (StringUtils.isNotEmpty(ctx.decimal)) ? ctx.decimal : "0";
+        return toNumberValue(!isNull(ctx.NEGATIVE_MINUS()), !isNull(ctx.DOT()), ctx.preDecimal, ctx.decimal);
+    }
+
+    /**
+     * Creates the numerical value of a number literal from its parts.
+     *
+     * @param isNegative
+     *         True if the literal has a leading negative minus.
+     * @param isDecimal
+     *         True if the literal contains a decimal point.
+     * @param preDecimal
+     *         The digits before the decimal point or null if there are none.
+     * @param decimal
+     *         The digits after the decimal point or all digits if the literal has no decimal point.
+     * @return The numerical value as a complex object.
+     */
+    public static Value toNumberValue(boolean isNegative, boolean isDecimal, String preDecimal, String decimal) {
+        preDecimal = (StringUtils.isNotEmpty(preDecimal)) ? preDecimal : "0";
+        decimal = (StringUtils.isNotEmpty(decimal)) ? decimal : "0";
 
         BigDecimal value;
         if (isDecimal) {
@@ -22,16 +22,22 @@
 
 package org.xlrnet.tibaija.processor;
 
+import org.jetbrains.annotations.NotNull;
 import org.xlrnet.tibaija.antlr.TIBasicParser;
 import org.xlrnet.tibaija.exception.LabelNotFoundException;
+import org.xlrnet.tibaija.exception.PreprocessException;
 
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * A container that contains parsed TI-Basic program code.
  * <p/>
  * It provides access to a list of all commands in the whole program and must provide the list of commands after each
  * label in the code to allow fast goto-execution.
+ * <p/>
+ * If the program has been preprocessed with {@link FrontEnd#LAZY}, its commands will be parsed on demand and the
+ * parsed instructions are cached in this program.
  */
 public class ExecutableProgram {
 
@@ -43,6 +49,24 @@ public class ExecutableProgram {
 
     private Map<String, Integer> internalLabelMap;
 
+    private Instruction[] instructions;
+
+    private JumpTable jumpTable;
+
+    private boolean compilationAttempted;
+
+    private CompiledProgram compiledProgram;
+
+    private int deoptimizationCount;
+
+    /** Parser for the commands which haven't been parsed yet or null if all commands have been parsed. */
+    private RecursiveDescentParser deferredCommandParser;
+
+    private int deferredCommandCount;
+
+    /** Callback which prepares every deferred instruction after it has been parsed. */
+    private Consumer<Instruction> deferredInstructionHandler;
+
     public Integer getLabelJumpTarget(String labelName) throws LabelNotFoundException {
         Integer targetCommand = this.internalLabelMap.get(labelName);
         if (targetCommand == null)
@@ -50,6 +74,179 @@ public class ExecutableProgram {
         return targetCommand;
     }
 
+    /**
+     * Returns the compiled instructions of this program. Each instruction represents exactly one command of the
+     * program. Commands which haven't been parsed yet will be parsed before.
+     *
+     * @return the compiled instructions of this program.
+     * @throws PreprocessException
+     *         Will be thrown if a command which hasn't been parsed yet contains a syntax error.
+     * @throws LabelNotFoundException
+     *         Will be thrown if a Goto command which hasn't been parsed yet refers to an undefined label.
+     */
+    public Instruction[] getInstructions() throws PreprocessException, LabelNotFoundException {
+        if (this.deferredCommandParser != null) {
+            for (int i = 0; i < this.instructions.length; i++) {
+                parseDeferredCommand(i);
+            }
+        }
+        return this.instructions;
+    }
+
+    /**
+     * Returns the instructions of this program without parsing any commands. Commands which haven't been parsed yet
+     * are represented by placeholders (see {@link Instruction#isDeferred()}) which will be replaced in the returned
+     * array by {@link #parseDeferredCommand(int)}.
+     *
+     * @return the instructions of this program including placeholders.
+     */
+    Instruction[] getLoadedInstructions() {
+        return this.instructions;
+    }
+
+    /**
+     * Parses the command at the given index if it hasn't been parsed yet and returns its instruction.
+     *
+     * @param commandIndex
+     *         Index of the command.
+     * @return the instruction of the command.
+     * @throws PreprocessException
+     *         Will be thrown if the command contains a syntax error.
+     * @throws LabelNotFoundException
+     *         Will be thrown if the command is a Goto to an undefined label.
+     */
+    @NotNull
+    synchronized Instruction parseDeferredCommand(int commandIndex) throws PreprocessException, LabelNotFoundException {
+        Instruction instruction = this.instructions[commandIndex];
+        if (!instruction.isDeferred()) {
+            return instruction;
+        }
+
+        instruction = this.deferredCommandParser.parseDeferredCommand(commandIndex);
+        if (this.deferredInstructionHandler != null) {
+            this.deferredInstructionHandler.accept(instruction);
+        }
+        this.instructions[commandIndex] = instruction;
+        if (this.compilationAttempted) {
+            // Compiled code leaves the program at every deferred command, so it will be compiled again with this one
+            this.compiledProgram = null;
+            this.compilationAttempted = false;
+        }
+        if (--this.deferredCommandCount == 0) {
+            // The parser keeps a reference to the whole source which is not needed anymore
+            this.deferredCommandParser = null;
+        }
+        return instruction;
+    }
+
+    /**
+     * Returns true if the program contains commands which haven't been parsed yet.
+     *
+     * @return true if the program contains commands which haven't been parsed yet.
+     */
+    boolean hasDeferredCommands() {
+        return this.deferredCommandParser != null;
+    }
+
+    /**
+     * Sets the parser for all placeholders in the instructions of this program. The instructions must have been set
+     * before.
+     *
+     * @param deferredCommandParser
+     *         The parser which has scanned the program.
+     */
+    void setDeferredCommandParser(@NotNull RecursiveDescentParser deferredCommandParser) {
+        int count = 0;
+        for (Instruction instruction : this.instructions) {
+            if (instruction.isDeferred()) {
+                count++;
+            }
+        }
+        this.deferredCommandCount = count;
+        this.deferredCommandParser = count > 0 ? deferredCommandParser : null;
+    }
+
+    /**
+     * Sets the callback which will be called for every instruction that is parsed by {@link
+     * #parseDeferredCommand(int)} before it is executed for the first time.
+     *
+     * @param deferredInstructionHandler
+     *         The callback for parsed instructions.
+     */
+    void setDeferredInstructionHandler(Consumer<Instruction> deferredInstructionHandler) {
+        this.deferredInstructionHandler = deferredInstructionHandler;
+    }
+
+    protected void setInstructions(Instruction[] instructions) {
+        this.instructions = instructions;
+    }
+
+    /**
+     * Returns the static jump table with the matching blocks of this program.
+     *
+     * @return the static jump table with the matching blocks of this program.
+     */
+    public JumpTable getJumpTable() {
+        return this.jumpTable;
+    }
+
+    protected void setJumpTable(JumpTable jumpTable) {
+        this.jumpTable = jumpTable;
+    }
+
+    /**
+     * Returns the prototype of the compiled class of this program or null if the program hasn't been compiled (yet).
+     *
+     * @return the prototype of the compiled class of this program.
+     */
+    CompiledProgram getCompiledProgram() {
+        return this.compiledProgram;
+    }
+
+    /**
+     * Sets the prototype of the compiled class of this program. Passing null marks the program as not compilable.
+     *
+     * @param compiledProgram
+     *         The prototype of the compiled class.
+     */
+    void setCompiledProgram(CompiledProgram compiledProgram) {
+        this.compiledProgram = compiledProgram;
+        this.compilationAttempted = true;
+    }
+
+    /**
+     * Returns how often the compiled class of this program has been discarded because its type assumptions failed.
+     *
+     * @return how often the compiled class of this program has been discarded.
+     */
+    int getDeoptimizationCount() {
+        return this.deoptimizationCount;
+    }
+
+    /**
+     * Discards the compiled class of this program, so that it will be compiled again on its next promotion.
+     */
+    void invalidateCompiledProgram() {
+        this.compiledProgram = null;
+        this.compilationAttempted = false;
+        this.deoptimizationCount++;
+    }
+
+    /**
+     * Returns true if the program has already been passed to the {@link ProgramCompiler} - whether it succeeded or not.
+     *
+     * @return true if the program has already been passed to the compiler.
+     */
+    boolean isCompilationAttempted() {
+        return this.compilationAttempted;
+    }
+
+    /**
+     * Returns the parse tree of this program or null if the program has been loaded from a {@link ProgramCache} or
+     * parsed by a front end which doesn't build a parse tree (see {@link FrontEnd}).
+     *
+     * @return the parse tree of this program or null.
+     */
     public TIBasicParser.ProgramContext getMainProgramContext() {
         return this.mainProgramContext;
     }
@@ -74,6 +271,15 @@ public class ExecutableProgram {
         this.programName = programName;
     }
 
+    /**
+     * Returns the map of all labels in this program to the index of the command which defines them.
+     *
+     * @return the map of all labels in this program.
+     */
+    Map<String, Integer> getInternalLabelMap() {
+        return this.internalLabelMap;
+    }
+
     protected void setInternalLabelMap(Map<String, Integer> internalLabelMap) {
         this.internalLabelMap = internalLabelMap;
     }
@@ -28,8 +28,11 @@ import org.slf4j.LoggerFactory;
 import org.xlrnet.tibaija.commands.io.ClearHomeCommand;
 import org.xlrnet.tibaija.commands.io.DisplayCommand;
 import org.xlrnet.tibaija.commands.io.OutputCommand;
+import org.xlrnet.tibaija.commands.list.*;
 import org.xlrnet.tibaija.commands.math.BinaryCommand;
 import org.xlrnet.tibaija.commands.math.BinaryCommandOperator;
+import org.xlrnet.tibaija.commands.math.DeterminantCommand;
+import org.xlrnet.tibaija.commands.math.ReducedRowEchelonFormCommand;
 import org.xlrnet.tibaija.commands.math.UnaryCommand;
 import org.xlrnet.tibaija.commands.math.UnaryCommandOperator;
 import org.xlrnet.tibaija.graphics.*;
@@ -107,6 +110,7 @@ public class ExecutionEnvironmentFactory {
         env.registerExpressionFunction("√(", new UnaryCommand(UnaryCommandOperator.SQUARE_ROOT));
         env.registerExpressionFunction("∛(", new UnaryCommand(UnaryCommandOperator.CUBIC_ROOT));
         env.registerExpressionFunction("!", new UnaryCommand(UnaryCommandOperator.FACTORIAL));
+        env.registerExpressionFunction("⁻¹", new UnaryCommand(UnaryCommandOperator.INVERSE));
 
         // Register comparison operators
         env.registerExpressionFunction("=", new BinaryCommand(BinaryCommandOperator.EQUALS));
@@ -122,6 +126,21 @@ public class ExecutionEnvironmentFactory {
         env.registerExpressionFunction("xor", new BinaryCommand(BinaryCommandOperator.XOR));
         env.registerExpressionFunction("not(", new UnaryCommand(UnaryCommandOperator.NOT));
 
+        // Register list functions
+        env.registerExpressionFunction("seq", new SequenceCommand());
+        env.registerExpressionFunction("sum", new SumCommand());
+        env.registerExpressionFunction("prod", new ProductCommand());
+        env.registerExpressionFunction("cumSum", new CumulativeSumCommand());
+        env.registerExpressionFunction("ΔList", new DeltaListCommand());
+        env.registerExpressionFunction("augment", new AugmentCommand());
+        env.registerExpressionFunction("dim", new DimensionCommand());
+        env.registerCommandFunction("SortA", new SortCommand(SortCommand.Order.ASCENDING));
+        env.registerCommandFunction("SortD", new SortCommand(SortCommand.Order.DESCENDING));
+
+        // Register matrix functions
+        env.registerExpressionFunction("det", new DeterminantCommand());
+        env.registerExpressionFunction("rref", new ReducedRowEchelonFormCommand());
+
         // Register I/O commands for home screen
         env.registerCommandStatement("Disp", new DisplayCommand());
         env.registerCommandFunction("Output", new OutputCommand());
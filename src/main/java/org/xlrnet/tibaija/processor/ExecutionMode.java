@@ -20,32 +20,29 @@
  * THE SOFTWARE
  */
 
-package org.xlrnet.tibaija.processor;
 
-import static com.google.common.base.Preconditions.checkArgument;
+package org.xlrnet.tibaija.processor;
 
 /**
- * Sub-class of {@link ControlFlowElement} that contains a target label to which can be jumped. It thus supports only
- * {@link org.xlrnet.tibaija.processor.ControlFlowElement.ControlFlowToken#GOTO} and {@link
- * org.xlrnet.tibaija.processor.ControlFlowElement.ControlFlowToken#LABEL} as tokens.
+ * Modes in which an {@link InternalExecutionEnvironment} executes programs.
  */
-public class JumpingControlFlowElement extends ControlFlowElement {
-
-    private final String targetLabel;
-
-    public JumpingControlFlowElement(int line, int charIndex, ControlFlowToken controlFlowToken, String targetLabel) {
-        super(line, charIndex, controlFlowToken, false, false);
-
-        checkControlFlowToken(controlFlowToken);
-
-        this.targetLabel = targetLabel;
-    }
-
-    public String getTargetLabel() {
-        return targetLabel;
-    }
-
-    private void checkControlFlowToken(ControlFlowToken controlFlowToken) {
-        checkArgument(controlFlowToken == ControlFlowToken.GOTO || controlFlowToken == ControlFlowToken.LABEL);
-    }
+public enum ExecutionMode {
+
+    /**
+     * Interpret the compiled instructions of a program. This is the default mode.
+     */
+    INTERPRETER,
+
+    /**
+     * Compile each program to a JVM class before running it for the first time (see {@link ProgramCompiler}).
+     * Programs which can't be compiled will be interpreted.
+     */
+    COMPILER,
+
+    /**
+     * Interpret a program first and compile it when one of its loops becomes hot, i.e. when a loop header has been
+     * reached through a back edge more often than the threshold of the environment. Execution continues in the
+     * compiled program at the loop header.
+     */
+    TIERED
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+package org.xlrnet.tibaija.processor;
+
+import com.google.common.base.MoreObjects;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+
+/**
+ * Compact stack-based code of a single expression. Expressions are lowered once by the {@link InstructionCompiler}
+ * into a flat array of opcodes with inline operands and a pool of constants that is referenced by index. The {@link
+ * InstructionInterpreter} evaluates the code on its operand stack without touching the parse tree again.
+ * <p/>
+ * Evaluating a complete expression leaves exactly one element on the stack: either a {@link
+ * org.xlrnet.tibaija.commons.Value} or - for command parameters - a {@link org.xlrnet.tibaija.memory.Parameter}.
+ */
+public final class ExpressionCode {
+
+    /** Push a constant value. Operand: constant index. */
+    static final int PUSH_CONSTANT = 0;
+
+    /** Push the value of a number variable. Operand: constant index of the {@link org.xlrnet.tibaija.memory.NumberVariable}. */
+    static final int LOAD_NUMBER_VARIABLE = 1;
+
+    /** Push the value of a string variable. Operand: constant index of the {@link org.xlrnet.tibaija.memory.StringVariable}. */
+    static final int LOAD_STRING_VARIABLE = 2;
+
+    /** Push the value of a list variable. Operand: constant index of the {@link org.xlrnet.tibaija.memory.ListVariable}. */
+    static final int LOAD_LIST_VARIABLE = 3;
+
+    /**
+     * Pop an index and push the element of a list variable. Operands: constant index of the {@link
+     * org.xlrnet.tibaija.memory.ListVariable}, source line and source char index.
+     */
+    static final int LOAD_LIST_ELEMENT = 4;
+
+    /** Push the last result (i.e. Ans). No operands. */
+    static final int LOAD_LAST_RESULT = 5;
+
+    /** Pop the given number of values and push a list of them. Operand: number of elements. */
+    static final int NEW_LIST = 6;
+
+    /**
+     * Pop the given number of values and push the result of an expression function. Operands: constant index of the
+     * {@link CommandSite} and number of arguments.
+     */
+    static final int CALL_OPERATOR = 7;
+
+    /**
+     * Pop the given number of parameters and push the result of an expression function. Operands: constant index of
+     * the {@link CommandSite} and number of arguments.
+     */
+    static final int CALL_FUNCTION = 8;
+
+    /**
+     * Pop a value and push its product with a complex constant. Operand: constant index of the {@link
+     * org.apache.commons.math3.complex.Complex} factor.
+     */
+    static final int MULTIPLY_COMPLEX = 9;
+
+    /** Pop a value and push it wrapped as a value parameter. No operands. */
+    static final int VALUE_PARAMETER = 10;
+
+    /** Push a variable parameter. Operand: constant index of the variable. */
+    static final int VARIABLE_PARAMETER = 11;
+
+    /**
+     * Push an expression parameter which evaluates a nested expression every time its value is read. Operand: constant
+     * index of the nested {@link ExpressionCode}.
+     */
+    static final int EXPRESSION_PARAMETER = 12;
+
+    /** Push the value of a matrix variable. Operand: constant index of the {@link org.xlrnet.tibaija.memory.MatrixVariable}. */
+    static final int LOAD_MATRIX_VARIABLE = 13;
+
+    /**
+     * Pop a row and a column and push the element of a matrix variable. Operands: constant index of the {@link
+     * org.xlrnet.tibaija.memory.MatrixVariable}, source line and source char index.
+     */
+    static final int LOAD_MATRIX_ELEMENT = 14;
+
+    /**
+     * Pop the given number of values in row-major order and push a matrix of them. Operands: number of rows and number
+     * of columns.
+     */
+    static final int NEW_MATRIX = 15;
+
+    private final int[] code;
+
+    private final Object[] constants;
+
+    private final int maxStackSize;
+
+    private final boolean constant;
+
+    ExpressionCode(@NotNull int[] code, @NotNull Object[] constants, int maxStackSize) {
+        this.code = code;
+        this.constants = constants;
+        this.maxStackSize = maxStackSize;
+        this.constant = code.length == 2 && code[0] == PUSH_CONSTANT;
+    }
+
+    /**
+     * Returns the opcodes and their inline operands.
+     *
+     * @return the opcodes and their inline operands.
+     */
+    @NotNull
+    int[] getCode() {
+        return this.code;
+    }
+
+    /**
+     * Returns the constant pool which is referenced by the operands of the code.
+     *
+     * @return the constant pool which is referenced by the operands of the code.
+     */
+    @NotNull
+    Object[] getConstants() {
+        return this.constants;
+    }
+
+    /**
+     * Returns the maximum number of stack elements that are used while evaluating this code.
+     *
+     * @return the maximum number of stack elements that are used while evaluating this code.
+     */
+    int getMaxStackSize() {
+        return this.maxStackSize;
+    }
+
+    /**
+     * Returns true if this code only pushes a single constant, i.e. the result of the expression is always the same.
+     *
+     * @return true if this code only pushes a single constant.
+     */
+    boolean isConstant() {
+        return this.constant;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("code", Arrays.toString(this.code))
+                .add("constants", Arrays.toString(this.constants))
+                .toString();
+    }
+}
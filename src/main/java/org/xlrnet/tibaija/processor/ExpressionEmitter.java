@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+package org.xlrnet.tibaija.processor;
+
+import org.xlrnet.tibaija.commons.Value;
+import org.xlrnet.tibaija.memory.ListVariable;
+import org.xlrnet.tibaija.memory.MatrixVariable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Helper class for emitting the code and the constant pool of a single {@link ExpressionCode} while keeping track of
+ * the required stack size. Equal constants share a single entry in the constant pool.
+ */
+final class ExpressionEmitter {
+
+    private final List<Object> constants = new ArrayList<>();
+
+    private int[] code = new int[16];
+
+    private int codeLength;
+
+    private int stackSize;
+
+    private int maxStackSize;
+
+    void emit(int opcode) {
+        append(opcode);
+        switch (opcode) {
+            case ExpressionCode.LOAD_LAST_RESULT:
+                adjustStack(1);
+                break;
+            case ExpressionCode.VALUE_PARAMETER:
+                break;
+            default:
+                throw new IllegalArgumentException("Opcode requires operands: " + opcode);
+        }
+    }
+
+    void emitCall(int opcode, CommandSite site, int numberOfArguments) {
+        append(opcode);
+        append(constantIndex(site));
+        append(numberOfArguments);
+        adjustStack(1 - numberOfArguments);
+    }
+
+    /**
+     * Appends the code of another emitter as if it had been emitted directly by this emitter, i.e. the constants will
+     * be added to the constant pool of this emitter.
+     */
+    void emitCode(ExpressionEmitter other) {
+        int position = 0;
+        while (position < other.codeLength) {
+            int opcode = other.code[position++];
+            switch (opcode) {
+                case ExpressionCode.LOAD_LAST_RESULT:
+                case ExpressionCode.VALUE_PARAMETER:
+                    emit(opcode);
+                    break;
+                case ExpressionCode.CALL_OPERATOR:
+                case ExpressionCode.CALL_FUNCTION:
+                    emitCall(opcode, (CommandSite) other.constants.get(other.code[position]), other.code[position + 1]);
+                    position += 2;
+                    break;
+                case ExpressionCode.LOAD_LIST_ELEMENT:
+                    emitListElement((ListVariable) other.constants.get(other.code[position]), other.code[position + 1], other.code[position + 2]);
+                    position += 3;
+                    break;
+                case ExpressionCode.LOAD_MATRIX_ELEMENT:
+                    emitMatrixElement((MatrixVariable) other.constants.get(other.code[position]), other.code[position + 1], other.code[position + 2]);
+                    position += 3;
+                    break;
+                case ExpressionCode.NEW_LIST:
+                    emitNewList(other.code[position++]);
+                    break;
+                case ExpressionCode.NEW_MATRIX:
+                    emitNewMatrix(other.code[position], other.code[position + 1]);
+                    position += 2;
+                    break;
+                default:
+                    emitWithConstant(opcode, other.constants.get(other.code[position++]));
+            }
+        }
+    }
+
+    void emitConstant(Value value) {
+        emitWithConstant(ExpressionCode.PUSH_CONSTANT, value);
+    }
+
+    void emitListElement(ListVariable listVariable, int line, int charIndex) {
+        append(ExpressionCode.LOAD_LIST_ELEMENT);
+        append(constantIndex(listVariable));
+        append(line);
+        append(charIndex);
+    }
+
+    void emitMatrixElement(MatrixVariable matrixVariable, int line, int charIndex) {
+        append(ExpressionCode.LOAD_MATRIX_ELEMENT);
+        append(constantIndex(matrixVariable));
+        append(line);
+        append(charIndex);
+        adjustStack(-1);
+    }
+
+    void emitNewList(int numberOfElements) {
+        append(ExpressionCode.NEW_LIST);
+        append(numberOfElements);
+        adjustStack(1 - numberOfElements);
+    }
+
+    void emitNewMatrix(int rows, int columns) {
+        append(ExpressionCode.NEW_MATRIX);
+        append(rows);
+        append(columns);
+        adjustStack(1 - rows * columns);
+    }
+
+    void emitWithConstant(int opcode, Object constant) {
+        append(opcode);
+        append(constantIndex(constant));
+        if (opcode != ExpressionCode.MULTIPLY_COMPLEX) {
+            adjustStack(1);
+        }
+    }
+
+    ExpressionCode toExpressionCode() {
+        if (stackSize != 1) {
+            throw new IllegalStateException("Internal error: expression leaves " + stackSize + " elements on the stack");
+        }
+        return new ExpressionCode(Arrays.copyOf(code, codeLength), constants.toArray(), maxStackSize);
+    }
+
+    private void adjustStack(int delta) {
+        stackSize += delta;
+        maxStackSize = Math.max(maxStackSize, stackSize);
+    }
+
+    private void append(int value) {
+        if (codeLength == code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+        code[codeLength++] = value;
+    }
+
+    private int constantIndex(Object constant) {
+        int index = constants.indexOf(constant);
+        if (index < 0) {
+            index = constants.size();
+            constants.add(constant);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.processor;
+
+/**
+ * Front ends which the {@link Preprocessor} can use for parsing programs.
+ */
+public enum FrontEnd {
+
+    /**
+     * Parse programs with the parser that ANTLR generates from the reference grammar TIBasic.g4 and compile the parse
+     * tree with the {@link InstructionCompiler}. This is the default.
+     */
+    ANTLR,
+
+    /**
+     * Parse programs with the hand-written {@link RecursiveDescentParser}, which reads the source code once and emits
+     * the instructions directly without building a parse tree.
+     */
+    RECURSIVE_DESCENT,
+
+    /**
+     * Parse programs with both front ends and fail with an {@link IllegalStateException} if they don't produce the same
+     * instructions, labels or errors. The result of the reference front end will be used.
+     */
+    CROSS_CHECK,
+
+    /**
+     * Scan programs only for the boundaries of their commands and for their labels and parse every other command with
+     * the {@link RecursiveDescentParser} when it is executed for the first time. Syntax errors and undefined Goto
+     * targets will therefore only be reported when the affected command is reached.
+     */
+    LAZY
+}
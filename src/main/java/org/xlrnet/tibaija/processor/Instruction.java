@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+package org.xlrnet.tibaija.processor;
+
+import com.google.common.base.MoreObjects;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * A single lowered command of an {@link ExecutableProgram}. The {@link InstructionCompiler} creates exactly one
+ * instruction for every command in the program, so that the index of an instruction is equal to the index of the
+ * command in the original source (which is also used for resolving labels).
+ * <p/>
+ * Depending on its type, an instruction may reference a target (e.g. the variable to store into, the call site of a
+ * command or a label) and a list of compiled expressions.
+ */
+public final class Instruction {
+
+    private final InstructionType type;
+
+    private final ControlFlowToken flowToken;
+
+    private final Object target;
+
+    private final ExpressionCode[] expressions;
+
+    private final int line;
+
+    private final int charIndex;
+
+    Instruction(@NotNull InstructionType type, @Nullable ControlFlowToken flowToken, @Nullable Object target, @NotNull ExpressionCode[] expressions, int line, int charIndex) {
+        this.type = type;
+        this.flowToken = flowToken;
+        this.target = target;
+        this.expressions = expressions;
+        this.line = line;
+        this.charIndex = charIndex;
+    }
+
+    public int getCharIndex() {
+        return charIndex;
+    }
+
+    /**
+     * Returns the compiled expression at the given index.
+     *
+     * @param index
+     *         Index of the expression.
+     * @return the compiled expression at the given index.
+     */
+    @NotNull
+    ExpressionCode getExpression(int index) {
+        return expressions[index];
+    }
+
+    /**
+     * Returns all compiled expressions of this instruction in the order of their appearance in the source code.
+     *
+     * @return all compiled expressions of this instruction.
+     */
+    @NotNull
+    ExpressionCode[] getExpressions() {
+        return expressions;
+    }
+
+    /**
+     * Returns the control flow token of this instruction or null if this instruction is not a control flow statement.
+     *
+     * @return the control flow token of this instruction or null if this instruction is not a control flow statement.
+     */
+    @Nullable
+    ControlFlowToken getFlowToken() {
+        return flowToken;
+    }
+
+    /**
+     * Replaces the compiled expression at the given index, e.g. with an optimized version of it.
+     *
+     * @param index
+     *         Index of the expression.
+     * @param expression
+     *         The new expression.
+     */
+    void replaceExpression(int index, @NotNull ExpressionCode expression) {
+        expressions[index] = expression;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the target of this instruction. This may be a variable, the call site of a command, a label or - for
+     * Goto - the index of the command which defines the target label.
+     *
+     * @return the target of this instruction.
+     */
+    @Nullable
+    public Object getTarget() {
+        return target;
+    }
+
+    @NotNull
+    public InstructionType getType() {
+        return type;
+    }
+
+    /**
+     * Returns true if this instruction is a control flow statement.
+     *
+     * @return true if this instruction is a control flow statement.
+     */
+    public boolean isControlFlowStatement() {
+        return type == InstructionType.CONTROL_FLOW;
+    }
+
+    /**
+     * Returns true if this instruction is only a placeholder for a command which hasn't been parsed yet. The flow
+     * token of a placeholder is already known.
+     *
+     * @return true if this instruction is only a placeholder for a command which hasn't been parsed yet.
+     */
+    public boolean isDeferred() {
+        return type == InstructionType.DEFERRED;
+    }
+
+    @Override
+    public String toString() {
+        return MoreObjects.toStringHelper(this)
+                .add("type", this.type)
+                .add("flowToken", this.flowToken)
+                .add("target", this.target)
+                .add("expressions", Arrays.toString(this.expressions))
+                .add("line", this.line)
+                .add("charIndex", this.charIndex)
+                .toString();
+    }
+
+    /**
+     * Type of an {@link Instruction}.
+     */
+    public enum InstructionType {
+        /** Empty command without any effect. */
+        EMPTY,
+        /** Evaluate an expression and store it as the last result. */
+        EXPRESSION,
+        /** Run a command function. */
+        COMMAND_FUNCTION,
+        /** Run a command statement. */
+        COMMAND_STATEMENT,
+        /** Store a value in a number variable. */
+        STORE_NUMBER,
+        /** Store a value in a list variable. */
+        STORE_LIST,
+        /** Store a value in a single element of a list variable. */
+        STORE_LIST_ELEMENT,
+        /** Resize a list variable. */
+        STORE_LIST_DIMENSION,
+        /** Store a value in a matrix variable. */
+        STORE_MATRIX,
+        /** Store a value in a single element of a matrix variable. */
+        STORE_MATRIX_ELEMENT,
+        /** Resize a matrix variable. */
+        STORE_MATRIX_DIMENSION,
+        /** Store a value in a string variable. */
+        STORE_STRING,
+        /** Stop the program. */
+        STOP,
+        /** Control flow statement - see the flow token for the concrete statement. */
+        CONTROL_FLOW,
+        /** Placeholder for a command which hasn't been parsed yet, see {@link FrontEnd#LAZY}. */
+        DEFERRED
+    }
+}
@@ -0,0 +1,655 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+package org.xlrnet.tibaija.processor;
+
+import com.google.common.collect.ImmutableSet;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.RuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.misc.NotNull;
+import org.antlr.v4.runtime.tree.ParseTree;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.math3.complex.Complex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlrnet.tibaija.antlr.TIBasicBaseVisitor;
+import org.xlrnet.tibaija.antlr.TIBasicParser;
+import org.xlrnet.tibaija.commons.TIMathUtils;
+import org.xlrnet.tibaija.commons.ValidationUtil;
+import org.xlrnet.tibaija.commons.Value;
+import org.xlrnet.tibaija.exception.InvalidDimensionException;
+import org.xlrnet.tibaija.exception.LabelNotFoundException;
+import org.xlrnet.tibaija.exception.PreprocessException;
+import org.xlrnet.tibaija.memory.ListVariable;
+import org.xlrnet.tibaija.memory.MatrixVariable;
+import org.xlrnet.tibaija.memory.NumberVariable;
+import org.xlrnet.tibaija.memory.StringVariable;
+import org.xlrnet.tibaija.memory.Variables;
+import org.xlrnet.tibaija.processor.Instruction.InstructionType;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compiles the parse tree of a program into a flat array of {@link Instruction} objects. Every command of the program
+ * will be lowered to exactly one instruction and every expression will be lowered to stack-based {@link
+ * ExpressionCode}. Literals are evaluated once while compiling and are stored as constants.
+ * <p/>
+ * The targets of all Goto commands are resolved to command indices while compiling, so that undefined labels are
+ * detected before a program runs. Apart from that, the compiler does not execute anything and can therefore not detect
+ * any runtime errors like unknown commands.
+ */
+public class InstructionCompiler extends TIBasicBaseVisitor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InstructionCompiler.class);
+
+    private static final ExpressionCode[] NO_EXPRESSIONS = new ExpressionCode[0];
+
+    /** Expression functions which evaluate their first parameter by themselves, e.g. once for every element of seq(. */
+    static final Set<String> DEFERRED_FIRST_PARAMETER_FUNCTIONS = ImmutableSet.of("seq");
+
+    private final String programName;
+
+    private final Map<String, Integer> labelMap;
+
+    /** The emitter for the expression that is currently being compiled. */
+    private ExpressionEmitter emitter;
+
+    /**
+     * Creates a new compiler for a single program.
+     *
+     * @param programName
+     *         Name of the program to compile.
+     * @param labelMap
+     *         Map of all labels in the program and the index of the command which defines the label.
+     */
+    public InstructionCompiler(@NotNull String programName, @NotNull Map<String, Integer> labelMap) {
+        this.programName = programName;
+        this.labelMap = labelMap;
+    }
+
+    /**
+     * Compiles all commands of the given program into a flat array of instructions. The index of each instruction is
+     * equal to the index of the command in the program's command list.
+     *
+     * @param ctx
+     *         The program context from the parser.
+     * @return An array with one instruction per command.
+     */
+    @NotNull
+    public Instruction[] compileProgram(@NotNull TIBasicParser.ProgramContext ctx) {
+        List<TIBasicParser.CommandContext> commandList = ctx.commandList().command();
+        Instruction[] instructions = new Instruction[commandList.size()];
+
+        for (int i = 0; i < instructions.length; i++) {
+            instructions[i] = (Instruction) commandList.get(i).accept(this);
+        }
+
+        LOGGER.trace("Compiled {} instructions", instructions.length);
+        return instructions;
+    }
+
+    @Override
+    public Instruction visitCommand(@NotNull TIBasicParser.CommandContext ctx) {
+        if (ctx.expressionParent() != null) {
+            ExpressionCode expression = compileExpression(ctx.expressionParent().expression());
+            return newInstruction(InstructionType.EXPRESSION, null, ctx.getStart(), expression);
+        } else if (ctx.statement() != null) {
+            return (Instruction) ctx.statement().getChild(0).accept(this);
+        } else if (ctx.commandFunction() != null) {
+            return (Instruction) ctx.commandFunction().accept(this);
+        } else if (ctx.controlFlowStatement() != null) {
+            return (Instruction) ctx.controlFlowStatement().getChild(0).accept(this);
+        }
+        return newInstruction(InstructionType.EMPTY, null, ctx.getStart());
+    }
+
+    @Override
+    public Instruction visitCommandFunction(@NotNull TIBasicParser.CommandFunctionContext ctx) {
+        String commandFunctionName = ctx.commandFunctionIdentifier().getText();
+        CommandSite site = newCommandSite(CommandSite.Kind.COMMAND_FUNCTION, commandFunctionName, ctx.getStart());
+        ExpressionCode[] parameters = compileParameters(ctx.parameterList());
+        return newInstruction(InstructionType.COMMAND_FUNCTION, site, ctx.getStart(), parameters);
+    }
+
+    @Override
+    public Instruction visitCommandStatement(@NotNull TIBasicParser.CommandStatementContext ctx) {
+        String commandStatementName = ctx.commandStatementIdentifier().getText();
+        CommandSite site = newCommandSite(CommandSite.Kind.COMMAND_STATEMENT, commandStatementName, ctx.getStart());
+        ExpressionCode[] parameters = NO_EXPRESSIONS;
+        if (ctx.parameterList() != null) {
+            parameters = compileParameters(ctx.parameterList());
+        }
+        return newInstruction(InstructionType.COMMAND_STATEMENT, site, ctx.getStart(), parameters);
+    }
+
+    @Override
+    public Instruction visitDecrementSkipLessStatement(@NotNull TIBasicParser.DecrementSkipLessStatementContext ctx) {
+        NumberVariable numberVariable = Variables.resolveNumberVariable(ctx.numericalVariable().getText());
+        ExpressionCode compareValue = compileExpression(ctx.expression());
+        return newFlowInstruction(ControlFlowToken.DECREMENT_SKIP_LESS, numberVariable, ctx.DECREMENT_SKIP_LESS().getSymbol(), compareValue);
+    }
+
+    @Override
+    public Instruction visitElseStatement(@NotNull TIBasicParser.ElseStatementContext ctx) {
+        return newFlowInstruction(ControlFlowToken.ELSE, null, ctx.ELSE().getSymbol());
+    }
+
+    @Override
+    public Instruction visitEndStatement(@NotNull TIBasicParser.EndStatementContext ctx) {
+        return newFlowInstruction(ControlFlowToken.END, null, ctx.END().getSymbol());
+    }
+
+    @Override
+    public Object visitExpressionFunctionCall(@NotNull TIBasicParser.ExpressionFunctionCallContext ctx) {
+        String functionName = ctx.expressionFunctionIdentifier().getText();
+        CommandSite site = newCommandSite(CommandSite.Kind.EXPRESSION_FUNCTION, functionName, ctx.getStart());
+        List<TIBasicParser.ParameterContext> parameters = ctx.parameterList().parameter();
+
+        // Calls with only expressions as parameters can pass plain values like operators do
+        boolean valuesOnly = true;
+        for (TIBasicParser.ParameterContext parameter : parameters) {
+            valuesOnly &= parameter instanceof TIBasicParser.ExpressionParameterContext;
+        }
+
+        if (valuesOnly) {
+            for (TIBasicParser.ParameterContext parameter : parameters) {
+                ((TIBasicParser.ExpressionParameterContext) parameter).expression().accept(this);
+            }
+            emitter.emitCall(ExpressionCode.CALL_OPERATOR, site, parameters.size());
+        } else {
+            for (int i = 0; i < parameters.size(); i++) {
+                TIBasicParser.ParameterContext parameter = parameters.get(i);
+                if (i == 0 && DEFERRED_FIRST_PARAMETER_FUNCTIONS.contains(functionName)
+                        && parameter instanceof TIBasicParser.ExpressionParameterContext) {
+                    // Compile the expression only once, the function will evaluate it as often as it needs to
+                    ExpressionCode expression = compileExpression(((TIBasicParser.ExpressionParameterContext) parameter).expression());
+                    emitter.emitWithConstant(ExpressionCode.EXPRESSION_PARAMETER, expression);
+                } else {
+                    parameter.accept(this);
+                }
+            }
+            emitter.emitCall(ExpressionCode.CALL_FUNCTION, site, parameters.size());
+        }
+        return null;
+    }
+
+    @Override
+    public Object visitExpressionParameter(@NotNull TIBasicParser.ExpressionParameterContext ctx) {
+        ctx.expression().accept(this);
+        emitter.emit(ExpressionCode.VALUE_PARAMETER);
+        return null;
+    }
+
+    @Override
+    public Object visitExpression_and(@NotNull TIBasicParser.Expression_andContext ctx) {
+        return compileGenericExpressions(ctx.operators, ctx.expression_compare());
+    }
+
+    @Override
+    public Object visitExpression_compare(@NotNull TIBasicParser.Expression_compareContext ctx) {
+        return compileGenericExpressions(ctx.operators, ctx.expression_plus_minus());
+    }
+
+    @Override
+    public Object visitExpression_conv(@NotNull TIBasicParser.Expression_convContext ctx) {
+        // TODO: Implement conversion (or some kind of a flag?)
+        return ctx.expression_xor().accept(this);
+    }
+
+    @Override
+    public Object visitExpression_infix(@NotNull TIBasicParser.Expression_infixContext ctx) {
+        return compileGenericExpressions(ctx.operators, ctx.expression_negation());
+    }
+
+    @Override
+    public Object visitExpression_mul_div(@NotNull TIBasicParser.Expression_mul_divContext ctx) {
+        checkImplicitMultiplications(ctx);
+        return compileGenericExpressions(ctx.operators, ctx.expression_infix());
+    }
+
+    @Override
+    public Object visitExpression_negation(@NotNull TIBasicParser.Expression_negationContext ctx) {
+        ctx.expression_power_root().accept(this);
+        if (ctx.NEGATIVE_MINUS() != null) {
+            emitter.emitConstant(Value.NEGATIVE_ONE);
+            emitter.emitCall(ExpressionCode.CALL_OPERATOR, newOperatorSite("*", ctx.getStart()), 2);
+        }
+        return null;
+    }
+
+    @Override
+    public Object visitExpression_or(@NotNull TIBasicParser.Expression_orContext ctx) {
+        return compileGenericExpressions(ctx.operators, ctx.expression_and());
+    }
+
+    @Override
+    public Object visitExpression_plus_minus(@NotNull TIBasicParser.Expression_plus_minusContext ctx) {
+        return compileGenericExpressions(ctx.operators, ctx.expression_mul_div());
+    }
+
+    @Override
+    public Object visitExpression_postfix(@NotNull TIBasicParser.Expression_postfixContext ctx) {
+        List<String> operators = ctx.operators;
+
+        if (ctx.expression_preeval() != null) {
+            // Regular right-associative postfix logic without imaginary parts
+            ctx.expression_preeval().accept(this);
+            for (String op : operators) {
+                emitter.emitCall(ExpressionCode.CALL_OPERATOR, newOperatorSite(op, ctx.getStart()), 1);
+            }
+        } else {
+            // Imaginary logic -> e.g. ii²² == i(i²)²
+            int imaginaryCount = ctx.IMAGINARY().size() - 1;
+            emitter.emitConstant(Value.of(Complex.I));
+            for (String op : operators) {
+                emitter.emitCall(ExpressionCode.CALL_OPERATOR, newOperatorSite(op, ctx.getStart()), 1);
+                if (imaginaryCount > 0) {
+                    emitter.emitWithConstant(ExpressionCode.MULTIPLY_COMPLEX, Complex.I);
+                    imaginaryCount--;
+                }
+            }
+            // Multiply value with all left I
+            if (imaginaryCount > 0) {
+                emitter.emitWithConstant(ExpressionCode.MULTIPLY_COMPLEX, TIMathUtils.imaginaryNthPower(imaginaryCount));
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Object visitExpression_power_root(@NotNull TIBasicParser.Expression_power_rootContext ctx) {
+        return compileGenericExpressions(ctx.operators, ctx.expression_postfix());
+    }
+
+    @Override
+    public Object visitExpression_preeval(@NotNull TIBasicParser.Expression_preevalContext ctx) {
+        if (ctx.expression_prefix() != null)
+            return ctx.expression_prefix().accept(this);
+        else if (ctx.expression_value() != null)
+            return ctx.expression_value().accept(this);
+        else
+            throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Object visitExpression_prefix(@NotNull TIBasicParser.Expression_prefixContext ctx) {
+        ctx.expression_xor().accept(this);
+        if (ctx.operator != null) {
+            emitter.emitCall(ExpressionCode.CALL_OPERATOR, newOperatorSite(ctx.operator, ctx.getStart()), 1);
+        }
+        return null;
+    }
+
+    @Override
+    public Object visitExpression_value(@NotNull TIBasicParser.Expression_valueContext ctx) {
+        if (ctx.expression() != null)
+            return ctx.expression().accept(this);     // Expression with parentheses has more than 1 child
+        else
+            return ctx.getChild(0).accept(this);      // All other rules have only one child
+    }
+
+    @Override
+    public Object visitExpression_xor(@NotNull TIBasicParser.Expression_xorContext ctx) {
+        return compileGenericExpressions(ctx.operators, ctx.expression_or());
+    }
+
+    @Override
+    public Instruction visitForStatement(@NotNull TIBasicParser.ForStatementContext ctx) {
+        NumberVariable numberVariable = Variables.resolveNumberVariable(ctx.numericalVariable().getText());
+        ExpressionCode[] expressions = new ExpressionCode[ctx.expression().size()];
+        for (int i = 0; i < expressions.length; i++) {
+            expressions[i] = compileExpression(ctx.expression(i));
+        }
+        Token forToken = ctx.FOR().getSymbol();
+        return new Instruction(InstructionType.CONTROL_FLOW, ControlFlowToken.FOR, numberVariable, expressions, forToken.getLine(), forToken.getStartIndex());
+    }
+
+    @Override
+    public Instruction visitGotoStatement(@NotNull TIBasicParser.GotoStatementContext ctx) throws LabelNotFoundException {
+        String targetLabel = ctx.labelIdentifier().getText();
+        Token gotoToken = ctx.GOTO().getSymbol();
+
+        Integer targetIndex = labelMap.get(targetLabel);
+        if (targetIndex == null) {
+            throw new LabelNotFoundException(gotoToken.getLine(), gotoToken.getCharPositionInLine(), programName, targetLabel);
+        }
+        return newFlowInstruction(ControlFlowToken.GOTO, targetIndex, gotoToken);
+    }
+
+    @Override
+    public Instruction visitIfStatement(@NotNull TIBasicParser.IfStatementContext ctx) {
+        ExpressionCode condition = compileExpression(ctx.expression());
+        return newFlowInstruction(ControlFlowToken.IF, null, ctx.IF().getSymbol(), condition);
+    }
+
+    @Override
+    public Instruction visitIncrementSkipGreaterStatement(@NotNull TIBasicParser.IncrementSkipGreaterStatementContext ctx) {
+        NumberVariable numberVariable = Variables.resolveNumberVariable(ctx.numericalVariable().getText());
+        ExpressionCode compareValue = compileExpression(ctx.expression());
+        return newFlowInstruction(ControlFlowToken.INCREMENT_SKIP_GREATER, numberVariable, ctx.INCREMENT_SKIP_GREATER().getSymbol(), compareValue);
+    }
+
+    @Override
+    public Instruction visitLabelStatement(@NotNull TIBasicParser.LabelStatementContext ctx) {
+        return newFlowInstruction(ControlFlowToken.LABEL, ctx.labelIdentifier().getText(), ctx.LABEL().getSymbol());
+    }
+
+    @Override
+    public Object visitLastResult(@NotNull TIBasicParser.LastResultContext ctx) {
+        emitter.emit(ExpressionCode.LOAD_LAST_RESULT);
+        return null;
+    }
+
+    @Override
+    public Object visitListElementExpression(@NotNull TIBasicParser.ListElementExpressionContext ctx) {
+        Token listToken = ctx.listVariable().LIST_TOKEN().getSymbol();
+        ListVariable listVariable = ListVariable.fromName(ctx.listVariable().listIdentifier().getText());
+
+        ctx.expression().accept(this);
+        emitter.emitListElement(listVariable, listToken.getLine(), listToken.getCharPositionInLine());
+        return null;
+    }
+
+    @Override
+    public Object visitListExpression(@NotNull TIBasicParser.ListExpressionContext ctx) {
+        List<TIBasicParser.ExpressionContext> expressions = ctx.expression();
+        for (TIBasicParser.ExpressionContext expression : expressions) {
+            expression.accept(this);
+        }
+        emitter.emitNewList(expressions.size());
+        return null;
+    }
+
+    @Override
+    public Object visitListValue(@NotNull TIBasicParser.ListValueContext ctx) {
+        if (ctx.listVariable() != null) {
+            ListVariable listVariable = ListVariable.fromName(ctx.listVariable().listIdentifier().getText());
+            emitter.emitWithConstant(ExpressionCode.LOAD_LIST_VARIABLE, listVariable);
+            return null;
+        } else if (ctx.listExpression() != null) {
+            return ctx.listExpression().accept(this);
+        }
+        throw new UnsupportedOperationException("This shouldn't happen");
+    }
+
+    @Override
+    public Object visitListVariableParameter(@NotNull TIBasicParser.ListVariableParameterContext ctx) {
+        ListVariable listVariable = ListVariable.fromName(ctx.listVariable().listIdentifier().getText());
+        emitter.emitWithConstant(ExpressionCode.VARIABLE_PARAMETER, listVariable);
+        return null;
+    }
+
+    @Override
+    public Object visitMatrixElementExpression(@NotNull TIBasicParser.MatrixElementExpressionContext ctx) {
+        Token matrixToken = ctx.matrixVariable().MATRIX_VARIABLE().getSymbol();
+        MatrixVariable matrixVariable = Variables.resolveMatrixVariable(matrixToken.getText());
+
+        ctx.expression(0).accept(this);
+        ctx.expression(1).accept(this);
+        emitter.emitMatrixElement(matrixVariable, matrixToken.getLine(), matrixToken.getCharPositionInLine());
+        return null;
+    }
+
+    @Override
+    public Object visitMatrixExpression(@NotNull TIBasicParser.MatrixExpressionContext ctx) {
+        List<TIBasicParser.MatrixRowContext> rows = ctx.matrixRow();
+        int columns = rows.get(0).expression().size();
+        for (TIBasicParser.MatrixRowContext row : rows) {
+            if (row.expression().size() != columns) {
+                Token rowToken = row.getStart();
+                throw new InvalidDimensionException(rowToken.getLine(), rowToken.getCharPositionInLine(), "All rows of a matrix must have the same number of elements", Value.of(row.expression().size()));
+            }
+            for (TIBasicParser.ExpressionContext expression : row.expression()) {
+                expression.accept(this);
+            }
+        }
+        emitter.emitNewMatrix(rows.size(), columns);
+        return null;
+    }
+
+    @Override
+    public Object visitMatrixValue(@NotNull TIBasicParser.MatrixValueContext ctx) {
+        if (ctx.matrixVariable() != null) {
+            MatrixVariable matrixVariable = Variables.resolveMatrixVariable(ctx.matrixVariable().getText());
+            emitter.emitWithConstant(ExpressionCode.LOAD_MATRIX_VARIABLE, matrixVariable);
+            return null;
+        } else if (ctx.matrixExpression() != null) {
+            return ctx.matrixExpression().accept(this);
+        }
+        throw new UnsupportedOperationException("This shouldn't happen");
+    }
+
+    @Override
+    public Object visitNumberExpression(@NotNull TIBasicParser.NumberExpressionContext ctx) {
+        emitter.emitConstant(ContextUtil.extractValueFromNumberContext(ctx.number()));
+        return null;
+    }
+
+    @Override
+    public Object visitNumericalVariableExpression(@NotNull TIBasicParser.NumericalVariableExpressionContext ctx) {
+        NumberVariable numberVariable = Variables.resolveNumberVariable(ctx.numericalVariable().getText());
+        emitter.emitWithConstant(ExpressionCode.LOAD_NUMBER_VARIABLE, numberVariable);
+        return null;
+    }
+
+    @Override
+    public Object visitNumericalVariableParameter(@NotNull TIBasicParser.NumericalVariableParameterContext ctx) {
+        NumberVariable numberVariable = Variables.resolveNumberVariable(ctx.numericalVariable().getText());
+        emitter.emitWithConstant(ExpressionCode.VARIABLE_PARAMETER, numberVariable);
+        return null;
+    }
+
+    @Override
+    public Instruction visitRepeatStatement(@NotNull TIBasicParser.RepeatStatementContext ctx) {
+        ExpressionCode condition = compileExpression(ctx.expression());
+        return newFlowInstruction(ControlFlowToken.REPEAT, null, ctx.REPEAT().getSymbol(), condition);
+    }
+
+    @Override
+    public Instruction visitStopStatement(@NotNull TIBasicParser.StopStatementContext ctx) {
+        return newInstruction(InstructionType.STOP, null, ctx.STOP().getSymbol());
+    }
+
+    @Override
+    public Instruction visitStoreListDimensionStatement(@NotNull TIBasicParser.StoreListDimensionStatementContext ctx) {
+        ExpressionCode newDimension = compileExpression(ctx.expression());
+        ListVariable listVariable = ListVariable.fromName(ctx.listVariable().listIdentifier().getText());
+        return newInstruction(InstructionType.STORE_LIST_DIMENSION, listVariable, ctx.STORE().getSymbol(), newDimension);
+    }
+
+    @Override
+    public Instruction visitStoreListElementStatement(@NotNull TIBasicParser.StoreListElementStatementContext ctx) {
+        Token leftParenthesis = ctx.LEFT_PARENTHESIS().getSymbol();
+        ListVariable listVariable = ListVariable.fromName(ctx.listVariable().listIdentifier().getText());
+        ExpressionCode newValue = compileExpression(ctx.expression(0));
+        ExpressionCode index = compileExpression(ctx.expression(1));
+        return new Instruction(InstructionType.STORE_LIST_ELEMENT, null, listVariable, new ExpressionCode[]{newValue, index}, leftParenthesis.getLine(), leftParenthesis.getStartIndex());
+    }
+
+    @Override
+    public Instruction visitStoreListStatement(@NotNull TIBasicParser.StoreListStatementContext ctx) {
+        ListVariable listVariable = ListVariable.fromName(ctx.listVariable().listIdentifier().getText());
+        ExpressionCode value = compileExpression(ctx.expression());
+        return newInstruction(InstructionType.STORE_LIST, listVariable, ctx.STORE().getSymbol(), value);
+    }
+
+    @Override
+    public Instruction visitStoreMatrixDimensionStatement(@NotNull TIBasicParser.StoreMatrixDimensionStatementContext ctx) {
+        ExpressionCode newDimension = compileExpression(ctx.expression());
+        MatrixVariable matrixVariable = Variables.resolveMatrixVariable(ctx.matrixVariable().getText());
+        return newInstruction(InstructionType.STORE_MATRIX_DIMENSION, matrixVariable, ctx.STORE().getSymbol(), newDimension);
+    }
+
+    @Override
+    public Instruction visitStoreMatrixElementStatement(@NotNull TIBasicParser.StoreMatrixElementStatementContext ctx) {
+        Token leftParenthesis = ctx.LEFT_PARENTHESIS().getSymbol();
+        MatrixVariable matrixVariable = Variables.resolveMatrixVariable(ctx.matrixVariable().getText());
+        ExpressionCode newValue = compileExpression(ctx.expression(0));
+        ExpressionCode position = compileMatrixPosition(ctx.expression(1), ctx.expression(2));
+        return new Instruction(InstructionType.STORE_MATRIX_ELEMENT, null, matrixVariable, new ExpressionCode[]{newValue, position}, leftParenthesis.getLine(), leftParenthesis.getStartIndex());
+    }
+
+    @Override
+    public Instruction visitStoreMatrixStatement(@NotNull TIBasicParser.StoreMatrixStatementContext ctx) {
+        MatrixVariable matrixVariable = Variables.resolveMatrixVariable(ctx.matrixVariable().getText());
+        ExpressionCode value = compileExpression(ctx.expression());
+        return newInstruction(InstructionType.STORE_MATRIX, matrixVariable, ctx.STORE().getSymbol(), value);
+    }
+
+    @Override
+    public Instruction visitStoreNumberStatement(@NotNull TIBasicParser.StoreNumberStatementContext ctx) {
+        ExpressionCode value = compileExpression(ctx.expression());
+        NumberVariable numberVariable = Variables.resolveNumberVariable(ctx.numericalVariable().getText());
+        return newInstruction(InstructionType.STORE_NUMBER, numberVariable, ctx.STORE().getSymbol(), value);
+    }
+
+    @Override
+    public Instruction visitStoreStringStatement(@NotNull TIBasicParser.StoreStringStatementContext ctx) {
+        StringVariable stringVariable = Variables.resolveStringVariable(ctx.STRING_VARIABLE().getText());
+        ExpressionCode value = compileExpression(ctx.expression());
+        return newInstruction(InstructionType.STORE_STRING, stringVariable, ctx.STORE().getSymbol(), value);
+    }
+
+    @Override
+    public Object visitStringExpression(@NotNull TIBasicParser.StringExpressionContext ctx) {
+        String text = ctx.STRING().getText();
+        emitter.emitConstant(Value.of(StringUtils.remove(text, "\"")));
+        return null;
+    }
+
+    @Override
+    public Object visitStringVariableExpression(@NotNull TIBasicParser.StringVariableExpressionContext ctx) {
+        StringVariable stringVariable = Variables.resolveStringVariable(ctx.STRING_VARIABLE().getText());
+        emitter.emitWithConstant(ExpressionCode.LOAD_STRING_VARIABLE, stringVariable);
+        return null;
+    }
+
+    @Override
+    public Instruction visitThenStatement(@NotNull TIBasicParser.ThenStatementContext ctx) {
+        return newFlowInstruction(ControlFlowToken.THEN, null, ctx.THEN().getSymbol());
+    }
+
+    @Override
+    public Instruction visitWhileStatement(@NotNull TIBasicParser.WhileStatementContext ctx) {
+        ExpressionCode condition = compileExpression(ctx.expression());
+        return newFlowInstruction(ControlFlowToken.WHILE, null, ctx.WHILE().getSymbol(), condition);
+    }
+
+    /**
+     * Makes sure that no list variable is implicitly multiplied with a number variable, i.e. that ∟ABCDEF won't be
+     * interpreted as ∟ABCDE*F. The parser reads list names greedily, so such a multiplication can only occur if the
+     * name of the list is too long.
+     */
+    private void checkImplicitMultiplications(@NotNull TIBasicParser.Expression_mul_divContext ctx) throws PreprocessException {
+        for (int i = 1; i < ctx.getChildCount(); i++) {
+            ParseTree previous = ctx.getChild(i - 1);
+            ParseTree current = ctx.getChild(i);
+            if (previous instanceof TIBasicParser.Expression_infixContext && current instanceof TIBasicParser.Expression_infixContext
+                    && ValidationUtil.isValidListName(previous.getText()) && ValidationUtil.isValidNumberVariableName(current.getText())) {
+                Token token = ((ParserRuleContext) current).getStart();
+                throw new PreprocessException(token.getLine(), token.getCharPositionInLine(), "Invalid list name: " + previous.getText() + current.getText());
+            }
+        }
+    }
+
+    /**
+     * Compiles a single expression into a new and independent {@link ExpressionCode}.
+     */
+    @NotNull
+    private ExpressionCode compileExpression(@NotNull RuleContext ctx) {
+        ExpressionEmitter parentEmitter = this.emitter;
+        this.emitter = new ExpressionEmitter();
+        try {
+            ctx.accept(this);
+            return this.emitter.toExpressionCode();
+        } finally {
+            this.emitter = parentEmitter;
+        }
+    }
+
+    /**
+     * Compiles the row and column of a matrix element into a single expression which results in a list with two
+     * elements.
+     */
+    @NotNull
+    private ExpressionCode compileMatrixPosition(@NotNull RuleContext row, @NotNull RuleContext column) {
+        ExpressionEmitter parentEmitter = this.emitter;
+        this.emitter = new ExpressionEmitter();
+        try {
+            row.accept(this);
+            column.accept(this);
+            this.emitter.emitNewList(2);
+            return this.emitter.toExpressionCode();
+        } finally {
+            this.emitter = parentEmitter;
+        }
+    }
+
+    /**
+     * Internal function for compiling chained binary expressions. The i-th operator will be applied to the result of
+     * all previous operands and the i-th operand. E.g.: operator = ['+','-'] and operands = [1,2,3] will result in
+     * (1 + 2) - 3.
+     */
+    private Object compileGenericExpressions(@NotNull List<String> operators, @NotNull List<? extends ParserRuleContext> contextRules) {
+        contextRules.get(0).accept(this);
+        for (int i = 1; i < contextRules.size(); i++) {
+            contextRules.get(i).accept(this);
+            emitter.emitCall(ExpressionCode.CALL_OPERATOR, newOperatorSite(operators.get(i - 1), contextRules.get(i).getStart()), 2);
+        }
+        return null;
+    }
+
+    /**
+     * Compiles every parameter of a command into a separate {@link ExpressionCode} which evaluates to a {@link
+     * org.xlrnet.tibaija.memory.Parameter}.
+     */
+    @NotNull
+    private ExpressionCode[] compileParameters(@NotNull TIBasicParser.ParameterListContext ctx) {
+        List<TIBasicParser.ParameterContext> parameters = ctx.parameter();
+        ExpressionCode[] compiledParameters = new ExpressionCode[parameters.size()];
+        for (int i = 0; i < compiledParameters.length; i++) {
+            compiledParameters[i] = compileExpression(parameters.get(i));
+        }
+        return compiledParameters;
+    }
+
+    @NotNull
+    private Instruction newFlowInstruction(@NotNull ControlFlowToken flowToken, Object target, @NotNull Token token, ExpressionCode... expressions) {
+        return new Instruction(InstructionType.CONTROL_FLOW, flowToken, target, expressions, token.getLine(), token.getCharPositionInLine());
+    }
+
+    @NotNull
+    private CommandSite newCommandSite(@NotNull CommandSite.Kind kind, @NotNull String commandName, @NotNull Token token) {
+        return new CommandSite(kind, commandName, token.getLine(), token.getCharPositionInLine());
+    }
+
+    private CommandSite newOperatorSite(@NotNull String operator, @NotNull Token token) {
+        return newCommandSite(CommandSite.Kind.EXPRESSION_FUNCTION, operator, token);
+    }
+
+    private Instruction newInstruction(@NotNull InstructionType type, Object target, @NotNull Token token, ExpressionCode... expressions) {
+        return new Instruction(type, null, target, expressions, token.getLine(), token.getCharPositionInLine());
+    }
+}
@@ -0,0 +1,808 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+package org.xlrnet.tibaija.processor;
+
+import org.apache.commons.lang3.NotImplementedException;
+import org.apache.commons.math3.complex.Complex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlrnet.tibaija.commons.CompareUtil;
+import org.xlrnet.tibaija.commons.ComplexMath;
+import org.xlrnet.tibaija.commons.Value;
+import org.xlrnet.tibaija.commons.ValueType;
+import org.xlrnet.tibaija.exception.IllegalControlFlowException;
+import org.xlrnet.tibaija.exception.IllegalTypeException;
+import org.xlrnet.tibaija.exception.InvalidDimensionException;
+import org.xlrnet.tibaija.exception.TIRuntimeException;
+import org.xlrnet.tibaija.exception.TIStopException;
+import org.xlrnet.tibaija.memory.*;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.xlrnet.tibaija.commons.Preconditions.checkValueType;
+
+/**
+ * Interpreter for the compiled {@link Instruction} array of an {@link ExecutableProgram}. The interpreter runs through
+ * the instructions in a single loop and evaluates all expressions on a shared operand stack. Blocks are skipped with the
+ * program's {@link JumpTable}.
+ * <p/>
+ * Unless the environment runs in {@link ExecutionMode#INTERPRETER}, programs will be compiled to JVM classes by the
+ * {@link ProgramCompiler} - either before they start or when one of their loops becomes hot. Compiled programs use the
+ * interpreter only for executing their control flow statements. If a compiled program is deoptimized, the interpreter
+ * continues at the command that failed.
+ * <p/>
+ * If the interpreter is created without support for control flow, it should be used for interactively entered
+ * commands without control structures (if/for/while/repeat) and will throw an exception when encountering any control
+ * flow statement.
+ */
+public class InstructionInterpreter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InstructionInterpreter.class);
+
+    private final boolean controlFlowAllowed;
+
+    /** Site for the addition which is used by IS>(. */
+    private final CommandSite plusSite = new CommandSite(CommandSite.Kind.EXPRESSION_FUNCTION, "+", -1, -1);
+
+    /** Site for the subtraction which is used by DS<(. */
+    private final CommandSite minusSite = new CommandSite(CommandSite.Kind.EXPRESSION_FUNCTION, "-", -1, -1);
+
+    private InternalExecutionEnvironment environment;
+
+    private Object[] operandStack = new Object[16];
+
+    private int stackPointer;
+
+    /** Stack with the command indices of all currently opened blocks. */
+    private int[] blockStack = new int[16];
+
+    private int blockStackSize;
+
+    /** End values of all For loops on the block stack. Indexed like the block stack. */
+    private double[] loopEnds = new double[16];
+
+    /** Steps of all For loops on the block stack. Indexed like the block stack. */
+    private double[] loopSteps = new double[16];
+
+    /**
+     * Creates a new interpreter.
+     *
+     * @param controlFlowAllowed
+     *         If false, the interpreter will throw an {@link IllegalControlFlowException} on every control flow
+     *         statement.
+     */
+    public InstructionInterpreter(boolean controlFlowAllowed) {
+        this.controlFlowAllowed = controlFlowAllowed;
+    }
+
+    /**
+     * Sets the internal execution environment.
+     *
+     * @param environment
+     *         The new execution environment.
+     */
+    final public void setEnvironment(InternalExecutionEnvironment environment) {
+        this.environment = environment;
+    }
+
+    /**
+     * Returns the internal execution environment.
+     *
+     * @return the internal execution environment.
+     */
+    final InternalExecutionEnvironment getEnvironment() {
+        return this.environment;
+    }
+
+    /**
+     * Runs all instructions of the given program.
+     *
+     * @param program
+     *         The program to run.
+     * @throws TIRuntimeException
+     *         Will be thrown on errors while executing the program
+     */
+    public void run(@NotNull ExecutableProgram program) throws TIRuntimeException {
+        // Lazily parsed programs replace their placeholders in this array as soon as they are parsed
+        final Instruction[] instructions = program.getLoadedInstructions();
+        final JumpTable jumpTable = program.getJumpTable();
+        final ExecutionMode executionMode = this.controlFlowAllowed ? this.environment.getExecutionMode() : ExecutionMode.INTERPRETER;
+        final int backEdgeThreshold = this.environment.getBackEdgeThreshold();
+
+        // Number of back edges to each loop header - only needed if the program may be compiled
+        final int[] backEdgeCounters = executionMode != ExecutionMode.INTERPRETER ? new int[instructions.length] : null;
+
+        try {
+            int commandCounter = 0;
+            if (executionMode == ExecutionMode.COMPILER) {
+                commandCounter = runCompiled(program, commandCounter);
+            }
+            while (commandCounter < instructions.length) {
+                Instruction nextInstruction = instructions[commandCounter];
+                if (nextInstruction.isDeferred()) {
+                    nextInstruction = program.parseDeferredCommand(commandCounter);
+                }
+
+                if (nextInstruction.isControlFlowStatement()) {
+                    int nextCommand = executeControlFlow(commandCounter, instructions, jumpTable, null);
+                    if (backEdgeCounters != null && nextCommand <= commandCounter && ++backEdgeCounters[nextCommand] >= backEdgeThreshold) {
+                        backEdgeCounters[nextCommand] = 0;
+                        LOGGER.debug("Promoting loop at command {} of program {} to compiled code", nextCommand, program.getProgramName());
+                        nextCommand = runCompiled(program, nextCommand);
+                    }
+                    commandCounter = nextCommand;
+                } else {
+                    executeInstruction(nextInstruction);
+                    commandCounter++;
+                }
+            }
+        } catch (TIStopException stop) {
+            LOGGER.debug("Forced program stop in line {} at char {}", stop.getLinenumber(), stop.getCharInLine());
+        }
+    }
+
+    /**
+     * Continues the given program in compiled code at the given command. The compiled program shares the block stack
+     * with this interpreter, so no further state must be transferred. Leaving the compiled code at a command which
+     * hasn't been parsed yet is not a deoptimization.
+     *
+     * @return the index of the next command which must be interpreted.
+     */
+    private int runCompiled(@NotNull ExecutableProgram program, int commandIndex) {
+        CompiledProgram compiledProgram = ProgramCompiler.instantiate(program, this);
+        if (compiledProgram == null) {
+            return commandIndex;
+        }
+        int nextCommand = compiledProgram.run(commandIndex);
+        Instruction[] instructions = program.getLoadedInstructions();
+        if (nextCommand < instructions.length && !instructions[nextCommand].isDeferred()) {
+            ProgramCompiler.deoptimize(program, nextCommand);
+        }
+        return nextCommand;
+    }
+
+    /**
+     * Evaluates the given expression code on the operand stack and returns the resulting {@link Value} or {@link
+     * Parameter}. The evaluation may be nested, i.e. commands that are called while evaluating may evaluate other
+     * expressions with the same interpreter.
+     *
+     * @param expression
+     *         The expression to evaluate.
+     * @return The result of the expression.
+     */
+    @NotNull
+    Object evaluate(@NotNull ExpressionCode expression) {
+        final int[] code = expression.getCode();
+        final Object[] constants = expression.getConstants();
+        if (expression.isConstant()) {
+            return constants[code[1]];
+        }
+
+        final int base = this.stackPointer;
+        final ReadOnlyCalculatorMemory memory = this.environment.getMemory();
+
+        ensureStackCapacity(base + expression.getMaxStackSize());
+        Object[] stack = this.operandStack;
+        int sp = base;
+        int pc = 0;
+
+        try {
+            while (pc < code.length) {
+                switch (code[pc++]) {
+                    case ExpressionCode.PUSH_CONSTANT:
+                        stack[sp++] = constants[code[pc++]];
+                        break;
+                    case ExpressionCode.LOAD_NUMBER_VARIABLE:
+                        stack[sp++] = memory.getNumberVariableValue((NumberVariable) constants[code[pc++]]);
+                        break;
+                    case ExpressionCode.LOAD_STRING_VARIABLE:
+                        stack[sp++] = memory.getStringVariableValue((StringVariable) constants[code[pc++]]);
+                        break;
+                    case ExpressionCode.LOAD_LIST_VARIABLE:
+                        stack[sp++] = memory.getListVariableValue((ListVariable) constants[code[pc++]]);
+                        break;
+                    case ExpressionCode.LOAD_LIST_ELEMENT: {
+                        ListVariable listVariable = (ListVariable) constants[code[pc++]];
+                        int line = code[pc++];
+                        int charIndex = code[pc++];
+                        int index = toIntegerIndex((Value) stack[sp - 1], line, charIndex);
+                        stack[sp - 1] = memory.getListVariableElementValue(listVariable, index);
+                        break;
+                    }
+                    case ExpressionCode.LOAD_MATRIX_VARIABLE:
+                        stack[sp++] = memory.getMatrixVariableValue((MatrixVariable) constants[code[pc++]]);
+                        break;
+                    case ExpressionCode.LOAD_MATRIX_ELEMENT: {
+                        MatrixVariable matrixVariable = (MatrixVariable) constants[code[pc++]];
+                        int line = code[pc++];
+                        int charIndex = code[pc++];
+                        int row = toIntegerIndex((Value) stack[sp - 2], line, charIndex);
+                        int column = toIntegerIndex((Value) stack[sp - 1], line, charIndex);
+                        stack[--sp - 1] = memory.getMatrixVariableElementValue(matrixVariable, row, column);
+                        break;
+                    }
+                    case ExpressionCode.LOAD_LAST_RESULT:
+                        stack[sp++] = memory.getLastResult();
+                        break;
+                    case ExpressionCode.NEW_LIST: {
+                        int numberOfElements = code[pc++];
+                        sp -= numberOfElements;
+                        Value[] elements = new Value[numberOfElements];
+                        System.arraycopy(stack, sp, elements, 0, numberOfElements);
+                        stack[sp++] = Value.listOf(elements);
+                        break;
+                    }
+                    case ExpressionCode.NEW_MATRIX: {
+                        int rows = code[pc++];
+                        int columns = code[pc++];
+                        int numberOfElements = rows * columns;
+                        sp -= numberOfElements;
+                        Value[] elements = new Value[numberOfElements];
+                        System.arraycopy(stack, sp, elements, 0, numberOfElements);
+                        stack[sp++] = Value.matrixOf(columns, elements);
+                        break;
+                    }
+                    case ExpressionCode.CALL_OPERATOR: {
+                        CommandSite site = (CommandSite) constants[code[pc++]];
+                        int numberOfArguments = code[pc++];
+                        sp -= numberOfArguments;
+                        this.stackPointer = sp;
+                        Value result;
+                        if (numberOfArguments == 2) {
+                            result = callOperator(site, (Value) stack[sp], (Value) stack[sp + 1]);
+                        } else if (numberOfArguments == 1) {
+                            result = callOperator(site, (Value) stack[sp]);
+                        } else {
+                            result = callOperator(site, Arrays.copyOfRange(stack, sp, sp + numberOfArguments, Value[].class));
+                        }
+                        stack = this.operandStack;      // The stack might have been grown by a nested evaluation
+                        stack[sp++] = result;
+                        break;
+                    }
+                    case ExpressionCode.CALL_FUNCTION: {
+                        CommandSite site = (CommandSite) constants[code[pc++]];
+                        int numberOfArguments = code[pc++];
+                        Parameter[] arguments = new Parameter[numberOfArguments];
+                        sp -= numberOfArguments;
+                        System.arraycopy(stack, sp, arguments, 0, numberOfArguments);
+                        this.stackPointer = sp;
+                        Value result = callCommand(site, arguments).get();
+                        stack = this.operandStack;      // The stack might have been grown by a nested evaluation
+                        stack[sp++] = result;
+                        break;
+                    }
+                    case ExpressionCode.MULTIPLY_COMPLEX: {
+                        Complex factor = (Complex) constants[code[pc++]];
+                        stack[sp - 1] = ComplexMath.multiply((Value) stack[sp - 1], factor);
+                        break;
+                    }
+                    case ExpressionCode.VALUE_PARAMETER:
+                        stack[sp - 1] = Parameter.value((Value) stack[sp - 1]);
+                        break;
+                    case ExpressionCode.VARIABLE_PARAMETER:
+                        stack[sp++] = Parameter.variable((Variable) constants[code[pc++]], memory);
+                        break;
+                    case ExpressionCode.EXPRESSION_PARAMETER: {
+                        ExpressionCode nestedExpression = (ExpressionCode) constants[code[pc++]];
+                        stack[sp++] = Parameter.expression(() -> evaluateValue(nestedExpression));
+                        break;
+                    }
+                    default:
+                        throw new IllegalStateException("Internal error: illegal opcode " + code[pc - 1]);
+                }
+            }
+            return stack[base];
+        } finally {
+            this.stackPointer = base;
+        }
+    }
+
+    /**
+     * Evaluates the given expression code and returns the resulting {@link Value}.
+     *
+     * @param expression
+     *         The expression to evaluate.
+     * @return The resulting value of the expression.
+     */
+    @NotNull
+    Value evaluateValue(@NotNull ExpressionCode expression) {
+        return (Value) evaluate(expression);
+    }
+
+    /**
+     * Calls the command which is bound to the given site with the given arguments.
+     */
+    @NotNull
+    Optional<Value> callCommand(@NotNull CommandSite site, @NotNull Parameter[] arguments) {
+        return this.environment.internalExecuteCommand(site.resolve(this.environment), arguments);
+    }
+
+    /**
+     * Calls the unary operator which is bound to the given site. Sites that have only seen finite real operands will
+     * use the real-only operation of their command until the first other operand shows up.
+     */
+    @NotNull
+    Value callOperator(@NotNull CommandSite site, @NotNull Value operand) {
+        Command command = site.resolve(this.environment);
+        switch (site.getSpecialization()) {
+            case REAL:
+                if (operand.isFiniteReal()) {
+                    double result = site.getRealUnaryOperation().applyAsDouble(operand.realPart());
+                    if (!Double.isNaN(result)) {
+                        return Value.of(result);
+                    }
+                }
+                LOGGER.trace("Generalizing call site of {}", site.getCommandName());
+                site.generalize();
+                break;
+            case UNINITIALIZED:
+                site.specialize(1, operand.isFiniteReal());
+                break;
+        }
+        if (command.supportsDirectCall(1)) {
+            return command.executeUnary(operand);
+        }
+        return executeWithValues(command, operand);
+    }
+
+    /**
+     * Calls the binary operator which is bound to the given site. Sites that have only seen finite real operands will
+     * use the real-only operation of their command until the first other operand shows up.
+     */
+    @NotNull
+    Value callOperator(@NotNull CommandSite site, @NotNull Value left, @NotNull Value right) {
+        Command command = site.resolve(this.environment);
+        switch (site.getSpecialization()) {
+            case REAL:
+                if (left.isFiniteReal() && right.isFiniteReal()) {
+                    double result = site.getRealBinaryOperation().applyAsDouble(left.realPart(), right.realPart());
+                    if (!Double.isNaN(result)) {
+                        return Value.of(result);
+                    }
+                }
+                LOGGER.trace("Generalizing call site of {}", site.getCommandName());
+                site.generalize();
+                break;
+            case UNINITIALIZED:
+                site.specialize(2, left.isFiniteReal() && right.isFiniteReal());
+                break;
+        }
+        if (command.supportsDirectCall(2)) {
+            return command.executeBinary(left, right);
+        }
+        return executeWithValues(command, left, right);
+    }
+
+    /**
+     * Calls the command which is bound to the given site with any number of values.
+     */
+    @NotNull
+    Value callOperator(@NotNull CommandSite site, @NotNull Value[] operands) {
+        return executeWithValues(site.resolve(this.environment), operands);
+    }
+
+    @NotNull
+    private Value executeWithValues(@NotNull Command command, @NotNull Value... values) {
+        Parameter[] arguments = new Parameter[values.length];
+        for (int i = 0; i < values.length; i++) {
+            arguments[i] = Parameter.value(values[i]);
+        }
+        return this.environment.internalExecuteCommand(command, arguments).get();
+    }
+
+    private void ensureStackCapacity(int requiredCapacity) {
+        if (this.operandStack.length < requiredCapacity) {
+            this.operandStack = Arrays.copyOf(this.operandStack, Math.max(requiredCapacity, this.operandStack.length * 2));
+        }
+    }
+
+    @NotNull
+    private Parameter[] evaluateParameters(@NotNull Instruction instruction) {
+        ExpressionCode[] expressions = instruction.getExpressions();
+        Parameter[] parameters = new Parameter[expressions.length];
+        for (int i = 0; i < expressions.length; i++) {
+            parameters[i] = (Parameter) evaluate(expressions[i]);
+        }
+        return parameters;
+    }
+
+    private void executeInstruction(@NotNull Instruction instruction) {
+        switch (instruction.getType()) {
+            case EMPTY:
+                break;
+            case COMMAND_FUNCTION:
+            case COMMAND_STATEMENT:
+                callCommand((CommandSite) instruction.getTarget(), evaluateParameters(instruction));
+                break;
+            case STORE_LIST_ELEMENT:
+            case STORE_MATRIX_ELEMENT:
+                store(instruction, evaluateValue(instruction.getExpression(0)), evaluateValue(instruction.getExpression(1)));
+                break;
+            case STOP:
+                throw new TIStopException(instruction.getLine(), instruction.getCharIndex());
+            default:
+                store(instruction, evaluateValue(instruction.getExpression(0)), null);
+        }
+    }
+
+    /**
+     * Stores the evaluated value of an expression or store instruction in its target and sets it as the last result.
+     *
+     * @param instruction
+     *         The instruction to complete.
+     * @param value
+     *         The value of the first expression of the instruction.
+     * @param index
+     *         The list index for {@link Instruction.InstructionType#STORE_LIST_ELEMENT}, a list with row and column for
+     *         {@link Instruction.InstructionType#STORE_MATRIX_ELEMENT} or null for all other types.
+     */
+    void store(@NotNull Instruction instruction, @NotNull Value value, @Nullable Value index) {
+        final CalculatorMemory memory = this.environment.getWritableMemory();
+        final Object target = instruction.getTarget();
+
+        switch (instruction.getType()) {
+            case EXPRESSION:
+                break;
+            case STORE_NUMBER:
+                memory.setNumberVariableValue((NumberVariable) target, value);
+                break;
+            case STORE_LIST:
+                memory.setListVariableValue((ListVariable) target, value);
+                break;
+            case STORE_LIST_ELEMENT: {
+                int indexValue = toIntegerIndex(index, instruction.getLine(), instruction.getCharIndex());
+                memory.setListVariableElementValue((ListVariable) target, indexValue, value);
+                break;
+            }
+            case STORE_LIST_DIMENSION: {
+                int dimensionValue = toIntegerIndex(value, instruction.getLine(), instruction.getCharIndex());
+                memory.setListVariableSize((ListVariable) target, dimensionValue);
+                break;
+            }
+            case STORE_MATRIX:
+                memory.setMatrixVariableValue((MatrixVariable) target, value);
+                break;
+            case STORE_MATRIX_ELEMENT: {
+                int row = toIntegerIndex(index.listElement(0), instruction.getLine(), instruction.getCharIndex());
+                int column = toIntegerIndex(index.listElement(1), instruction.getLine(), instruction.getCharIndex());
+                memory.setMatrixVariableElementValue((MatrixVariable) target, row, column, value);
+                break;
+            }
+            case STORE_MATRIX_DIMENSION: {
+                checkValueType(value, ValueType.LIST);
+                if (value.listSize() != 2) {
+                    throw new InvalidDimensionException(instruction.getLine(), instruction.getCharIndex(), "Matrix dimension must have two elements", value);
+                }
+                int rows = toIntegerIndex(value.listElement(0), instruction.getLine(), instruction.getCharIndex());
+                int columns = toIntegerIndex(value.listElement(1), instruction.getLine(), instruction.getCharIndex());
+                memory.setMatrixVariableDimension((MatrixVariable) target, rows, columns);
+                break;
+            }
+            case STORE_STRING:
+                memory.setStringVariableValue((StringVariable) target, value);
+                break;
+            default:
+                throw new IllegalStateException("Internal error: unexpected instruction " + instruction);
+        }
+
+        memory.setLastResult(value);
+    }
+
+    /**
+     * Executes a control flow instruction and returns the index of the next command to execute. Every opened block
+     * will be pushed on the block stack until it is closed by its End. Blocks are skipped by jumping directly to the
+     * matching command in the jump table.
+     *
+     * @param commandIndex
+     *         The index of the control flow instruction.
+     * @param instructions
+     *         All instructions of the program.
+     * @param jumpTable
+     *         The jump table of the program.
+     * @param evaluatedCondition
+     *         The already evaluated condition of an If or While, or null if the condition must be evaluated.
+     * @return the index of the next command to execute.
+     */
+    int executeControlFlow(int commandIndex, @NotNull Instruction[] instructions, @NotNull JumpTable jumpTable, @Nullable Value evaluatedCondition) {
+        final Instruction instruction = instructions[commandIndex];
+        final int line = instruction.getLine();
+        final int charIndex = instruction.getCharIndex();
+        final ControlFlowToken token = instruction.getFlowToken();
+
+        if (!this.controlFlowAllowed) {
+            LOGGER.debug("Illegal control flow statement: {}", token);
+            throw new IllegalControlFlowException(line, charIndex, "Unexpected control flow statement: " + token);
+        }
+
+        switch (token) {
+            case IF: {
+                if (commandIndex + 1 >= instructions.length) {
+                    throw new IllegalControlFlowException(line, charIndex, "Illegal 'If' at the end of the program");
+                }
+                boolean condition = evaluateCondition(instruction, evaluatedCondition);
+                if (instructions[commandIndex + 1].getFlowToken() == ControlFlowToken.THEN) {
+                    final int thenIndex = commandIndex + 1;
+                    if (condition) {
+                        pushBlock(thenIndex);
+                        return thenIndex + 1;
+                    }
+                    int closingIndex = skipBlock(thenIndex, jumpTable, instruction);
+                    if (closingIndex < instructions.length && instructions[closingIndex].getFlowToken() == ControlFlowToken.ELSE) {
+                        LOGGER.trace("Continuing at ELSE command {}", closingIndex);
+                        pushBlock(closingIndex);
+                    }
+                    return closingIndex + 1;
+                } else if (!condition) {
+                    // If the next command is not a Then and the If evaluated to false, skip the next command
+                    LOGGER.trace("Skipped IF statement without THEN clause at command {}", commandIndex + 1);
+                    return commandIndex + 2;
+                }
+                return commandIndex + 1;
+            }
+            case THEN:
+                // A valid Then will always be consumed by its If
+                throw new IllegalControlFlowException(line, charIndex, "Illegal 'Then' Statement without preceding 'If'");
+            case ELSE:
+                if (this.blockStackSize == 0 || instructions[peekBlock()].getFlowToken() != ControlFlowToken.THEN) {
+                    throw new IllegalControlFlowException(line, charIndex, "Illegal 'Else' Statement without preceding 'Then'");
+                }
+                popBlock();
+                return skipBlock(commandIndex, jumpTable, instruction) + 1;
+            case WHILE:
+                if (evaluateCondition(instruction, evaluatedCondition)) {
+                    pushBlock(commandIndex);
+                    return commandIndex + 1;
+                }
+                return skipBlock(commandIndex, jumpTable, instruction) + 1;
+            case REPEAT:
+                // No evaluation needed on repeat visit!
+                LOGGER.trace("Entering repeat loop at command {}", commandIndex);
+                pushBlock(commandIndex);
+                return commandIndex + 1;
+            case FOR:
+                return internalHandleForLogic(commandIndex, jumpTable, instruction);
+            case END:
+                return internalHandleEndLogic(commandIndex, instructions, instruction);
+            case GOTO:
+                int targetIndex = (Integer) instruction.getTarget();
+                unwindBlocks(targetIndex, jumpTable);
+                LOGGER.trace("Jumping to label at command {}", targetIndex);
+                return targetIndex + 1;
+            case LABEL:
+                return commandIndex + 1;    // Do nothing when encountering Label
+            case INCREMENT_SKIP_GREATER:
+            case DECREMENT_SKIP_LESS:
+                boolean skipNext = evaluateSkipInstruction(instruction);
+                if (commandIndex + 1 >= instructions.length) {
+                    throw new IllegalControlFlowException(line, charIndex, "Missing next command");
+                }
+                if (skipNext) {
+                    LOGGER.trace("Skipping next command...");
+                    return commandIndex + 2;
+                }
+                return commandIndex + 1;
+            default:
+                throw new NotImplementedException("Flow not implemented");
+        }
+    }
+
+    /**
+     * Closes the block on top of the block stack. Loops will jump back to their opener or to their first command.
+     */
+    private int internalHandleEndLogic(int commandIndex, @NotNull Instruction[] instructions, @NotNull Instruction instruction) {
+        if (this.blockStackSize == 0) {
+            throw new IllegalControlFlowException(instruction.getLine(), instruction.getCharIndex(), "Illegal 'End' Statement without preceding endable element");
+        }
+
+        final int openerIndex = peekBlock();
+        final Instruction opener = instructions[openerIndex];
+
+        switch (opener.getFlowToken()) {
+            case WHILE:
+                // Jump back to the While command which will evaluate the condition again
+                popBlock();
+                LOGGER.trace("Moving command counter to index {}", openerIndex);
+                return openerIndex;
+            case REPEAT:
+                // Repeat will only be checked at the END command!
+                if (evaluateValue(opener.getExpression(0)).bool()) {
+                    popBlock();
+                    return commandIndex + 1;
+                }
+                LOGGER.trace("Moving command counter to index {}", openerIndex + 1);
+                return openerIndex + 1;
+            case FOR: {
+                // Increment the variable and continue with the loop body if it is still in the bounds
+                final int depth = this.blockStackSize - 1;
+                final double end = this.loopEnds[depth];
+                final double step = this.loopSteps[depth];
+                NumberVariable targetVariable = (NumberVariable) opener.getTarget();
+                double value = toLoopBound(this.environment.getMemory().getNumberVariableValue(targetVariable), opener) + step;
+                this.environment.getWritableMemory().setNumberVariableValue(targetVariable, Value.of(value));
+                if (isInLoopBounds(value, end, step)) {
+                    LOGGER.trace("Moving command counter to index {}", openerIndex + 1);
+                    return openerIndex + 1;
+                }
+                popBlock();
+                return commandIndex + 1;
+            }
+            default:
+                popBlock();
+                return commandIndex + 1;
+        }
+    }
+
+    /**
+     * Enters a For loop. Start, end and step are evaluated only once when the loop is entered and the loop variable
+     * will always be set to the start value. If the loop will be executed at least once, its bounds will be stored
+     * next to its entry on the block stack. All further iterations are handled by the End of the loop.
+     */
+    private int internalHandleForLogic(int commandIndex, @NotNull JumpTable jumpTable, @NotNull Instruction instruction) {
+        if (this.blockStackSize > 0 && peekBlock() == commandIndex) {
+            popBlock();     // Reentering a loop which is still open will restart it
+        }
+
+        NumberVariable numberVariable = (NumberVariable) instruction.getTarget();
+        Value startValue = evaluateValue(instruction.getExpression(0));
+        double start = toLoopBound(startValue, instruction);
+        double end = toLoopBound(evaluateValue(instruction.getExpression(1)), instruction);
+        double step = 1;
+        if (instruction.getExpressions().length == 3) {
+            step = toLoopBound(evaluateValue(instruction.getExpression(2)), instruction);
+        }
+
+        if (step == 0) {
+            throw new IllegalTypeException(instruction.getLine(), instruction.getCharIndex(), "Increment may not be zero", ValueType.NUMBER, ValueType.NUMBER);
+        }
+
+        // The start value will be set ALWAYS when the loop is entered from top-down
+        this.environment.getWritableMemory().setNumberVariableValue(numberVariable, startValue);
+
+        if (isInLoopBounds(start, end, step)) {
+            LOGGER.trace("Entering FOR loop at command {}", commandIndex);
+            pushLoop(commandIndex, end, step);
+            return commandIndex + 1;
+        }
+
+        return skipBlock(commandIndex, jumpTable, instruction) + 1;
+    }
+
+    private boolean evaluateCondition(@NotNull Instruction instruction, @Nullable Value evaluatedCondition) {
+        if (evaluatedCondition != null) {
+            return evaluatedCondition.bool();
+        }
+        return evaluateValue(instruction.getExpression(0)).bool();
+    }
+
+    /**
+     * Evaluates an IS>( or DS<( command and returns true if the next command must be skipped.
+     */
+    private boolean evaluateSkipInstruction(@NotNull Instruction instruction) {
+        final int line = instruction.getLine();
+        final int charIndex = instruction.getCharIndex();
+        final boolean isIncrement = instruction.getFlowToken() == ControlFlowToken.INCREMENT_SKIP_GREATER;
+
+        NumberVariable numberVariable = (NumberVariable) instruction.getTarget();
+        Value oldVariableValue = this.environment.getMemory().getNumberVariableValue(numberVariable);
+        Value compareValue = evaluateValue(instruction.getExpression(0));
+
+        if (oldVariableValue.hasImaginaryValue())
+            throw new IllegalTypeException(line, charIndex, "Unexpected imaginary value", ValueType.NUMBER, ValueType.NUMBER);
+
+        Value newVariableValue = callOperator(isIncrement ? this.plusSite : this.minusSite, oldVariableValue, Value.ONE);
+        this.environment.getWritableMemory().setNumberVariableValue(numberVariable, newVariableValue);
+
+        // If new (incremented) value is greater or new (decremented) value is less than the expected, skip the next command
+        if (isIncrement) {
+            return CompareUtil.isGreaterThan(newVariableValue, compareValue);
+        } else {
+            return CompareUtil.isLessThan(newVariableValue, compareValue);
+        }
+    }
+
+    private int peekBlock() {
+        return this.blockStack[this.blockStackSize - 1];
+    }
+
+    private void popBlock() {
+        this.blockStackSize--;
+    }
+
+    private void pushBlock(int openerIndex) {
+        if (this.blockStackSize == this.blockStack.length) {
+            this.blockStack = Arrays.copyOf(this.blockStack, this.blockStackSize * 2);
+        }
+        this.blockStack[this.blockStackSize++] = openerIndex;
+    }
+
+    /**
+     * Opens the block of a For loop and stores its bounds next to it.
+     */
+    private void pushLoop(int openerIndex, double end, double step) {
+        pushBlock(openerIndex);
+        if (this.loopEnds.length < this.blockStack.length) {
+            this.loopEnds = Arrays.copyOf(this.loopEnds, this.blockStack.length);
+            this.loopSteps = Arrays.copyOf(this.loopSteps, this.blockStack.length);
+        }
+        this.loopEnds[this.blockStackSize - 1] = end;
+        this.loopSteps[this.blockStackSize - 1] = step;
+    }
+
+    /**
+     * Closes all opened blocks that don't contain the given target of a jump. Blocks that contain the target stay open,
+     * so that their End will work as expected after the jump.
+     */
+    private void unwindBlocks(int targetIndex, @NotNull JumpTable jumpTable) {
+        while (this.blockStackSize > 0 && !jumpTable.isInsideBlock(peekBlock(), targetIndex)) {
+            LOGGER.trace("Leaving block at command {}", peekBlock());
+            popBlock();
+        }
+    }
+
+    /**
+     * Returns the index of the command that closes the block opened at the given index. The block must not contain
+     * any unmatched control flow statements.
+     */
+    private int skipBlock(int openerIndex, @NotNull JumpTable jumpTable, @NotNull Instruction instruction) {
+        if (jumpTable.isMalformed(openerIndex)) {
+            throw new IllegalControlFlowException(instruction.getLine(), instruction.getCharIndex(), "Illegal control flow statement in skipped block");
+        }
+        int closingIndex = jumpTable.getMatchingIndex(openerIndex);
+        LOGGER.trace("Skipping commands from {} to {}", openerIndex, closingIndex);
+        return closingIndex;
+    }
+
+    private static boolean isInLoopBounds(double value, double end, double step) {
+        return step > 0 ? value <= end : value >= end;
+    }
+
+    /**
+     * Converts the given value to a bound of a For loop. The value must be a real number.
+     */
+    private static double toLoopBound(@NotNull Value value, @NotNull Instruction instruction) {
+        if (value.hasImaginaryValue()) {
+            throw new IllegalTypeException(instruction.getLine(), instruction.getCharIndex(), "Value may not be imaginary", ValueType.NUMBER, ValueType.NUMBER);
+        }
+        return value.realPart();
+    }
+
+    /**
+     * Converts the given value to an integer index. The value must be a real integer.
+     */
+    static int toIntegerIndex(@NotNull Value index, int line, int charIndex) {
+        if (index.hasImaginaryValue()) {
+            throw new InvalidDimensionException(line, charIndex, "Index may not be imaginary", index);
+        }
+
+        double indexValue = index.realPart();
+
+        if (indexValue % 1 != 0) {
+            throw new InvalidDimensionException(line, charIndex, "Index may not be decimal", index);
+        }
+
+        return (int) indexValue;
+    }
+}
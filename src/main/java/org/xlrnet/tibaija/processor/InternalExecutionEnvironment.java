@@ -26,6 +26,7 @@ import com.google.common.collect.ImmutableList;
 import org.apache.commons.lang3.CharUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xlrnet.tibaija.ExecutionEnvironment;
@@ -40,10 +41,13 @@ import org.xlrnet.tibaija.memory.ReadOnlyCalculatorMemory;
 import org.xlrnet.tibaija.memory.ValueFormatUtils;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -55,6 +59,15 @@ public class InternalExecutionEnvironment implements ExecutionEnvironment {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(InternalExecutionEnvironment.class);
 
+    /** Default number of back edges to a loop header after which a program will be compiled in tiered mode. */
+    public static final int DEFAULT_BACK_EDGE_THRESHOLD = 1000;
+
+    /** Default number of deoptimizations after which a program will only be compiled without specialized code. */
+    public static final int DEFAULT_DEOPTIMIZATION_LIMIT = 4;
+
+    /** Default number of list elements from which element-wise list operations will be split across multiple threads. */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1 << 16;
+
     private final HomeScreen homeScreen;
 
     private final Stack<ExecutableProgram> programStack = new Stack<>();
@@ -85,6 +98,16 @@ public class InternalExecutionEnvironment implements ExecutionEnvironment {
 
     private NumberDisplayFormat numberDisplayFormat = NumberDisplayFormat.NORMAL;
 
+    private ExecutionMode executionMode = ExecutionMode.INTERPRETER;
+
+    private int backEdgeThreshold = DEFAULT_BACK_EDGE_THRESHOLD;
+
+    private int deoptimizationLimit = DEFAULT_DEOPTIMIZATION_LIMIT;
+
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    private int parallelism = ForkJoinPool.getCommonPoolParallelism();
+
     protected InternalExecutionEnvironment(@NotNull CalculatorMemory memory, @NotNull CalculatorIO calculatorIO, @NotNull CodeProvider codeProvider, @NotNull HomeScreen homeScreen, @NotNull FontRegistry fontRegistry, @NotNull Display display, @NotNull KeyProvider keyProvider, @NotNull KeyMapper keyMapper) {
         this.memory = memory;
         this.calculatorIO = calculatorIO;
@@ -94,6 +117,7 @@ public class InternalExecutionEnvironment implements ExecutionEnvironment {
         this.display = display;
         this.keyProvider = keyProvider;
         this.keyMapper = keyMapper;
+        this.preprocessor.setProgramCache(codeProvider.getProgramCache());
     }
 
     @Override
@@ -124,7 +148,7 @@ public class InternalExecutionEnvironment implements ExecutionEnvironment {
 
         LOGGER.info("Starting program '{}'", upperCaseProgramName);
 
-        run(executableProgram, new FullTIBasicVisitor());
+        run(executableProgram, new InstructionInterpreter(true));
     }
 
     @Override
@@ -155,6 +179,134 @@ public class InternalExecutionEnvironment implements ExecutionEnvironment {
         this.decimalDisplayMode = decimalDisplayMode;
     }
 
+    /**
+     * Returns the number of back edges to a single loop header after which a program will be compiled.
+     *
+     * @return the number of back edges to a single loop header after which a program will be compiled.
+     */
+    public int getBackEdgeThreshold() {
+        return this.backEdgeThreshold;
+    }
+
+    /**
+     * Sets the number of back edges to a single loop header after which a program will be compiled and continued in
+     * compiled code. Back edges are jumps from an End to its loop or from a Goto to a preceding label. The threshold is
+     * used in {@link ExecutionMode#TIERED} and after deoptimizations in {@link ExecutionMode#COMPILER}.
+     *
+     * @param backEdgeThreshold
+     *         The new threshold. Must be at least one.
+     */
+    public void setBackEdgeThreshold(int backEdgeThreshold) {
+        checkArgument(backEdgeThreshold > 0, "Threshold must be positive");
+        this.backEdgeThreshold = backEdgeThreshold;
+    }
+
+    /**
+     * Returns the number of deoptimizations after which a program will be compiled without specialized code.
+     *
+     * @return the number of deoptimizations after which a program will be compiled without specialized code.
+     */
+    public int getDeoptimizationLimit() {
+        return this.deoptimizationLimit;
+    }
+
+    /**
+     * Sets the number of deoptimizations after which a program will be compiled without specialized code. A limit of
+     * zero disables specialized code completely.
+     *
+     * @param deoptimizationLimit
+     *         The new limit. Must not be negative.
+     */
+    public void setDeoptimizationLimit(int deoptimizationLimit) {
+        checkArgument(deoptimizationLimit >= 0, "Limit may not be negative");
+        this.deoptimizationLimit = deoptimizationLimit;
+    }
+
+    /**
+     * Returns the number of list elements from which element-wise list operations will be split across multiple
+     * threads.
+     *
+     * @return the number of list elements from which list operations will be split across multiple threads.
+     */
+    public int getParallelThreshold() {
+        return this.parallelThreshold;
+    }
+
+    /**
+     * Sets the number of list elements from which element-wise list operations will be split across the common {@link
+     * ForkJoinPool}. Operations on smaller lists will always run sequentially on the calling thread.
+     *
+     * @param parallelThreshold
+     *         The new threshold. Must be at least one.
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        checkArgument(parallelThreshold > 0, "Threshold must be positive");
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Returns the maximum number of chunks in which a single list operation will be split.
+     *
+     * @return the maximum number of chunks in which a single list operation will be split.
+     */
+    public int getParallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Sets the maximum number of chunks in which a single list operation above the parallel threshold will be split.
+     * The default is the parallelism of the common {@link ForkJoinPool}. A parallelism of one disables parallel list
+     * operations.
+     *
+     * @param parallelism
+     *         The new parallelism. Must be at least one.
+     */
+    public void setParallelism(int parallelism) {
+        checkArgument(parallelism > 0, "Parallelism must be positive");
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Returns the mode in which programs will be executed.
+     *
+     * @return the mode in which programs will be executed.
+     */
+    @NotNull
+    public ExecutionMode getExecutionMode() {
+        return this.executionMode;
+    }
+
+    /**
+     * Sets the mode in which programs will be executed. The mode will be used for all programs that are started
+     * afterwards.
+     *
+     * @param executionMode
+     *         The new execution mode.
+     */
+    public void setExecutionMode(@NotNull ExecutionMode executionMode) {
+        this.executionMode = executionMode;
+    }
+
+    /**
+     * Returns the front end which parses new programs.
+     *
+     * @return the front end which parses new programs.
+     */
+    @NotNull
+    public FrontEnd getFrontEnd() {
+        return this.preprocessor.getFrontEnd();
+    }
+
+    /**
+     * Sets the front end which parses new programs. Programs which have already been loaded won't be parsed again.
+     *
+     * @param frontEnd
+     *         The new front end.
+     */
+    public void setFrontEnd(@NotNull FrontEnd frontEnd) {
+        this.preprocessor.setFrontEnd(frontEnd);
+    }
+
     @Override
     @NotNull
     public FontRegistry getFontRegistry() {
@@ -220,7 +372,7 @@ public class InternalExecutionEnvironment implements ExecutionEnvironment {
 
         try {
             ExecutableProgram executableProgram = internalPreprocessCode("TMP", cleanedInput);
-            run(executableProgram, new ControlflowLessTIBasicVisitor());
+            run(executableProgram, new InstructionInterpreter(false));
         } catch (PreprocessException e) {
             LOGGER.error("Preprocessing commands failed: {}", e.getMessage());
             throw e;
@@ -339,20 +491,114 @@ public class InternalExecutionEnvironment implements ExecutionEnvironment {
     }
 
     /**
-     * Run a given {@link org.xlrnet.tibaija.processor.ExecutableProgram} inside this environment. The program will be
-     * visited with the given visitor.
+     * Binds all command sites of the given program to the commands that are registered in this environment. Sites
+     * whose command is not registered will stay unbound and will fail with a {@link CommandNotFoundException} if they
+     * are called before the command has been registered. Commands which haven't been parsed yet will be bound after
+     * parsing.
+     *
+     * @param program
+     *         The program whose command sites should be bound.
+     */
+    void bindCommands(@NotNull ExecutableProgram program) {
+        int boundSites = 0;
+        int unboundSites = 0;
+
+        for (Instruction instruction : program.getLoadedInstructions()) {
+            for (CommandSite site : collectCommandSites(instruction)) {
+                if (bindCommandSite(site)) {
+                    boundSites++;
+                } else {
+                    unboundSites++;
+                }
+            }
+        }
+
+        LOGGER.debug("Bound {} command sites in program {} ({} unbound)", boundSites, program.getProgramName(), unboundSites);
+    }
+
+    /**
+     * Folds the constant subexpressions of all expressions in the given program. The command sites of the program must
+     * have been bound before by {@link #bindCommands(ExecutableProgram)}. Commands which haven't been parsed yet will
+     * be folded after parsing.
+     *
+     * @param program
+     *         The program whose expressions should be folded.
+     */
+    void foldConstants(@NotNull ExecutableProgram program) {
+        int foldedExpressions = 0;
+
+        for (Instruction instruction : program.getLoadedInstructions()) {
+            foldedExpressions += foldConstants(instruction);
+        }
+
+        LOGGER.debug("Folded constants in {} expressions of program {}", foldedExpressions, program.getProgramName());
+    }
+
+    /**
+     * Folds the constant subexpressions of the given instruction and returns the number of changed expressions.
+     */
+    private int foldConstants(@NotNull Instruction instruction) {
+        int foldedExpressions = 0;
+        ExpressionCode[] expressions = instruction.getExpressions();
+        for (int i = 0; i < expressions.length; i++) {
+            ExpressionCode foldedExpression = ConstantFolder.fold(expressions[i], this);
+            if (foldedExpression != expressions[i]) {
+                instruction.replaceExpression(i, foldedExpression);
+                foldedExpressions++;
+            }
+        }
+        return foldedExpressions;
+    }
+
+    /**
+     * Binds and folds an instruction of a lazily parsed program right after it has been parsed.
+     */
+    private void prepareDeferredInstruction(@NotNull Instruction instruction) {
+        for (CommandSite site : collectCommandSites(instruction)) {
+            bindCommandSite(site);
+        }
+        foldConstants(instruction);
+    }
+
+    /**
+     * Returns the command that is registered under the given name for the given kind of command or null if no such
+     * command exists.
+     *
+     * @param kind
+     *         The kind of the command, i.e. the namespace in which the command will be looked up.
+     * @param commandName
+     *         Name of the command.
+     * @return the registered command or null if no such command exists.
+     */
+    @Nullable
+    Command lookupCommand(@NotNull CommandSite.Kind kind, @NotNull String commandName) {
+        switch (kind) {
+            case EXPRESSION_FUNCTION:
+                return this.expressionFunction.get(commandName);
+            case COMMAND_FUNCTION:
+                return this.commandFunctionMap.get(commandName);
+            case COMMAND_STATEMENT:
+                return this.commandStatementMap.get(commandName);
+            default:
+                throw new IllegalArgumentException("Unknown command kind: " + kind);
+        }
+    }
+
+    /**
+     * Run a given {@link org.xlrnet.tibaija.processor.ExecutableProgram} inside this environment. The compiled
+     * instructions of the program will be executed by the given interpreter.
      *
      * @param program
      *         The program to run.
-     * @param visitor
-     *         The visitor implementation that should run this program.
+     * @param interpreter
+     *         The interpreter that should run this program.
      * @throws TIRuntimeException
      *         Will be thrown on errors while executing the program
      */
-    public void run(@NotNull ExecutableProgram program, @NotNull FullTIBasicVisitor visitor) throws TIRuntimeException {
-        visitor.setEnvironment(this);
+    public void run(@NotNull ExecutableProgram program, @NotNull InstructionInterpreter interpreter) throws TIRuntimeException {
+        interpreter.setEnvironment(this);
         this.programStack.push(program);
-        visitor.visit(program.getMainProgramContext());
+        interpreter.run(program);
         this.programStack.pop();
     }
 
@@ -371,7 +617,7 @@ public class InternalExecutionEnvironment implements ExecutionEnvironment {
      */
     @NotNull
     public Optional<Value> runRegisteredCommandFunction(@NotNull String commandName, @NotNull Parameter... arguments) throws TIRuntimeException {
-        Command command = this.commandFunctionMap.get(commandName);
+        Command command = lookupCommand(CommandSite.Kind.COMMAND_FUNCTION, commandName);
         if (command == null) {
             throw new CommandNotFoundException(-1, -1, commandName);
         }
@@ -392,7 +638,7 @@ public class InternalExecutionEnvironment implements ExecutionEnvironment {
      *         Can be thrown on type errors, internal problems or illegal parameters.
      */
     public void runRegisteredCommandStatement(@NotNull String commandName, @NotNull Parameter... arguments) throws TIRuntimeException {
-        Command command = this.commandStatementMap.get(commandName);
+        Command command = lookupCommand(CommandSite.Kind.COMMAND_STATEMENT, commandName);
         if (command == null) {
             throw new CommandNotFoundException(-1, -1, commandName);
         }
@@ -415,7 +661,7 @@ public class InternalExecutionEnvironment implements ExecutionEnvironment {
      */
     @NotNull
     public Optional<Value> runRegisteredExpressionFunction(@NotNull String commandName, @NotNull Parameter... arguments) throws TIRuntimeException {
-        Command command = this.expressionFunction.get(commandName);
+        Command command = lookupCommand(CommandSite.Kind.EXPRESSION_FUNCTION, commandName);
         if (command == null) {
             throw new CommandNotFoundException(-1, -1, commandName);
         }
@@ -470,19 +716,67 @@ public class InternalExecutionEnvironment implements ExecutionEnvironment {
         return this.memory;
     }
 
+    /**
+     * Checks the given arguments and executes the given command of this environment with them.
+     *
+     * @param command
+     *         The command to execute.
+     * @param arguments
+     *         The arguments with which the command will be called.
+     * @return An optional return value.
+     */
     @NotNull
-    private Optional<Value> internalExecuteCommand(Command command, @NotNull Parameter[] arguments) {
+    Optional<Value> internalExecuteCommand(@NotNull Command command, @NotNull Parameter[] arguments) {
         ImmutableList<Parameter> argumentList = ImmutableList.copyOf(arguments);
         command.checkArguments(argumentList);
         return command.execute(argumentList);
     }
 
+    /**
+     * Returns the command sites of the given instruction, i.e. its target and the command sites of its expressions.
+     */
+    @NotNull
+    private List<CommandSite> collectCommandSites(@NotNull Instruction instruction) {
+        List<CommandSite> sites = new ArrayList<>();
+        if (instruction.getTarget() instanceof CommandSite) {
+            sites.add((CommandSite) instruction.getTarget());
+        }
+        for (ExpressionCode expression : instruction.getExpressions()) {
+            collectCommandSites(expression, sites);
+        }
+        return sites;
+    }
+
+    /**
+     * Adds all command sites of the given expression and of its nested expressions to the given list.
+     */
+    private void collectCommandSites(@NotNull ExpressionCode expression, @NotNull List<CommandSite> sites) {
+        for (Object constant : expression.getConstants()) {
+            if (constant instanceof CommandSite) {
+                sites.add((CommandSite) constant);
+            } else if (constant instanceof ExpressionCode) {
+                collectCommandSites((ExpressionCode) constant, sites);
+            }
+        }
+    }
+
+    private boolean bindCommandSite(@NotNull CommandSite site) {
+        Command command = lookupCommand(site.getKind(), site.getCommandName());
+        site.bind(command);
+        return command != null;
+    }
+
     /**
      * Run all neccessary internal routines for preprocessing a given code.
      */
     private ExecutableProgram internalPreprocessCode(String programName, CharSequence programCode) {
         ExecutableProgram executableProgram;
         executableProgram = this.preprocessor.preprocessProgramCode(programName, programCode);
+        if (executableProgram.hasDeferredCommands()) {
+            executableProgram.setDeferredInstructionHandler(this::prepareDeferredInstruction);
+        }
+        bindCommands(executableProgram);
+        foldConstants(executableProgram);
         return executableProgram;
     }
 }
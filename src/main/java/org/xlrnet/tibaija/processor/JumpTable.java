@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+package org.xlrnet.tibaija.processor;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Static jump table for the block structure of a program. The table is built once by the {@link PreprocessVisitor}
+ * and allows the {@link InstructionInterpreter} to skip blocks in constant time instead of stepping through every
+ * skipped command.
+ * <p/>
+ * For every block opener (i.e. Then, Else, While, For and Repeat) the table contains the index of the command that
+ * closes the block: a Then is closed by its Else or its End and all other openers are closed by their End. If a block
+ * is never closed, the number of commands in the program is used as its target. Every End is mapped back to its
+ * opener or -1 if there is no opener. All other commands are mapped to -1.
+ * <p/>
+ * Additionally the table contains the end of the whole structure for every opener: the end of a Then block is the
+ * End of its Else block if there is one. This is used for deciding whether a jump leaves a block.
+ * <p/>
+ * A block is marked as malformed if it contains a control flow statement that can't be matched (e.g. a Then without
+ * preceding If). Skipping a malformed block is an error.
+ */
+public final class JumpTable {
+
+    /** Marker for commands without a jump target. */
+    public static final int NO_TARGET = -1;
+
+    private final int[] targets;
+
+    private final int[] blockEnds;
+
+    private final boolean[] malformed;
+
+    JumpTable(@NotNull int[] targets, @NotNull int[] blockEnds, @NotNull boolean[] malformed) {
+        this.targets = targets;
+        this.blockEnds = blockEnds;
+        this.malformed = malformed;
+    }
+
+    /**
+     * Returns the index of the command that closes the whole structure which is opened at the given index. For a Then
+     * with an Else block, this is the End of the Else block. For all other openers, this is equal to {@link
+     * #getMatchingIndex(int)}.
+     *
+     * @param commandIndex
+     *         Index of a block opener.
+     * @return the index of the command that closes the whole structure.
+     */
+    public int getBlockEnd(int commandIndex) {
+        return blockEnds[commandIndex];
+    }
+
+    /**
+     * Returns true if the given command lies inside of the structure which is opened at the given index.
+     *
+     * @param openerIndex
+     *         Index of a block opener.
+     * @param commandIndex
+     *         Index of the command to check.
+     * @return true if the given command lies inside of the structure which is opened at the given index.
+     */
+    public boolean isInsideBlock(int openerIndex, int commandIndex) {
+        return openerIndex < commandIndex && commandIndex < blockEnds[openerIndex];
+    }
+
+    /**
+     * Returns the index of the command that closes the block which is opened at the given index. If the command at
+     * the given index is an End, the index of its opener will be returned.
+     *
+     * @param commandIndex
+     *         Index of a block opener or End.
+     * @return the index of the matching command or {@link #NO_TARGET}.
+     */
+    public int getMatchingIndex(int commandIndex) {
+        return targets[commandIndex];
+    }
+
+    /**
+     * Returns true if the block that is opened at the given index contains any unmatched control flow statements.
+     *
+     * @param commandIndex
+     *         Index of a block opener.
+     * @return true if the block contains any unmatched control flow statements.
+     */
+    public boolean isMalformed(int commandIndex) {
+        return malformed[commandIndex];
+    }
+
+    /**
+     * Returns the number of commands in this table.
+     *
+     * @return the number of commands in this table.
+     */
+    int size() {
+        return targets.length;
+    }
+}
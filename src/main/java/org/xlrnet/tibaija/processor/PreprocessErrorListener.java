@@ -36,12 +36,21 @@ public class PreprocessErrorListener extends BaseErrorListener {
                             int line, int charPositionInLine,
                             String msg, RecognitionException e) {
 
-        String sourceName = recognizer.getInputStream().getSourceName();
+        throw newPreprocessException(recognizer.getInputStream().getSourceName(), line, charPositionInLine, msg);
+    }
+
+    /**
+     * Creates a new {@link PreprocessException} for a syntax error in the same format as the errors of the parser, so
+     * that other front ends can report their errors consistently.
+     */
+    static PreprocessException newPreprocessException(String sourceName, int line, int charPositionInLine, String msg) {
         if (sourceName != null && !sourceName.isEmpty()) {
             sourceName = String.format("%s:%d:%d: ", sourceName, line, charPositionInLine);
+        } else {
+            sourceName = "";
         }
 
         String outputMessage = sourceName + "line " + line + ":" + charPositionInLine + " " + msg;
-        throw new PreprocessException(line, charPositionInLine, outputMessage);
+        return new PreprocessException(line, charPositionInLine, outputMessage);
     }
 }
\ No newline at end of file
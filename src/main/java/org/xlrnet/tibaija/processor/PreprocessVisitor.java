@@ -23,6 +23,7 @@
 package org.xlrnet.tibaija.processor;
 
 import org.antlr.v4.runtime.misc.NotNull;
+import org.apache.commons.lang3.EnumUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xlrnet.tibaija.antlr.TIBasicBaseVisitor;
@@ -30,13 +31,15 @@ import org.xlrnet.tibaija.antlr.TIBasicParser;
 import org.xlrnet.tibaija.commons.ValidationUtil;
 import org.xlrnet.tibaija.exception.PreprocessException;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * The visitor implementation for the preprocessor for TI-Basic programs. Its main task is to validate the syntax of a
- * given program and mark all labels inside the program, so that an {@link ExecutableProgram} can be built.
+ * given program, mark all labels inside the program and match all blocks, so that an {@link ExecutableProgram} can be
+ * built.
  */
 public class PreprocessVisitor extends TIBasicBaseVisitor {
 
@@ -44,22 +47,30 @@ public class PreprocessVisitor extends TIBasicBaseVisitor {
 
     /**
      * Visits the command list and calls the underlying accept methods. If any of the commands return a {@link Label}
-     * object and there is not yet a label with this name, the label information will be stored in a temporary map and
-     * will then be returned. This is necessary, so that a more top-level visitor can merge the label commands.
+     * object and there is not yet a label with this name, the label information will be stored in a temporary map.
+     * Afterwards the blocks of all control flow statements will be matched. Both the label map and the {@link
+     * JumpTable} will then be returned. This is necessary, so that a more top-level visitor can merge the label
+     * commands.
      *
      * @param ctx
      *         The command list context.
-     * @return A map of
+     * @return A {@link PreprocessResult} with the label map and the jump table.
      */
     @Override
     public Object visitCommandList(@NotNull TIBasicParser.CommandListContext ctx) {
         List<TIBasicParser.CommandContext> commandContextList = ctx.command();
 
         Map<String, Integer> labelMap = new HashMap<>();
+        ControlFlowToken[] flowTokens = new ControlFlowToken[commandContextList.size()];
 
         // Iterate through all commands and find labels
         for (int i = 0; i < commandContextList.size(); i++) {
-            Object result = commandContextList.get(i).accept(this);
+            TIBasicParser.CommandContext commandContext = commandContextList.get(i);
+            if (commandContext.isControlFlowStatement) {
+                flowTokens[i] = EnumUtils.getEnum(ControlFlowToken.class, commandContext.controlFlowStatement().flowType);
+            }
+
+            Object result = commandContext.accept(this);
 
             if (result instanceof Label) {
                 Label label = (Label) result;
@@ -73,7 +84,7 @@ public class PreprocessVisitor extends TIBasicBaseVisitor {
                 }
             }
         }
-        return new LabelMapWrapper(labelMap);
+        return new PreprocessResult(labelMap, buildJumpTable(flowTokens));
     }
 
     /**
@@ -93,6 +104,96 @@ public class PreprocessVisitor extends TIBasicBaseVisitor {
         return new Label(labelIdentifier.getText());
     }
 
+    /**
+     * Matches the blocks of all control flow statements and creates a {@link JumpTable}. A Then is only considered
+     * as a block opener if it directly follows an If. An Else closes the block of the preceding Then and opens a new
+     * block.
+     *
+     * @param flowTokens
+     *         The control flow token of each command or null if the command is not a control flow statement.
+     * @return A new jump table.
+     */
+    @NotNull
+    JumpTable buildJumpTable(@NotNull ControlFlowToken[] flowTokens) {
+        final int commandCount = flowTokens.length;
+        int[] targets = new int[commandCount];
+        boolean[] malformed = new boolean[commandCount];
+        int[] openBlocks = new int[commandCount];
+        int openBlockCount = 0;
+
+        Arrays.fill(targets, JumpTable.NO_TARGET);
+
+        for (int i = 0; i < commandCount; i++) {
+            ControlFlowToken token = flowTokens[i];
+            if (token == null)
+                continue;
+
+            switch (token) {
+                case IF:
+                    if (i + 1 >= commandCount) {
+                        markMalformed(malformed, openBlocks, openBlockCount);
+                    }
+                    break;
+                case THEN:
+                    if (i > 0 && flowTokens[i - 1] == ControlFlowToken.IF) {
+                        openBlocks[openBlockCount++] = i;
+                    } else {
+                        LOGGER.debug("Unmatched Then at command {}", i);
+                        markMalformed(malformed, openBlocks, openBlockCount);
+                    }
+                    break;
+                case ELSE:
+                    if (openBlockCount > 0 && flowTokens[openBlocks[openBlockCount - 1]] == ControlFlowToken.THEN) {
+                        targets[openBlocks[openBlockCount - 1]] = i;
+                        openBlocks[openBlockCount - 1] = i;
+                    } else {
+                        LOGGER.debug("Unmatched Else at command {}", i);
+                        markMalformed(malformed, openBlocks, openBlockCount);
+                    }
+                    break;
+                case WHILE:
+                case REPEAT:
+                case FOR:
+                    openBlocks[openBlockCount++] = i;
+                    break;
+                case END:
+                    if (openBlockCount > 0) {
+                        int opener = openBlocks[--openBlockCount];
+                        targets[opener] = i;
+                        targets[i] = opener;
+                        LOGGER.trace("Matched block from command {} to {}", opener, i);
+                    } else {
+                        LOGGER.debug("Unmatched End at command {}", i);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        // All blocks that are still open will be closed at the end of the program
+        while (openBlockCount > 0) {
+            targets[openBlocks[--openBlockCount]] = commandCount;
+        }
+
+        // A Then with an Else ends where the Else ends
+        int[] blockEnds = Arrays.copyOf(targets, commandCount);
+        for (int i = 0; i < commandCount; i++) {
+            int target = targets[i];
+            if (flowTokens[i] == ControlFlowToken.THEN && target != JumpTable.NO_TARGET && target < commandCount && flowTokens[target] == ControlFlowToken.ELSE) {
+                blockEnds[i] = targets[target];
+            }
+        }
+
+        return new JumpTable(targets, blockEnds, malformed);
+    }
+
+    private void markMalformed(boolean[] malformed, int[] openBlocks, int openBlockCount) {
+        for (int i = 0; i < openBlockCount; i++) {
+            malformed[openBlocks[i]] = true;
+        }
+    }
+
     private static class Label {
 
         String identifier;
@@ -107,14 +208,21 @@ public class PreprocessVisitor extends TIBasicBaseVisitor {
     }
 
     /**
-     * Wrapper class for a label map.
+     * Wrapper class for a label map and a jump table.
      */
-    static class LabelMapWrapper {
+    static class PreprocessResult {
 
         Map<String, Integer> content;
 
-        public LabelMapWrapper(Map<String, Integer> content) {
+        JumpTable jumpTable;
+
+        public PreprocessResult(Map<String, Integer> content, JumpTable jumpTable) {
             this.content = content;
+            this.jumpTable = jumpTable;
+        }
+
+        public JumpTable getJumpTable() {
+            return this.jumpTable;
         }
 
         public Map<String, Integer> getMap() {
@@ -23,26 +23,50 @@
 package org.xlrnet.tibaija.processor;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CommonTokenStream;
-import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.xlrnet.tibaija.antlr.TIBasicLexer;
 import org.xlrnet.tibaija.antlr.TIBasicParser;
+import org.xlrnet.tibaija.exception.LabelNotFoundException;
 import org.xlrnet.tibaija.exception.PreprocessException;
 
+import java.util.Arrays;
+
 /**
- * The preprocessor for TI-Basic programs. The main task of this class is to run through a source program, parse it
- * and create a map of all available labels and return an instance of {@link ExecutableProgram}.
+ * The preprocessor for TI-Basic programs. The main task of this class is to run through a source program, parse it,
+ * create a map of all available labels, compile it to a flat list of instructions and return an instance of {@link
+ * ExecutableProgram}.
  * After the preprocessor has completed its work without any errors, the syntax of the provided TI-Basic program is
  * correct.
  */
 public class Preprocessor {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(Preprocessor.class);
+
     PreprocessVisitor preprocessVisitor = new PreprocessVisitor();
 
+    private ProgramCache programCache;
+
+    private FrontEnd frontEnd = FrontEnd.ANTLR;
+
     /**
      * Takes a TI-Basic program source code as input, checks for valid syntax and returns a new {@link
      * ExecutableProgram}. During preprocessing all labels will be identified, so that the ExecutableProgram contains a
-     * valid label map.
+     * valid label map and a jump table for all blocks. Afterwards all commands will be compiled into instructions that
+     * can be executed by the {@link InstructionInterpreter}. The targets of all Goto commands will be resolved while
+     * compiling.
+     * <p/>
+     * The program will be parsed with the configured {@link FrontEnd}. If a {@link ProgramCache} has been set, the
+     * cache will be consulted before parsing and successfully preprocessed programs will be stored in it. With {@link
+     * FrontEnd#LAZY}, only the labels of the program will be parsed and syntax errors in other commands will be
+     * reported when they are executed.
      *
      * @param programName
      *         Name of the program to load. Must consist of one to eight capitalized letters or digits
@@ -51,36 +75,214 @@ public class Preprocessor {
      * @return An instance of {@link ExecutableProgram} with all necessary information to execute the given source,
      * @throws PreprocessException
      *         Will be thrown if any errors occur while parsing or processing the program
+     * @throws LabelNotFoundException
+     *         Will be thrown if a Goto command refers to an undefined label
      */
-    public ExecutableProgram preprocessProgramCode(String programName, CharSequence programCode) throws PreprocessException {
+    public ExecutableProgram preprocessProgramCode(String programName, CharSequence programCode) throws PreprocessException, LabelNotFoundException {
+        if (this.programCache != null) {
+            ExecutableProgram cachedProgram = this.programCache.load(programName, programCode);
+            if (cachedProgram != null) {
+                return cachedProgram;
+            }
+        }
 
         ExecutableProgram executableProgram;
-        TIBasicParser parser = getParser(programCode);
-        TIBasicParser.ProgramContext programContext = parser.program();
+        switch (this.frontEnd) {
+            case RECURSIVE_DESCENT:
+                executableProgram = preprocessWithRecursiveDescent(programName, programCode);
+                break;
+            case CROSS_CHECK:
+                executableProgram = preprocessWithCrossCheck(programName, programCode);
+                break;
+            case LAZY:
+                executableProgram = preprocessLazily(programName, programCode);
+                break;
+            default:
+                executableProgram = preprocessWithAntlr(programName, programCode);
+        }
+
+        // Lazily parsed programs can only be stored after all of their commands have been parsed
+        if (this.programCache != null && !executableProgram.hasDeferredCommands() && executableProgram.getInstructions() != null) {
+            this.programCache.store(executableProgram);
+        }
+        return executableProgram;
+    }
+
+    /**
+     * Returns the front end which parses programs.
+     *
+     * @return the front end which parses programs.
+     */
+    @NotNull
+    public FrontEnd getFrontEnd() {
+        return this.frontEnd;
+    }
+
+    /**
+     * Sets the front end which parses programs. The default is {@link FrontEnd#ANTLR}.
+     *
+     * @param frontEnd
+     *         The new front end.
+     */
+    public void setFrontEnd(@NotNull FrontEnd frontEnd) {
+        this.frontEnd = frontEnd;
+    }
+
+    /**
+     * Sets the cache for preprocessed programs. Passing null disables caching.
+     *
+     * @param programCache
+     *         The cache for preprocessed programs or null.
+     */
+    public void setProgramCache(@Nullable ProgramCache programCache) {
+        this.programCache = programCache;
+    }
+
+    private ExecutableProgram preprocessWithAntlr(String programName, CharSequence programCode) {
+        TIBasicParser.ProgramContext programContext = parseProgram(programCode);
 
         Object result = preprocessVisitor.visitProgram(programContext);
 
-        executableProgram = new ExecutableProgram();
+        ExecutableProgram executableProgram = new ExecutableProgram();
         executableProgram.setMainProgramContext(programContext);
         executableProgram.setProgramName(programName);
         executableProgram.setOriginalSource(programCode);
 
-        if (result instanceof PreprocessVisitor.LabelMapWrapper) {
-            PreprocessVisitor.LabelMapWrapper wrapper = (PreprocessVisitor.LabelMapWrapper) result;
+        if (result instanceof PreprocessVisitor.PreprocessResult) {
+            PreprocessVisitor.PreprocessResult wrapper = (PreprocessVisitor.PreprocessResult) result;
             executableProgram.setInternalLabelMap(wrapper.getMap());
+            executableProgram.setJumpTable(wrapper.getJumpTable());
+            executableProgram.setInstructions(new InstructionCompiler(programName, wrapper.getMap()).compileProgram(programContext));
         }
+        return executableProgram;
+    }
 
+    private ExecutableProgram preprocessWithRecursiveDescent(String programName, CharSequence programCode) {
+        RecursiveDescentParser parser = new RecursiveDescentParser(programName, programCode);
+        Instruction[] instructions = parser.parseProgram();
+
+        ExecutableProgram executableProgram = new ExecutableProgram();
+        executableProgram.setProgramName(programName);
+        executableProgram.setOriginalSource(programCode);
+        executableProgram.setInternalLabelMap(parser.getLabelMap());
+        executableProgram.setJumpTable(buildJumpTable(instructions));
+        executableProgram.setInstructions(instructions);
         return executableProgram;
     }
 
-    private TIBasicParser getParser(CharSequence programCode) {
+    /**
+     * Scans the given program only for its command boundaries and labels. The placeholders of the scanner already know
+     * their control flow tokens, so the jump table can be built before the commands are parsed.
+     */
+    private ExecutableProgram preprocessLazily(String programName, CharSequence programCode) {
+        RecursiveDescentParser parser = new RecursiveDescentParser(programName, programCode);
+        Instruction[] instructions = parser.scanProgram();
+
+        ExecutableProgram executableProgram = new ExecutableProgram();
+        executableProgram.setProgramName(programName);
+        executableProgram.setOriginalSource(programCode);
+        executableProgram.setInternalLabelMap(parser.getLabelMap());
+        executableProgram.setJumpTable(buildJumpTable(instructions));
+        executableProgram.setInstructions(instructions);
+        executableProgram.setDeferredCommandParser(parser);
+        return executableProgram;
+    }
+
+    private JumpTable buildJumpTable(Instruction[] instructions) {
+        ControlFlowToken[] flowTokens = new ControlFlowToken[instructions.length];
+        for (int i = 0; i < instructions.length; i++) {
+            flowTokens[i] = instructions[i].getFlowToken();
+        }
+        return preprocessVisitor.buildJumpTable(flowTokens);
+    }
+
+    /**
+     * Preprocesses the given program with both front ends and makes sure that they either produce the same
+     * instructions and labels or fail with the same kind of error. Syntax errors must also be reported at the same
+     * position, while their messages may differ. The jump table is derived from the instructions, so
+     * it doesn't need to be compared.
+     */
+    private ExecutableProgram preprocessWithCrossCheck(String programName, CharSequence programCode) {
+        ExecutableProgram referenceProgram = null;
+        RuntimeException referenceError = null;
+        try {
+            referenceProgram = preprocessWithAntlr(programName, programCode);
+        } catch (RuntimeException e) {
+            referenceError = e;
+        }
+
+        ExecutableProgram program = null;
+        RuntimeException error = null;
+        try {
+            program = preprocessWithRecursiveDescent(programName, programCode);
+        } catch (RuntimeException e) {
+            error = e;
+        }
+
+        if (referenceError != null) {
+            if (error == null || error.getClass() != referenceError.getClass() || !isSamePosition(referenceError, error)) {
+                throw new IllegalStateException("Front ends disagree on program " + programName + ": expected " + referenceError + " but got " + (error != null ? error : "no error"), error);
+            }
+            throw referenceError;
+        } else if (error != null) {
+            throw new IllegalStateException("Front ends disagree on program " + programName + ": expected no error but got " + error, error);
+        }
+
+        String expectedInstructions = Arrays.toString(referenceProgram.getInstructions());
+        String actualInstructions = Arrays.toString(program.getInstructions());
+        if (!expectedInstructions.equals(actualInstructions) || !referenceProgram.getInternalLabelMap().equals(program.getInternalLabelMap())) {
+            throw new IllegalStateException("Front ends disagree on program " + programName + ":\nexpected " + expectedInstructions
+                    + " " + referenceProgram.getInternalLabelMap() + "\nbut got  " + actualInstructions + " " + program.getInternalLabelMap());
+        }
+        return referenceProgram;
+    }
+
+    /**
+     * Returns true if both errors are no syntax errors or if both are syntax errors at the same position.
+     */
+    private static boolean isSamePosition(RuntimeException referenceError, RuntimeException error) {
+        if (!(referenceError instanceof PreprocessException) || !(error instanceof PreprocessException)) {
+            return true;
+        }
+        PreprocessException referenceException = (PreprocessException) referenceError;
+        PreprocessException exception = (PreprocessException) error;
+        return referenceException.getLine() == exception.getLine()
+                && referenceException.getCharPositionInLine() == exception.getCharPositionInLine();
+    }
+
+    /**
+     * Parses the given program code in two stages: the parser tries the fast SLL prediction mode first and bails out
+     * on the first syntax error. Only if that fails or if the input hasn't been consumed completely, the program will
+     * be parsed again with full LL prediction, which either handles the programs that SLL can't handle or reports the
+     * actual syntax error.
+     */
+    private TIBasicParser.ProgramContext parseProgram(CharSequence programCode) {
         ANTLRInputStream inputStream = new ANTLRInputStream(programCode.toString());
         TIBasicLexer lexer = new TIBasicLexer(inputStream);
         lexer.addErrorListener(PreprocessErrorListener.INSTANCE);
-        TokenStream tokens = new CommonTokenStream(lexer);
+        CommonTokenStream tokens = new CommonTokenStream(lexer);
+
         TIBasicParser parser = new TIBasicParser(tokens);
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        try {
+            TIBasicParser.ProgramContext programContext = parser.program();
+            // The bail strategy doesn't report unmatched trailing input, so the input must have been consumed completely
+            if (tokens.LA(1) == Token.EOF) {
+                return programContext;
+            }
+        } catch (ParseCancellationException e) {
+            // Fall through to full LL prediction
+        }
+        LOGGER.debug("SLL parsing failed - retrying with full LL prediction");
+
+        // The parser keeps internal state in its members, so a new instance is required for the second stage
+        tokens.seek(0);
+        parser = new TIBasicParser(tokens);
         parser.addErrorListener(PreprocessErrorListener.INSTANCE);
-        return parser;
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+        return parser.program();
     }
 
 }
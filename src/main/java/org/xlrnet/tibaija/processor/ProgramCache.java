@@ -0,0 +1,558 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+package org.xlrnet.tibaija.processor;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import org.apache.commons.math3.complex.Complex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlrnet.tibaija.antlr.TIBasicLexer;
+import org.xlrnet.tibaija.antlr.TIBasicParser;
+import org.xlrnet.tibaija.commons.Value;
+import org.xlrnet.tibaija.memory.ListVariable;
+import org.xlrnet.tibaija.memory.MatrixVariable;
+import org.xlrnet.tibaija.memory.NumberVariable;
+import org.xlrnet.tibaija.memory.StringVariable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Persistent cache of preprocessed programs in a directory on disk. The cache stores the lowered form of an {@link
+ * ExecutableProgram} - i.e. its instructions, its jump table and its label map - so that loading a known program
+ * doesn't have to run the lexer, the parser and the {@link InstructionCompiler} again.
+ * <p/>
+ * Every entry is stored in its own file which is named after a hash of the build identifier, the format version and
+ * the source code. The build identifier consists of the implementation version from the manifest and a hash of the
+ * class files that produce the lowered form, so that changing the source of a program or updating the interpreter
+ * will never load a stale entry - even between development builds with the same version. Entries are
+ * read through a memory-mapped buffer and written atomically, so that concurrent interpreters can share a directory.
+ * <p/>
+ * Programs loaded from the cache don't have a parse tree, i.e. {@link ExecutableProgram#getMainProgramContext()}
+ * returns null. The command sites of a loaded program are not bound yet and its expressions are not folded. Entries
+ * that can't be read are ignored and will be replaced the next time the program is preprocessed.
+ */
+public final class ProgramCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProgramCache.class);
+
+    private static final String FILE_EXTENSION = ".tic";
+
+    /** Magic number at the beginning of every cache file. */
+    private static final int MAGIC = 0x54494243;
+
+    /**
+     * Version of the file format. Must be incremented whenever the layout of a cache file changes and whenever the
+     * lowered code depends on a class which is not listed in {@link #LOWERING_CLASSES}, e.g. when a new class starts
+     * producing instructions. Changes to the listed classes are detected by the build identifier.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /** Classes whose code determines the lowered form of a program and thereby the content of a cache entry. */
+    private static final Class<?>[] LOWERING_CLASSES = {
+            ProgramCache.class, Preprocessor.class, PreprocessVisitor.class, InstructionCompiler.class,
+            ExpressionEmitter.class, RecursiveDescentParser.class, SourceScanner.class, Instruction.class,
+            ExpressionCode.class, JumpTable.class, CommandSite.class, ControlFlowToken.class, TIBasicLexer.class,
+            TIBasicParser.class
+    };
+
+    private static final String BUILD_IDENTIFIER = getBuildIdentifier();
+
+    private static final byte TAG_NULL = 0;
+
+    private static final byte TAG_INTEGER = 1;
+
+    private static final byte TAG_STRING = 2;
+
+    private static final byte TAG_VALUE = 3;
+
+    private static final byte TAG_COMPLEX = 4;
+
+    private static final byte TAG_NUMBER_VARIABLE = 5;
+
+    private static final byte TAG_STRING_VARIABLE = 6;
+
+    private static final byte TAG_LIST_VARIABLE = 7;
+
+    private static final byte TAG_MATRIX_VARIABLE = 8;
+
+    private static final byte TAG_COMMAND_SITE = 9;
+
+    private static final byte TAG_EXPRESSION = 10;
+
+    private final Path directory;
+
+    /**
+     * Creates a new cache in the given directory. The directory will be created if it doesn't exist.
+     *
+     * @param directory
+     *         The directory in which the cache files should be stored.
+     * @throws IOException
+     *         if the directory can't be created.
+     */
+    public ProgramCache(@NotNull Path directory) throws IOException {
+        checkArgument(!Files.exists(directory) || Files.isDirectory(directory), "Cache path must be a directory");
+        Files.createDirectories(directory);
+        this.directory = directory;
+        LOGGER.debug("Initialized program cache in '{}'", directory.toAbsolutePath());
+    }
+
+    /**
+     * Loads the preprocessed program for the given source code from the cache.
+     *
+     * @param programName
+     *         Name of the program.
+     * @param programCode
+     *         The source code of the program.
+     * @return The preprocessed program or null if the cache doesn't contain a valid entry for the source code.
+     */
+    @Nullable
+    public ExecutableProgram load(@NotNull String programName, @NotNull CharSequence programCode) {
+        Path path = getEntryPath(programCode);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ExecutableProgram executableProgram = readProgram(buffer);
+            executableProgram.setProgramName(programName);
+            executableProgram.setOriginalSource(programCode);
+            LOGGER.debug("Loaded program {} from cache entry '{}'", programName, path);
+            return executableProgram;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            LOGGER.warn("Ignoring invalid cache entry '{}' for program {}", path, programName, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the given preprocessed program in the cache. Programs that have already been bound or folded by an
+     * environment must not be stored. Errors while writing will only be logged, since the cache is not required for
+     * executing a program.
+     *
+     * @param executableProgram
+     *         The preprocessed program.
+     */
+    public void store(@NotNull ExecutableProgram executableProgram) {
+        if (executableProgram.getInstructions() == null || executableProgram.getOriginalSource() == null) {
+            return;
+        }
+
+        Path path = getEntryPath(executableProgram.getOriginalSource());
+        Path temporaryPath = null;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            writeProgram(new DataOutputStream(bytes), executableProgram);
+
+            temporaryPath = Files.createTempFile(this.directory, "entry", ".tmp");
+            Files.write(temporaryPath, bytes.toByteArray());
+            try {
+                Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            LOGGER.debug("Stored program {} in cache entry '{}'", executableProgram.getProgramName(), path);
+        } catch (IOException | IllegalArgumentException e) {
+            LOGGER.warn("Storing program {} in cache failed", executableProgram.getProgramName(), e);
+            if (temporaryPath != null) {
+                try {
+                    Files.deleteIfExists(temporaryPath);
+                } catch (IOException ignored) {
+                    // The temporary file will be ignored by the cache anyway
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the path of the cache file for the given source code.
+     *
+     * @param programCode
+     *         The source code of a program.
+     * @return the path of the cache file for the given source code.
+     */
+    @NotNull
+    Path getEntryPath(@NotNull CharSequence programCode) {
+        String key = Hashing.sha256().newHasher()
+                .putString(BUILD_IDENTIFIER, StandardCharsets.UTF_8)
+                .putInt(FORMAT_VERSION)
+                .putString(programCode, StandardCharsets.UTF_8)
+                .hash().toString();
+        return this.directory.resolve(key + FILE_EXTENSION);
+    }
+
+    /**
+     * Returns the implementation version of the interpreter followed by a hash of the class files in {@link
+     * #LOWERING_CLASSES}. If any class file can't be read, a random identifier will be returned, i.e. no existing
+     * entry will be loaded.
+     */
+    @NotNull
+    private static String getBuildIdentifier() {
+        String version = ProgramCache.class.getPackage().getImplementationVersion();
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (Class<?> loweringClass : LOWERING_CLASSES) {
+            try (InputStream classFile = loweringClass.getResourceAsStream(loweringClass.getSimpleName() + ".class")) {
+                if (classFile == null) {
+                    throw new IOException("Class file of " + loweringClass.getName() + " not found");
+                }
+                hasher.putBytes(ByteStreams.toByteArray(classFile));
+            } catch (IOException e) {
+                LOGGER.warn("Hashing the interpreter build failed - cache entries of other runs will be ignored", e);
+                return UUID.randomUUID().toString();
+            }
+        }
+        return (version != null ? version : "development") + "-" + hasher.hash().toString();
+    }
+
+    @NotNull
+    private static ExecutableProgram readProgram(@NotNull ByteBuffer buffer) {
+        checkArgument(buffer.getInt() == MAGIC, "Not a cache file");
+        checkArgument(buffer.getInt() == FORMAT_VERSION, "Unsupported cache file version");
+
+        int numberOfLabels = readLength(buffer, 1);
+        Map<String, Integer> labelMap = new HashMap<>();
+        for (int i = 0; i < numberOfLabels; i++) {
+            labelMap.put(readString(buffer), buffer.getInt());
+        }
+
+        int numberOfInstructions = readLength(buffer, 1);
+        int[] targets = readInts(buffer, numberOfInstructions);
+        int[] blockEnds = readInts(buffer, numberOfInstructions);
+        boolean[] malformed = new boolean[numberOfInstructions];
+        for (int i = 0; i < numberOfInstructions; i++) {
+            malformed[i] = buffer.get() != 0;
+        }
+
+        Instruction[] instructions = new Instruction[numberOfInstructions];
+        for (int i = 0; i < numberOfInstructions; i++) {
+            instructions[i] = readInstruction(buffer);
+        }
+        checkArgument(!buffer.hasRemaining(), "Trailing data in cache file");
+
+        ExecutableProgram executableProgram = new ExecutableProgram();
+        executableProgram.setInternalLabelMap(labelMap);
+        executableProgram.setJumpTable(new JumpTable(targets, blockEnds, malformed));
+        executableProgram.setInstructions(instructions);
+        return executableProgram;
+    }
+
+    private static void writeProgram(@NotNull DataOutputStream out, @NotNull ExecutableProgram executableProgram) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+
+        Map<String, Integer> labelMap = executableProgram.getInternalLabelMap();
+        out.writeInt(labelMap.size());
+        for (Map.Entry<String, Integer> label : labelMap.entrySet()) {
+            writeString(out, label.getKey());
+            out.writeInt(label.getValue());
+        }
+
+        Instruction[] instructions = executableProgram.getInstructions();
+        JumpTable jumpTable = executableProgram.getJumpTable();
+        checkArgument(jumpTable.size() == instructions.length, "Jump table doesn't match instructions");
+        out.writeInt(instructions.length);
+        for (int i = 0; i < instructions.length; i++) {
+            out.writeInt(jumpTable.getMatchingIndex(i));
+        }
+        for (int i = 0; i < instructions.length; i++) {
+            out.writeInt(jumpTable.getBlockEnd(i));
+        }
+        for (int i = 0; i < instructions.length; i++) {
+            out.writeBoolean(jumpTable.isMalformed(i));
+        }
+
+        for (Instruction instruction : instructions) {
+            writeInstruction(out, instruction);
+        }
+    }
+
+    @NotNull
+    private static Instruction readInstruction(@NotNull ByteBuffer buffer) {
+        Instruction.InstructionType type = Instruction.InstructionType.values()[buffer.get()];
+        byte flowTokenOrdinal = buffer.get();
+        ControlFlowToken flowToken = flowTokenOrdinal >= 0 ? ControlFlowToken.values()[flowTokenOrdinal] : null;
+        Object target = readObject(buffer);
+        int line = buffer.getInt();
+        int charIndex = buffer.getInt();
+        ExpressionCode[] expressions = new ExpressionCode[readLength(buffer, 1)];
+        for (int i = 0; i < expressions.length; i++) {
+            expressions[i] = readExpression(buffer);
+        }
+        return new Instruction(type, flowToken, target, expressions, line, charIndex);
+    }
+
+    private static void writeInstruction(@NotNull DataOutputStream out, @NotNull Instruction instruction) throws IOException {
+        out.writeByte(instruction.getType().ordinal());
+        out.writeByte(instruction.getFlowToken() != null ? instruction.getFlowToken().ordinal() : -1);
+        writeObject(out, instruction.getTarget());
+        out.writeInt(instruction.getLine());
+        out.writeInt(instruction.getCharIndex());
+        out.writeInt(instruction.getExpressions().length);
+        for (ExpressionCode expression : instruction.getExpressions()) {
+            writeExpression(out, expression);
+        }
+    }
+
+    @NotNull
+    private static ExpressionCode readExpression(@NotNull ByteBuffer buffer) {
+        int[] code = readInts(buffer, buffer.getInt());
+        Object[] constants = new Object[readLength(buffer, 1)];
+        for (int i = 0; i < constants.length; i++) {
+            constants[i] = readObject(buffer);
+        }
+        int maxStackSize = buffer.getInt();
+        return new ExpressionCode(code, constants, maxStackSize);
+    }
+
+    private static void writeExpression(@NotNull DataOutputStream out, @NotNull ExpressionCode expression) throws IOException {
+        int[] code = expression.getCode();
+        out.writeInt(code.length);
+        for (int opcode : code) {
+            out.writeInt(opcode);
+        }
+        Object[] constants = expression.getConstants();
+        out.writeInt(constants.length);
+        for (Object constant : constants) {
+            writeObject(out, constant);
+        }
+        out.writeInt(expression.getMaxStackSize());
+    }
+
+    @Nullable
+    private static Object readObject(@NotNull ByteBuffer buffer) {
+        byte tag = buffer.get();
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_INTEGER:
+                return buffer.getInt();
+            case TAG_STRING:
+                return readString(buffer);
+            case TAG_VALUE:
+                return readValue(buffer);
+            case TAG_COMPLEX:
+                return Complex.valueOf(buffer.getDouble(), buffer.getDouble());
+            case TAG_NUMBER_VARIABLE:
+                return NumberVariable.values()[buffer.get()];
+            case TAG_STRING_VARIABLE:
+                return StringVariable.values()[buffer.get()];
+            case TAG_LIST_VARIABLE:
+                return ListVariable.fromName(readString(buffer));
+            case TAG_MATRIX_VARIABLE:
+                return MatrixVariable.values()[buffer.get()];
+            case TAG_COMMAND_SITE:
+                CommandSite.Kind kind = CommandSite.Kind.values()[buffer.get()];
+                return new CommandSite(kind, readString(buffer), buffer.getInt(), buffer.getInt());
+            case TAG_EXPRESSION:
+                return readExpression(buffer);
+            default:
+                throw new IllegalArgumentException("Unknown tag in cache file: " + tag);
+        }
+    }
+
+    private static void writeObject(@NotNull DataOutputStream out, @Nullable Object object) throws IOException {
+        if (object == null) {
+            out.writeByte(TAG_NULL);
+        } else if (object instanceof Integer) {
+            out.writeByte(TAG_INTEGER);
+            out.writeInt((Integer) object);
+        } else if (object instanceof String) {
+            out.writeByte(TAG_STRING);
+            writeString(out, (String) object);
+        } else if (object instanceof Value) {
+            out.writeByte(TAG_VALUE);
+            writeValue(out, (Value) object);
+        } else if (object instanceof Complex) {
+            out.writeByte(TAG_COMPLEX);
+            out.writeDouble(((Complex) object).getReal());
+            out.writeDouble(((Complex) object).getImaginary());
+        } else if (object instanceof NumberVariable) {
+            out.writeByte(TAG_NUMBER_VARIABLE);
+            out.writeByte(((NumberVariable) object).ordinal());
+        } else if (object instanceof StringVariable) {
+            out.writeByte(TAG_STRING_VARIABLE);
+            out.writeByte(((StringVariable) object).ordinal());
+        } else if (object instanceof ListVariable) {
+            out.writeByte(TAG_LIST_VARIABLE);
+            writeString(out, ((ListVariable) object).getVariableName());
+        } else if (object instanceof MatrixVariable) {
+            out.writeByte(TAG_MATRIX_VARIABLE);
+            out.writeByte(((MatrixVariable) object).ordinal());
+        } else if (object instanceof CommandSite) {
+            CommandSite site = (CommandSite) object;
+            out.writeByte(TAG_COMMAND_SITE);
+            out.writeByte(site.getKind().ordinal());
+            writeString(out, site.getCommandName());
+            out.writeInt(site.getLine());
+            out.writeInt(site.getCharIndex());
+        } else if (object instanceof ExpressionCode) {
+            out.writeByte(TAG_EXPRESSION);
+            writeExpression(out, (ExpressionCode) object);
+        } else {
+            throw new IllegalArgumentException("Unsupported object in compiled program: " + object.getClass().getName());
+        }
+    }
+
+    @NotNull
+    private static Value readValue(@NotNull ByteBuffer buffer) {
+        byte typeOrdinal = buffer.get();
+        switch (ValueTypeTag.values()[typeOrdinal]) {
+            case NUMBER:
+                return Value.ofComplex(buffer.getDouble(), buffer.getDouble());
+            case STRING:
+                return Value.of(readString(buffer));
+            case LIST:
+                double[] realParts = readDoubles(buffer, buffer.getInt());
+                double[] imaginaryParts = buffer.get() != 0 ? readDoubles(buffer, realParts.length) : null;
+                return Value.ofList(realParts, imaginaryParts);
+            case MATRIX:
+                int rows = buffer.getInt();
+                int columns = buffer.getInt();
+                checkArgument(rows >= 0 && columns >= 0 && (long) rows * columns <= buffer.remaining() / Double.BYTES, "Invalid matrix dimensions in cache file: %s x %s", rows, columns);
+                return Value.ofMatrix(rows, columns, readDoubles(buffer, rows * columns));
+            default:
+                throw new IllegalArgumentException("Unknown value type in cache file: " + typeOrdinal);
+        }
+    }
+
+    private static void writeValue(@NotNull DataOutputStream out, @NotNull Value value) throws IOException {
+        switch (value.getType()) {
+            case NUMBER:
+                out.writeByte(ValueTypeTag.NUMBER.ordinal());
+                out.writeDouble(value.realPart());
+                out.writeDouble(value.imaginaryPart());
+                break;
+            case STRING:
+                out.writeByte(ValueTypeTag.STRING.ordinal());
+                writeString(out, value.string());
+                break;
+            case LIST:
+                out.writeByte(ValueTypeTag.LIST.ordinal());
+                double[] realParts = value.listRealParts();
+                double[] imaginaryParts = value.listImaginaryParts();
+                out.writeInt(realParts.length);
+                writeDoubles(out, realParts);
+                out.writeBoolean(imaginaryParts != null);
+                if (imaginaryParts != null) {
+                    writeDoubles(out, imaginaryParts);
+                }
+                break;
+            case MATRIX:
+                out.writeByte(ValueTypeTag.MATRIX.ordinal());
+                out.writeInt(value.matrixRows());
+                out.writeInt(value.matrixColumns());
+                writeDoubles(out, value.matrixValues());
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported constant type: " + value.getType());
+        }
+    }
+
+    @NotNull
+    private static double[] readDoubles(@NotNull ByteBuffer buffer, int length) {
+        checkLength(buffer, length, Double.BYTES);
+        double[] values = new double[length];
+        buffer.asDoubleBuffer().get(values);
+        buffer.position(buffer.position() + length * Double.BYTES);
+        return values;
+    }
+
+    private static void writeDoubles(@NotNull DataOutputStream out, @NotNull double[] values) throws IOException {
+        for (double value : values) {
+            out.writeDouble(value);
+        }
+    }
+
+    @NotNull
+    private static int[] readInts(@NotNull ByteBuffer buffer, int length) {
+        checkLength(buffer, length, Integer.BYTES);
+        int[] values = new int[length];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + length * Integer.BYTES);
+        return values;
+    }
+
+    @NotNull
+    private static String readString(@NotNull ByteBuffer buffer) {
+        byte[] bytes = new byte[readLength(buffer, 1)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the length of an array whose elements need at least the given number of bytes each.
+     *
+     * @throws IllegalArgumentException
+     *         if the length is negative or the array can't fit into the rest of the buffer.
+     */
+    private static int readLength(@NotNull ByteBuffer buffer, int minimumElementSize) {
+        return checkLength(buffer, buffer.getInt(), minimumElementSize);
+    }
+
+    /**
+     * Makes sure that an array with the given length can be read from the rest of the buffer before allocating it, so
+     * that a corrupt entry can't cause a huge or negative allocation.
+     *
+     * @throws IllegalArgumentException
+     *         if the length is negative or the array can't fit into the rest of the buffer.
+     */
+    private static int checkLength(@NotNull ByteBuffer buffer, int length, int minimumElementSize) {
+        checkArgument(length >= 0 && (long) length * minimumElementSize <= buffer.remaining(), "Invalid length in cache file: %s", length);
+        return length;
+    }
+
+    private static void writeString(@NotNull DataOutputStream out, @NotNull String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Stable tags for the value types of constants. The ordinals of {@link org.xlrnet.tibaija.commons.ValueType} are
+     * not used directly, so that adding a new value type doesn't change the format.
+     */
+    private enum ValueTypeTag {
+        NUMBER, STRING, LIST, MATRIX
+    }
+}
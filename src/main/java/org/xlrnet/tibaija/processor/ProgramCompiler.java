@@ -0,0 +1,739 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.processor;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlrnet.tibaija.commons.Value;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compiles an {@link ExecutableProgram} to a JVM class which extends {@link CompiledProgram}. Every command of the
+ * program becomes a block of bytecode in one of several segment methods, each of which covers a consecutive range of
+ * commands and ends with a <code>tableswitch</code> over their indices. The switch is used both for entering a segment
+ * at any command and for continuing after a control flow statement, so that loops within a segment become real
+ * backward jumps that can be optimized by the JIT. Jumps to commands of another segment leave the segment and are
+ * dispatched by {@link CompiledProgram#execute(int)}.
+ * <p/>
+ * HotSpot doesn't compile methods with more than {@link #MAX_JIT_METHOD_SIZE} bytes of code, so a segment is closed
+ * after {@link #SEGMENT_SIZE_BUDGET} bytes. Programs with a single command that is too large for the JIT will not be
+ * compiled at all, since running such a method in the bytecode interpreter is slower than the {@link
+ * InstructionInterpreter}.
+ * <p/>
+ * Expressions are translated to nested calls of the helper methods in {@link CompiledProgram}, i.e. intermediate
+ * results stay on the JVM operand stack instead of the operand stack of the {@link InstructionInterpreter}.
+ * <p/>
+ * The compiler uses the type feedback which has been collected by the command sites so far: operator calls at sites
+ * that have only seen finite real operands will be compiled to guarded arithmetic on primitive doubles, as long as the
+ * command that contains them can be safely executed again by the interpreter when a guard fails (see {@link
+ * CompiledProgram}).
+ * <p/>
+ * Commands of a lazily parsed program which haven't been parsed yet are compiled as exits to the interpreter, which
+ * parses them when they are reached. Parsing a command discards the compiled class, so that the program will be
+ * compiled again including that command once it becomes hot again.
+ * <p/>
+ * Every generated class is defined by its own class loader, so that it can be unloaded together with its program.
+ */
+final class ProgramCompiler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProgramCompiler.class);
+
+    private static final String GENERATED_CLASS_PREFIX = "org/xlrnet/tibaija/processor/generated/TIProgram";
+
+    private static final String COMPILED_PROGRAM = "org/xlrnet/tibaija/processor/CompiledProgram";
+
+    private static final String VALUE = "org/xlrnet/tibaija/commons/Value";
+
+    private static final String PARAMETER = "org/xlrnet/tibaija/memory/Parameter";
+
+    private static final String VALUE_DESCRIPTOR = "L" + VALUE + ";";
+
+    private static final String PARAMETER_DESCRIPTOR = "L" + PARAMETER + ";";
+
+    private static final String SPECIALIZED_COMMAND_FIELD = "specializedCommand";
+
+    private static final AtomicInteger CLASS_COUNTER = new AtomicInteger();
+
+    private static final String SEGMENT_METHOD_PREFIX = "segment";
+
+    /** Local variable with the index of the next command in the generated method. */
+    private static final int COMMAND_INDEX_LOCAL = 1;
+
+    /** Maximum size of a method which will still be compiled by the JIT (see the HotSpot flag HugeMethodLimit). */
+    static final int MAX_JIT_METHOD_SIZE = 8000;
+
+    /** Size of a segment method after which no more commands will be added to it. */
+    static final int SEGMENT_SIZE_BUDGET = 4000;
+
+    private final Instruction[] instructions;
+
+    private final boolean specialize;
+
+    private final List<Object> constants = new ArrayList<>();
+
+    private final Map<Object, Integer> constantIndices = new IdentityHashMap<>();
+
+    /** Index of the first command in each generated segment method. */
+    private final List<Integer> segmentStarts = new ArrayList<>();
+
+    private ClassFileWriter.MethodWriter method;
+
+    /** True while generating a command in which specialized code may be used. */
+    private boolean specializedCommand;
+
+    private ProgramCompiler(@NotNull ExecutableProgram program, boolean specialize) {
+        this.instructions = program.getLoadedInstructions();
+        this.specialize = specialize;
+    }
+
+    /**
+     * Returns a new instance of the compiled class of the given program that will be executed by the given
+     * interpreter. The class will be generated on the first call and reused afterwards until the program is
+     * deoptimized. Programs that have been deoptimized too often will be compiled without specialized code.
+     *
+     * @param program
+     *         The program to compile.
+     * @param interpreter
+     *         The interpreter that runs the program.
+     * @return a new instance of the compiled program or null if the program can't be compiled.
+     */
+    @Nullable
+    static CompiledProgram instantiate(@NotNull ExecutableProgram program, @NotNull InstructionInterpreter interpreter) {
+        CompiledProgram prototype;
+        synchronized (program) {
+            if (!program.isCompilationAttempted()) {
+                int deoptimizationLimit = interpreter.getEnvironment().getDeoptimizationLimit();
+                program.setCompiledProgram(compile(program, program.getDeoptimizationCount() < deoptimizationLimit));
+            }
+            prototype = program.getCompiledProgram();
+        }
+        return prototype != null ? prototype.newInstance(interpreter) : null;
+    }
+
+    /**
+     * Discards the compiled class of the given program after a type assumption of its specialized code failed. The
+     * program will be compiled again with the updated type feedback when it becomes hot again.
+     *
+     * @param program
+     *         The program to deoptimize.
+     * @param commandIndex
+     *         The index of the command whose assumptions failed.
+     */
+    static void deoptimize(@NotNull ExecutableProgram program, int commandIndex) {
+        synchronized (program) {
+            program.invalidateCompiledProgram();
+        }
+        LOGGER.debug("Deoptimized program {} at command {}", program.getProgramName(), commandIndex);
+    }
+
+    /**
+     * Generates the class for the given program and returns its prototype. If the program exceeds any limit of the
+     * class file format, null will be returned and the program has to be interpreted.
+     */
+    @Nullable
+    private static CompiledProgram compile(@NotNull ExecutableProgram program, boolean specialize) {
+        String className = GENERATED_CLASS_PREFIX + CLASS_COUNTER.incrementAndGet();
+        ProgramCompiler compiler = new ProgramCompiler(program, specialize);
+        byte[] classFile;
+        try {
+            classFile = compiler.generateClass(className);
+        } catch (IllegalStateException e) {
+            LOGGER.debug("Compiling program {} failed: {}", program.getProgramName(), e.getMessage());
+            return null;
+        }
+
+        try {
+            GeneratedClassLoader classLoader = new GeneratedClassLoader(CompiledProgram.class.getClassLoader());
+            Class<?> generatedClass = classLoader.define(className.replace('/', '.'), classFile);
+            CompiledProgram prototype = (CompiledProgram) generatedClass.newInstance();
+            prototype.initialize(program, compiler.constants.toArray(), compiler.segmentStarts.stream().mapToInt(Integer::intValue).toArray());
+            LOGGER.debug("Compiled program {} to {} ({} bytes, {} segments, specialized: {})", program.getProgramName(), generatedClass.getName(), classFile.length, compiler.segmentStarts.size(), specialize);
+            return prototype;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new IllegalStateException("Internal error: loading compiled program failed", e);
+        }
+    }
+
+    @NotNull
+    private byte[] generateClass(@NotNull String className) {
+        ClassFileWriter writer = new ClassFileWriter(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_FINAL | ClassFileWriter.ACC_SUPER, className, COMPILED_PROGRAM);
+
+        writer.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "()V", 1)
+                .loadReference(0)
+                .invokeSpecial(COMPILED_PROGRAM, "<init>", "()V")
+                .returnVoid();
+
+        int commandIndex = 0;
+        while (commandIndex < this.instructions.length) {
+            this.segmentStarts.add(commandIndex);
+            commandIndex = generateSegmentMethod(writer, this.segmentStarts.size() - 1, commandIndex);
+        }
+        generateExecuteMethod(writer, className);
+
+        return writer.toByteArray();
+    }
+
+    /**
+     * Generates the method which calls the segment of the current command until a segment returns an index outside of
+     * the program.
+     */
+    private void generateExecuteMethod(@NotNull ClassFileWriter writer, @NotNull String className) {
+        ClassFileWriter.MethodWriter execute = writer.addMethod(ClassFileWriter.ACC_PROTECTED, "execute", "(I)I", 2);
+        ClassFileWriter.Label exit = new ClassFileWriter.Label();
+
+        if (!this.segmentStarts.isEmpty()) {
+            ClassFileWriter.Label dispatch = new ClassFileWriter.Label();
+            ClassFileWriter.Label[] segmentLabels = new ClassFileWriter.Label[this.segmentStarts.size()];
+            for (int i = 0; i < segmentLabels.length; i++) {
+                segmentLabels[i] = new ClassFileWriter.Label();
+            }
+
+            execute.mark(dispatch)
+                    .loadReference(0)
+                    .loadInt(COMMAND_INDEX_LOCAL)
+                    .invokeVirtual(COMPILED_PROGRAM, "segmentOf", "(I)I")
+                    .tableSwitch(exit, segmentLabels);
+
+            for (int i = 0; i < segmentLabels.length; i++) {
+                execute.mark(segmentLabels[i])
+                        .loadReference(0)
+                        .loadInt(COMMAND_INDEX_LOCAL)
+                        .invokeSpecial(className, SEGMENT_METHOD_PREFIX + i, "(I)I")
+                        .storeInt(COMMAND_INDEX_LOCAL)
+                        .jump(dispatch);
+            }
+        }
+
+        execute.mark(exit)
+                .loadInt(COMMAND_INDEX_LOCAL)
+                .returnInt();
+        checkMethodSize(execute, "execute");
+    }
+
+    /**
+     * Generates a segment method with one label per command, starting at the given command. Commands are added until
+     * the size budget of the segment is exhausted. The dispatching switch is placed at the end of the method, so that
+     * its size doesn't have to be known in advance. Any index outside of the segment is returned to the caller.
+     *
+     * @return the index of the first command after the segment.
+     */
+    private int generateSegmentMethod(@NotNull ClassFileWriter writer, int segment, int firstCommand) {
+        String methodName = SEGMENT_METHOD_PREFIX + segment;
+        this.method = writer.addMethod(ClassFileWriter.ACC_PRIVATE, methodName, "(I)I", 2);
+        ClassFileWriter.Label dispatch = new ClassFileWriter.Label();
+        ClassFileWriter.Label exit = new ClassFileWriter.Label();
+        List<ClassFileWriter.Label> commandLabels = new ArrayList<>();
+
+        this.method.jump(dispatch);
+
+        int commandIndex = firstCommand;
+        do {
+            ClassFileWriter.Label commandLabel = new ClassFileWriter.Label();
+            commandLabels.add(commandLabel);
+            this.method.mark(commandLabel);
+            Instruction instruction = this.instructions[commandIndex];
+            if (instruction.isDeferred()) {
+                // The complement leaves the dispatching loop of execute(int), see CompiledProgram#run(int)
+                this.method.pushInt(~commandIndex).returnInt();
+            } else if (instruction.isControlFlowStatement()) {
+                generateControlFlow(commandIndex, instruction);
+                this.method.storeInt(COMMAND_INDEX_LOCAL).jump(dispatch);
+            } else {
+                generateInstruction(commandIndex, instruction);
+            }
+            commandIndex++;
+        } while (commandIndex < this.instructions.length && this.method.getCodeLength() + 4 * commandLabels.size() < SEGMENT_SIZE_BUDGET);
+
+        // Falling through the last command continues with the first command of the next segment
+        this.method.pushInt(commandIndex)
+                .returnInt();
+
+        this.method.mark(dispatch)
+                .loadInt(COMMAND_INDEX_LOCAL)
+                .tableSwitch(firstCommand, exit, commandLabels.toArray(new ClassFileWriter.Label[commandLabels.size()]));
+
+        this.method.mark(exit)
+                .loadInt(COMMAND_INDEX_LOCAL)
+                .returnInt();
+
+        checkMethodSize(this.method, methodName);
+        return commandIndex;
+    }
+
+    /**
+     * Makes sure that the given method can still be compiled by the JIT.
+     *
+     * @throws IllegalStateException
+     *         if the method is too large.
+     */
+    private static void checkMethodSize(@NotNull ClassFileWriter.MethodWriter methodWriter, @NotNull String methodName) {
+        if (methodWriter.getCodeLength() > MAX_JIT_METHOD_SIZE) {
+            throw new IllegalStateException("Method " + methodName + " exceeds the JIT limit with " + methodWriter.getCodeLength() + " bytes");
+        }
+    }
+
+    /**
+     * Generates a call of the interpreter for a control flow statement. Conditions of If and While will be evaluated
+     * by the compiled code before. The resulting index of the next command will be left on the stack.
+     */
+    private void generateControlFlow(int commandIndex, @NotNull Instruction instruction) {
+        boolean precomputeCondition;
+        switch (instruction.getFlowToken()) {
+            case IF:
+                // An If at the end of the program will fail before evaluating its condition
+                precomputeCondition = commandIndex + 1 < this.instructions.length;
+                break;
+            case WHILE:
+                precomputeCondition = true;
+                break;
+            default:
+                precomputeCondition = false;
+        }
+        if (precomputeCondition) {
+            Node condition = toTree(instruction.getExpression(0));
+            beginCommand(commandIndex, condition);
+            this.method.loadReference(0).pushInt(commandIndex);
+            generateNode(condition);
+        } else {
+            beginCommand(commandIndex);
+            this.method.loadReference(0).pushInt(commandIndex).pushNull();
+        }
+        this.method.invokeVirtual(COMPILED_PROGRAM, "controlFlow", "(I" + VALUE_DESCRIPTOR + ")I");
+    }
+
+    private void generateInstruction(int commandIndex, @NotNull Instruction instruction) {
+        ExpressionCode[] expressions = instruction.getExpressions();
+        Node[] trees = new Node[expressions.length];
+        for (int i = 0; i < expressions.length; i++) {
+            trees[i] = toTree(expressions[i]);
+        }
+        beginCommand(commandIndex, trees);
+
+        switch (instruction.getType()) {
+            case EMPTY:
+                break;
+            case COMMAND_FUNCTION:
+            case COMMAND_STATEMENT:
+                this.method.loadReference(0).pushInt(commandIndex);
+                generateArray(PARAMETER, trees);
+                this.method.invokeVirtual(COMPILED_PROGRAM, "callCommand", "(I[" + PARAMETER_DESCRIPTOR + ")V");
+                break;
+            case STOP:
+                this.method.loadReference(0).pushInt(commandIndex)
+                        .invokeVirtual(COMPILED_PROGRAM, "stop", "(I)V");
+                break;
+            default:
+                this.method.loadReference(0).pushInt(commandIndex);
+                generateNode(trees[0]);
+                if (instruction.getType() == Instruction.InstructionType.STORE_LIST_ELEMENT
+                        || instruction.getType() == Instruction.InstructionType.STORE_MATRIX_ELEMENT) {
+                    generateNode(trees[1]);
+                } else {
+                    this.method.pushNull();
+                }
+                this.method.invokeVirtual(COMPILED_PROGRAM, "store", "(I" + VALUE_DESCRIPTOR + VALUE_DESCRIPTOR + ")V");
+        }
+    }
+
+    /**
+     * Decides whether specialized code may be used for the command with the given expression trees. If so, the index
+     * of the command will be stored, so that a failing guard knows where to continue.
+     */
+    private void beginCommand(int commandIndex, @NotNull Node... trees) {
+        boolean sideEffectFree = true;
+        boolean specializable = false;
+        for (Node tree : trees) {
+            sideEffectFree &= isSideEffectFree(tree);
+            specializable |= containsRealOperation(tree);
+        }
+        this.specializedCommand = this.specialize && sideEffectFree && specializable;
+        if (this.specializedCommand) {
+            this.method.loadReference(0).pushInt(commandIndex)
+                    .putField(COMPILED_PROGRAM, SPECIALIZED_COMMAND_FIELD, "I");
+        }
+    }
+
+    /**
+     * Generates a new array of the given type with the results of the given nodes.
+     */
+    private void generateArray(@NotNull String elementType, @NotNull Node[] nodes) {
+        this.method.pushInt(nodes.length).newArray(elementType);
+        for (int i = 0; i < nodes.length; i++) {
+            this.method.dup().pushInt(i);
+            generateNode(nodes[i]);
+            this.method.arrayStore();
+        }
+    }
+
+    /**
+     * Generates the code for a single node. The result of the node will be left on the stack.
+     */
+    private void generateNode(@NotNull Node node) {
+        switch (node.opcode) {
+            case ExpressionCode.PUSH_CONSTANT:
+                this.method.loadReference(0).pushInt(node.constantIndex)
+                        .invokeVirtual(COMPILED_PROGRAM, "constant", "(I)Ljava/lang/Object;")
+                        .checkCast(VALUE);
+                break;
+            case ExpressionCode.LOAD_NUMBER_VARIABLE:
+                generateLoad("loadNumberVariable", node);
+                break;
+            case ExpressionCode.LOAD_STRING_VARIABLE:
+                generateLoad("loadStringVariable", node);
+                break;
+            case ExpressionCode.LOAD_LIST_VARIABLE:
+                generateLoad("loadListVariable", node);
+                break;
+            case ExpressionCode.LOAD_LIST_ELEMENT:
+                this.method.loadReference(0).pushInt(node.constantIndex);
+                generateNode(node.children[0]);
+                this.method.pushInt(node.line).pushInt(node.charIndex)
+                        .invokeVirtual(COMPILED_PROGRAM, "loadListElement", "(I" + VALUE_DESCRIPTOR + "II)" + VALUE_DESCRIPTOR);
+                break;
+            case ExpressionCode.LOAD_MATRIX_VARIABLE:
+                generateLoad("loadMatrixVariable", node);
+                break;
+            case ExpressionCode.LOAD_MATRIX_ELEMENT:
+                this.method.loadReference(0).pushInt(node.constantIndex);
+                generateNode(node.children[0]);
+                generateNode(node.children[1]);
+                this.method.pushInt(node.line).pushInt(node.charIndex)
+                        .invokeVirtual(COMPILED_PROGRAM, "loadMatrixElement", "(I" + VALUE_DESCRIPTOR + VALUE_DESCRIPTOR + "II)" + VALUE_DESCRIPTOR);
+                break;
+            case ExpressionCode.LOAD_LAST_RESULT:
+                this.method.loadReference(0)
+                        .invokeVirtual(COMPILED_PROGRAM, "loadLastResult", "()" + VALUE_DESCRIPTOR);
+                break;
+            case ExpressionCode.NEW_LIST:
+                this.method.loadReference(0);
+                generateArray(VALUE, node.children);
+                this.method.invokeVirtual(COMPILED_PROGRAM, "newList", "([" + VALUE_DESCRIPTOR + ")" + VALUE_DESCRIPTOR);
+                break;
+            case ExpressionCode.NEW_MATRIX:
+                this.method.loadReference(0).pushInt(node.columns);
+                generateArray(VALUE, node.children);
+                this.method.invokeVirtual(COMPILED_PROGRAM, "newMatrix", "(I[" + VALUE_DESCRIPTOR + ")" + VALUE_DESCRIPTOR);
+                break;
+            case ExpressionCode.CALL_OPERATOR:
+                if (this.specializedCommand && isRealOperation(node)) {
+                    this.method.loadReference(0);
+                    generateRealNode(node);
+                    this.method.invokeVirtual(COMPILED_PROGRAM, "realValue", "(D)" + VALUE_DESCRIPTOR);
+                } else {
+                    generateOperatorCall(node);
+                }
+                break;
+            case ExpressionCode.CALL_FUNCTION:
+                this.method.loadReference(0).pushInt(node.constantIndex);
+                generateArray(PARAMETER, node.children);
+                this.method.invokeVirtual(COMPILED_PROGRAM, "callFunction", "(I[" + PARAMETER_DESCRIPTOR + ")" + VALUE_DESCRIPTOR);
+                break;
+            case ExpressionCode.MULTIPLY_COMPLEX:
+                this.method.loadReference(0);
+                generateNode(node.children[0]);
+                this.method.pushInt(node.constantIndex)
+                        .invokeVirtual(COMPILED_PROGRAM, "multiplyComplex", "(" + VALUE_DESCRIPTOR + "I)" + VALUE_DESCRIPTOR);
+                break;
+            case ExpressionCode.VALUE_PARAMETER:
+                this.method.loadReference(0);
+                generateNode(node.children[0]);
+                this.method.invokeVirtual(COMPILED_PROGRAM, "valueParameter", "(" + VALUE_DESCRIPTOR + ")" + PARAMETER_DESCRIPTOR);
+                break;
+            case ExpressionCode.VARIABLE_PARAMETER:
+                this.method.loadReference(0).pushInt(node.constantIndex)
+                        .invokeVirtual(COMPILED_PROGRAM, "variableParameter", "(I)" + PARAMETER_DESCRIPTOR);
+                break;
+            case ExpressionCode.EXPRESSION_PARAMETER:
+                this.method.loadReference(0).pushInt(node.constantIndex)
+                        .invokeVirtual(COMPILED_PROGRAM, "expressionParameter", "(I)" + PARAMETER_DESCRIPTOR);
+                break;
+            default:
+                throw new IllegalStateException("Internal error: illegal opcode " + node.opcode);
+        }
+    }
+
+    /**
+     * Generates the guarded real-only code for a node which is a real operation or an operand of one. The resulting
+     * double will be left on the stack.
+     */
+    private void generateRealNode(@NotNull Node node) {
+        switch (node.opcode) {
+            case ExpressionCode.PUSH_CONSTANT:
+                this.method.pushDouble(((Value) this.constants.get(node.constantIndex)).realPart());
+                break;
+            case ExpressionCode.LOAD_NUMBER_VARIABLE:
+                this.method.loadReference(0).pushInt(node.constantIndex)
+                        .invokeVirtual(COMPILED_PROGRAM, "loadRealVariable", "(I)D");
+                break;
+            case ExpressionCode.CALL_OPERATOR:
+                this.method.loadReference(0).pushInt(node.constantIndex);
+                for (Node child : node.children) {
+                    generateRealNode(child);
+                }
+                this.method.invokeVirtual(COMPILED_PROGRAM, "applyRealOperator", node.children.length == 1 ? "(ID)D" : "(IDD)D");
+                break;
+            default:
+                throw new IllegalStateException("Internal error: illegal real opcode " + node.opcode);
+        }
+    }
+
+    private void generateLoad(@NotNull String helperName, @NotNull Node node) {
+        this.method.loadReference(0).pushInt(node.constantIndex)
+                .invokeVirtual(COMPILED_PROGRAM, helperName, "(I)" + VALUE_DESCRIPTOR);
+    }
+
+    private void generateOperatorCall(@NotNull Node node) {
+        this.method.loadReference(0).pushInt(node.constantIndex);
+        switch (node.children.length) {
+            case 1:
+                generateNode(node.children[0]);
+                this.method.invokeVirtual(COMPILED_PROGRAM, "callOperator", "(I" + VALUE_DESCRIPTOR + ")" + VALUE_DESCRIPTOR);
+                break;
+            case 2:
+                generateNode(node.children[0]);
+                generateNode(node.children[1]);
+                this.method.invokeVirtual(COMPILED_PROGRAM, "callOperator", "(I" + VALUE_DESCRIPTOR + VALUE_DESCRIPTOR + ")" + VALUE_DESCRIPTOR);
+                break;
+            default:
+                generateArray(VALUE, node.children);
+                this.method.invokeVirtual(COMPILED_PROGRAM, "callOperator", "(I[" + VALUE_DESCRIPTOR + ")" + VALUE_DESCRIPTOR);
+        }
+    }
+
+    /**
+     * Converts the postfix code of an expression back to a tree, so that the arguments of calls can be generated in
+     * the order which is required by the JVM calling convention.
+     */
+    @NotNull
+    private Node toTree(@NotNull ExpressionCode expression) {
+        final int[] code = expression.getCode();
+        final Object[] expressionConstants = expression.getConstants();
+        List<Node> stack = new ArrayList<>();
+        int pc = 0;
+
+        while (pc < code.length) {
+            int opcode = code[pc++];
+            switch (opcode) {
+                case ExpressionCode.PUSH_CONSTANT:
+                case ExpressionCode.LOAD_NUMBER_VARIABLE:
+                case ExpressionCode.LOAD_STRING_VARIABLE:
+                case ExpressionCode.LOAD_LIST_VARIABLE:
+                case ExpressionCode.LOAD_MATRIX_VARIABLE:
+                case ExpressionCode.VARIABLE_PARAMETER:
+                case ExpressionCode.EXPRESSION_PARAMETER:
+                    stack.add(new Node(opcode, addConstant(expressionConstants[code[pc++]])));
+                    break;
+                case ExpressionCode.LOAD_LIST_ELEMENT: {
+                    Node node = new Node(opcode, addConstant(expressionConstants[code[pc++]]), popNodes(stack, 1));
+                    node.line = code[pc++];
+                    node.charIndex = code[pc++];
+                    stack.add(node);
+                    break;
+                }
+                case ExpressionCode.LOAD_MATRIX_ELEMENT: {
+                    Node node = new Node(opcode, addConstant(expressionConstants[code[pc++]]), popNodes(stack, 2));
+                    node.line = code[pc++];
+                    node.charIndex = code[pc++];
+                    stack.add(node);
+                    break;
+                }
+                case ExpressionCode.LOAD_LAST_RESULT:
+                    stack.add(new Node(opcode, -1));
+                    break;
+                case ExpressionCode.NEW_LIST:
+                    stack.add(new Node(opcode, -1, popNodes(stack, code[pc++])));
+                    break;
+                case ExpressionCode.NEW_MATRIX: {
+                    int rows = code[pc++];
+                    int columns = code[pc++];
+                    Node node = new Node(opcode, -1, popNodes(stack, rows * columns));
+                    node.columns = columns;
+                    stack.add(node);
+                    break;
+                }
+                case ExpressionCode.CALL_OPERATOR:
+                case ExpressionCode.CALL_FUNCTION: {
+                    int siteIndex = addConstant(expressionConstants[code[pc++]]);
+                    stack.add(new Node(opcode, siteIndex, popNodes(stack, code[pc++])));
+                    break;
+                }
+                case ExpressionCode.MULTIPLY_COMPLEX:
+                    stack.add(new Node(opcode, addConstant(expressionConstants[code[pc++]]), popNodes(stack, 1)));
+                    break;
+                case ExpressionCode.VALUE_PARAMETER:
+                    stack.add(new Node(opcode, -1, popNodes(stack, 1)));
+                    break;
+                default:
+                    throw new IllegalStateException("Internal error: illegal opcode " + opcode);
+            }
+        }
+
+        if (stack.size() != 1) {
+            throw new IllegalStateException("Internal error: unbalanced expression " + expression);
+        }
+        return stack.get(0);
+    }
+
+    /**
+     * Returns true if the given node is an operator call at a site which is specialized to real operands and all of its
+     * operands are real operations, number variables or finite real constants.
+     */
+    private boolean isRealOperation(@NotNull Node node) {
+        if (node.opcode != ExpressionCode.CALL_OPERATOR) {
+            return false;
+        }
+        CommandSite site = (CommandSite) this.constants.get(node.constantIndex);
+        if (site.getSpecialization() != CommandSite.Specialization.REAL) {
+            return false;
+        }
+        if (node.children.length == 1 && site.getRealUnaryOperation() == null
+                || node.children.length == 2 && site.getRealBinaryOperation() == null
+                || node.children.length > 2) {
+            return false;
+        }
+        for (Node child : node.children) {
+            if (!isRealOperand(child)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isRealOperand(@NotNull Node node) {
+        switch (node.opcode) {
+            case ExpressionCode.LOAD_NUMBER_VARIABLE:
+                return true;
+            case ExpressionCode.PUSH_CONSTANT:
+                return ((Value) this.constants.get(node.constantIndex)).isFiniteReal();
+            default:
+                return isRealOperation(node);
+        }
+    }
+
+    private boolean containsRealOperation(@NotNull Node node) {
+        if (isRealOperation(node)) {
+            return true;
+        }
+        for (Node child : node.children) {
+            if (containsRealOperation(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if evaluating the given node can't have any side effects, i.e. if it calls only pure commands.
+     */
+    private boolean isSideEffectFree(@NotNull Node node) {
+        if (node.opcode == ExpressionCode.EXPRESSION_PARAMETER) {
+            // The nested expression is evaluated by the called command and may therefore be evaluated any number of times
+            return false;
+        }
+        if (node.opcode == ExpressionCode.CALL_OPERATOR || node.opcode == ExpressionCode.CALL_FUNCTION) {
+            Command command = ((CommandSite) this.constants.get(node.constantIndex)).getCommand();
+            if (command == null || !command.isPure()) {
+                return false;
+            }
+        }
+        for (Node child : node.children) {
+            if (!isSideEffectFree(child)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int addConstant(@NotNull Object constant) {
+        Integer index = this.constantIndices.get(constant);
+        if (index == null) {
+            index = this.constants.size();
+            this.constants.add(constant);
+            this.constantIndices.put(constant, index);
+        }
+        return index;
+    }
+
+    @NotNull
+    private static Node[] popNodes(@NotNull List<Node> stack, int count) {
+        List<Node> top = stack.subList(stack.size() - count, stack.size());
+        Node[] nodes = top.toArray(new Node[count]);
+        top.clear();
+        return nodes;
+    }
+
+    /**
+     * Single operation of an expression tree.
+     */
+    private static final class Node {
+
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        private final int opcode;
+
+        /** Index of the operand in the constants of the generated class or -1 if the operation has no operand. */
+        private final int constantIndex;
+
+        private final Node[] children;
+
+        private int line;
+
+        private int charIndex;
+
+        /** Number of columns of a new matrix. */
+        private int columns;
+
+        private Node(int opcode, int constantIndex) {
+            this(opcode, constantIndex, NO_CHILDREN);
+        }
+
+        private Node(int opcode, int constantIndex, @NotNull Node[] children) {
+            this.opcode = opcode;
+            this.constantIndex = constantIndex;
+            this.children = children;
+        }
+    }
+
+    /**
+     * Class loader for exactly one generated class.
+     */
+    private static final class GeneratedClassLoader extends ClassLoader {
+
+        private GeneratedClassLoader(@NotNull ClassLoader parent) {
+            super(parent);
+        }
+
+        @NotNull
+        private Class<?> define(@NotNull String name, @NotNull byte[] classFile) {
+            return defineClass(name, classFile, 0, classFile.length);
+        }
+    }
+}
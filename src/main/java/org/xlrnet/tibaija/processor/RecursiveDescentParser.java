@@ -0,0 +1,1400 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.processor;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.math3.complex.Complex;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlrnet.tibaija.commons.TIMathUtils;
+import org.xlrnet.tibaija.commons.ValidationUtil;
+import org.xlrnet.tibaija.commons.Value;
+import org.xlrnet.tibaija.exception.InvalidDimensionException;
+import org.xlrnet.tibaija.exception.LabelNotFoundException;
+import org.xlrnet.tibaija.exception.PreprocessException;
+import org.xlrnet.tibaija.exception.TIRuntimeException;
+import org.xlrnet.tibaija.memory.ListVariable;
+import org.xlrnet.tibaija.memory.MatrixVariable;
+import org.xlrnet.tibaija.memory.NumberVariable;
+import org.xlrnet.tibaija.memory.Variables;
+import org.xlrnet.tibaija.processor.Instruction.InstructionType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.xlrnet.tibaija.processor.SourceScanner.*;
+
+/**
+ * Hand-written recursive-descent front end for TI-Basic programs. The parser reads the source code once through a
+ * {@link SourceScanner} and emits the {@link Instruction} of every command directly, i.e. without a token stream and
+ * without a parse tree. It accepts the same language as the reference grammar TIBasic.g4 and produces the same
+ * instructions as the {@link InstructionCompiler}, so that both front ends can be used interchangeably (see {@link
+ * FrontEnd}).
+ * <p/>
+ * Almost all decisions of the grammar can be made by looking at the current token. The few ambiguous decisions are
+ * resolved like the generated parser resolves them, i.e. the first alternative of the grammar that can parse the whole
+ * command wins: if a command can't be parsed with the chosen alternatives, it will be parsed again from its beginning
+ * with the next combination of alternatives.
+ * <p/>
+ * Syntax errors are reported as {@link PreprocessException} in the format of the {@link PreprocessErrorListener}.
+ * Errors which the InstructionCompiler reports after parsing (e.g. undefined labels) are reported only after the whole
+ * program has been parsed, so that syntax errors always take precedence.
+ * <p/>
+ * For lazy parsing (see {@link FrontEnd#LAZY}), the parser can also scan the program for the boundaries of its commands
+ * with {@link #scanProgram()} and parse single commands later with {@link #parseDeferredCommand(int)}.
+ */
+final class RecursiveDescentParser {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RecursiveDescentParser.class);
+
+    private static final ExpressionCode[] NO_EXPRESSIONS = new ExpressionCode[0];
+
+    /** Maximum number of attempts for parsing a single command with different alternatives. */
+    private static final int MAX_ATTEMPTS_PER_COMMAND = 256;
+
+    // Alternatives of a command which starts with a capital letter
+    private static final int COMMAND_FUNCTION = 0;
+    private static final int COMMAND_STATEMENT = 1;
+    private static final int OTHER_COMMAND = 2;
+
+    private final String programName;
+
+    private final SourceScanner scanner;
+
+    private final List<Instruction> instructions = new ArrayList<>();
+
+    private final Map<String, Integer> labelMap = new HashMap<>();
+
+    /** Indices of all Goto commands, their targets will be resolved after parsing. */
+    private final List<Integer> gotoIndices = new ArrayList<>();
+
+    /** Position of the first token of every command if the program has been scanned with {@link #scanProgram()}. */
+    private final List<SourceScanner.Mark> commandMarks = new ArrayList<>();
+
+    /** The emitter for the expression that is currently being parsed. */
+    private ExpressionEmitter emitter;
+
+    /** True while the elements of a list expression are parsed, lists can't be nested. */
+    private boolean listMode;
+
+    /** The chosen alternative of every ambiguous decision in the current command. */
+    private int[] choices = new int[8];
+
+    /** The number of alternatives of every ambiguous decision in the current command. */
+    private int[] alternatives = new int[8];
+
+    private int choiceCount;
+
+    private int choicePosition;
+
+    /** The first violation of the list mode in the current command, see {@link #checkListMode()}. */
+    private SyntaxError listModeError;
+
+    /** The first error that has been detected in a successfully parsed command. */
+    private TIRuntimeException deferredError;
+
+    private int deferredErrorIndex;
+
+    /** Name of the last variable that has been parsed as a value and the range of its token. */
+    private String variableText;
+
+    private int variableStart;
+
+    private int variableEnd;
+
+    /**
+     * Creates a new parser for a single program.
+     *
+     * @param programName
+     *         Name of the program to parse.
+     * @param programCode
+     *         Source code of the program.
+     */
+    RecursiveDescentParser(@NotNull String programName, @NotNull CharSequence programCode) {
+        this.programName = programName;
+        this.scanner = new SourceScanner(programCode);
+    }
+
+    /**
+     * Parses the whole program and compiles every command into an instruction. The index of each instruction is equal
+     * to the index of the command in the program.
+     *
+     * @return An array with one instruction per command.
+     * @throws PreprocessException
+     *         Will be thrown if the program contains a syntax error.
+     * @throws LabelNotFoundException
+     *         Will be thrown if a Goto command refers to an undefined label.
+     */
+    @NotNull
+    Instruction[] parseProgram() throws PreprocessException, LabelNotFoundException {
+        try {
+            scanner.next();
+            while (scanner.getType() == SEPARATOR) {
+                scanner.next();
+                Instruction instruction = parseCommand();
+                registerJumpTarget(instruction, instructions.size());
+                instructions.add(instruction);
+            }
+            if (scanner.getType() != EOF) {
+                throw newSyntaxError("extraneous input");
+            }
+        } catch (SyntaxError e) {
+            throw PreprocessErrorListener.newPreprocessException(null, e.line, e.charPositionInLine, e.getMessage());
+        }
+
+        resolveGotoTargets();
+        if (deferredError != null) {
+            throw deferredError;
+        }
+
+        LOGGER.trace("Parsed {} instructions", instructions.size());
+        return instructions.toArray(new Instruction[instructions.size()]);
+    }
+
+    /**
+     * Scans the program for the boundaries of its commands without parsing them. Only labels and empty commands are
+     * parsed right away, so that the label map is complete after scanning. Every other command is represented by a
+     * placeholder of type {@link InstructionType#DEFERRED} which contains the control flow token of the command and must
+     * be replaced with the result of {@link #parseDeferredCommand(int)} before it can be executed.
+     *
+     * @return An array with one instruction or placeholder per command.
+     * @throws PreprocessException
+     *         Will be thrown if the program doesn't start with a separator or if a label can't be parsed.
+     */
+    @NotNull
+    Instruction[] scanProgram() throws PreprocessException {
+        try {
+            scanner.next();
+            while (scanner.getType() == SEPARATOR) {
+                scanner.next();
+                commandMarks.add(scanner.mark());
+                Instruction instruction;
+                int type = scanner.getType();
+                if (type == LABEL || type == SEPARATOR || type == EOF) {
+                    instruction = parseCommand();
+                    registerJumpTarget(instruction, instructions.size());
+                } else {
+                    instruction = new Instruction(InstructionType.DEFERRED, toFlowToken(type), null, NO_EXPRESSIONS, scanner.getLine(), scanner.getColumn());
+                    scanner.skipCommand();
+                }
+                instructions.add(instruction);
+            }
+            if (scanner.getType() != EOF) {
+                throw newSyntaxError("extraneous input");
+            }
+        } catch (SyntaxError e) {
+            throw PreprocessErrorListener.newPreprocessException(null, e.line, e.charPositionInLine, e.getMessage());
+        }
+
+        LOGGER.trace("Scanned {} commands", instructions.size());
+        return instructions.toArray(new Instruction[instructions.size()]);
+    }
+
+    /**
+     * Parses a single command of a program which has been scanned with {@link #scanProgram()}. The target of a Goto
+     * command will be resolved immediately.
+     *
+     * @param commandIndex
+     *         Index of the command to parse.
+     * @return The instruction of the command.
+     * @throws PreprocessException
+     *         Will be thrown if the command contains a syntax error.
+     * @throws LabelNotFoundException
+     *         Will be thrown if the command is a Goto to an undefined label.
+     */
+    @NotNull
+    Instruction parseDeferredCommand(int commandIndex) throws PreprocessException, LabelNotFoundException {
+        scanner.reset(commandMarks.get(commandIndex));
+        deferredError = null;
+        Instruction instruction;
+        try {
+            instruction = parseCommand();
+        } catch (SyntaxError e) {
+            throw PreprocessErrorListener.newPreprocessException(null, e.line, e.charPositionInLine, e.getMessage());
+        }
+        if (deferredError != null) {
+            throw deferredError;
+        }
+
+        if (instruction.getFlowToken() == ControlFlowToken.GOTO) {
+            String targetLabel = (String) instruction.getTarget();
+            Integer targetIndex = labelMap.get(targetLabel);
+            if (targetIndex == null) {
+                throw new LabelNotFoundException(instruction.getLine(), instruction.getCharIndex(), programName, targetLabel);
+            }
+            instruction = newFlowInstruction(ControlFlowToken.GOTO, targetIndex, instruction.getLine(), instruction.getCharIndex());
+        }
+        return instruction;
+    }
+
+    /**
+     * Returns the map of all labels in the program and the index of the command which defines the label. If a label
+     * is defined more than once, the first definition wins.
+     */
+    @NotNull
+    Map<String, Integer> getLabelMap() {
+        return labelMap;
+    }
+
+    /**
+     * Parses a single command. Commands which start with a capital letter are tried as command function, as command
+     * statement and as expression or store statement in this order. Every alternative is retried with all
+     * combinations of ambiguous decisions until the command can be parsed completely.
+     */
+    @NotNull
+    private Instruction parseCommand() {
+        SourceScanner.Mark start = scanner.mark();
+        int firstAlternative = scanner.getType() == CAPITAL ? COMMAND_FUNCTION : OTHER_COMMAND;
+        SyntaxError furthestError = null;
+
+        for (int alternative = firstAlternative; alternative <= OTHER_COMMAND; alternative++) {
+            choiceCount = 0;
+            int attempts = 0;
+            do {
+                TIRuntimeException previousError = deferredError;
+                int previousErrorIndex = deferredErrorIndex;
+                Instruction instruction = null;
+                choicePosition = 0;
+                listModeError = null;
+                try {
+                    instruction = parseCommand(alternative);
+                    if (instruction == null) {
+                        scanner.reset(start);
+                        break;
+                    }
+                    if (scanner.getType() != SEPARATOR && scanner.getType() != EOF) {
+                        throw newSyntaxError("extraneous input");
+                    }
+                } catch (SyntaxError e) {
+                    if (furthestError == null || e.index > furthestError.index) {
+                        furthestError = e;
+                    }
+                    instruction = null;
+                }
+                if (instruction != null) {
+                    if (listModeError != null) {
+                        // The generated parser doesn't consider the list mode when it chooses an alternative
+                        throw listModeError;
+                    }
+                    return instruction;
+                }
+                scanner.reset(start);
+                emitter = null;
+                listMode = false;
+                deferredError = previousError;
+                deferredErrorIndex = previousErrorIndex;
+            } while (++attempts < MAX_ATTEMPTS_PER_COMMAND && nextChoice());
+        }
+        throw furthestError;
+    }
+
+    /**
+     * Parses a command with the given alternative. Returns null if the alternative can't be applied at all.
+     */
+    @Nullable
+    private Instruction parseCommand(int alternative) {
+        switch (alternative) {
+            case COMMAND_FUNCTION:
+                return parseCommandFunction();
+            case COMMAND_STATEMENT:
+                return parseCommandStatement();
+            default:
+                break;
+        }
+
+        int line = scanner.getLine();
+        int column = scanner.getColumn();
+        switch (scanner.getType()) {
+            case SEPARATOR:
+            case EOF:
+                return newInstruction(InstructionType.EMPTY, null, line, column);
+            case IF:
+                return parseConditionalStatement(ControlFlowToken.IF);
+            case WHILE:
+                return parseConditionalStatement(ControlFlowToken.WHILE);
+            case REPEAT:
+                return parseConditionalStatement(ControlFlowToken.REPEAT);
+            case THEN:
+                scanner.next();
+                return newFlowInstruction(ControlFlowToken.THEN, null, line, column);
+            case ELSE:
+                scanner.next();
+                return newFlowInstruction(ControlFlowToken.ELSE, null, line, column);
+            case END:
+                scanner.next();
+                return newFlowInstruction(ControlFlowToken.END, null, line, column);
+            case FOR:
+                return parseForStatement();
+            case LABEL:
+                scanner.next();
+                expect(SPACE);
+                return newFlowInstruction(ControlFlowToken.LABEL, parseLabelIdentifier(), line, column);
+            case GOTO:
+                // The target will be resolved after parsing, until then the instruction contains the label name
+                scanner.next();
+                expect(SPACE);
+                return newFlowInstruction(ControlFlowToken.GOTO, parseLabelIdentifier(), line, column);
+            case INCREMENT_SKIP_GREATER:
+                return parseSkipStatement(ControlFlowToken.INCREMENT_SKIP_GREATER);
+            case DECREMENT_SKIP_LESS:
+                return parseSkipStatement(ControlFlowToken.DECREMENT_SKIP_LESS);
+            case STOP:
+                scanner.next();
+                return newInstruction(InstructionType.STOP, null, line, column);
+            default:
+                return parseExpressionOrStoreStatement();
+        }
+    }
+
+    @Nullable
+    private Instruction parseCommandFunction() {
+        int line = scanner.getLine();
+        int column = scanner.getColumn();
+        String commandFunctionName = parseCommandIdentifier(true);
+        if (commandFunctionName == null || scanner.getType() != LEFT_PARENTHESIS) {
+            return null;
+        }
+        scanner.next();
+        ExpressionCode[] parameters = parseCommandParameters();
+        skipOptional(RIGHT_PARENTHESIS);
+
+        CommandSite site = new CommandSite(CommandSite.Kind.COMMAND_FUNCTION, commandFunctionName, line, column);
+        return newInstruction(InstructionType.COMMAND_FUNCTION, site, line, column, parameters);
+    }
+
+    @Nullable
+    private Instruction parseCommandStatement() {
+        int line = scanner.getLine();
+        int column = scanner.getColumn();
+        String commandStatementName = parseCommandIdentifier(false);
+        if (commandStatementName == null) {
+            return null;
+        }
+        ExpressionCode[] parameters = NO_EXPRESSIONS;
+        if (scanner.getType() == SPACE) {
+            scanner.next();
+            parameters = parseCommandParameters();
+        }
+
+        CommandSite site = new CommandSite(CommandSite.Kind.COMMAND_STATEMENT, commandStatementName, line, column);
+        return newInstruction(InstructionType.COMMAND_STATEMENT, site, line, column, parameters);
+    }
+
+    /**
+     * Parses the identifier of a command function or a command statement. Both consist of a capital letter and at
+     * least one more letter or minus, but command statements can't contain two consecutive capital letters. Returns
+     * null if the current tokens don't form an identifier.
+     */
+    @Nullable
+    private String parseCommandIdentifier(boolean commandFunction) {
+        StringBuilder builder = new StringBuilder(scanner.getText());
+        scanner.next();
+        boolean previousLowercase = false;
+        int parts = 0;
+        while (true) {
+            int type = scanner.getType();
+            if (type == CAPITAL && !commandFunction && !previousLowercase) {
+                break;
+            } else if (type != CAPITAL && type != LOWERCASE && type != IMAGINARY && type != MINUS) {
+                break;
+            }
+            previousLowercase = type == LOWERCASE;
+            builder.append(scanner.getText());
+            scanner.next();
+            parts++;
+        }
+        return parts > 0 ? builder.toString() : null;
+    }
+
+    @NotNull
+    private Instruction parseConditionalStatement(@NotNull ControlFlowToken flowToken) {
+        int line = scanner.getLine();
+        int column = scanner.getColumn();
+        scanner.next();
+        expect(SPACE);
+        ExpressionCode condition = compileExpression();
+        return newFlowInstruction(flowToken, null, line, column, condition);
+    }
+
+    @NotNull
+    private Instruction parseForStatement() {
+        int line = scanner.getLine();
+        int startIndex = scanner.getStartIndex();
+        scanner.next();
+        expect(LEFT_PARENTHESIS);
+        NumberVariable numberVariable = parseNumericalVariable();
+        List<ExpressionCode> expressions = new ArrayList<>(3);
+        expect(COMMA);
+        expressions.add(compileExpression());
+        expect(COMMA);
+        expressions.add(compileExpression());
+        if (scanner.getType() == COMMA) {
+            scanner.next();
+            expressions.add(compileExpression());
+        }
+        skipOptional(RIGHT_PARENTHESIS);
+        ExpressionCode[] expressionArray = expressions.toArray(new ExpressionCode[expressions.size()]);
+        return new Instruction(InstructionType.CONTROL_FLOW, ControlFlowToken.FOR, numberVariable, expressionArray, line, startIndex);
+    }
+
+    @NotNull
+    private Instruction parseSkipStatement(@NotNull ControlFlowToken flowToken) {
+        int line = scanner.getLine();
+        int column = scanner.getColumn();
+        scanner.next();
+        NumberVariable numberVariable = parseNumericalVariable();
+        expect(COMMA);
+        ExpressionCode compareValue = compileExpression();
+        skipOptional(RIGHT_PARENTHESIS);
+        return newFlowInstruction(flowToken, numberVariable, line, column, compareValue);
+    }
+
+    @NotNull
+    private Instruction parseExpressionOrStoreStatement() {
+        int line = scanner.getLine();
+        int column = scanner.getColumn();
+        ExpressionCode value = compileExpression();
+        if (scanner.getType() != STORE) {
+            return newInstruction(InstructionType.EXPRESSION, null, line, column, value);
+        }
+
+        int storeLine = scanner.getLine();
+        int storeColumn = scanner.getColumn();
+        scanner.next();
+        switch (scanner.getType()) {
+            case CAPITAL:
+                return newInstruction(InstructionType.STORE_NUMBER, parseNumericalVariable(), storeLine, storeColumn, value);
+            case LIST_TOKEN: {
+                ListVariable listVariable = parseListVariable();
+                if (scanner.getType() != LEFT_PARENTHESIS) {
+                    return newInstruction(InstructionType.STORE_LIST, listVariable, storeLine, storeColumn, value);
+                }
+                int parenthesisLine = scanner.getLine();
+                int parenthesisIndex = scanner.getStartIndex();
+                scanner.next();
+                ExpressionCode index = compileExpression();
+                skipOptional(RIGHT_PARENTHESIS);
+                return new Instruction(InstructionType.STORE_LIST_ELEMENT, null, listVariable, new ExpressionCode[]{value, index}, parenthesisLine, parenthesisIndex);
+            }
+            case MATRIX_VARIABLE: {
+                MatrixVariable matrixVariable = Variables.resolveMatrixVariable(scanner.getText());
+                scanner.next();
+                if (scanner.getType() != LEFT_PARENTHESIS) {
+                    return newInstruction(InstructionType.STORE_MATRIX, matrixVariable, storeLine, storeColumn, value);
+                }
+                int parenthesisLine = scanner.getLine();
+                int parenthesisIndex = scanner.getStartIndex();
+                scanner.next();
+                ExpressionCode position = compileMatrixPosition();
+                skipOptional(RIGHT_PARENTHESIS);
+                return new Instruction(InstructionType.STORE_MATRIX_ELEMENT, null, matrixVariable, new ExpressionCode[]{value, position}, parenthesisLine, parenthesisIndex);
+            }
+            case DIMENSION: {
+                scanner.next();
+                expect(LEFT_PARENTHESIS);
+                Instruction instruction;
+                if (scanner.getType() == LIST_TOKEN) {
+                    instruction = newInstruction(InstructionType.STORE_LIST_DIMENSION, parseListVariable(), storeLine, storeColumn, value);
+                } else if (scanner.getType() == MATRIX_VARIABLE) {
+                    MatrixVariable matrixVariable = Variables.resolveMatrixVariable(scanner.getText());
+                    scanner.next();
+                    instruction = newInstruction(InstructionType.STORE_MATRIX_DIMENSION, matrixVariable, storeLine, storeColumn, value);
+                } else {
+                    throw newSyntaxError("mismatched input");
+                }
+                skipOptional(RIGHT_PARENTHESIS);
+                return instruction;
+            }
+            case STRING_VARIABLE: {
+                Object stringVariable = Variables.resolveStringVariable(scanner.getText());
+                scanner.next();
+                return newInstruction(InstructionType.STORE_STRING, stringVariable, storeLine, storeColumn, value);
+            }
+            default:
+                throw newSyntaxError("mismatched input");
+        }
+    }
+
+    /**
+     * Parses the parameters of a command. Every parameter will be compiled into a separate {@link ExpressionCode}
+     * which evaluates to a {@link org.xlrnet.tibaija.memory.Parameter}.
+     */
+    @NotNull
+    private ExpressionCode[] parseCommandParameters() {
+        if (!startsOperand()) {
+            return NO_EXPRESSIONS;
+        }
+        List<ExpressionCode> parameters = new ArrayList<>();
+        while (true) {
+            ExpressionEmitter parentEmitter = this.emitter;
+            this.emitter = new ExpressionEmitter();
+            try {
+                Object variable = parseParameter(false);
+                if (variable != null) {
+                    emitter.emitWithConstant(ExpressionCode.VARIABLE_PARAMETER, variable);
+                } else {
+                    emitter.emit(ExpressionCode.VALUE_PARAMETER);
+                }
+                parameters.add(emitter.toExpressionCode());
+            } finally {
+                this.emitter = parentEmitter;
+            }
+            if (scanner.getType() != COMMA) {
+                break;
+            }
+            // Like the generated parser, leave a trailing comma to the enclosing rule which reports it as extraneous
+            SourceScanner.Mark comma = scanner.mark();
+            scanner.next();
+            if (!startsOperand()) {
+                scanner.reset(comma);
+                break;
+            }
+        }
+        return parameters.toArray(new ExpressionCode[parameters.size()]);
+    }
+
+    /**
+     * Parses a single parameter. A parameter which consists only of a number or list variable is passed as a
+     * variable, all other parameters are parsed as an expression. If the variable is followed by tokens that continue
+     * an expression, the decision is ambiguous in the parameters of expression functions: the parameter list of an
+     * expression function may end without a closing parenthesis, so the variable parameter will be tried first.
+     *
+     * @return the variable or null if the parameter has been parsed as an expression.
+     */
+    @Nullable
+    private Object parseParameter(boolean ambiguous) {
+        int type = scanner.getType();
+        if (type == CAPITAL || type == LIST_TOKEN) {
+            SourceScanner.Mark mark = scanner.mark();
+            Object variable = type == CAPITAL ? parseNumericalVariable() : parseListVariable();
+            if (!canContinueExpression(scanner.getType()) || (ambiguous && choose(2) == 0)) {
+                return variable;
+            }
+            scanner.reset(mark);
+        }
+        parseExpression();
+        return null;
+    }
+
+    /**
+     * Parses a single expression into a new and independent {@link ExpressionCode}.
+     */
+    @NotNull
+    private ExpressionCode compileExpression() {
+        ExpressionEmitter parentEmitter = this.emitter;
+        this.emitter = new ExpressionEmitter();
+        try {
+            parseExpression();
+            return this.emitter.toExpressionCode();
+        } finally {
+            this.emitter = parentEmitter;
+        }
+    }
+
+    /**
+     * Parses the row and column of a matrix element into a single expression which results in a list with two
+     * elements.
+     */
+    @NotNull
+    private ExpressionCode compileMatrixPosition() {
+        ExpressionEmitter parentEmitter = this.emitter;
+        this.emitter = new ExpressionEmitter();
+        try {
+            parseExpression();
+            expect(COMMA);
+            parseExpression();
+            this.emitter.emitNewList(2);
+            return this.emitter.toExpressionCode();
+        } finally {
+            this.emitter = parentEmitter;
+        }
+    }
+
+    private void parseExpression() {
+        parseXor();
+        if (scanner.getType() == TO_DEC || scanner.getType() == TO_FRAC) {
+            // ►Dec and ►Frac are ignored, since the InstructionCompiler of the reference front end doesn't convert either
+            scanner.next();
+        }
+    }
+
+    private void parseXor() {
+        parseOr();
+        while (scanner.getType() == XOR) {
+            scanner.next();
+            int line = scanner.getLine();
+            int column = scanner.getColumn();
+            parseOr();
+            emitOperator("xor", line, column, 2);
+        }
+    }
+
+    private void parseOr() {
+        parseAnd();
+        while (scanner.getType() == OR) {
+            scanner.next();
+            int line = scanner.getLine();
+            int column = scanner.getColumn();
+            parseAnd();
+            emitOperator("or", line, column, 2);
+        }
+    }
+
+    private void parseAnd() {
+        parseCompare();
+        while (scanner.getType() == AND) {
+            scanner.next();
+            int line = scanner.getLine();
+            int column = scanner.getColumn();
+            parseCompare();
+            emitOperator("and", line, column, 2);
+        }
+    }
+
+    private void parseCompare() {
+        parsePlusMinus();
+        while (isCompareOperator(scanner.getType())) {
+            String operator = scanner.getText();
+            scanner.next();
+            int line = scanner.getLine();
+            int column = scanner.getColumn();
+            parsePlusMinus();
+            emitOperator(operator, line, column, 2);
+        }
+    }
+
+    private void parsePlusMinus() {
+        parseMulDiv();
+        while (scanner.getType() == PLUS || scanner.getType() == MINUS) {
+            String operator = scanner.getText();
+            scanner.next();
+            int line = scanner.getLine();
+            int column = scanner.getColumn();
+            parseMulDiv();
+            emitOperator(operator, line, column, 2);
+        }
+    }
+
+    /**
+     * Parses explicit and implicit multiplications and divisions. Like the InstructionCompiler, this makes sure that
+     * no list variable is implicitly multiplied with a number variable, i.e. that ∟ABCDEF won't be interpreted as
+     * ∟ABCDE*F.
+     */
+    private void parseMulDiv() {
+        int operandStart = scanner.getTokenIndex();
+        parseInfix();
+        String previousVariable = getVariableText(operandStart);
+        while (true) {
+            String operator;
+            boolean implicit = false;
+            if (scanner.getType() == MULTIPLY || scanner.getType() == DIVIDE) {
+                operator = scanner.getText();
+                scanner.next();
+            } else if (startsOperand()) {
+                operator = "*";
+                implicit = true;
+            } else {
+                break;
+            }
+            int line = scanner.getLine();
+            int column = scanner.getColumn();
+            operandStart = scanner.getTokenIndex();
+            parseInfix();
+            String currentVariable = getVariableText(operandStart);
+            if (implicit && previousVariable != null && currentVariable != null
+                    && ValidationUtil.isValidListName(previousVariable) && ValidationUtil.isValidNumberVariableName(currentVariable)) {
+                deferError(new PreprocessException(line, column, "Invalid list name: " + previousVariable + currentVariable));
+            }
+            emitOperator(operator, line, column, 2);
+            previousVariable = currentVariable;
+        }
+    }
+
+    private void parseInfix() {
+        parseNegation();
+        while (scanner.getType() == NPR || scanner.getType() == NCR) {
+            String operator = scanner.getText();
+            scanner.next();
+            int line = scanner.getLine();
+            int column = scanner.getColumn();
+            parseNegation();
+            emitOperator(operator, line, column, 2);
+        }
+    }
+
+    private void parseNegation() {
+        if (scanner.getType() != NEGATIVE_MINUS) {
+            parsePowerRoot();
+            return;
+        }
+        int line = scanner.getLine();
+        int column = scanner.getColumn();
+        scanner.next();
+        parsePowerRoot();
+        emitter.emitConstant(Value.NEGATIVE_ONE);
+        emitOperator("*", line, column, 2);
+    }
+
+    private void parsePowerRoot() {
+        parsePostfix();
+        while (scanner.getType() == POWER || scanner.getType() == NROOT) {
+            String operator = scanner.getText();
+            scanner.next();
+            int line = scanner.getLine();
+            int column = scanner.getColumn();
+            parsePostfix();
+            emitOperator(operator, line, column, 2);
+        }
+    }
+
+    private void parsePostfix() {
+        int line = scanner.getLine();
+        int column = scanner.getColumn();
+
+        if (scanner.getType() != IMAGINARY) {
+            // Regular right-associative postfix logic without imaginary parts
+            parsePreeval();
+            while (isPostfixOperator(scanner.getType())) {
+                String operator = scanner.getText();
+                scanner.next();
+                emitOperator(operator, line, column, 1);
+            }
+            return;
+        }
+
+        // Imaginary logic -> e.g. ii²² == i(i²)²
+        int imaginaryCount = -1;
+        while (scanner.getType() == IMAGINARY) {
+            imaginaryCount++;
+            scanner.next();
+        }
+        emitter.emitConstant(Value.of(Complex.I));
+        while (isPostfixOperator(scanner.getType())) {
+            String operator = scanner.getText();
+            scanner.next();
+            emitOperator(operator, line, column, 1);
+            if (imaginaryCount > 0) {
+                emitter.emitWithConstant(ExpressionCode.MULTIPLY_COMPLEX, Complex.I);
+                imaginaryCount--;
+            }
+        }
+        // Multiply value with all left I
+        if (imaginaryCount > 0) {
+            emitter.emitWithConstant(ExpressionCode.MULTIPLY_COMPLEX, TIMathUtils.imaginaryNthPower(imaginaryCount));
+        }
+    }
+
+    private void parsePreeval() {
+        skipSpaces();
+        int type = scanner.getType();
+        if (type == SQUARE_ROOT || type == CUBIC_ROOT || type == NOT) {
+            String operator = scanner.getText();
+            int line = scanner.getLine();
+            int column = scanner.getColumn();
+            scanner.next();
+            parseXor();
+            skipOptional(RIGHT_PARENTHESIS);
+            emitOperator(operator, line, column, 1);
+        } else {
+            parseValue();
+        }
+        skipSpaces();
+    }
+
+    private void parseValue() {
+        int tokenIndex = scanner.getTokenIndex();
+        switch (scanner.getType()) {
+            case LEFT_PARENTHESIS:
+                scanner.next();
+                parseExpression();
+                skipOptional(RIGHT_PARENTHESIS);
+                break;
+            case CAPITAL: {
+                String name = scanner.getText();
+                emitter.emitWithConstant(ExpressionCode.LOAD_NUMBER_VARIABLE, parseNumericalVariable());
+                setVariableText(name, tokenIndex);
+                break;
+            }
+            case LIST_TOKEN: {
+                int line = scanner.getLine();
+                int column = scanner.getColumn();
+                ListVariable listVariable = parseListVariable();
+                if (scanner.getType() == LEFT_PARENTHESIS) {
+                    scanner.next();
+                    parseExpression();
+                    skipOptional(RIGHT_PARENTHESIS);
+                    emitter.emitListElement(listVariable, line, column);
+                } else {
+                    checkListMode();
+                    emitter.emitWithConstant(ExpressionCode.LOAD_LIST_VARIABLE, listVariable);
+                    setVariableText("∟" + listVariable.getVariableName(), tokenIndex);
+                }
+                break;
+            }
+            case MATRIX_VARIABLE: {
+                int line = scanner.getLine();
+                int column = scanner.getColumn();
+                MatrixVariable matrixVariable = Variables.resolveMatrixVariable(scanner.getText());
+                scanner.next();
+                if (scanner.getType() == LEFT_PARENTHESIS && choose(2) == 0) {
+                    scanner.next();
+                    parseExpression();
+                    expect(COMMA);
+                    parseExpression();
+                    skipOptional(RIGHT_PARENTHESIS);
+                    emitter.emitMatrixElement(matrixVariable, line, column);
+                } else {
+                    emitter.emitWithConstant(ExpressionCode.LOAD_MATRIX_VARIABLE, matrixVariable);
+                }
+                break;
+            }
+            case LEFT_BRACKET:
+                parseMatrixExpression();
+                break;
+            case LEFT_BRACE:
+                parseListExpression();
+                break;
+            case NEGATIVE_MINUS:
+            case DIGIT:
+            case DOT:
+                parseNumber();
+                break;
+            case STRING:
+                emitter.emitConstant(Value.of(StringUtils.remove(scanner.getText(), "\"")));
+                scanner.next();
+                break;
+            case STRING_VARIABLE:
+                emitter.emitWithConstant(ExpressionCode.LOAD_STRING_VARIABLE, Variables.resolveStringVariable(scanner.getText()));
+                scanner.next();
+                break;
+            case ANS:
+                emitter.emit(ExpressionCode.LOAD_LAST_RESULT);
+                scanner.next();
+                break;
+            case LOWERCASE:
+            case DIMENSION:
+            case DELTA_LIST:
+                parseFunctionCall();
+                break;
+            default:
+                throw newSyntaxError("no viable alternative at input");
+        }
+    }
+
+    private void parseNumber() {
+        boolean isNegative = false;
+        if (scanner.getType() == NEGATIVE_MINUS) {
+            isNegative = true;
+            scanner.next();
+        }
+        String preDecimal = parseDigits();
+        if (scanner.getType() == DOT) {
+            scanner.next();
+            String decimal = parseDigits();
+            if (decimal == null) {
+                throw newSyntaxError("mismatched input");
+            }
+            emitter.emitConstant(ContextUtil.toNumberValue(isNegative, true, preDecimal, decimal));
+        } else if (preDecimal != null) {
+            emitter.emitConstant(ContextUtil.toNumberValue(isNegative, false, null, preDecimal));
+        } else {
+            throw newSyntaxError("no viable alternative at input");
+        }
+    }
+
+    @Nullable
+    private String parseDigits() {
+        if (scanner.getType() != DIGIT) {
+            return null;
+        }
+        StringBuilder builder = new StringBuilder();
+        while (scanner.getType() == DIGIT) {
+            builder.append(scanner.getText());
+            scanner.next();
+        }
+        return builder.toString();
+    }
+
+    private void parseListExpression() {
+        // The generated parser checks the list mode after matching the left brace
+        scanner.next();
+        checkListMode();
+        listMode = true;
+        int numberOfElements = 0;
+        do {
+            parseExpression();
+            numberOfElements++;
+        } while (continuesWithComma());
+        skipOptional(RIGHT_BRACE);
+        listMode = false;
+        emitter.emitNewList(numberOfElements);
+    }
+
+    private void parseMatrixExpression() {
+        scanner.next();
+        int rows = 0;
+        int columns = -1;
+        int numberOfElements = 0;
+        do {
+            int rowLine = scanner.getLine();
+            int rowColumn = scanner.getColumn();
+            expect(LEFT_BRACKET);
+            int rowElements = 0;
+            do {
+                parseExpression();
+                rowElements++;
+            } while (skipOptional(COMMA));
+            expect(RIGHT_BRACKET);
+
+            if (columns < 0) {
+                columns = rowElements;
+            } else if (rowElements != columns) {
+                deferError(new InvalidDimensionException(rowLine, rowColumn, "All rows of a matrix must have the same number of elements", Value.of(rowElements)));
+            }
+            rows++;
+            numberOfElements += rowElements;
+        } while (scanner.getType() == LEFT_BRACKET && choose(2) == 0);
+        // The closing bracket is optional and may also close an enclosing row, so the decision is ambiguous
+        if (scanner.getType() == RIGHT_BRACKET && choose(2) == 0) {
+            scanner.next();
+        }
+
+        if (rows * columns == numberOfElements) {
+            emitter.emitNewMatrix(rows, columns);
+        } else {
+            // The program will be rejected anyway, but the stack of the emitter must stay consistent
+            emitter.emitNewMatrix(1, numberOfElements);
+        }
+    }
+
+    /**
+     * Parses a call of an expression function. Calls with only expressions as parameters pass plain values like
+     * operators do, all other calls pass parameters.
+     */
+    private void parseFunctionCall() {
+        int line = scanner.getLine();
+        int column = scanner.getColumn();
+        String functionName = parseFunctionIdentifier();
+        expect(LEFT_PARENTHESIS);
+
+        // Variable parameters and deferred expressions are emitted separately until it's clear how the call is made
+        boolean deferFirstParameter = InstructionCompiler.DEFERRED_FIRST_PARAMETER_FUNCTIONS.contains(functionName);
+        List<Object> parameters = new ArrayList<>();
+        boolean valuesOnly = true;
+        if (startsOperand()) {
+            while (true) {
+                ExpressionEmitter parentEmitter = this.emitter;
+                this.emitter = new ExpressionEmitter();
+                try {
+                    Object variable = parseParameter(true);
+                    if (variable != null) {
+                        parameters.add(variable);
+                        valuesOnly = false;
+                    } else {
+                        parameters.add(this.emitter);
+                    }
+                } finally {
+                    this.emitter = parentEmitter;
+                }
+                if (!continuesWithComma()) {
+                    break;
+                }
+            }
+        }
+        skipOptional(RIGHT_PARENTHESIS);
+
+        CommandSite site = new CommandSite(CommandSite.Kind.EXPRESSION_FUNCTION, functionName, line, column);
+        if (valuesOnly) {
+            for (Object parameter : parameters) {
+                emitter.emitCode((ExpressionEmitter) parameter);
+            }
+            emitter.emitCall(ExpressionCode.CALL_OPERATOR, site, parameters.size());
+            return;
+        }
+
+        for (int i = 0; i < parameters.size(); i++) {
+            Object parameter = parameters.get(i);
+            if (!(parameter instanceof ExpressionEmitter)) {
+                emitter.emitWithConstant(ExpressionCode.VARIABLE_PARAMETER, parameter);
+            } else if (i == 0 && deferFirstParameter) {
+                // Compile the expression only once, the function will evaluate it as often as it needs to
+                emitter.emitWithConstant(ExpressionCode.EXPRESSION_PARAMETER, ((ExpressionEmitter) parameter).toExpressionCode());
+            } else {
+                emitter.emitCode((ExpressionEmitter) parameter);
+                emitter.emit(ExpressionCode.VALUE_PARAMETER);
+            }
+        }
+        emitter.emitCall(ExpressionCode.CALL_FUNCTION, site, parameters.size());
+    }
+
+    @NotNull
+    private String parseFunctionIdentifier() {
+        if (scanner.getType() != LOWERCASE) {
+            String text = scanner.getText();
+            scanner.next();
+            return text;
+        }
+        StringBuilder builder = new StringBuilder(scanner.getText());
+        scanner.next();
+        while (scanner.getType() == LOWERCASE || scanner.getType() == CAPITAL || scanner.getType() == IMAGINARY) {
+            builder.append(scanner.getText());
+            scanner.next();
+        }
+        return builder.toString();
+    }
+
+    @NotNull
+    private String parseLabelIdentifier() {
+        if (scanner.getType() != CAPITAL && scanner.getType() != DIGIT) {
+            throw newSyntaxError("mismatched input");
+        }
+        String label = scanner.getText();
+        scanner.next();
+        if (scanner.getType() == CAPITAL || scanner.getType() == DIGIT) {
+            label += scanner.getText();
+            scanner.next();
+        }
+        return label;
+    }
+
+    @NotNull
+    private ListVariable parseListVariable() {
+        scanner.next();
+        if (scanner.getType() == DEFAULT_LIST) {
+            String name = scanner.getText();
+            scanner.next();
+            return ListVariable.fromName(name);
+        } else if (scanner.getType() != CAPITAL) {
+            throw newSyntaxError("mismatched input");
+        }
+        StringBuilder builder = new StringBuilder(scanner.getText());
+        scanner.next();
+        for (int i = 0; i < 4 && (scanner.getType() == CAPITAL || scanner.getType() == DIGIT); i++) {
+            builder.append(scanner.getText());
+            scanner.next();
+        }
+        return ListVariable.fromName(builder.toString());
+    }
+
+    @NotNull
+    private NumberVariable parseNumericalVariable() {
+        if (scanner.getType() != CAPITAL) {
+            throw newSyntaxError("mismatched input");
+        }
+        NumberVariable numberVariable = Variables.resolveNumberVariable(scanner.getText());
+        scanner.next();
+        return numberVariable;
+    }
+
+    /**
+     * Returns the index of the alternative for an ambiguous decision. On the first attempt of a command, every
+     * decision uses its first alternative.
+     */
+    private int choose(int numberOfAlternatives) {
+        if (choicePosition == choiceCount) {
+            if (choiceCount == choices.length) {
+                choices = Arrays.copyOf(choices, choiceCount * 2);
+                alternatives = Arrays.copyOf(alternatives, choiceCount * 2);
+            }
+            choices[choiceCount] = 0;
+            alternatives[choiceCount] = numberOfAlternatives;
+            choiceCount++;
+        }
+        return choices[choicePosition++];
+    }
+
+    /**
+     * Advances to the next combination of alternatives: the last decision which has untried alternatives left will
+     * use its next alternative and all following decisions start again with their first alternative.
+     *
+     * @return false if all combinations have been tried.
+     */
+    private boolean nextChoice() {
+        while (choiceCount > 0) {
+            int last = choiceCount - 1;
+            if (++choices[last] < alternatives[last]) {
+                return true;
+            }
+            choiceCount--;
+        }
+        return false;
+    }
+
+    private void registerJumpTarget(@NotNull Instruction instruction, int commandIndex) {
+        if (instruction.getFlowToken() == ControlFlowToken.LABEL) {
+            String label = (String) instruction.getTarget();
+            if (!labelMap.containsKey(label)) {
+                labelMap.put(label, commandIndex);
+                LOGGER.trace("Registered label {} at command {}", label, commandIndex);
+            } else {
+                LOGGER.debug("Ignoring duplicate label {} at command {}", label, commandIndex);
+            }
+        } else if (instruction.getFlowToken() == ControlFlowToken.GOTO) {
+            gotoIndices.add(commandIndex);
+        }
+    }
+
+    private void resolveGotoTargets() {
+        for (int commandIndex : gotoIndices) {
+            Instruction unresolved = instructions.get(commandIndex);
+            String targetLabel = (String) unresolved.getTarget();
+            Integer targetIndex = labelMap.get(targetLabel);
+            if (targetIndex == null) {
+                deferError(commandIndex, new LabelNotFoundException(unresolved.getLine(), unresolved.getCharIndex(), programName, targetLabel));
+            } else {
+                instructions.set(commandIndex, newFlowInstruction(ControlFlowToken.GOTO, targetIndex, unresolved.getLine(), unresolved.getCharIndex()));
+            }
+        }
+    }
+
+    /**
+     * Makes sure that lists are not nested. A violation doesn't make the current alternative fail, because the
+     * reference grammar checks this with semantic predicates that don't take part in choosing an alternative: the
+     * violation will only be reported if the command can be parsed otherwise.
+     */
+    private void checkListMode() {
+        if (listMode && listModeError == null) {
+            listModeError = newSyntaxError("failed predicate at input");
+        }
+    }
+
+    private void deferError(@NotNull TIRuntimeException error) {
+        deferError(instructions.size(), error);
+    }
+
+    /**
+     * Remembers an error that will be thrown after parsing. Only the error of the earliest command is kept.
+     */
+    private void deferError(int commandIndex, @NotNull TIRuntimeException error) {
+        if (deferredError == null || commandIndex < deferredErrorIndex) {
+            deferredError = error;
+            deferredErrorIndex = commandIndex;
+        }
+    }
+
+    private void emitOperator(@NotNull String operator, int line, int column, int numberOfArguments) {
+        CommandSite site = new CommandSite(CommandSite.Kind.EXPRESSION_FUNCTION, operator, line, column);
+        emitter.emitCall(ExpressionCode.CALL_OPERATOR, site, numberOfArguments);
+    }
+
+    private void expect(int type) {
+        if (scanner.getType() != type) {
+            throw newSyntaxError("mismatched input");
+        }
+        scanner.next();
+    }
+
+    /**
+     * Returns the text of the variable which has been parsed as the whole operand that started at the given token or
+     * null if the operand was anything else.
+     */
+    @Nullable
+    private String getVariableText(int operandStart) {
+        if (variableText != null && variableStart == operandStart && variableEnd == scanner.getTokenIndex()) {
+            return variableText;
+        }
+        return null;
+    }
+
+    private void setVariableText(@NotNull String text, int tokenIndex) {
+        variableText = text;
+        variableStart = tokenIndex;
+        variableEnd = scanner.getTokenIndex();
+    }
+
+    /**
+     * Returns true if the current token starts another operand. A single space may also be the trailing space of an
+     * enclosing operand, so the decision is ambiguous for spaces.
+     */
+    private boolean startsOperand() {
+        int type = scanner.getType();
+        return canStartOperand(type) && (type != SPACE || choose(2) == 0);
+    }
+
+    /**
+     * Skips the comma before the next element of a list or a parameter list of an expression function. Both may end
+     * without their closing bracket, so the comma may also belong to an enclosing rule and the decision is ambiguous.
+     */
+    private boolean continuesWithComma() {
+        if (scanner.getType() == COMMA && choose(2) == 0) {
+            scanner.next();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean skipOptional(int type) {
+        if (scanner.getType() == type) {
+            scanner.next();
+            return true;
+        }
+        return false;
+    }
+
+    private void skipSpaces() {
+        while (scanner.getType() == SPACE) {
+            scanner.next();
+        }
+    }
+
+    @NotNull
+    private SyntaxError newSyntaxError(@NotNull String message) {
+        String text = scanner.getType() == EOF ? "<EOF>" : scanner.getText();
+        return new SyntaxError(message + " '" + text + "'", scanner.getLine(), scanner.getColumn(), scanner.getStartIndex());
+    }
+
+    @NotNull
+    private Instruction newFlowInstruction(@NotNull ControlFlowToken flowToken, Object target, int line, int column, ExpressionCode... expressions) {
+        return new Instruction(InstructionType.CONTROL_FLOW, flowToken, target, expressions, line, column);
+    }
+
+    @NotNull
+    private Instruction newInstruction(@NotNull InstructionType type, Object target, int line, int column, ExpressionCode... expressions) {
+        return new Instruction(type, null, target, expressions, line, column);
+    }
+
+    /**
+     * Returns the control flow token of a command which starts with the given token or null if the command is not a
+     * control flow statement.
+     */
+    @Nullable
+    private static ControlFlowToken toFlowToken(int type) {
+        switch (type) {
+            case IF:
+                return ControlFlowToken.IF;
+            case THEN:
+                return ControlFlowToken.THEN;
+            case ELSE:
+                return ControlFlowToken.ELSE;
+            case END:
+                return ControlFlowToken.END;
+            case WHILE:
+                return ControlFlowToken.WHILE;
+            case REPEAT:
+                return ControlFlowToken.REPEAT;
+            case GOTO:
+                return ControlFlowToken.GOTO;
+            case LABEL:
+                return ControlFlowToken.LABEL;
+            case FOR:
+                return ControlFlowToken.FOR;
+            case INCREMENT_SKIP_GREATER:
+                return ControlFlowToken.INCREMENT_SKIP_GREATER;
+            case DECREMENT_SKIP_LESS:
+                return ControlFlowToken.DECREMENT_SKIP_LESS;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns true if the given token can be the first token of an operand, i.e. if it starts an implicit
+     * multiplication after another operand.
+     */
+    private static boolean canStartOperand(int type) {
+        switch (type) {
+            case SPACE:
+            case IMAGINARY:
+            case SQUARE_ROOT:
+            case CUBIC_ROOT:
+            case NOT:
+            case NEGATIVE_MINUS:
+            case LEFT_PARENTHESIS:
+            case LEFT_BRACKET:
+            case LEFT_BRACE:
+            case DIGIT:
+            case DOT:
+            case ANS:
+            case CAPITAL:
+            case LOWERCASE:
+            case LIST_TOKEN:
+            case MATRIX_VARIABLE:
+            case STRING:
+            case STRING_VARIABLE:
+            case DIMENSION:
+            case DELTA_LIST:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Returns true if the given token can continue an expression after a variable.
+     */
+    private static boolean canContinueExpression(int type) {
+        switch (type) {
+            case PLUS:
+            case MINUS:
+            case MULTIPLY:
+            case DIVIDE:
+            case NPR:
+            case NCR:
+            case POWER:
+            case NROOT:
+            case AND:
+            case OR:
+            case XOR:
+            case TO_DEC:
+            case TO_FRAC:
+                return true;
+            default:
+                return isCompareOperator(type) || isPostfixOperator(type) || canStartOperand(type);
+        }
+    }
+
+    private static boolean isCompareOperator(int type) {
+        return type == EQUALS || type == NOT_EQUALS || type == LESS_THAN || type == GREATER_THAN
+                || type == LESS_OR_EQUAL || type == GREATER_OR_EQUAL;
+    }
+
+    private static boolean isPostfixOperator(int type) {
+        return type == SQUARED || type == FACTORIAL || type == CUBED || type == INVERSE;
+    }
+
+    /**
+     * Lightweight exception for syntax errors which may be caught for trying another alternative. Syntax errors are
+     * converted to a {@link PreprocessException} if no alternative can parse a command.
+     */
+    private static final class SyntaxError extends RuntimeException {
+
+        private final int line;
+
+        private final int charPositionInLine;
+
+        private final int index;
+
+        SyntaxError(String message, int line, int charPositionInLine, int index) {
+            super(message, null, false, false);
+            this.line = line;
+            this.charPositionInLine = charPositionInLine;
+            this.index = index;
+        }
+    }
+}
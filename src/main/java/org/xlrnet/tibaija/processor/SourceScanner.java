@@ -0,0 +1,590 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.processor;
+
+import org.jetbrains.annotations.NotNull;
+import org.xlrnet.tibaija.exception.PreprocessException;
+
+/**
+ * Hand-written tokenizer for TI-Basic source code which is used by the {@link RecursiveDescentParser}. The scanner
+ * recognizes the same tokens as the lexer of the reference grammar TIBasic.g4, i.e. it prefers the longest matching
+ * token and skips whitespace except for single spaces, which are significant in TI-Basic.
+ * <p/>
+ * The scanner doesn't create token objects: it reads the source directly and exposes only the type, the text and the
+ * position of the current token. The parser can go back to a previously marked token for parsing a command with a
+ * different alternative.
+ */
+final class SourceScanner {
+
+    /** End of the source code. */
+    static final int EOF = 0;
+
+    /** Command separator ':'. */
+    static final int SEPARATOR = 1;
+
+    /** Single space - runs of whitespace are skipped. */
+    static final int SPACE = 2;
+
+    // Binary operators
+    static final int PLUS = 3;
+    static final int MINUS = 4;
+    static final int MULTIPLY = 5;
+    static final int DIVIDE = 6;
+    static final int NPR = 7;
+    static final int NCR = 8;
+    static final int POWER = 9;
+    static final int NROOT = 10;
+    static final int EQUALS = 11;
+    static final int NOT_EQUALS = 12;
+    static final int LESS_THAN = 13;
+    static final int LESS_OR_EQUAL = 14;
+    static final int GREATER_THAN = 15;
+    static final int GREATER_OR_EQUAL = 16;
+    static final int AND = 17;
+    static final int OR = 18;
+    static final int XOR = 19;
+
+    // Prefix, postfix and conversion operators
+    static final int NOT = 20;
+    static final int NEGATIVE_MINUS = 21;
+    static final int SQUARE_ROOT = 22;
+    static final int CUBIC_ROOT = 23;
+    static final int FACTORIAL = 24;
+    static final int SQUARED = 25;
+    static final int CUBED = 26;
+    static final int INVERSE = 27;
+    static final int TO_FRAC = 28;
+    static final int TO_DEC = 29;
+
+    // Punctuation
+    static final int LEFT_PARENTHESIS = 30;
+    static final int RIGHT_PARENTHESIS = 31;
+    static final int LEFT_BRACE = 32;
+    static final int RIGHT_BRACE = 33;
+    static final int LEFT_BRACKET = 34;
+    static final int RIGHT_BRACKET = 35;
+    static final int COMMA = 36;
+    static final int DOT = 37;
+    static final int STORE = 38;
+
+    // Values and identifiers
+    static final int ANS = 39;
+    static final int CAPITAL = 40;
+    static final int LOWERCASE = 41;
+    static final int IMAGINARY = 42;
+    static final int DIGIT = 43;
+    static final int DEFAULT_LIST = 44;
+    static final int LIST_TOKEN = 45;
+    static final int MATRIX_VARIABLE = 46;
+    static final int STRING = 47;
+    static final int STRING_VARIABLE = 48;
+    static final int DIMENSION = 49;
+    static final int DELTA_LIST = 50;
+
+    // Control flow
+    static final int IF = 51;
+    static final int THEN = 52;
+    static final int ELSE = 53;
+    static final int FOR = 54;
+    static final int WHILE = 55;
+    static final int REPEAT = 56;
+    static final int END = 57;
+    static final int LABEL = 58;
+    static final int GOTO = 59;
+    static final int INCREMENT_SKIP_GREATER = 60;
+    static final int DECREMENT_SKIP_LESS = 61;
+    static final int STOP = 62;
+
+    /** Tokens which are reserved by the grammar, but can't be used in any command yet (e.g. Input or prgm). */
+    static final int RESERVED = 63;
+
+    /** Keywords and all other tokens that consist of more than one letter. The longest matching keyword wins. */
+    private static final String[] KEYWORDS = {
+            "Ans", "nPr", "nCr", "not(", "dim", "Str",
+            "If", "Then", "Else", "For", "While", "Repeat", "End", "Lbl", "Goto", "IS>(", "DS<(", "Stop",
+            "Menu(", "prgm", "Return", "DelVar", "GraphStyle(", "Input", "Prompt", "DispGraph", "DispTable",
+            "getKey", "ClrTable", "GetCalc(", "Get(", "Send("
+    };
+
+    private static final int[] KEYWORD_TYPES = {
+            ANS, NPR, NCR, NOT, DIMENSION, STRING_VARIABLE,
+            IF, THEN, ELSE, FOR, WHILE, REPEAT, END, LABEL, GOTO, INCREMENT_SKIP_GREATER, DECREMENT_SKIP_LESS, STOP,
+            RESERVED, RESERVED, RESERVED, RESERVED, RESERVED, RESERVED, RESERVED, RESERVED, RESERVED,
+            RESERVED, RESERVED, RESERVED, RESERVED, RESERVED
+    };
+
+    private final CharSequence source;
+
+    private final int length;
+
+    /** Position of the next character that has not been read yet. */
+    private int index;
+
+    private int line = 1;
+
+    private int column;
+
+    private int type;
+
+    private int tokenStart;
+
+    private int tokenEnd;
+
+    private int tokenLine;
+
+    private int tokenColumn;
+
+    /** Number of tokens that have been read before the current one. */
+    private int tokenIndex = -1;
+
+    /**
+     * Creates a new scanner for the given source. The first token must be read with {@link #next()}.
+     *
+     * @param source
+     *         The source code to tokenize.
+     */
+    SourceScanner(@NotNull CharSequence source) {
+        this.source = source;
+        this.length = source.length();
+    }
+
+    /**
+     * Reads the next token.
+     *
+     * @throws PreprocessException
+     *         if the source contains a character sequence which is not a valid token.
+     */
+    void next() throws PreprocessException {
+        while (true) {
+            tokenStart = index;
+            tokenLine = line;
+            tokenColumn = column;
+            tokenIndex++;
+
+            if (index >= length) {
+                type = EOF;
+                tokenEnd = index;
+                return;
+            }
+
+            char c = source.charAt(index);
+            int tokenLength = 1;
+            switch (c) {
+                case ' ':
+                    if (matches(" and ")) {
+                        type = AND;
+                        tokenLength = 5;
+                    } else if (matches(" or ")) {
+                        type = OR;
+                        tokenLength = 4;
+                    } else if (matches(" xor ")) {
+                        type = XOR;
+                        tokenLength = 5;
+                    } else {
+                        int whitespaceLength = whitespaceLength();
+                        if (whitespaceLength > 1) {
+                            skipWhitespace(whitespaceLength);
+                            continue;
+                        }
+                        type = SPACE;
+                    }
+                    break;
+                case '\t':
+                case '\r':
+                case '\n':
+                    skipWhitespace(whitespaceLength());
+                    continue;
+                case ':':
+                    type = SEPARATOR;
+                    break;
+                case '+':
+                    type = PLUS;
+                    break;
+                case '-':
+                    if (matches("->")) {
+                        type = STORE;
+                        tokenLength = 2;
+                    } else {
+                        type = MINUS;
+                    }
+                    break;
+                case '→':
+                    type = STORE;
+                    break;
+                case '*':
+                    type = MULTIPLY;
+                    break;
+                case '/':
+                    type = DIVIDE;
+                    break;
+                case '^':
+                    type = POWER;
+                    break;
+                case '=':
+                    type = EQUALS;
+                    break;
+                case '≠':
+                    type = NOT_EQUALS;
+                    break;
+                case '<':
+                    type = LESS_THAN;
+                    break;
+                case '≤':
+                    type = LESS_OR_EQUAL;
+                    break;
+                case '>':
+                    type = GREATER_THAN;
+                    break;
+                case '≥':
+                    type = GREATER_OR_EQUAL;
+                    break;
+                case '‾':
+                    type = NEGATIVE_MINUS;
+                    break;
+                case '!':
+                    type = FACTORIAL;
+                    break;
+                case '²':
+                    type = SQUARED;
+                    break;
+                case '³':
+                    type = CUBED;
+                    break;
+                case '(':
+                    type = LEFT_PARENTHESIS;
+                    break;
+                case ')':
+                    type = RIGHT_PARENTHESIS;
+                    break;
+                case '{':
+                    type = LEFT_BRACE;
+                    break;
+                case '}':
+                    type = RIGHT_BRACE;
+                    break;
+                case '[':
+                    if (index + 2 < length && source.charAt(index + 1) >= 'A' && source.charAt(index + 1) <= 'J' && source.charAt(index + 2) == ']') {
+                        type = MATRIX_VARIABLE;
+                        tokenLength = 3;
+                    } else {
+                        type = LEFT_BRACKET;
+                    }
+                    break;
+                case ']':
+                    type = RIGHT_BRACKET;
+                    break;
+                case ',':
+                    type = COMMA;
+                    break;
+                case '.':
+                    type = DOT;
+                    break;
+                case '∟':
+                    type = LIST_TOKEN;
+                    break;
+                case 'θ':
+                    type = CAPITAL;
+                    break;
+                case 'ℑ':
+                    type = IMAGINARY;
+                    break;
+                case '"':
+                    type = STRING;
+                    tokenLength = stringLength();
+                    break;
+                case '×':
+                    tokenLength = requireToken("×√", NROOT);
+                    break;
+                case '√':
+                    tokenLength = requireToken("√(", SQUARE_ROOT);
+                    break;
+                case '∛':
+                    tokenLength = requireToken("∛(", CUBIC_ROOT);
+                    break;
+                case '⁻':
+                    tokenLength = requireToken("⁻¹", INVERSE);
+                    break;
+                case 'Δ':
+                    tokenLength = requireToken("ΔList", DELTA_LIST);
+                    break;
+                case '►':
+                    if (matches("►Frac")) {
+                        type = TO_FRAC;
+                        tokenLength = 5;
+                    } else {
+                        tokenLength = requireToken("►Dec", TO_DEC);
+                    }
+                    break;
+                default:
+                    tokenLength = scanWord(c);
+            }
+
+            advance(tokenLength);
+            tokenEnd = index;
+            return;
+        }
+    }
+
+    /**
+     * Skips the rest of the current command without tokenizing it and reads the next separator or the end of the
+     * source as the current token. Separators inside of string literals don't end the command. Invalid tokens in the
+     * skipped characters won't be detected.
+     */
+    void skipCommand() throws PreprocessException {
+        boolean inString = false;
+        while (index < length) {
+            char c = source.charAt(index);
+            if (inString) {
+                inString = c != '"' && c != '\r' && c != '\n' && c != '→';
+            } else if (c == ':') {
+                break;
+            } else if (c == '"') {
+                inString = true;
+            }
+            if (c == '\n') {
+                line++;
+                column = 0;
+            } else {
+                column++;
+            }
+            index++;
+        }
+        next();
+    }
+
+    /**
+     * Returns the type of the current token.
+     */
+    int getType() {
+        return type;
+    }
+
+    /**
+     * Returns the text of the current token.
+     */
+    @NotNull
+    String getText() {
+        return source.subSequence(tokenStart, tokenEnd).toString();
+    }
+
+    /**
+     * Returns the line of the current token. The first line is 1.
+     */
+    int getLine() {
+        return tokenLine;
+    }
+
+    /**
+     * Returns the position of the current token in its line. The first column is 0.
+     */
+    int getColumn() {
+        return tokenColumn;
+    }
+
+    /**
+     * Returns the index of the first character of the current token in the whole source.
+     */
+    int getStartIndex() {
+        return tokenStart;
+    }
+
+    /**
+     * Returns the number of tokens before the current token. Skipped whitespace doesn't count as a token.
+     */
+    int getTokenIndex() {
+        return tokenIndex;
+    }
+
+    /**
+     * Returns a mark for the current token which can be used for going back to this token with {@link #reset(Mark)}.
+     */
+    @NotNull
+    Mark mark() {
+        return new Mark(type, tokenStart, tokenEnd, tokenLine, tokenColumn, tokenIndex, index, line, column);
+    }
+
+    /**
+     * Goes back to the token at the given mark.
+     */
+    void reset(@NotNull Mark mark) {
+        type = mark.type;
+        tokenStart = mark.tokenStart;
+        tokenEnd = mark.tokenEnd;
+        tokenLine = mark.tokenLine;
+        tokenColumn = mark.tokenColumn;
+        tokenIndex = mark.tokenIndex;
+        index = mark.index;
+        line = mark.line;
+        column = mark.column;
+    }
+
+    private void advance(int count) {
+        for (int i = 0; i < count; i++) {
+            if (source.charAt(index) == '\n') {
+                line++;
+                column = 0;
+            } else {
+                column++;
+            }
+            index++;
+        }
+    }
+
+    private boolean matches(@NotNull String literal) {
+        if (index + literal.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (source.charAt(index + i) != literal.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int requireToken(@NotNull String literal, int tokenType) throws PreprocessException {
+        if (!matches(literal)) {
+            throw newRecognitionError();
+        }
+        type = tokenType;
+        return literal.length();
+    }
+
+    /**
+     * Scans letters, digits and default list subscripts. Keywords are preferred over single letters.
+     */
+    private int scanWord(char c) throws PreprocessException {
+        int keywordLength = 0;
+        for (int i = 0; i < KEYWORDS.length; i++) {
+            String keyword = KEYWORDS[i];
+            if (keyword.charAt(0) == c && keyword.length() > keywordLength && matches(keyword)) {
+                if (KEYWORD_TYPES[i] == STRING_VARIABLE) {
+                    // Str is only a token if it's followed by a digit
+                    if (index + 3 >= length || source.charAt(index + 3) < '0' || source.charAt(index + 3) > '9') {
+                        continue;
+                    }
+                    keywordLength = 4;
+                } else {
+                    keywordLength = keyword.length();
+                }
+                type = KEYWORD_TYPES[i];
+            }
+        }
+        if (keywordLength > 0) {
+            return keywordLength;
+        }
+
+        if (c >= 'A' && c <= 'Z') {
+            type = CAPITAL;
+        } else if (c == 'i') {
+            type = IMAGINARY;
+        } else if (c >= 'a' && c <= 'z') {
+            type = LOWERCASE;
+        } else if (c >= '0' && c <= '9') {
+            type = DIGIT;
+        } else if (c >= '₁' && c <= '₆') {
+            type = DEFAULT_LIST;
+        } else {
+            throw newRecognitionError();
+        }
+        return 1;
+    }
+
+    /**
+     * Returns the length of a string literal at the current position. A string ends at the closing quotation mark
+     * (inclusive) or before the end of the line or a store arrow.
+     */
+    private int stringLength() {
+        int end = index + 1;
+        while (end < length) {
+            char c = source.charAt(end);
+            if (c == '"') {
+                end++;
+                break;
+            } else if (c == '\r' || c == '\n' || c == '→') {
+                break;
+            }
+            end++;
+        }
+        return end - index;
+    }
+
+    private int whitespaceLength() {
+        int end = index;
+        while (end < length) {
+            char c = source.charAt(end);
+            if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                break;
+            }
+            end++;
+        }
+        return end - index;
+    }
+
+    private void skipWhitespace(int whitespaceLength) {
+        advance(whitespaceLength);
+        tokenIndex--;
+    }
+
+    @NotNull
+    private PreprocessException newRecognitionError() {
+        return PreprocessErrorListener.newPreprocessException(null, line, column, "token recognition error at: '" + source.charAt(index) + "'");
+    }
+
+    /**
+     * Position of a token in the source, see {@link #mark()}.
+     */
+    static final class Mark {
+
+        private final int type;
+
+        private final int tokenStart;
+
+        private final int tokenEnd;
+
+        private final int tokenLine;
+
+        private final int tokenColumn;
+
+        private final int tokenIndex;
+
+        private final int index;
+
+        private final int line;
+
+        private final int column;
+
+        private Mark(int type, int tokenStart, int tokenEnd, int tokenLine, int tokenColumn, int tokenIndex, int index, int line, int column) {
+            this.type = type;
+            this.tokenStart = tokenStart;
+            this.tokenEnd = tokenEnd;
+            this.tokenLine = tokenLine;
+            this.tokenColumn = tokenColumn;
+            this.tokenIndex = tokenIndex;
+            this.index = index;
+            this.line = line;
+            this.column = column;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.commands.list;
+
+import org.apache.commons.math3.complex.Complex;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.xlrnet.tibaija.exception.IllegalTypeException;
+import org.xlrnet.tibaija.exception.InvalidDimensionException;
+import org.xlrnet.tibaija.exception.TIArgumentException;
+import org.xlrnet.tibaija.memory.NumberVariable;
+import org.xlrnet.tibaija.processor.AbstractTI83PlusTest;
+import org.xlrnet.tibaija.processor.ExecutionMode;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test cases for the list functions.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ListCommandsTest extends AbstractTI83PlusTest {
+
+    @Test
+    public void testAugment() {
+        getEnvironment().interpret("augment({1,2},{3})");
+        verifyLastResultValueList(1d, 2d, 3d);
+    }
+
+    @Test
+    public void testAugment_complex() {
+        getEnvironment().interpret("augment({1},{2i})");
+        verifyLastResultValueList(Complex.valueOf(1), Complex.valueOf(0, 2));
+    }
+
+    @Test(expected = IllegalTypeException.class)
+    public void testAugment_fail_number() {
+        getEnvironment().interpret("augment({1},2)");
+    }
+
+    @Test
+    public void testCumSum() {
+        getEnvironment().interpret("cumSum({1,2,3,4})");
+        verifyLastResultValueList(1d, 3d, 6d, 10d);
+    }
+
+    @Test
+    public void testDeltaList() {
+        getEnvironment().interpret("ΔList({1,4,9,16})");
+        verifyLastResultValueList(3d, 5d, 7d);
+    }
+
+    @Test(expected = InvalidDimensionException.class)
+    public void testDeltaList_fail_single() {
+        getEnvironment().interpret("ΔList({1})");
+    }
+
+    @Test
+    public void testDim() {
+        getEnvironment().interpret("dim({1,2,3})");
+        verifyLastResultValue(3);
+    }
+
+    @Test
+    public void testDim_variable() {
+        storeAndExecute(":{5,6,7,8}->∟A" +
+                ":dim(∟A)");
+        verifyLastResultValue(4);
+    }
+
+    @Test
+    public void testProd() {
+        getEnvironment().interpret("prod({1,2,3,4})");
+        verifyLastResultValue(24);
+    }
+
+    @Test
+    public void testProd_complex() {
+        getEnvironment().interpret("prod({i,i,2})");
+        verifyLastResultValue(-2);
+    }
+
+    @Test
+    public void testSeq() {
+        getEnvironment().interpret("seq(X²,X,1,5)");
+        verifyLastResultValueList(1d, 4d, 9d, 16d, 25d);
+    }
+
+    @Test
+    public void testSeq_compiled() {
+        getEnvironment().setExecutionMode(ExecutionMode.COMPILER);
+        storeAndExecute(":3->N" +
+                ":sum(seq(N*X,X,1,N))");
+        verifyLastResultValue(18);
+    }
+
+    @Test
+    public void testSeq_complex() {
+        getEnvironment().interpret("seq(X*i,X,1,2)");
+        verifyLastResultValueList(Complex.valueOf(0, 1), Complex.valueOf(0, 2));
+    }
+
+    @Test(expected = InvalidDimensionException.class)
+    public void testSeq_fail_empty() {
+        getEnvironment().interpret("seq(X,X,2,1)");
+    }
+
+    @Test(expected = TIArgumentException.class)
+    public void testSeq_fail_step_zero() {
+        getEnvironment().interpret("seq(X,X,1,2,0)");
+    }
+
+    @Test
+    public void testSeq_restores_variable() {
+        storeAndExecute(":7->X" +
+                ":seq(X,X,1,3)");
+        verifyNumberVariableValue(NumberVariable.X, 7, 0);
+    }
+
+    @Test
+    public void testSeq_step() {
+        getEnvironment().interpret("seq(X,X,10,1,‾3)");
+        verifyLastResultValueList(10d, 7d, 4d, 1d);
+    }
+
+    @Test
+    public void testSortA() {
+        storeAndExecute(":{3,1,2}->∟A" +
+                ":SortA(∟A)");
+        verifyListVariableValue("A", Complex.valueOf(1), Complex.valueOf(2), Complex.valueOf(3));
+    }
+
+    @Test
+    public void testSortA_complex() {
+        storeAndExecute(":{3,2i,‾1}->∟A" +
+                ":SortA(∟A)");
+        verifyListVariableValue("A", Complex.valueOf(-1), Complex.valueOf(0, 2), Complex.valueOf(3));
+    }
+
+    @Test
+    public void testSortA_dependent_stable() {
+        storeAndExecute(":{2,1,2}->∟A" +
+                ":{1,2,3}->∟B" +
+                ":SortA(∟A,∟B)");
+        verifyListVariableValue("A", Complex.valueOf(1), Complex.valueOf(2), Complex.valueOf(2));
+        verifyListVariableValue("B", Complex.valueOf(2), Complex.valueOf(1), Complex.valueOf(3));
+    }
+
+    @Test(expected = TIArgumentException.class)
+    public void testSortA_fail_dimension_mismatch() {
+        storeAndExecute(":{2,1,2}->∟A" +
+                ":{1,2}->∟B" +
+                ":SortA(∟A,∟B)");
+    }
+
+    @Test(expected = TIArgumentException.class)
+    public void testSortA_fail_no_variable() {
+        storeAndExecute(":SortA({2,1})");
+    }
+
+    @Test
+    public void testSortA_large() {
+        storeAndExecute(":augment(seq(101-2X,X,1,50),seq(2X,X,1,50))->∟A" +
+                ":SortA(∟A)");
+        for (int i = 0; i < 100; i++) {
+            verifyElementInListVariable("A", i, i + 1);
+        }
+    }
+
+    @Test
+    public void testSortD_dependent_stable() {
+        storeAndExecute(":{2,1,2,3}->∟A" +
+                ":{1,2,3,4}->∟B" +
+                ":SortD(∟A,∟B)");
+        verifyListVariableValue("A", Complex.valueOf(3), Complex.valueOf(2), Complex.valueOf(2), Complex.valueOf(1));
+        verifyListVariableValue("B", Complex.valueOf(4), Complex.valueOf(1), Complex.valueOf(3), Complex.valueOf(2));
+    }
+
+    @Test
+    public void testSum() {
+        getEnvironment().interpret("sum({1,2,3,4})");
+        verifyLastResultValue(10);
+    }
+
+    @Test
+    public void testSum_complex() {
+        getEnvironment().interpret("sum({1,2i,3})");
+        verifyLastResultValue(4, 2);
+    }
+
+    @Test(expected = TIArgumentException.class)
+    public void testSum_fail_range() {
+        getEnvironment().interpret("sum({1,2,3},2,4)");
+    }
+
+    @Test
+    public void testSum_parallel_sameResult() {
+        getEnvironment().interpret("seq(1/X,X,1,5000)->∟A");
+        getEnvironment().interpret("sum(∟A)->A");
+        getEnvironment().interpret("prod(1+∟A/5000)->B");
+        getEnvironment().setParallelThreshold(2);
+        getEnvironment().setParallelism(3);
+        getEnvironment().interpret("sum(∟A)->C");
+        getEnvironment().interpret("prod(1+∟A/5000)->D");
+
+        assertEquals(getEnvironment().getMemory().getNumberVariableValue(NumberVariable.A).realPart(), getEnvironment().getMemory().getNumberVariableValue(NumberVariable.C).realPart(), 0);
+        assertEquals(getEnvironment().getMemory().getNumberVariableValue(NumberVariable.B).realPart(), getEnvironment().getMemory().getNumberVariableValue(NumberVariable.D).realPart(), 0);
+        verifyNumberVariableValue(NumberVariable.C, 9.094508852984436, 0);
+    }
+
+    @Test
+    public void testSum_range() {
+        getEnvironment().interpret("sum({1,2,3,4},2,3)");
+        verifyLastResultValue(5);
+    }
+}
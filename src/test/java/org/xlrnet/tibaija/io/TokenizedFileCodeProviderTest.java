@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+package org.xlrnet.tibaija.io;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xlrnet.tibaija.graphics.NullHomeScreen;
+import org.xlrnet.tibaija.memory.DefaultCalculatorMemory;
+import org.xlrnet.tibaija.memory.MatrixVariable;
+import org.xlrnet.tibaija.memory.NumberVariable;
+import org.xlrnet.tibaija.processor.ExecutionEnvironmentFactory;
+import org.xlrnet.tibaija.processor.InternalExecutionEnvironment;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class TokenizedFileCodeProviderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Path programDirectory;
+
+    private TokenizedFileCodeProvider codeProvider;
+
+    @Before
+    public void setUp() throws IOException {
+        this.programDirectory = this.temporaryFolder.newFolder("programs").toPath();
+        this.codeProvider = new TokenizedFileCodeProvider(this.programDirectory);
+    }
+
+    @Test
+    public void testGetProgramCode() throws IOException {
+        // Disp "HI",A / 2→B:‾1→∟₁
+        writeProgram("TEST", 0xDE, 0x2A, 0x48, 0x49, 0x2A, 0x2B, 0x41, 0x3F, 0x32, 0x04, 0x42, 0x3E, 0xB0, 0x31, 0x04, 0x5D, 0x00);
+        assertEquals(":Disp \"HI\",A\n:2→B:‾1→∟₁", this.codeProvider.getProgramCode("TEST"));
+    }
+
+    @Test
+    public void testGetProgramCode_twoByteTokens() throws IOException {
+        writeProgram("TEST", 0xBB, 0x0A, 0xAA, 0x09, 0x5C, 0x01, 0xBB, 0xB0, 0xBB, 0xBC, 0xBB, 0xCA, 0xBB, 0x2C);
+        assertEquals(":randInt(Str0[B]alzΔList(", this.codeProvider.getProgramCode("TEST"));
+    }
+
+    @Test
+    public void testGetProgramCode_matrixWithNumberVariable() throws IOException {
+        // [[A]]→[B]:[[1][A]]
+        writeProgram("TEST", 0x06, 0x06, 0x41, 0x07, 0x07, 0x04, 0x5C, 0x01, 0x3E, 0x06, 0x06, 0x31, 0x07, 0x06, 0x41, 0x07, 0x07);
+        assertEquals(":[[(A)]]→[B]:[[1][(A)]]", this.codeProvider.getProgramCode("TEST"));
+    }
+
+    @Test
+    public void testExecuteProgram_matrixWithNumberVariable() throws IOException {
+        // 2→A / [[A]]→[B] / [[1][A]]→[C]
+        writeProgram("MATRIX", 0x32, 0x04, 0x41, 0x3F, 0x06, 0x06, 0x41, 0x07, 0x07, 0x04, 0x5C, 0x01, 0x3F,
+                0x06, 0x06, 0x31, 0x07, 0x06, 0x41, 0x07, 0x07, 0x04, 0x5C, 0x02);
+
+        InternalExecutionEnvironment environment = ExecutionEnvironmentFactory.newEnvironment(new DefaultCalculatorMemory(), mock(CalculatorIO.class),
+                this.codeProvider, new NullHomeScreen());
+        environment.executeProgram("MATRIX");
+
+        assertEquals(2, environment.getMemory().getMatrixVariableValue(MatrixVariable.B).matrixElement(0, 0), 0);
+        assertEquals(2, environment.getMemory().getMatrixVariableValue(MatrixVariable.C).matrixElement(1, 0), 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void testGetProgramCode_unsupportedToken() throws IOException {
+        writeProgram("TEST", 0x41, 0x26);
+        this.codeProvider.getProgramCode("TEST");
+    }
+
+    @Test(expected = IOException.class)
+    public void testGetProgramCode_incompleteToken() throws IOException {
+        writeProgram("TEST", 0x41, 0xBB);
+        this.codeProvider.getProgramCode("TEST");
+    }
+
+    @Test(expected = IOException.class)
+    public void testGetProgramCode_invalidSignature() throws IOException {
+        Files.write(this.programDirectory.resolve("TEST.8xp"), ":Disp 1".getBytes(StandardCharsets.UTF_8));
+        this.codeProvider.getProgramCode("TEST");
+    }
+
+    @Test
+    public void testIsTokenizedFile() {
+        assertTrue(TokenizedFileCodeProvider.isTokenizedFile(this.programDirectory.resolve("GAME.8XP")));
+        assertFalse(TokenizedFileCodeProvider.isTokenizedFile(this.programDirectory.resolve("GAME.tib")));
+    }
+
+    @Test
+    public void testExecuteProgram() throws IOException {
+        // For(I,1,10 / I→A / End
+        writeProgram("LOOP", 0xD3, 0x49, 0x2B, 0x31, 0x2B, 0x31, 0x30, 0x3F, 0x49, 0x04, 0x41, 0x3F, 0xD4);
+
+        InternalExecutionEnvironment environment = ExecutionEnvironmentFactory.newEnvironment(new DefaultCalculatorMemory(), mock(CalculatorIO.class),
+                this.codeProvider, new NullHomeScreen());
+        environment.executeProgram("LOOP");
+
+        assertEquals(10, environment.getMemory().getNumberVariableValue(NumberVariable.A).realPart(), 0);
+    }
+
+    /**
+     * Writes a program file with a single program variable which contains the given tokens.
+     */
+    private void writeProgram(String name, int... tokens) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        writeShort(data, 0x0D);
+        writeShort(data, tokens.length + 2);
+        data.write(0x05);
+        byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < 8; i++) {
+            data.write(i < nameBytes.length ? nameBytes[i] : 0);
+        }
+        data.write(0);
+        data.write(0);
+        writeShort(data, tokens.length + 2);
+        writeShort(data, tokens.length);
+        for (int token : tokens) {
+            data.write(token);
+        }
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write("**TI83F*".getBytes(StandardCharsets.US_ASCII));
+        file.write(new byte[]{0x1A, 0x0A, 0x00});
+        file.write(new byte[42]);
+        writeShort(file, data.size());
+        file.write(data.toByteArray());
+        int checksum = 0;
+        for (byte b : data.toByteArray()) {
+            checksum += b & 0xFF;
+        }
+        writeShort(file, checksum);
+
+        Files.write(this.programDirectory.resolve(name + ".8xp"), file.toByteArray());
+    }
+
+    private void writeShort(ByteArrayOutputStream out, int value) {
+        out.write(value & 0xFF);
+        out.write((value >> 8) & 0xFF);
+    }
+}
@@ -39,6 +39,7 @@ import org.xlrnet.tibaija.memory.*;
 import org.xlrnet.tibaija.test.TestUtils;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Mockito.*;
@@ -69,6 +70,8 @@ public class AbstractTI83PlusTest {
         this.codeProvider = new DummyCodeProvider();
         this.environment = ExecutionEnvironmentFactory.newEnvironment(this.mockedMemory, this.mockedIO, this.codeProvider, this.mockedHomeScreen);
         ExecutionEnvironmentFactory.registerDefaultCommands(this.environment);
+        // All test programs are parsed by both front ends to make sure that they accept the same language
+        this.environment.setFrontEnd(FrontEnd.CROSS_CHECK);
     }
 
     protected InternalExecutionEnvironment getEnvironment() {
@@ -126,6 +129,14 @@ public class AbstractTI83PlusTest {
         Assert.assertThat(actual, new EqualsTIListMatcher(expectedValues, TestUtils.DEFAULT_TOLERANCE));
     }
 
+    protected void verifyLastResultMatrix(int columns, double... expectedValues) {
+        verifyMatrix(this.mockedMemory.getLastResult(), columns, expectedValues);
+    }
+
+    protected void verifyMatrixVariableValue(MatrixVariable variable, int columns, double... expectedValues) {
+        verifyMatrix(this.mockedMemory.getMatrixVariableValue(variable), columns, expectedValues);
+    }
+
     protected void verifyNumberVariableValue(NumberVariable variable, double real, double imaginary) {
         final Complex actualComplex = this.mockedMemory.getNumberVariableValue(variable).complex();
         assertEquals("Actual real value doesn't match expected", real, actualComplex.getReal(), TestUtils.DEFAULT_TOLERANCE);
@@ -137,4 +148,9 @@ public class AbstractTI83PlusTest {
         assertEquals(expected, variableValue.string());
     }
 
+    private void verifyMatrix(Value actual, int columns, double[] expectedValues) {
+        assertEquals("Actual number of rows doesn't match expected", expectedValues.length / columns, actual.matrixRows());
+        assertEquals("Actual number of columns doesn't match expected", columns, actual.matrixColumns());
+        assertArrayEquals(expectedValues, actual.matrixValues(), TestUtils.DEFAULT_TOLERANCE);
+    }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.processor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.xlrnet.tibaija.memory.NumberVariable;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs all control flow tests with programs that are compiled to JVM classes.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class CompiledControlFlowTest extends ExecuteControlFlowTest {
+
+    @Before
+    public void enableCompiler() {
+        getEnvironment().setExecutionMode(ExecutionMode.COMPILER);
+    }
+
+    @Test
+    public void compiledProgram() {
+        storeAndExecute(":0->A" +
+                ":While A<5" +
+                ":A+1->A" +
+                ":End" +
+                ":{A,2->∟A" +
+                ":∟A(1)+∟A(2)");
+        assertNotNull(getEnvironment().getMemory().getStoredProgram("TEST").getCompiledProgram());
+        verifyNumberVariableValue(NumberVariable.A, 5, 0);
+        verifyLastResultValue(7);
+    }
+
+    @Test
+    public void compiledProgram_splitIntoSegments() {
+        StringBuilder program = new StringBuilder(":0->C:For(I,1,3)");
+        for (int i = 0; i < 300; i++) {
+            program.append(":If 0:Then:C+2->C:End:C+1->C");
+        }
+        program.append(":End");
+        storeAndExecute(program.toString());
+
+        CompiledProgram compiledProgram = getEnvironment().getMemory().getStoredProgram("TEST").getCompiledProgram();
+        assertNotNull(compiledProgram);
+        long segments = Arrays.stream(compiledProgram.getClass().getDeclaredMethods())
+                .map(Method::getName)
+                .filter(name -> name.startsWith("segment"))
+                .count();
+        assertTrue("Expected more than one segment, but got " + segments, segments > 1);
+        verifyNumberVariableValue(NumberVariable.C, 900, 0);
+    }
+
+    @Test
+    public void compiledProgram_commandTooLargeForJit() {
+        StringBuilder program = new StringBuilder(":1->A:A");
+        for (int i = 0; i < 1500; i++) {
+            program.append("+A");
+        }
+        program.append("->B");
+        storeAndExecute(program.toString());
+
+        assertNull(getEnvironment().getMemory().getStoredProgram("TEST").getCompiledProgram());
+        verifyNumberVariableValue(NumberVariable.B, 1501, 0);
+    }
+}
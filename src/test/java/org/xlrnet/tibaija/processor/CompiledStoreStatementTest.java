@@ -20,25 +20,21 @@
  * THE SOFTWARE
  */
 
+
 package org.xlrnet.tibaija.processor;
 
-import org.antlr.v4.runtime.misc.NotNull;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.xlrnet.tibaija.antlr.TIBasicParser;
-import org.xlrnet.tibaija.exception.IllegalControlFlowException;
+import org.junit.Before;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
 
 /**
- * Visitor implementation for code without control flow. This visitor should be used for interactively entered commands
- * without control structures (if/for/while/repeat).
+ * Runs all store statement tests with programs that are compiled to JVM classes.
  */
-public class ControlflowLessTIBasicVisitor extends FullTIBasicVisitor {
-
-    private static final Logger LOGGER = LoggerFactory.getLogger(FullTIBasicVisitor.class);
+@RunWith(MockitoJUnitRunner.class)
+public class CompiledStoreStatementTest extends StoreStatementTest {
 
-    @Override
-    final public Object visitControlFlowStatement(@NotNull TIBasicParser.ControlFlowStatementContext ctx) {
-        LOGGER.debug("Illegal control flow statement: {}", ctx.getText());
-        throw new IllegalControlFlowException(-1, -1, "Unexpected control flow statement: " + ctx.getText());
+    @Before
+    public void enableCompiler() {
+        getEnvironment().setExecutionMode(ExecutionMode.COMPILER);
     }
 }
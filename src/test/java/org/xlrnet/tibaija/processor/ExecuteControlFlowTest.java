@@ -139,6 +139,38 @@ public class ExecuteControlFlowTest extends AbstractTI83PlusTest {
         verifyNumberVariableValue(NumberVariable.X, 0, 0);
     }
 
+    @Test
+    public void testExecute_validProgram_controlFlow_for_boundsEvaluatedOnce() {
+        storeAndExecute(":3→N" +
+                ":0→A" +
+                ":For(X,1,N,N-2)" +
+                ":A+1→A" +
+                ":N+1→N" +
+                ":End");
+        verifyNumberVariableValue(NumberVariable.A, 3, 0);
+        verifyNumberVariableValue(NumberVariable.X, 4, 0);
+    }
+
+    @Test
+    public void testExecute_validProgram_controlFlow_for_counted() {
+        storeAndExecute(":0→A" +
+                ":For(X,1,10000)" +
+                ":End" +
+                ":X→A");
+        verifyNumberVariableValue(NumberVariable.A, 10001, 0);
+    }
+
+    @Test
+    public void testExecute_validProgram_controlFlow_for_modifiedVariable() {
+        storeAndExecute(":0→A" +
+                ":For(X,1,10)" +
+                ":A+1→A" +
+                ":X+1→X" +
+                ":End");
+        verifyNumberVariableValue(NumberVariable.A, 5, 0);
+        verifyNumberVariableValue(NumberVariable.X, 11, 0);
+    }
+
     @Test
     public void testExecute_validProgram_controlFlow_for_noEnd() {
         // Program must be executed only one time when there is no end
@@ -239,6 +271,44 @@ public class ExecuteControlFlowTest extends AbstractTI83PlusTest {
         verifyLastResultValue(3);
     }
 
+    @Test
+    public void testExecute_validProgram_controlFlow_if_single_goto() {
+        storeAndExecute(":1→A" +
+                ":If 0:Goto A" +
+                ":2→A" +
+                ":Lbl A");
+        verifyNumberVariableValue(NumberVariable.A, 2, 0);
+    }
+
+    @Test
+    public void testExecute_validProgram_controlFlow_goto_outOfLoop() {
+        storeAndExecute(":0→A" +
+                ":Lbl B" +
+                ":While 1" +
+                ":A+1→A" +
+                ":If A<500:Goto B" +
+                ":Goto C" +
+                ":End" +
+                ":Lbl C" +
+                ":Repeat 1" +
+                ":A+1→A" +
+                ":End");
+        verifyNumberVariableValue(NumberVariable.A, 501, 0);
+    }
+
+    @Test(expected = IllegalControlFlowException.class, timeout = 1000)
+    public void testExecute_invalidProgram_controlFlow_goto_outOfLoop_strayEnd() {
+        storeAndExecute(":0→A" +
+                ":Lbl B" +
+                ":While 1" +
+                ":A+1→A" +
+                ":If A<5:Goto B" +
+                ":Goto C" +
+                ":End" +
+                ":Lbl C" +
+                ":End");
+    }
+
     @Test
     public void testExecute_validProgram_controlFlow_if_single_true() {
         storeAndExecute(":If 1" +
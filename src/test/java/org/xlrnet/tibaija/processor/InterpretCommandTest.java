@@ -23,6 +23,7 @@
 package org.xlrnet.tibaija.processor;
 
 import com.google.common.collect.ImmutableList;
+import org.jetbrains.annotations.NotNull;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -30,6 +31,7 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.xlrnet.tibaija.commands.DummyCommand;
 import org.xlrnet.tibaija.commons.Value;
 import org.xlrnet.tibaija.exception.CommandNotFoundException;
+import org.xlrnet.tibaija.memory.NumberVariable;
 import org.xlrnet.tibaija.memory.Parameter;
 
 import static org.mockito.Matchers.any;
@@ -78,6 +80,56 @@ public class InterpretCommandTest extends AbstractTI83PlusTest {
         verify(this.mockedMemory, never()).setLastResult(any());
     }
 
+    @Test
+    public void testCommand_validProgram_pureCommandFolded() {
+        Command pureCommand = spy(new DummyCommand() {
+            @Override
+            protected boolean isPure() {
+                return true;
+            }
+        });
+        getEnvironment().registerExpressionFunction("testp", pureCommand);
+        storeAndExecute(":0→A:While A<3:A+testp(1)→A:End");
+        verify(pureCommand, times(1)).execute(ImmutableList.of(Parameter.value(Value.of(1))));
+        verifyNumberVariableValue(NumberVariable.A, 3, 0);
+    }
+
+    @Test
+    public void testCommand_validProgram_impureCommandNotFolded() {
+        getEnvironment().registerExpressionFunction("testi", this.dummyCommand);
+        storeAndExecute(":0→A:While A<3:A+testi(1)→A:End");
+        verify(this.dummyCommand, times(3)).execute(ImmutableList.of(Parameter.value(Value.of(1))));
+    }
+
+    @Test
+    public void testCommand_validProgram_registerAfterLoading() {
+        getEnvironment().loadProgram("TEST", ":Test 123,456");
+        getEnvironment().registerCommandStatement("Test", this.dummyCommand);
+        getEnvironment().executeProgram("TEST");
+        verify(this.dummyCommand).execute(this.expectedArgumentList);
+    }
+
+    @Test
+    public void testCommand_validProgram_directCall() {
+        Command directCommand = spy(new DummyCommand() {
+            @NotNull
+            @Override
+            protected Value executeBinary(@NotNull Value lhs, @NotNull Value rhs) {
+                return lhs;
+            }
+
+            @Override
+            protected boolean supportsDirectCall(int numberOfArguments) {
+                return numberOfArguments == 2;
+            }
+        });
+        getEnvironment().registerExpressionFunction("testd", directCommand);
+        storeAndExecute(":testd(123, 456)+1");
+        verify(directCommand).executeBinary(Value.of(123), Value.of(456));
+        verify(directCommand, never()).execute(any());
+        verifyLastResultValue(124);
+    }
+
     @Test
     public void testCommand_validProgram_registerExpressionFunction() {
         getEnvironment().registerExpressionFunction("testi", this.dummyCommand);
@@ -36,6 +36,8 @@ import org.xlrnet.tibaija.exception.UndefinedVariableException;
 import org.xlrnet.tibaija.memory.ListVariable;
 import org.xlrnet.tibaija.memory.NumberVariable;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.doReturn;
 
 /**
@@ -106,6 +108,27 @@ public class InterpretListsTest extends AbstractTI83PlusTest {
         getEnvironment().interpret("{2, ∟A");
     }
 
+    @Test
+    public void testInterpret_validProgram_divide_complex_lists() {
+        getEnvironment().interpret("{2+i, 4, 3i} / {i, 2-2i, 0");
+        Value result = this.mockedMemory.getLastResult();
+        assertEquals(Complex.valueOf(1, -2), result.listElement(0).complex());
+        assertEquals(Complex.valueOf(1, 1), result.listElement(1).complex());
+        assertTrue(result.listElement(2).complex().isNaN());
+    }
+
+    @Test
+    public void testInterpret_validProgram_multiply_complex_list_with_number() {
+        getEnvironment().interpret("{2+i, 3, 2i} * (1+i");
+        verifyLastResultValueList(Complex.valueOf(1, 3), Complex.valueOf(3, 3), Complex.valueOf(-2, 2));
+    }
+
+    @Test
+    public void testInterpret_validProgram_subtract_complex_lists() {
+        getEnvironment().interpret("{2+i, 3+2i} - {2+i, 1");
+        verifyLastResultValueList(Complex.valueOf(0), Complex.valueOf(2, 2));
+    }
+
     @Test
     public void testInterpret_validProgram_add_two_lists() {
         getEnvironment().interpret("{2+i, 3+2i} + {1,2");
@@ -134,6 +157,46 @@ public class InterpretListsTest extends AbstractTI83PlusTest {
         verifyNumberVariableValue(NumberVariable.A, 2, 0);
     }
 
+    @Test
+    public void testInterpret_validProgram_compare_list_scalar() {
+        getEnvironment().interpret("{1,2,3}>2");
+        verifyLastResultValueList(0.0, 0.0, 1.0);
+    }
+
+    @Test
+    public void testInterpret_validProgram_compare_two_lists() {
+        getEnvironment().interpret("{1,5,3}≤{2,3,3}");
+        verifyLastResultValueList(1.0, 0.0, 1.0);
+    }
+
+    @Test
+    public void testInterpret_validProgram_parallel_binary() {
+        getEnvironment().setParallelThreshold(2);
+        getEnvironment().setParallelism(3);
+        getEnvironment().interpret("{1,2,3,4,5}*{2,2,2,2,2}-1");
+        verifyLastResultValueList(1.0, 3.0, 5.0, 7.0, 9.0);
+    }
+
+    @Test
+    public void testInterpret_validProgram_parallel_unary() {
+        getEnvironment().setParallelThreshold(2);
+        getEnvironment().setParallelism(4);
+        getEnvironment().interpret("√({1,‾4,9,16,25})");
+        verifyLastResultValueList(Complex.valueOf(1), Complex.valueOf(0, 2), Complex.valueOf(3), Complex.valueOf(4), Complex.valueOf(5));
+    }
+
+    @Test
+    public void testInterpret_validProgram_list_becomes_complex() {
+        getEnvironment().interpret("√({4,‾4,9})");
+        verifyLastResultValueList(Complex.valueOf(2), Complex.valueOf(0, 2), Complex.valueOf(3));
+    }
+
+    @Test
+    public void testInterpret_validProgram_list_complex_scalar() {
+        getEnvironment().interpret("i*{1,2,‾3}");
+        verifyLastResultValueList(Complex.valueOf(0, 1), Complex.valueOf(0, 2), Complex.valueOf(0, -3));
+    }
+
     @Test
     public void testInterpret_validProgram_list_complex() {
         getEnvironment().interpret("{123.456i, ‾12.34");
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+package org.xlrnet.tibaija.processor;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.xlrnet.tibaija.exception.IllegalTypeException;
+import org.xlrnet.tibaija.exception.InvalidDimensionException;
+import org.xlrnet.tibaija.exception.TIArgumentException;
+import org.xlrnet.tibaija.exception.UndefinedVariableException;
+import org.xlrnet.tibaija.memory.MatrixVariable;
+
+/**
+ * All tests regarding matrix interpretation.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class InterpretMatricesTest extends AbstractTI83PlusTest {
+
+    @Test
+    public void testInterpret_add() {
+        getEnvironment().interpret("[[1,2][3,4]]+[[10,20][30,40]]");
+        verifyLastResultMatrix(2, 11, 22, 33, 44);
+    }
+
+    @Test
+    public void testInterpret_compiled_store_and_multiply() {
+        getEnvironment().setExecutionMode(ExecutionMode.COMPILER);
+        storeAndExecute(":[[1,2][3,4]]→[A]" +
+                ":For(I,1,2)" +
+                ":I→[A](I,I)" +
+                ":End" +
+                ":[A]*[A](2,1)→[B]");
+        verifyMatrixVariableValue(MatrixVariable.A, 2, 1, 2, 3, 2);
+        verifyMatrixVariableValue(MatrixVariable.B, 2, 3, 6, 9, 6);
+    }
+
+    @Test
+    public void testInterpret_det() {
+        getEnvironment().interpret("det([[2,0,1][1,3,2][1,1,2]])");
+        verifyLastResultValue(6);
+    }
+
+    @Test
+    public void testInterpret_det_singular() {
+        getEnvironment().interpret("det([[1,2][2,4]])");
+        verifyLastResultValue(0);
+    }
+
+    @Test
+    public void testInterpret_dim() {
+        getEnvironment().interpret("dim([[1,2,3][4,5,6]])");
+        verifyLastResultValueList(2d, 3d);
+    }
+
+    @Test
+    public void testInterpret_dim_store() {
+        storeAndExecute(":[[1,2][3,4]]→[A]" +
+                ":{3,1}→dim([A])");
+        verifyMatrixVariableValue(MatrixVariable.A, 1, 1, 3, 0);
+    }
+
+    @Test
+    public void testInterpret_dim_store_new() {
+        storeAndExecute(":{2,2}→dim([J])");
+        verifyMatrixVariableValue(MatrixVariable.J, 2, 0, 0, 0, 0);
+    }
+
+    @Test
+    public void testInterpret_element() {
+        storeAndExecute(":[[1,2][3,4]]→[C]" +
+                ":[C](2,1)");
+        verifyLastResultValue(3);
+    }
+
+    @Test(expected = InvalidDimensionException.class)
+    public void testInterpret_element_fail_outside() {
+        storeAndExecute(":[[1,2][3,4]]→[C]" +
+                ":[C](1,3)");
+    }
+
+    @Test
+    public void testInterpret_element_store() {
+        storeAndExecute(":[[1,2][3,4]]→[A]" +
+                ":5→[A](1,2)");
+        verifyMatrixVariableValue(MatrixVariable.A, 2, 1, 5, 3, 4);
+    }
+
+    @Test
+    public void testInterpret_equals() {
+        getEnvironment().interpret("[[1,2]]=[[1,2]]");
+        verifyLastResultValue(1);
+    }
+
+    @Test(expected = IllegalTypeException.class)
+    public void testInterpret_fail_add_number() {
+        getEnvironment().interpret("[[1,2]]+1");
+    }
+
+    @Test(expected = TIArgumentException.class)
+    public void testInterpret_fail_add_mismatch() {
+        getEnvironment().interpret("[[1,2]]+[[1][2]]");
+    }
+
+    @Test(expected = InvalidDimensionException.class)
+    public void testInterpret_fail_ragged() {
+        getEnvironment().interpret("[[1,2][3]]");
+    }
+
+    @Test(expected = UndefinedVariableException.class)
+    public void testInterpret_fail_undefined() {
+        getEnvironment().interpret("[D]");
+    }
+
+    @Test
+    public void testInterpret_inverse() {
+        getEnvironment().interpret("[[4,7][2,6]]⁻¹");
+        verifyLastResultMatrix(2, 0.6, -0.7, -0.2, 0.4);
+    }
+
+    @Test
+    public void testInterpret_inverse_number() {
+        getEnvironment().interpret("4⁻¹");
+        verifyLastResultValue(0.25);
+    }
+
+    @Test
+    public void testInterpret_inverse_product_is_identity() {
+        storeAndExecute(":[[0,2,1][1,1,0][3,0,5]]→[A]" +
+                ":[A]*[A]⁻¹");
+        verifyLastResultMatrix(3, 1, 0, 0, 0, 1, 0, 0, 0, 1);
+    }
+
+    @Test(expected = TIArgumentException.class)
+    public void testInterpret_inverse_singular() {
+        getEnvironment().interpret("[[1,2][2,4]]⁻¹");
+    }
+
+    @Test
+    public void testInterpret_multiply() {
+        getEnvironment().interpret("[[1,2,3][4,5,6]]*[[7,8][9,10][11,12]]");
+        verifyLastResultMatrix(2, 58, 64, 139, 154);
+    }
+
+    @Test(expected = TIArgumentException.class)
+    public void testInterpret_multiply_mismatch() {
+        getEnvironment().interpret("[[1,2]]*[[1,2]]");
+    }
+
+    @Test
+    public void testInterpret_negate() {
+        getEnvironment().interpret("‾[[1,‾2]]");
+        verifyLastResultMatrix(2, -1, 2);
+    }
+
+    @Test
+    public void testInterpret_power() {
+        getEnvironment().interpret("[[1,1][1,0]]^10");
+        verifyLastResultMatrix(2, 89, 55, 55, 34);
+    }
+
+    @Test
+    public void testInterpret_rref() {
+        getEnvironment().interpret("rref([[1,2,3][2,4,7][1,1,1]])");
+        verifyLastResultMatrix(3, 1, 0, 0, 0, 1, 0, 0, 0, 1);
+    }
+
+    @Test
+    public void testInterpret_rref_dependent() {
+        getEnvironment().interpret("rref([[2,4,6][1,2,3]])");
+        verifyLastResultMatrix(3, 1, 2, 3, 0, 0, 0);
+    }
+
+    @Test
+    public void testInterpret_squared() {
+        getEnvironment().interpret("[[1,2][3,4]]²");
+        verifyLastResultMatrix(2, 7, 10, 15, 22);
+    }
+}
@@ -23,6 +23,7 @@
 package org.xlrnet.tibaija.processor;
 
 import org.junit.Test;
+import org.xlrnet.tibaija.exception.IllegalTypeException;
 
 import static org.mockito.Mockito.verifyZeroInteractions;
 
@@ -53,6 +54,16 @@ public class InterpretStructuralTest extends AbstractTI83PlusTest {
         verifyZeroInteractions(mockedMemory);
     }
 
+    @Test(expected = IllegalTypeException.class)
+    public void testInterpret_invalidProgram_constantTypeError() throws Exception {
+        getEnvironment().interpret(":\"A\"+1");
+    }
+
+    @Test
+    public void testInterpret_validProgram_constantTypeErrorNotReached() throws Exception {
+        storeAndExecute(":If 0:\"A\"+1");
+    }
+
     @Test
     public void testInterpret_validProgram_one() throws Exception {
         getEnvironment().interpret(":1");
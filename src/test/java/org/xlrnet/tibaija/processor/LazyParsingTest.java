@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+package org.xlrnet.tibaija.processor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.xlrnet.tibaija.exception.LabelNotFoundException;
+import org.xlrnet.tibaija.exception.PreprocessException;
+import org.xlrnet.tibaija.memory.NumberVariable;
+import org.xlrnet.tibaija.memory.StringVariable;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for parsing the commands of a program on demand.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class LazyParsingTest extends AbstractTI83PlusTest {
+
+    @Before
+    public void enableLazyParsing() {
+        getEnvironment().setFrontEnd(FrontEnd.LAZY);
+    }
+
+    @Test
+    public void testParse_sameInstructionsAsRecursiveDescent() {
+        String programCode = ":0→A:Lbl 1:If A<3:Then:A+1→A:Goto 1:Else:Disp \"A:B\",A:End" +
+                ":For(I,1,2:{1,2}→∟A:[[1,2]]→[A]:IS>(A,3):\"OPEN→Str1:Stop";
+        Preprocessor preprocessor = new Preprocessor();
+        preprocessor.setFrontEnd(FrontEnd.RECURSIVE_DESCENT);
+        ExecutableProgram expected = preprocessor.preprocessProgramCode("TEST", programCode);
+        preprocessor.setFrontEnd(FrontEnd.LAZY);
+        ExecutableProgram actual = preprocessor.preprocessProgramCode("TEST", programCode);
+
+        assertTrue(actual.hasDeferredCommands());
+        assertEquals(expected.getInternalLabelMap(), actual.getInternalLabelMap());
+        assertEquals(Arrays.toString(expected.getInstructions()), Arrays.toString(actual.getInstructions()));
+        assertFalse(actual.hasDeferredCommands());
+    }
+
+    @Test
+    public void testExecute_onlyReachedCommandsAreParsed() {
+        storeAndExecute(":1→A:If 0:Then:1+)→B:End:2→C");
+        verifyNumberVariableValue(NumberVariable.A, 1, 0);
+        verifyNumberVariableValue(NumberVariable.C, 2, 0);
+        assertTrue(getProgram().getLoadedInstructions()[3].isDeferred());
+        assertFalse(getProgram().getLoadedInstructions()[5].isDeferred());
+    }
+
+    @Test
+    public void testExecute_blocksAndLabels() {
+        storeAndExecute(":0→A:Lbl X:A+1→A:If A<5:Goto X" +
+                ":If A=5:Then:0→B:Else:1→B:End" +
+                ":While B<3:B+1→B:End");
+        verifyNumberVariableValue(NumberVariable.A, 5, 0);
+        verifyNumberVariableValue(NumberVariable.B, 3, 0);
+    }
+
+    @Test
+    public void testExecute_separatorInString() {
+        storeAndExecute(":\"A:B\"→Str1:\"C:D→Str2:1→A");
+        verifyStringVariableValue(StringVariable.Str1, "A:B");
+        verifyStringVariableValue(StringVariable.Str2, "C:D");
+        verifyNumberVariableValue(NumberVariable.A, 1, 0);
+    }
+
+    @Test
+    public void testExecute_syntaxErrorWhenReached() {
+        getEnvironment().loadProgram("TEST", ":1→A:1+)→B");
+        try {
+            getEnvironment().executeProgram("TEST");
+            fail("Expected PreprocessException");
+        } catch (PreprocessException e) {
+            verifyNumberVariableValue(NumberVariable.A, 1, 0);
+        }
+    }
+
+    @Test(expected = LabelNotFoundException.class)
+    public void testExecute_undefinedLabelWhenReached() {
+        storeAndExecute(":1→A:Goto X");
+    }
+
+    @Test(expected = PreprocessException.class)
+    public void testLoad_invalidLabel() {
+        getEnvironment().loadProgram("TEST", ":1→A:Lbl +");
+    }
+
+    @Test
+    public void testExecute_compileHotLoop() {
+        getEnvironment().setExecutionMode(ExecutionMode.TIERED);
+        getEnvironment().setBackEdgeThreshold(5);
+        storeAndExecute(":0→A:If 0:Disp 1:For(I,1,100):A+I→A:End");
+        assertNotNull(getProgram().getCompiledProgram());
+        assertTrue(getProgram().hasDeferredCommands());
+        verifyNumberVariableValue(NumberVariable.A, 5050, 0);
+    }
+
+    @Test
+    public void testExecute_hotLoopWithSyntaxErrorIsCompiled() {
+        getEnvironment().setExecutionMode(ExecutionMode.TIERED);
+        getEnvironment().setBackEdgeThreshold(5);
+        storeAndExecute(":0→A:If 0:1+):For(I,1,100):A+I→A:End");
+        assertNotNull(getProgram().getCompiledProgram());
+        assertTrue(getProgram().hasDeferredCommands());
+        verifyNumberVariableValue(NumberVariable.A, 5050, 0);
+    }
+
+    @Test
+    public void testExecute_compiledLoopReachesDeferredCommand() {
+        getEnvironment().setExecutionMode(ExecutionMode.TIERED);
+        getEnvironment().setBackEdgeThreshold(5);
+        storeAndExecute(":0→A:For(I,1,100):If I=50:Then:A+1000→A:End:A+I→A:End");
+        assertNotNull(getProgram().getCompiledProgram());
+        assertEquals(0, getProgram().getDeoptimizationCount());
+        verifyNumberVariableValue(NumberVariable.A, 6050, 0);
+    }
+
+    private ExecutableProgram getProgram() {
+        return getEnvironment().getMemory().getStoredProgram("TEST");
+    }
+}
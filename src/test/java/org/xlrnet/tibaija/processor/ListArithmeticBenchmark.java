@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.processor;
+
+import ch.qos.logback.classic.Level;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xlrnet.tibaija.commons.Value;
+import org.xlrnet.tibaija.graphics.NullHomeScreen;
+import org.xlrnet.tibaija.io.CalculatorIO;
+import org.xlrnet.tibaija.io.DummyCodeProvider;
+import org.xlrnet.tibaija.memory.DefaultCalculatorMemory;
+import org.xlrnet.tibaija.memory.ListVariable;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Simple throughput benchmark for element-wise arithmetic on large real-valued lists. This is not a unit test and must
+ * be started manually, e.g. from the IDE or with {@code java -cp ... ListArithmeticBenchmark}.
+ */
+public class ListArithmeticBenchmark {
+
+    private static final int LIST_SIZE = 999;
+
+    private static final int ITERATIONS = 1000;
+
+    private static final int ROUNDS = 10;
+
+    private static final String[] EXPRESSIONS = {"∟A+∟B", "∟A-∟B", "∟A*∟B", "∟A/∟B", "∟A<∟B", "∟A=∟B", "∟A²", "√(∟A)", "2*∟A+1"};
+
+    public static void main(String[] args) {
+        ((ch.qos.logback.classic.Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+
+        DefaultCalculatorMemory memory = new DefaultCalculatorMemory();
+        InternalExecutionEnvironment environment = ExecutionEnvironmentFactory.newEnvironment(memory, mock(CalculatorIO.class), new DummyCodeProvider(), new NullHomeScreen());
+        ExecutionEnvironmentFactory.registerDefaultCommands(environment);
+
+        Random random = new Random(42);
+        memory.setListVariableValue(ListVariable.fromName("A"), randomList(random));
+        memory.setListVariableValue(ListVariable.fromName("B"), randomList(random));
+
+        for (int i = 0; i < EXPRESSIONS.length; i++) {
+            environment.loadProgram("BENCH" + i, ":For(I,1," + ITERATIONS + "):" + EXPRESSIONS[i] + ":End");
+        }
+
+        double[] best = new double[EXPRESSIONS.length];
+        Arrays.fill(best, Double.MAX_VALUE);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int i = 0; i < EXPRESSIONS.length; i++) {
+                long start = System.nanoTime();
+                environment.executeProgram("BENCH" + i);
+                long elapsed = System.nanoTime() - start;
+                best[i] = Math.min(best[i], (double) elapsed / ((long) ITERATIONS * LIST_SIZE));
+            }
+        }
+
+        for (int i = 0; i < EXPRESSIONS.length; i++) {
+            System.out.println(String.format("%-8s %8.2f ns/element", EXPRESSIONS[i], best[i]));
+        }
+    }
+
+    private static Value randomList(Random random) {
+        double[] elements = new double[LIST_SIZE];
+        for (int i = 0; i < LIST_SIZE; i++) {
+            elements[i] = random.nextDouble() * 100 + 1;
+        }
+        return Value.ofList(elements, null);
+    }
+}
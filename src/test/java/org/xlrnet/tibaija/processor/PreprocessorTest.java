@@ -23,9 +23,14 @@
 package org.xlrnet.tibaija.processor;
 
 import org.junit.Test;
+import org.xlrnet.tibaija.commons.Value;
+import org.xlrnet.tibaija.exception.LabelNotFoundException;
+import org.xlrnet.tibaija.exception.PreprocessException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class PreprocessorTest {
 
@@ -55,6 +60,69 @@ public class PreprocessorTest {
         preprocessor.preprocessProgramCode(VALID_PRGM_NAME, "");
     }
 
+    @Test(expected = PreprocessException.class)
+    public void testImplicitMultiplication_listWithNumberVariable() {
+        preprocessor.preprocessProgramCode(VALID_PRGM_NAME, ":∟ABCDEF");
+    }
+
+    @Test
+    public void testImplicitMultiplication_listWithNumber() {
+        ExecutableProgram executableProgram = preprocessor.preprocessProgramCode(VALID_PRGM_NAME, ":∟ABCDE2:∟ABCDE*F");
+        assertEquals(2, executableProgram.getInstructions().length);
+    }
+
+    @Test
+    public void testInstructionPerCommand() {
+        ExecutableProgram executableProgram = preprocessor.preprocessProgramCode(VALID_PRGM_NAME, ":1+2:If X:Then:3→A::End");
+        Instruction[] instructions = executableProgram.getInstructions();
+        assertEquals(6, instructions.length);
+        assertEquals(Instruction.InstructionType.EXPRESSION, instructions[0].getType());
+        assertEquals(ControlFlowToken.IF, instructions[1].getFlowToken());
+        assertEquals(ControlFlowToken.THEN, instructions[2].getFlowToken());
+        assertEquals(Instruction.InstructionType.STORE_NUMBER, instructions[3].getType());
+        assertEquals(Instruction.InstructionType.EMPTY, instructions[4].getType());
+        assertEquals(ControlFlowToken.END, instructions[5].getFlowToken());
+    }
+
+    @Test
+    public void testJumpTable_nestedBlocks() {
+        ExecutableProgram executableProgram = preprocessor.preprocessProgramCode(VALID_PRGM_NAME, ":If X:Then:While 1:End:Else:For(I,1,2:End:End");
+        JumpTable jumpTable = executableProgram.getJumpTable();
+        assertEquals(JumpTable.NO_TARGET, jumpTable.getMatchingIndex(0));
+        assertEquals(4, jumpTable.getMatchingIndex(1));
+        assertEquals(3, jumpTable.getMatchingIndex(2));
+        assertEquals(2, jumpTable.getMatchingIndex(3));
+        assertEquals(7, jumpTable.getMatchingIndex(4));
+        assertEquals(6, jumpTable.getMatchingIndex(5));
+        assertEquals(4, jumpTable.getMatchingIndex(7));
+        assertFalse(jumpTable.isMalformed(1));
+    }
+
+    @Test
+    public void testJumpTable_unclosedAndMalformed() {
+        ExecutableProgram executableProgram = preprocessor.preprocessProgramCode(VALID_PRGM_NAME, ":While 0:Then:Repeat 1");
+        JumpTable jumpTable = executableProgram.getJumpTable();
+        assertEquals(3, jumpTable.getMatchingIndex(0));
+        assertEquals(3, jumpTable.getMatchingIndex(2));
+        assertTrue(jumpTable.isMalformed(0));
+        assertFalse(jumpTable.isMalformed(2));
+    }
+
+    @Test
+    public void testJumpTable_thenElseBlockEnd() {
+        ExecutableProgram executableProgram = preprocessor.preprocessProgramCode(VALID_PRGM_NAME, ":If 1:Then:Lbl A:Else:Lbl B:End");
+        JumpTable jumpTable = executableProgram.getJumpTable();
+        assertEquals(3, jumpTable.getMatchingIndex(1));
+        assertEquals(5, jumpTable.getBlockEnd(1));
+        assertTrue(jumpTable.isInsideBlock(1, 4));
+        assertFalse(jumpTable.isInsideBlock(3, 2));
+    }
+
+    @Test(expected = LabelNotFoundException.class)
+    public void testMissingLabel() {
+        preprocessor.preprocessProgramCode(VALID_PRGM_NAME, ":Lbl A:Goto B");
+    }
+
     @Test
     public void testMultiLabelProgram() {
         ExecutableProgram executableProgram = preprocessor.preprocessProgramCode(VALID_PRGM_NAME, ":Lbl A:Lbl B:0");
@@ -89,6 +157,20 @@ public class PreprocessorTest {
         assertEquals(5, labelTargetB);
     }
 
+    @Test
+    public void testNumbers_multipleDigits() {
+        ExecutableProgram executableProgram = preprocessor.preprocessProgramCode(VALID_PRGM_NAME, ":123:12.5:.25");
+        Instruction[] instructions = executableProgram.getInstructions();
+        assertEquals(Value.of(123), instructions[0].getExpression(0).getConstants()[0]);
+        assertEquals(Value.of(12.5), instructions[1].getExpression(0).getConstants()[0]);
+        assertEquals(Value.of(0.25), instructions[2].getExpression(0).getConstants()[0]);
+    }
+
+    @Test(expected = PreprocessException.class)
+    public void testTrailingInput() {
+        preprocessor.preprocessProgramCode(VALID_PRGM_NAME, "1+2");
+    }
+
     @Test
     public void testSimpleCommandProgram() {
         preprocessor.preprocessProgramCode(VALID_PRGM_NAME, ":0");
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+package org.xlrnet.tibaija.processor;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xlrnet.tibaija.graphics.NullHomeScreen;
+import org.xlrnet.tibaija.io.CalculatorIO;
+import org.xlrnet.tibaija.io.FileSystemCodeProvider;
+import org.xlrnet.tibaija.memory.DefaultCalculatorMemory;
+import org.xlrnet.tibaija.memory.ListVariable;
+import org.xlrnet.tibaija.memory.NumberVariable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class ProgramCacheTest {
+
+    private static final String PROGRAM_NAME = "TEST";
+
+    private static final String PROGRAM_CODE = ":0→A:Lbl X:If A<3:Then:A+1→A:Goto X:End" +
+            ":{1,2i,3}*2→∟L:[[1,2][3,4]]→[A]:\"HELLO\"→Str1:Disp A,sum(∟L):For(I,1,2:End";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private ProgramCache programCache;
+
+    @Before
+    public void setUp() throws IOException {
+        this.programCache = new ProgramCache(this.temporaryFolder.newFolder("cache").toPath());
+    }
+
+    @Test
+    public void testLoad_changedSource() {
+        this.programCache.store(new Preprocessor().preprocessProgramCode(PROGRAM_NAME, PROGRAM_CODE));
+        assertNull(this.programCache.load(PROGRAM_NAME, PROGRAM_CODE + ":1"));
+    }
+
+    @Test
+    public void testLoad_invalidEntry() throws IOException {
+        Files.write(this.programCache.getEntryPath(PROGRAM_CODE), new byte[]{1, 2, 3});
+        assertNull(this.programCache.load(PROGRAM_NAME, PROGRAM_CODE));
+    }
+
+    @Test
+    public void testLoad_negativeLength() throws IOException {
+        ByteBuffer content = ByteBuffer.allocate(16).putInt(0x54494243).putInt(1).putInt(1).putInt(-1);
+        Files.write(this.programCache.getEntryPath(PROGRAM_CODE), content.array());
+        assertNull(this.programCache.load(PROGRAM_NAME, PROGRAM_CODE));
+    }
+
+    @Test
+    public void testLoad_oversizedLength() throws IOException {
+        ByteBuffer content = ByteBuffer.allocate(16).putInt(0x54494243).putInt(1).putInt(0).putInt(Integer.MAX_VALUE);
+        Files.write(this.programCache.getEntryPath(PROGRAM_CODE), content.array());
+        assertNull(this.programCache.load(PROGRAM_NAME, PROGRAM_CODE));
+    }
+
+    @Test
+    public void testLoad_truncatedEntry() throws IOException {
+        this.programCache.store(new Preprocessor().preprocessProgramCode(PROGRAM_NAME, PROGRAM_CODE));
+        Path path = this.programCache.getEntryPath(PROGRAM_CODE);
+        byte[] content = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(content, content.length / 2));
+        assertNull(this.programCache.load(PROGRAM_NAME, PROGRAM_CODE));
+    }
+
+    @Test
+    public void testPreprocessor_usesCache() {
+        Preprocessor preprocessor = new Preprocessor();
+        preprocessor.setProgramCache(this.programCache);
+
+        ExecutableProgram parsedProgram = preprocessor.preprocessProgramCode(PROGRAM_NAME, PROGRAM_CODE);
+        ExecutableProgram cachedProgram = preprocessor.preprocessProgramCode("OTHER", PROGRAM_CODE);
+
+        assertNotNull(parsedProgram.getMainProgramContext());
+        assertNull(cachedProgram.getMainProgramContext());
+        assertEquals("OTHER", cachedProgram.getProgramName());
+        assertEquals(PROGRAM_CODE, cachedProgram.getOriginalSource());
+    }
+
+    @Test
+    public void testStoreAndLoad() {
+        ExecutableProgram program = new Preprocessor().preprocessProgramCode(PROGRAM_NAME, PROGRAM_CODE);
+        this.programCache.store(program);
+        ExecutableProgram cachedProgram = this.programCache.load(PROGRAM_NAME, PROGRAM_CODE);
+
+        assertNotNull(cachedProgram);
+        assertEquals(Arrays.toString(program.getInstructions()), Arrays.toString(cachedProgram.getInstructions()));
+        assertEquals(program.getInternalLabelMap(), cachedProgram.getInternalLabelMap());
+        for (int i = 0; i < program.getInstructions().length; i++) {
+            assertEquals(program.getJumpTable().getMatchingIndex(i), cachedProgram.getJumpTable().getMatchingIndex(i));
+            assertEquals(program.getJumpTable().getBlockEnd(i), cachedProgram.getJumpTable().getBlockEnd(i));
+            assertEquals(program.getJumpTable().isMalformed(i), cachedProgram.getJumpTable().isMalformed(i));
+        }
+    }
+
+    @Test
+    public void testExecuteProgram_fromCache() throws IOException {
+        Path programDirectory = this.temporaryFolder.newFolder("programs").toPath();
+        Path cacheDirectory = this.temporaryFolder.newFolder("programCache").toPath();
+        Files.write(programDirectory.resolve("CACHED.tib"), PROGRAM_CODE.getBytes(StandardCharsets.UTF_8));
+
+        for (int run = 0; run < 2; run++) {
+            InternalExecutionEnvironment environment = ExecutionEnvironmentFactory.newEnvironment(new DefaultCalculatorMemory(), mock(CalculatorIO.class),
+                    new FileSystemCodeProvider(programDirectory, cacheDirectory), new NullHomeScreen());
+            ExecutionEnvironmentFactory.registerDefaultCommands(environment);
+            environment.executeProgram("CACHED");
+
+            assertEquals(3, environment.getMemory().getNumberVariableValue(NumberVariable.A).realPart(), 0);
+            assertEquals(4, environment.getMemory().getListVariableValue(ListVariable.fromName("L")).listImaginaryPart(1), 0);
+            assertTrue(Files.list(cacheDirectory).count() == 1);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.processor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.xlrnet.tibaija.exception.InvalidDimensionException;
+import org.xlrnet.tibaija.exception.LabelNotFoundException;
+import org.xlrnet.tibaija.exception.PreprocessException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the hand-written front end. All programs are parsed by both front ends, which fails if the front ends
+ * don't produce the same instructions or errors.
+ */
+public class RecursiveDescentParserTest {
+
+    private static final String VALID_PRGM_NAME = "TEST";
+
+    private Preprocessor preprocessor;
+
+    @Before
+    public void setUp() {
+        preprocessor = new Preprocessor();
+        preprocessor.setFrontEnd(FrontEnd.CROSS_CHECK);
+    }
+
+    @Test
+    public void testCommands() {
+        crossCheck(":Disp 1,\"HELLO\",A:Output(1,2,\"X\":ClrHome:Disp :Disp");
+    }
+
+    @Test
+    public void testCommandIdentifiers() {
+        crossCheck(":Ai:Ab:AbC 1:A-B(1):X-1:X-Y:DispA");
+    }
+
+    @Test
+    public void testControlFlow() {
+        crossCheck(":If X=1:Then:While A<3:A+1→A:End:Else:Repeat B:End:End:For(I,1,10,2:End:For(I,1,2)");
+        crossCheck(":Lbl A:Lbl 12:Lbl A:Goto 12:Goto A:IS>(A,3):DS<(B,‾1:Stop");
+    }
+
+    @Test
+    public void testExpressions() {
+        crossCheck(":1+2*3-4/5:2^3×√8:5nPr2+5nCr2:‾2²:‾‾3:1.5+.5:12.25:3!+4³+2⁻¹");
+        crossCheck(":1 and 0 or 1 xor 0:not(1:√(4)+∛(8:1=1≠2<3>4≤5≥6:A►Frac:2►Dec");
+        crossCheck(":2A:2(3):A B: 2 : (1+2:Ans:AnsAns");
+    }
+
+    @Test
+    public void testImaginary() {
+        crossCheck(":i:ii:iii²²:2i:ℑ:i!²:Ai");
+    }
+
+    @Test
+    public void testFunctionCalls() {
+        crossCheck(":abs(X-1:abs(X)-1:max(1,2:max(A,B):dim(∟A):ΔList(∟A):seq(X²,X,1,5:sum(seq(X,X,1,3)):rand()");
+        crossCheck(":Test(123)+1:max(∟A+1,2):min(‾A,B:sin(A)cos(B");
+    }
+
+    @Test
+    public void testLists() {
+        crossCheck(":{1,2,3}:{1,2:∟A(1):∟A(2)+∟B:∟ABCDE2:{1,2}→∟A:{1}→∟₁:5→dim(∟A):3→∟A(2:{sum(∟A),∟A(1)}");
+    }
+
+    @Test
+    public void testMatrices() {
+        crossCheck(":[[1,2][3,4]]:[[1]]→[A]:[A](1,2):[A](2):max([A](1,2),3):[A]→[B]:5→[A](1,2:{2,2}→dim([A])");
+    }
+
+    @Test
+    public void testStrings() {
+        crossCheck(":\"HELLO\":\"A:B\"→Str1:Str1+\"X\":\"OPEN");
+    }
+
+    @Test
+    public void testWhitespace() {
+        ExecutableProgram program = crossCheck(":1+2\n:  Disp   A\r\n:\tB→C\n\n");
+        assertEquals(3, program.getInstructions().length);
+    }
+
+    @Test
+    public void testRecursiveDescent_noParseTree() {
+        preprocessor.setFrontEnd(FrontEnd.RECURSIVE_DESCENT);
+        ExecutableProgram program = preprocessor.preprocessProgramCode(VALID_PRGM_NAME, ":Lbl A:If X:Then:Goto A:End");
+        assertNull(program.getMainProgramContext());
+        assertNotNull(program.getJumpTable());
+        assertEquals(Integer.valueOf(0), program.getLabelJumpTarget("A"));
+        assertEquals(4, program.getJumpTable().getMatchingIndex(2));
+    }
+
+    @Test(expected = PreprocessException.class)
+    public void testError_missingSeparator() {
+        crossCheck("1+2");
+    }
+
+    @Test(expected = PreprocessException.class)
+    public void testError_invalidToken() {
+        crossCheck(":1+$");
+    }
+
+    @Test(expected = PreprocessException.class)
+    public void testError_trailingTokens() {
+        crossCheck(":1+2)");
+    }
+
+    @Test
+    public void testError_trailingComma() {
+        try {
+            crossCheck(":Disp 1,");
+            fail("Expected a PreprocessException");
+        } catch (PreprocessException e) {
+            assertEquals(1, e.getLine());
+            assertEquals(7, e.getCharPositionInLine());
+        }
+    }
+
+    @Test(expected = PreprocessException.class)
+    public void testError_nestedList() {
+        crossCheck(":{1,{2}}");
+    }
+
+    @Test(expected = PreprocessException.class)
+    public void testError_listVariableInList() {
+        crossCheck(":{∟A,1}");
+    }
+
+    @Test(expected = PreprocessException.class)
+    public void testError_doubleNegation() {
+        crossCheck(":‾‾A");
+    }
+
+    @Test(expected = PreprocessException.class)
+    public void testError_invalidListName() {
+        crossCheck(":∟ABCDEF");
+    }
+
+    @Test(expected = PreprocessException.class)
+    public void testError_reservedToken() {
+        crossCheck(":Input A");
+    }
+
+    @Test(expected = InvalidDimensionException.class)
+    public void testError_matrixRows() {
+        crossCheck(":[[1,2][3]]");
+    }
+
+    @Test(expected = LabelNotFoundException.class)
+    public void testError_missingLabel() {
+        crossCheck(":Lbl A:Goto B");
+    }
+
+    @Test(expected = PreprocessException.class)
+    public void testError_syntaxErrorBeforeMissingLabel() {
+        crossCheck(":Goto B:1+");
+    }
+
+    private ExecutableProgram crossCheck(String programCode) {
+        return preprocessor.preprocessProgramCode(VALID_PRGM_NAME, programCode);
+    }
+}
@@ -22,6 +22,8 @@
 
 package org.xlrnet.tibaija.processor;
 
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.math3.complex.Complex;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.runners.MockitoJUnitRunner;
@@ -29,6 +31,8 @@ import org.xlrnet.tibaija.commons.Value;
 import org.xlrnet.tibaija.exception.TIArgumentException;
 import org.xlrnet.tibaija.memory.NumberVariable;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.when;
 
 /**
@@ -176,6 +180,36 @@ public class SimpleArithmeticsTest extends AbstractTI83PlusTest {
         verifyLastResultValue(123 * 456 * 123);
     }
 
+    @Test
+    public void testInterpret_validProgram_realCallSite_complexOperand() {
+        storeAndExecute(":1→A" +
+                ":For(I,1,2)" +
+                ":A*A→B" +
+                ":2i→A" +
+                ":End");
+        verifyNumberVariableValue(NumberVariable.B, -4, 0);
+    }
+
+    @Test
+    public void testInterpret_validProgram_realCallSite_divisionByZero() {
+        storeAndExecute(":1→A" +
+                ":For(I,1,2)" +
+                ":1/A→B" +
+                ":0→A" +
+                ":End");
+        assertTrue(Double.isNaN(getEnvironment().getMemory().getNumberVariableValue(NumberVariable.B).complex().getReal()));
+    }
+
+    @Test
+    public void testInterpret_validProgram_realCallSite_listOperand() {
+        storeAndExecute(":For(I,1,2)" +
+                ":If I=1:5" +
+                ":If I=2:{1,2}" +
+                ":Ans+1" +
+                ":End");
+        assertEquals(ImmutableList.of(Complex.valueOf(2), Complex.valueOf(3)), getEnvironment().getMemory().getLastResult().list());
+    }
+
     @Test
     public void testInterpret_validProgram_memory_read_numberVariable_single() {
         when(this.mockedMemory.getNumberVariableValue(NumberVariable.A)).thenReturn(Value.of(123));
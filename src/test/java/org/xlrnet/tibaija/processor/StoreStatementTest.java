@@ -141,6 +141,32 @@ public class StoreStatementTest extends AbstractTI83PlusTest {
         verifyListVariableValue("A", Complex.ONE, Complex.valueOf(2), Complex.ZERO, Complex.ZERO, Complex.ZERO);
     }
 
+    @Test
+    public void testInterpret_validProgram_store_list_dimension_scaleDown_scaleUp() {
+        storeAndExecute(":{1,2,3,4->∟A" +
+                ":1->dim(∟A" +
+                ":3->dim(∟A");
+        verifyListVariableValue("A", Complex.ONE, Complex.ZERO, Complex.ZERO);
+    }
+
+    @Test
+    public void testInterpret_validProgram_store_theta() {
+        storeAndExecute(":5->θ" +
+                ":θ+1");
+        verifyLastResultValue(6);
+        verifyNumberVariableValue(NumberVariable.THETA, 5, 0);
+    }
+
+    @Test
+    public void testInterpret_validProgram_store_list_element_snapshot() {
+        storeAndExecute(":{1,2->∟A" +
+                ":∟A->∟B" +
+                ":5->∟A(1" +
+                ":2i->∟A(3");
+        verifyListVariableValue("A", Complex.valueOf(5), Complex.valueOf(2), Complex.valueOf(0, 2));
+        verifyListVariableValue("B", Complex.ONE, Complex.valueOf(2));
+    }
+
     @Test
     public void testInterpret_validProgram_store_list_dimension_index_zero() {
         storeAndExecute(":0->dim(∟A");
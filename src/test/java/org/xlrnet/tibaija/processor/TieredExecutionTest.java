@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.processor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.xlrnet.tibaija.memory.NumberVariable;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for promoting hot loops to compiled code and for falling back to the interpreter.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class TieredExecutionTest extends AbstractTI83PlusTest {
+
+    @Before
+    public void enableTieredExecution() {
+        getEnvironment().setExecutionMode(ExecutionMode.TIERED);
+        getEnvironment().setBackEdgeThreshold(5);
+    }
+
+    @Test
+    public void testExecute_hotForLoop() {
+        storeAndExecute(":0→A" +
+                ":For(I,1,100)" +
+                ":A+I→A" +
+                ":End");
+        assertNotNull(getProgram().getCompiledProgram());
+        verifyNumberVariableValue(NumberVariable.A, 5050, 0);
+    }
+
+    @Test
+    public void testExecute_hotGotoLoop() {
+        storeAndExecute(":0→A" +
+                ":Lbl 1" +
+                ":A+1→A" +
+                ":If A<50" +
+                ":Goto 1");
+        assertNotNull(getProgram().getCompiledProgram());
+        verifyNumberVariableValue(NumberVariable.A, 50, 0);
+    }
+
+    @Test
+    public void testExecute_coldLoop() {
+        getEnvironment().setBackEdgeThreshold(100);
+        storeAndExecute(":0→A" +
+                ":For(I,1,10)" +
+                ":A+I→A" +
+                ":End");
+        assertFalse(getProgram().isCompilationAttempted());
+        verifyNumberVariableValue(NumberVariable.A, 55, 0);
+    }
+
+    @Test
+    public void testExecute_deoptimizeOnComplexOperand() {
+        storeAndExecute(":0→A" +
+                ":For(I,1,20)" +
+                ":If I=10" +
+                ":A+2i→A" +
+                ":A+1→A" +
+                ":End");
+        assertTrue(getProgram().getDeoptimizationCount() > 0);
+        verifyNumberVariableValue(NumberVariable.A, 20, 2);
+    }
+
+    @Test
+    public void testExecute_deoptimizeOnDivisionByZero() {
+        storeAndExecute(":1→A" +
+                ":For(I,1,20)" +
+                ":If I=15" +
+                ":0→A" +
+                ":1/A→B" +
+                ":End");
+        assertTrue(getProgram().getDeoptimizationCount() > 0);
+        assertTrue(Double.isNaN(getEnvironment().getMemory().getNumberVariableValue(NumberVariable.B).complex().getReal()));
+    }
+
+    @Test
+    public void testExecute_deoptimizationLimit() {
+        getEnvironment().setDeoptimizationLimit(0);
+        storeAndExecute(":0→A" +
+                ":For(I,1,20)" +
+                ":If I=10" +
+                ":A+2i→A" +
+                ":A+1→A" +
+                ":End");
+        assertEquals(0, getProgram().getDeoptimizationCount());
+        verifyNumberVariableValue(NumberVariable.A, 20, 2);
+    }
+
+    private ExecutableProgram getProgram() {
+        return getEnvironment().getMemory().getStoredProgram("TEST");
+    }
+}
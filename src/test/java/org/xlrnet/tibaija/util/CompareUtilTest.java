@@ -22,8 +22,10 @@
 
 package org.xlrnet.tibaija.util;
 
+import org.apache.commons.math3.complex.Complex;
 import org.junit.Test;
 import org.xlrnet.tibaija.commons.CompareUtil;
+import org.xlrnet.tibaija.commons.Value;
 
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -69,4 +71,13 @@ public class CompareUtilTest {
         assertTrue(CompareUtil.isNotEqual(1, 2));
         assertFalse(CompareUtil.isNotEqual(1, 1));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testCompareRealValues() throws Exception {
+        assertTrue(CompareUtil.isEqual(Value.of(0.0), Value.of(-0.0)));
+        assertTrue(CompareUtil.isEqual(Value.of(2), Value.of(Complex.valueOf(2))));
+        assertTrue(CompareUtil.isGreaterThan(Value.of(2.5), Value.of(2)));
+        assertTrue(CompareUtil.isLessOrEqual(Value.of(Double.NEGATIVE_INFINITY), Value.of(-1e300)));
+        assertFalse(CompareUtil.isNotEqual(Value.of(1e9), Value.of(1e9)));
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+package org.xlrnet.tibaija.util;
+
+import org.apache.commons.math3.complex.Complex;
+import org.junit.Test;
+import org.xlrnet.tibaija.commons.ComplexMath;
+import org.xlrnet.tibaija.commons.Value;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ComplexMathTest {
+
+    private static final double[][] OPERANDS = {{2, 3}, {-1.5, 0.25}, {0, -4}, {7, 0}, {1e-3, 1e3}, {-2e5, -3e-5}};
+
+    @Test
+    public void testAdd() {
+        for (double[] lhs : OPERANDS) {
+            for (double[] rhs : OPERANDS) {
+                assertComplex(complex(lhs).add(complex(rhs)), ComplexMath.add(lhs[0], lhs[1], rhs[0], rhs[1]));
+            }
+        }
+    }
+
+    @Test
+    public void testDivide() {
+        for (double[] lhs : OPERANDS) {
+            for (double[] rhs : OPERANDS) {
+                assertComplex(complex(lhs).divide(complex(rhs)), ComplexMath.divide(lhs[0], lhs[1], rhs[0], rhs[1]));
+            }
+        }
+    }
+
+    @Test
+    public void testDivide_byZero() {
+        assertNull(ComplexMath.divide(1, 2, 0, 0));
+    }
+
+    @Test
+    public void testMultiply() {
+        for (double[] lhs : OPERANDS) {
+            for (double[] rhs : OPERANDS) {
+                assertComplex(complex(lhs).multiply(complex(rhs)), ComplexMath.multiply(lhs[0], lhs[1], rhs[0], rhs[1]));
+            }
+        }
+    }
+
+    @Test
+    public void testMultiply_constantFactor() {
+        assertComplex(Complex.valueOf(-6, 4), ComplexMath.multiply(Value.of(2, 3), Complex.valueOf(0, 2)));
+        assertTrue(ComplexMath.multiply(Value.of(Complex.NaN), Complex.I).complex().isNaN());
+    }
+
+    @Test
+    public void testSubtract() {
+        for (double[] lhs : OPERANDS) {
+            for (double[] rhs : OPERANDS) {
+                assertComplex(complex(lhs).subtract(complex(rhs)), ComplexMath.subtract(lhs[0], lhs[1], rhs[0], rhs[1]));
+            }
+        }
+    }
+
+    private static void assertComplex(Complex expected, Value actual) {
+        assertEquals(expected.getReal(), actual.realPart(), Math.ulp(expected.getReal()));
+        assertEquals(expected.getImaginary(), actual.imaginaryPart(), Math.ulp(expected.getImaginary()));
+    }
+
+    private static Complex complex(double[] operand) {
+        return Complex.valueOf(operand[0], operand[1]);
+    }
+}
@@ -79,6 +79,8 @@ public class TIMathUtilsTest {
         Assertions.assertComplexValue(TIMathUtils.imaginaryNthPower(1), 0, 1);
         Assertions.assertComplexValue(TIMathUtils.imaginaryNthPower(2), -1, 0);
         Assertions.assertComplexValue(TIMathUtils.imaginaryNthPower(3), 0, -1);
+        Assertions.assertComplexValue(TIMathUtils.imaginaryNthPower(4), 1, 0);
+        Assertions.assertComplexValue(TIMathUtils.imaginaryNthPower(1001), 0, 1);
     }
 
     @Test(expected = TIArgumentException.class)
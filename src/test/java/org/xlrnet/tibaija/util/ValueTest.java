@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2015 Jakob Hendeß
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE
+ */
+
+
+package org.xlrnet.tibaija.util;
+
+import com.google.common.collect.ImmutableList;
+import org.apache.commons.math3.complex.Complex;
+import org.junit.Test;
+import org.xlrnet.tibaija.commons.Value;
+
+import static org.junit.Assert.*;
+
+public class ValueTest {
+
+    @Test
+    public void testRealNumber() throws Exception {
+        Value value = Value.of(2.5);
+        assertTrue(value.isNumber());
+        assertTrue(value.isReal());
+        assertFalse(value.hasImaginaryValue());
+        assertEquals(2.5, value.realPart(), 0);
+        assertEquals(0, value.imaginaryPart(), 0);
+        assertEquals(Complex.valueOf(2.5), value.complex());
+    }
+
+    @Test
+    public void testRealNumberFromComplex() throws Exception {
+        Value value = Value.of(Complex.valueOf(3, 0));
+        assertTrue(value.isReal());
+        assertEquals(Value.of(3), value);
+        assertEquals(Value.of(3).hashCode(), value.hashCode());
+    }
+
+    @Test
+    public void testComplexNumber() throws Exception {
+        Value value = Value.of(Complex.valueOf(1, 2));
+        assertFalse(value.isReal());
+        assertFalse(value.isFiniteReal());
+        assertTrue(value.hasImaginaryValue());
+        assertEquals(2, value.imaginaryPart(), 0);
+        assertNotEquals(Value.of(1), value);
+    }
+
+    @Test
+    public void testNaN() throws Exception {
+        Value value = Value.of(Double.NaN);
+        assertFalse(value.isReal());
+        assertEquals(Complex.NaN, value.complex());
+        assertEquals(Value.of(Complex.NaN), value);
+    }
+
+    @Test
+    public void testInfinity() throws Exception {
+        Value value = Value.of(Double.POSITIVE_INFINITY);
+        assertTrue(value.isReal());
+        assertFalse(value.isFiniteReal());
+    }
+
+    @Test
+    public void testCachedIntegers() throws Exception {
+        assertSame(Value.of(42), Value.of(42.0));
+        assertSame(Value.ZERO, Value.of(Complex.ZERO));
+        assertSame(Value.ONE, Value.of(true));
+        assertNotSame(Value.of(0.0), Value.of(-0.0));
+        assertNotEquals(Value.of(0.0), Value.of(-0.0));
+        assertEquals(0, Value.of(0.0).compareTo(Value.of(-0.0)));
+    }
+
+    @Test
+    public void testRealList() throws Exception {
+        Value list = Value.ofList(new double[]{1, 2.5, -3}, null);
+        assertTrue(list.isList());
+        assertFalse(list.hasImaginaryListValues());
+        assertEquals(3, list.listSize());
+        assertEquals(2.5, list.listRealPart(1), 0);
+        assertEquals(0, list.listImaginaryPart(1), 0);
+        assertEquals(Value.of(-3), list.listElement(2));
+        assertEquals(ImmutableList.of(Complex.valueOf(1), Complex.valueOf(2.5), Complex.valueOf(-3)), list.list());
+    }
+
+    @Test
+    public void testComplexList() throws Exception {
+        Value list = Value.of(ImmutableList.of(Complex.valueOf(1), Complex.valueOf(2, 3)));
+        assertTrue(list.hasImaginaryListValues());
+        assertEquals(3, list.listImaginaryPart(1), 0);
+        assertEquals(Value.of(Complex.valueOf(2, 3)), list.listElement(1));
+        assertEquals(Value.ofList(new double[]{1, 2}, new double[]{0, 3}), list);
+        assertEquals(Value.ofList(new double[]{1, 2}, new double[]{0, 3}).hashCode(), list.hashCode());
+    }
+
+    @Test
+    public void testListOf() throws Exception {
+        Value list = Value.listOf(Value.of(1), Value.of(Complex.I));
+        assertEquals(Value.of(Complex.ONE, Complex.I), list);
+        assertNotEquals(Value.of(Complex.ONE, Complex.ONE), list);
+        assertEquals(Value.listOf(), Value.EMPTY_LIST);
+    }
+}